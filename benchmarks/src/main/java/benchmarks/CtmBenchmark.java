@@ -0,0 +1,35 @@
+package benchmarks;
+
+import api.OTM;
+import error.OTMException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One time step (2 seconds) of ModelCTM on a corridor of num_links links, after the
+ * corridor has been loaded for 10 minutes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CtmBenchmark {
+
+    @Param({"10","100","1000"})
+    public int num_links;
+
+    private OTM otm;
+
+    @Setup(Level.Trial)
+    public void setup() throws OTMException {
+        otm = Scenarios.load(Scenarios.corridor(num_links,"ctm"));
+        otm.initialize(0f);
+        otm.advance(600f);
+    }
+
+    @Benchmark
+    public void step() throws OTMException {
+        otm.advance(2f);
+    }
+
+}
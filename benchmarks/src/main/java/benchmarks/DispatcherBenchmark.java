@@ -0,0 +1,64 @@
+package benchmarks;
+
+import dispatch.AbstractEvent;
+import dispatch.Dispatcher;
+import error.OTMException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatcher throughput with synthetic events. Each of num_events recipients has one event
+ * in the queue at any time, which schedules the next one for the same recipient when it
+ * is dispatched, as the pokes of models, sensors and controllers do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DispatcherBenchmark {
+
+    static final int REPEATS = 10;
+
+    @Param({"100","10000","100000"})
+    public int num_events;
+
+    private Dispatcher dispatcher;
+    private float [] start_times;
+    private long num_dispatched;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        dispatcher = new Dispatcher();
+        Random random = new Random(1);
+        start_times = new float[num_events];
+        for(int i=0;i<num_events;i++)
+            start_times[i] = random.nextFloat()*10f;
+    }
+
+    // dispatches num_events*(REPEATS+1) events
+    @Benchmark
+    public long register_and_dispatch() throws OTMException {
+        num_dispatched = 0;
+        dispatcher.initialize();
+        for(int i=0;i<num_events;i++)
+            dispatcher.register_event(new TickEvent(dispatcher,start_times[i],i%4,REPEATS));
+        dispatcher.dispatch_events_to_stop();
+        return num_dispatched;
+    }
+
+    class TickEvent extends AbstractEvent {
+        final int remaining;
+        TickEvent(Dispatcher dispatcher,float timestamp,int dispatch_order,int remaining){
+            super(dispatcher,dispatch_order,timestamp,DispatcherBenchmark.this);
+            this.remaining = remaining;
+        }
+        @Override
+        public void action() {
+            num_dispatched++;
+            if(remaining>0)
+                dispatcher.register_event(new TickEvent(dispatcher,timestamp+10f,dispatch_order,remaining-1));
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package benchmarks;
+
+import api.OTM;
+import error.OTMException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ten seconds of the spatial queue model on a corridor of num_links links: vehicle creation,
+ * transit to the waiting queue and release cycles of the MesoLaneGroups.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MesoBenchmark {
+
+    @Param({"10","100","1000"})
+    public int num_links;
+
+    private OTM otm;
+
+    @Setup(Level.Trial)
+    public void setup() throws OTMException {
+        otm = Scenarios.load(Scenarios.corridor(num_links,"spaceq"));
+        otm.initialize(0f);
+        otm.advance(600f);
+    }
+
+    @Benchmark
+    public void advance() throws OTMException {
+        otm.advance(10f);
+    }
+
+}
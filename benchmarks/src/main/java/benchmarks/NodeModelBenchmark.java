@@ -0,0 +1,42 @@
+package benchmarks;
+
+import api.OTM;
+import api.OTMdev;
+import error.OTMException;
+import models.fluid.AbstractFluidModel;
+import models.fluid.nodemodel.NodeModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NodeModel.update_flow at a CTM node with degree incoming and degree outgoing links,
+ * all loaded with traffic.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NodeModelBenchmark {
+
+    @Param({"2","4","8","16"})
+    public int degree;
+
+    private NodeModel node_model;
+    private float time;
+
+    @Setup(Level.Trial)
+    public void setup() throws OTMException {
+        OTM otm = Scenarios.load(Scenarios.star(degree,"ctm"));
+        otm.initialize(0f);
+        otm.advance(600f);
+        AbstractFluidModel model = (AbstractFluidModel) new OTMdev(otm).scenario.network.links.get(1L).model;
+        node_model = model.get_node_model_for_node(0L);
+        time = otm.get_current_time();
+    }
+
+    @Benchmark
+    public void update_flow() {
+        node_model.update_flow(time);
+    }
+
+}
@@ -0,0 +1,103 @@
+package benchmarks;
+
+import api.OTM;
+import error.OTMException;
+import xml.JaxbLoader;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Scenarios of a given size for the benchmarks, written as otm.xsd text.
+ */
+public class Scenarios {
+
+    // model element for "ctm", "spaceq" or "micro" (Newell)
+    static String model(String type){
+        switch(type){
+            case "ctm":
+                return "<model type=\"ctm\" name=\"m\" is_default=\"true\"><model_params sim_dt=\"2\" max_cell_length=\"100\"/></model>";
+            case "spaceq":
+                return "<model type=\"spaceq\" name=\"m\" process=\"deterministic\" is_default=\"true\"/>";
+            case "micro":
+                return "<model type=\"micro\" name=\"m\" process=\"deterministic\" is_default=\"true\"><model_params sim_dt=\"1\"/></model>";
+        }
+        throw new IllegalArgumentException("Unknown model type " + type);
+    }
+
+    /**
+     * Straight corridor of num_links links of 500 m and 3 lanes, with demand on the first link.
+     * The commodity follows the corridor as a path, which vehicle models need when links have no splits.
+     */
+    public static String corridor(int num_links,String model_type){
+        StringBuilder x = new StringBuilder(200*num_links);
+        x.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<scenario xmlns=\"opentrafficmodels\">\n");
+        x.append("<commodities><commodity id=\"1\" name=\"c1\" pathfull=\"true\" subnetworks=\"1\"/></commodities>\n");
+        x.append("<subnetworks><subnetwork id=\"1\">");
+        for(int i=0;i<num_links;i++)
+            x.append(i==0 ? "" : ",").append(i);
+        x.append("</subnetwork></subnetworks>\n");
+        x.append("<demands><demand commodity_id=\"1\" subnetwork=\"1\">4000</demand></demands>\n");
+        x.append("<models>").append(model(model_type)).append("</models>\n");
+        x.append("<network>\n<nodes>\n");
+        for(int i=0;i<=num_links;i++)
+            x.append(String.format("<node id=\"%d\" x=\"%d\" y=\"0\"/>\n",i,500*i));
+        x.append("</nodes>\n<links>\n");
+        for(int i=0;i<num_links;i++)
+            x.append(String.format("<link id=\"%d\" length=\"500\" start_node_id=\"%d\" end_node_id=\"%d\" roadparam=\"1\" full_lanes=\"3\"/>\n",i,i,i+1));
+        x.append("</links>\n");
+        x.append("<roadparams><roadparam id=\"1\" capacity=\"2000\" speed=\"100\" jam_density=\"100\"/></roadparams>\n");
+        x.append("</network>\n</scenario>\n");
+        return x.toString();
+    }
+
+    /**
+     * One node with degree incoming and degree outgoing links. Each incoming link starts at
+     * a source node and has demand, and its vehicles split evenly over the outgoing links.
+     * The center node is node 0, incoming links are 1..degree, outgoing are degree+1..2*degree.
+     */
+    public static String star(int degree,String model_type){
+        StringBuilder x = new StringBuilder();
+        x.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<scenario xmlns=\"opentrafficmodels\">\n");
+        x.append("<commodities><commodity id=\"1\" name=\"c1\" pathfull=\"false\"/></commodities>\n");
+        x.append("<demands>\n");
+        for(int i=1;i<=degree;i++)
+            x.append(String.format("<demand link_id=\"%d\" commodity_id=\"1\">%d</demand>\n",i,3000/degree+500));
+        x.append("</demands>\n");
+        x.append("<splits>\n");
+        for(int i=1;i<=degree;i++){
+            x.append(String.format("<split_node node_id=\"0\" commodity_id=\"1\" link_in=\"%d\">\n",i));
+            for(int j=1;j<=degree;j++)
+                x.append(String.format("<split link_out=\"%d\">%s</split>\n",degree+j,Double.toString(1d/degree)));
+            x.append("</split_node>\n");
+        }
+        x.append("</splits>\n");
+        x.append("<models>").append(model(model_type)).append("</models>\n");
+        x.append("<network>\n<nodes>\n<node id=\"0\" x=\"0\" y=\"0\"/>\n");
+        for(int i=1;i<=2*degree;i++){
+            double angle = Math.PI*(i-1)/degree;
+            x.append(String.format("<node id=\"%d\" x=\"%d\" y=\"%d\"/>\n",i,
+                    Math.round(1000*Math.cos(angle)),Math.round(1000*Math.sin(angle))));
+        }
+        x.append("</nodes>\n<links>\n");
+        for(int i=1;i<=degree;i++)
+            x.append(String.format("<link id=\"%d\" length=\"1000\" start_node_id=\"%d\" end_node_id=\"0\" roadparam=\"1\" full_lanes=\"2\"/>\n",i,i));
+        for(int i=degree+1;i<=2*degree;i++)
+            x.append(String.format("<link id=\"%d\" length=\"1000\" start_node_id=\"0\" end_node_id=\"%d\" roadparam=\"1\" full_lanes=\"2\"/>\n",i,i));
+        x.append("</links>\n");
+        x.append("<roadparams><roadparam id=\"1\" capacity=\"2000\" speed=\"100\" jam_density=\"100\"/></roadparams>\n");
+        x.append("</network>\n</scenario>\n");
+        return x.toString();
+    }
+
+    public static jaxb.Scenario parse(String xml,boolean validate) throws OTMException {
+        return JaxbLoader.load_scenario(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),validate);
+    }
+
+    public static OTM load(String xml) throws OTMException {
+        OTM otm = new OTM();
+        otm.load_from_jaxb(parse(xml,false),false);
+        return otm;
+    }
+
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import api.OTM;
+import api.OTMdev;
+import common.Link;
+import error.OTMException;
+import org.openjdk.jmh.annotations.*;
+import packet.PacketLaneGroup;
+import packet.PacketLink;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Link.split_packet for a packet of a pathless commodity on a link with num_out outgoing links.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SplitPacketBenchmark {
+
+    @Param({"1","2","4","8"})
+    public int num_out;
+
+    private Link link;
+    private PacketLink packet;
+
+    @Setup(Level.Trial)
+    public void setup() throws OTMException {
+        OTM otm = Scenarios.load(Scenarios.star(num_out,"ctm"));
+        otm.initialize(0f);
+        otm.advance(10f);
+        link = new OTMdev(otm).scenario.network.links.get(1L);
+        Map<keys.State,Double> state2vehicles = new HashMap<>();
+        state2vehicles.put(new keys.State(1L,1L,false),2.5d);
+        packet = new PacketLink(state2vehicles,null);
+    }
+
+    @Benchmark
+    public Map<Long,PacketLaneGroup> split_packet() {
+        return link.split_packet(packet);
+    }
+
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import api.OTM;
+import error.OTMException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a corridor of num_links links: parsing the XML through JaxbLoader, with and without
+ * schema validation, and building the scenario from the parsed objects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class XmlLoadBenchmark {
+
+    @Param({"100","1000","10000"})
+    public int num_links;
+
+    @Param({"false","true"})
+    public boolean validate;
+
+    private String xml;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        xml = Scenarios.corridor(num_links,"ctm");
+    }
+
+    @Benchmark
+    public jaxb.Scenario parse() throws OTMException {
+        return Scenarios.parse(xml,validate);
+    }
+
+    @Benchmark
+    public OTM parse_and_build() throws OTMException {
+        OTM otm = new OTM();
+        otm.load_from_jaxb(Scenarios.parse(xml,validate),validate);
+        return otm;
+    }
+
+}
@@ -1,5 +1,7 @@
 package actuator;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.*;
 import control.AbstractController;
 import control.command.InterfaceCommand;
@@ -11,6 +13,7 @@ import error.OTMException;
 import jaxb.Actuator;
 import utils.OTMUtils;
 
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -132,6 +135,16 @@ public abstract class AbstractActuator implements Pokable, InterfaceScenarioElem
             dispatcher.register_event(new EventPoke(dispatcher,3,timestamp+dt,this));
     }
 
+    /////////////////////////////////////////////////////////////////////
+    // checkpoint
+    /////////////////////////////////////////////////////////////////////
+
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+    }
+
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+    }
+
     /////////////////////////////////////////////////////////////////////
     // InterfaceEventWriter
     /////////////////////////////////////////////////////////////////////
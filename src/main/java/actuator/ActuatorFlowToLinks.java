@@ -1,5 +1,7 @@
 package actuator;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import commodity.Commodity;
 import common.Link;
 import common.RoadConnection;
@@ -14,6 +16,7 @@ import models.fluid.AbstractFluidModel;
 import packet.PacketLink;
 import utils.OTMUtils;
 
+import java.io.IOException;
 import java.util.*;
 
 public class ActuatorFlowToLinks extends AbstractActuator {
@@ -140,4 +143,33 @@ public class ActuatorFlowToLinks extends AbstractActuator {
         return sumbetac;
     }
 
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        out.writeInt(outlink2flows==null ? -1 : outlink2flows.length);
+        if(outlink2flows!=null)
+            for(double x : outlink2flows)
+                out.writeDouble(x);
+        out.writeDouble(total_outlink2flows);
+        out.write_id_map(outlink2portion);
+        out.writeDouble(gamma);
+    }
+
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        int n = in.readInt();
+        if(n>=0 && (outlink2flows==null || outlink2flows.length!=n))
+            throw new IOException(String.format("Checkpoint does not match the scenario: actuator %d",id));
+        for(int i=0;i<n;i++)
+            outlink2flows[i] = in.readDouble();
+        total_outlink2flows = in.readDouble();
+        Map<Long,Double> x = in.read_id_map();
+        if(x!=null && outlink2portion!=null)
+            outlink2portion.putAll(x);
+        gamma = in.readDouble();
+    }
+
 }
@@ -1,13 +1,15 @@
 package actuator;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import control.command.CommandSignal;
 import control.command.InterfaceCommand;
 import error.OTMErrorLog;
 import error.OTMException;
 import common.Scenario;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.*;
 
 public class ActuatorSignal extends AbstractActuatorLanegroupCapacity {
 
@@ -83,6 +85,35 @@ public class ActuatorSignal extends AbstractActuatorLanegroupCapacity {
         }
     }
 
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        List<Long> phase_ids = new ArrayList<>(signal_phases.keySet());
+        Collections.sort(phase_ids);
+        out.writeInt(phase_ids.size());
+        for(Long phase_id : phase_ids){
+            SignalPhase.BulbColor color = signal_phases.get(phase_id).bulbcolor;
+            out.writeLong(phase_id);
+            out.writeByte(color==null ? -1 : color.ordinal());
+        }
+    }
+
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        int n = in.readInt();
+        for(int i=0;i<n;i++){
+            long phase_id = in.readLong();
+            byte color = in.readByte();
+            SignalPhase phase = signal_phases.get(phase_id);
+            if(phase==null)
+                throw new IOException(String.format("Checkpoint does not match the scenario: signal %d has no phase %d",id,phase_id));
+            phase.bulbcolor = color<0 ? null : SignalPhase.BulbColor.values()[color];
+        }
+    }
+
     ///////////////////////////////////////////////////
     // get
     ///////////////////////////////////////////////////
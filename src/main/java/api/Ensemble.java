@@ -0,0 +1,325 @@
+package api;
+
+import error.OTMException;
+import output.AbstractOutput;
+import output.AbstractOutputTimed;
+import output.CsvWriter;
+import output.InterfaceOutputRowListener;
+import output.OutputRow;
+import output.OutputSubscription;
+import xml.JaxbLoader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs one scenario with several random seeds, concurrently on a pool of threads.
+ * The configuration is parsed once and shared by all replications. Each replication
+ * builds its own scenario, with its own id counters and random number generator, so
+ * replications do not interact. Each is reproducible from its seed, also when it runs
+ * concurrently with others, since the scenario draws its random numbers in an order that
+ * does not depend on the run (see utils.RandomStream).
+ *
+ * The rows of every link, lane group, and cell output of each replication are kept in
+ * its Replication. Summary statistics across seeds (mean, standard deviation, min, max)
+ * are computed for each output, column and time step. Outputs are matched across
+ * replications by type, commodity, and sampling time (see get_key).
+ */
+public class Ensemble {
+
+    public final jaxb.Scenario jaxb_scenario;
+
+    ////////////////////////////////////////////////////////
+    // construction
+    ////////////////////////////////////////////////////////
+
+    /**
+     * Constructor.
+     * @param configfile Configuration file.
+     * @param validate Validate if true.
+     * @throws OTMException Undocumented
+     */
+    public Ensemble(String configfile,boolean validate) throws OTMException {
+        this(JaxbLoader.load_scenario(configfile,validate));
+    }
+
+    public Ensemble(jaxb.Scenario jaxb_scenario){
+        this.jaxb_scenario = jaxb_scenario;
+    }
+
+    ////////////////////////////////////////////////////////
+    // run
+    ////////////////////////////////////////////////////////
+
+    /**
+     * Run one replication for each seed.
+     * @param seeds Random seeds, one per replication.
+     * @param start_time Initial time in seconds.
+     * @param duration Duration of the simulation in seconds.
+     * @param num_threads Number of replications that run at the same time.
+     * @param prefix Prefix for the output files. The seed is appended for each replication. Null keeps the outputs in memory.
+     * @param output_requests_file Absolute location and name of file with output requests. May be null.
+     * @param output_folder Folder for the output files. Null keeps the outputs in memory.
+     * @return Per-seed rows and summary statistics.
+     * @throws OTMException If any replication fails.
+     */
+    public Result run(long [] seeds,float start_time,float duration,int num_threads,String prefix,String output_requests_file,String output_folder) throws OTMException {
+
+        if(seeds==null || seeds.length==0)
+            throw new OTMException("An ensemble needs at least one seed.");
+        if(num_threads<1)
+            throw new OTMException("Number of threads must be positive.");
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(num_threads,seeds.length));
+        try {
+            List<Future<Replication>> futures = new ArrayList<>();
+            for(long seed : seeds)
+                futures.add(executor.submit(() -> run_replication(seed,start_time,duration,prefix,output_requests_file,output_folder)));
+
+            List<Replication> replications = new ArrayList<>();
+            for(Future<Replication> future : futures)
+                replications.add(future.get());
+            return new Result(replications);
+
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof OTMException)
+                throw (OTMException) e.getCause();
+            throw new OTMException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OTMException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Key that identifies an output across replications: type, commodity, and sampling time,
+     * e.g. "link_flw_allcomms_300".
+     * @param output A timed output.
+     * @return Key
+     */
+    public static String get_key(AbstractOutputTimed output){
+        Long commodity_id = output.get_commodity_id();
+        return String.format("%s_%s_%d",
+                output.getType(),
+                commodity_id==null ? "allcomms" : commodity_id.toString(),
+                Math.round(output.get_outdt()));
+    }
+
+    ////////////////////////////////////////////////////////
+    // private
+    ////////////////////////////////////////////////////////
+
+    private Replication run_replication(long seed,float start_time,float duration,String prefix,String output_requests_file,String output_folder) throws OTMException {
+
+        OTM otm = new OTM();
+
+        // the jaxb objects create their lists on first access, so they are read by one builder at a time
+        synchronized (jaxb_scenario) {
+            otm.load_from_jaxb(jaxb_scenario,false);
+        }
+        otm.set_seed(seed);
+
+        String seed_prefix = prefix==null ? null : String.format("%s_seed%d",prefix,seed);
+        otm.initialize(start_time,output_requests_file,seed_prefix,output_folder);
+
+        Replication replication = new Replication(seed);
+        List<AbstractOutputTimed> timed_outputs = new ArrayList<>();
+        for(AbstractOutput output : otm.scn.outputs)
+            if(output instanceof AbstractOutputTimed && ((AbstractOutputTimed) output).has_columns())
+                timed_outputs.add((AbstractOutputTimed) output);
+        timed_outputs.sort(Comparator.comparing(Ensemble::get_key));
+
+        for(AbstractOutputTimed output : timed_outputs){
+            String key = get_key(output);
+            for(int k=2;replication.series.containsKey(key);k++)
+                key = get_key(output) + "#" + k;
+            Series series = new Series();
+            replication.series.put(key,series);
+            output.subscribe(series,OutputSubscription.Policy.direct,1);
+        }
+
+        otm.advance(duration);
+        otm.terminate();
+        otm.scn.is_initialized = false;
+        return replication;
+    }
+
+    ////////////////////////////////////////////////////////
+    // class
+    ////////////////////////////////////////////////////////
+
+    /**
+     * Rows of one output in one replication.
+     */
+    public static class Series implements InterfaceOutputRowListener {
+        public long [] col_ids;
+        public int [] col_index;            // cell position for cell outputs, otherwise null
+        public final List<Float> times = new ArrayList<>();
+        public final List<double []> rows = new ArrayList<>();
+
+        @Override
+        public void row_written(OutputRow row) {
+            col_ids = row.col_ids;
+            col_index = row.col_index;
+            times.add(row.time);
+            rows.add(row.values.clone());
+        }
+    }
+
+    /**
+     * Outputs of the replication with a given seed, by output key.
+     */
+    public static class Replication {
+        public final long seed;
+        public final Map<String,Series> series = new LinkedHashMap<>();
+
+        public Replication(long seed){
+            this.seed = seed;
+        }
+    }
+
+    /**
+     * Statistics of one output across replications. Arrays are indexed [time step][column].
+     * Time steps that are missing from any replication are left out.
+     */
+    public static class Summary {
+        public final long [] col_ids;
+        public final int [] col_index;
+        public final float [] times;
+        public final int num_replications;
+        public final double [][] mean;
+        public final double [][] std;       // sample standard deviation, 0 for a single replication
+        public final double [][] min;
+        public final double [][] max;
+
+        Summary(List<Series> all){
+            Series first = all.get(0);
+            int num_steps = all.stream().mapToInt(s->s.rows.size()).min().getAsInt();
+            int num_cols = first.col_ids==null ? 0 : first.col_ids.length;
+
+            col_ids = first.col_ids==null ? new long[0] : first.col_ids;
+            col_index = first.col_index;
+            times = new float[num_steps];
+            num_replications = all.size();
+            mean = new double[num_steps][num_cols];
+            std = new double[num_steps][num_cols];
+            min = new double[num_steps][num_cols];
+            max = new double[num_steps][num_cols];
+
+            for(int t=0;t<num_steps;t++){
+                times[t] = first.times.get(t);
+                for(int c=0;c<num_cols;c++){
+
+                    // Welford's update
+                    double m = 0d, s = 0d;
+                    double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+                    int n = 0;
+                    for(Series series : all){
+                        double x = series.rows.get(t)[c];
+                        n++;
+                        double d = x - m;
+                        m += d / n;
+                        s += d * (x - m);
+                        lo = Math.min(lo,x);
+                        hi = Math.max(hi,x);
+                    }
+                    mean[t][c] = m;
+                    std[t][c] = n>1 ? Math.sqrt(s/(n-1)) : 0d;
+                    min[t][c] = lo;
+                    max[t][c] = hi;
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-seed rows and summary statistics of an ensemble run.
+     */
+    public static class Result {
+        public final List<Replication> replications;       // in the order of the seeds
+        public final Map<String,Summary> summaries;         // output key -> statistics
+
+        Result(List<Replication> replications){
+            this.replications = replications;
+            this.summaries = new LinkedHashMap<>();
+
+            Set<String> keys = new LinkedHashSet<>();
+            replications.forEach(r -> keys.addAll(r.series.keySet()));
+            for(String key : keys){
+                List<Series> all = new ArrayList<>();
+                for(Replication r : replications)
+                    if(r.series.containsKey(key))
+                        all.add(r.series.get(key));
+                summaries.put(key,new Summary(all));
+            }
+        }
+
+        public Replication get_replication(long seed){
+            return replications.stream().filter(r->r.seed==seed).findFirst().orElse(null);
+        }
+
+        /**
+         * Write the summary statistics as text files, one per output and statistic:
+         * [prefix]_ensemble_[key]_[mean|std|min|max].txt, plus _time.txt and _cols.txt.
+         * Rows are time steps and columns are as in the per-seed outputs.
+         * @param prefix Prefix for the file names.
+         * @param output_folder Output folder.
+         * @throws OTMException If a file cannot be written.
+         */
+        public void write_summaries(String prefix,String output_folder) throws OTMException {
+            for(Map.Entry<String,Summary> e : summaries.entrySet()){
+                Summary summary = e.getValue();
+                String base = output_folder + File.separator + prefix + "_ensemble_" + e.getKey().replace('#','_');
+
+                write_matrix(base + "_mean.txt",summary.mean);
+                write_matrix(base + "_std.txt",summary.std);
+                write_matrix(base + "_min.txt",summary.min);
+                write_matrix(base + "_max.txt",summary.max);
+
+                CsvWriter time_writer = new CsvWriter(open(base + "_time.txt"),CsvWriter.SHORTEST);
+                for(float time : summary.times){
+                    time_writer.put(time);
+                    time_writer.put('\n');
+                }
+                time_writer.close();
+
+                CsvWriter cols_writer = new CsvWriter(open(base + "_cols.txt"),CsvWriter.SHORTEST);
+                for(int i=0;i<summary.col_ids.length;i++){
+                    if(i>0)
+                        cols_writer.put(AbstractOutputTimed.delim);
+                    cols_writer.put(summary.col_index==null ?
+                            Long.toString(summary.col_ids[i]) :
+                            summary.col_ids[i] + ":" + summary.col_index[i]);
+                }
+                cols_writer.close();
+            }
+        }
+
+        private static void write_matrix(String filename,double [][] values) throws OTMException {
+            CsvWriter writer = new CsvWriter(open(filename),6);
+            for(double [] row : values){
+                for(int i=0;i<row.length;i++){
+                    if(i>0)
+                        writer.put(AbstractOutputTimed.delim);
+                    writer.put(row[i]);
+                }
+                writer.put('\n');
+            }
+            writer.close();
+        }
+
+        private static FileOutputStream open(String filename) throws OTMException {
+            try {
+                return new FileOutputStream(filename);
+            } catch (FileNotFoundException e) {
+                throw new OTMException(e);
+            }
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package api;
 
+import checkpoint.Checkpoint;
 import dispatch.Dispatcher;
 import dispatch.EventStopSimulation;
 import error.OTMException;
@@ -8,10 +9,11 @@ import models.AbstractModel;
 import output.*;
 import runner.RunParameters;
 import runner.ScenarioFactory;
-import utils.OTMUtils;
 import xml.JaxbLoader;
 import xml.JaxbWriter;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -19,9 +21,12 @@ import javax.xml.bind.Unmarshaller;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 
 /**
@@ -33,8 +38,10 @@ public class OTM {
 
     protected Dispatcher dispatcher;
     protected common.Scenario scn;
+    protected jaxb.Scenario jaxb_scenario;      // configuration, kept for fork()
     public api.Scenario scenario;
     public api.Output output;
+    private ObjectName metrics_mbean;
 
     ////////////////////////////////////////////////////////
     // construction
@@ -67,20 +74,21 @@ public class OTM {
     ////////////////////////////////////////////////////////
 
     public void load(String configfile, boolean validate, boolean jaxb_only) throws OTMException {
-        jaxb.Scenario jaxb_scenario = JaxbLoader.load_scenario(configfile,validate);
+        this.jaxb_scenario = JaxbLoader.load_scenario(configfile,validate);
         this.scn =  ScenarioFactory.create_scenario(jaxb_scenario,validate,jaxb_only);
         scenario = new api.Scenario(this);
         output = new api.Output(this);
     }
 
     public void load_from_jaxb(jaxb.Scenario jscn,boolean validate) throws OTMException {
+        this.jaxb_scenario = jscn;
         this.scn =  ScenarioFactory.create_scenario(jscn,validate,false);
         scenario = new Scenario(this);
         output = new Output(this);
     }
 
     public void load_test(String configname) throws OTMException  {
-        jaxb.Scenario jaxb_scenario =  JaxbLoader.load_test_scenario(configname+".xml",true);
+        this.jaxb_scenario =  JaxbLoader.load_test_scenario(configname+".xml",true);
         this.scn =  ScenarioFactory.create_scenario(jaxb_scenario,true,false);
         scenario = new api.Scenario(this);
         output = new api.Output(this);
@@ -180,12 +188,228 @@ public class OTM {
         dispatcher.set_stop_time(now+duration);
         dispatcher.register_event(new EventStopSimulation(scn,dispatcher,now+duration));
 
+        // agree with the other processes on the next exchange
+        if(scn.partition!=null)
+            scn.partition.start_advance(now);
+
         // process all events
         dispatcher.dispatch_events_to_stop();
     }
 
     public void terminate() {
         scn.terminate();
+        unregister_metrics_mbean();
+    }
+
+    /**
+     * Return the simulation to a start time without rebuilding the scenario, for example to run
+     * many short simulations of the same network in a calibration loop. Vehicles are removed,
+     * cell and queue state and accumulators are set to zero, demands, splits, sensors and controllers
+     * start again, and only the initial events are scheduled. All structures are reused, so this
+     * is much cheaper than loading and initializing again. Changes made to the scenario through the
+     * API, such as new demands or road parameters, are kept. Values set by actuators, such as the
+     * capacity of a lane group or a lane closure, are not: they return to their nominal values and
+     * the actuators set them again as the run proceeds. Metrics are set to zero. Outputs are kept and start again.
+     * Vehicle ids and random numbers repeat those of the previous run unless a new seed is set.
+     * @param start_time Initial time in seconds.
+     * @throws OTMException If the simulation has not been initialized.
+     */
+    public void reset(float start_time) throws OTMException {
+        if(scn==null || dispatcher==null)
+            throw new OTMException("The simulation must be initialized before it is reset.");
+        scn.reset(start_time);
+    }
+
+    /**
+     * Run only part of the network in this process, as one of several processes that together
+     * simulate the whole network. Each process loads the same scenario, calls this method with
+     * the same assignment of links to processes, and then initializes and advances as usual.
+     * Fluid models exchange the flows across the boundaries of their parts at every time step,
+     * so that the state of each process's links is the same as in a single-process run. Spatial
+     * queue models synchronize at every release of a vehicle into a link of another process, with
+     * the current supply of that link, and at the start of every advance, so every process must
+     * advance by the same durations. Their results are also the same as in a single-process run,
+     * see models.vehicle.spatialq.MesoBoundary. Other models are not supported.
+     * Every process takes the random seed of process 0. Outputs of a process are valid for its
+     * own links only.
+     * @param transport Connection to the other processes, for example a distributed.TcpTransport.
+     * @param link2rank Process of every link, link id -> process number.
+     * @throws OTMException If the simulation is already initialized, or the scenario cannot be partitioned.
+     */
+    public void set_partition(distributed.Transport transport,Map<Long,Integer> link2rank) throws OTMException {
+        if(scn==null)
+            throw new OTMException("A scenario must be loaded before it is partitioned.");
+        if(scn.is_initialized)
+            throw new OTMException("The scenario must be partitioned before it is initialized.");
+        scn.partition = new distributed.Partition(scn,transport,link2rank);
+    }
+
+    /**
+     * Split the links of the network into parts of about equal work and with little traffic
+     * between them, for example to assign them to the processes of a partitioned simulation.
+     * Links are weighted by their number of cells (fluid models) or the number of vehicles they
+     * hold at jam density (vehicle models), and pairs of connected links by the capacity of their
+     * road connections. The result reports the cut and the imbalance of the parts.
+     * @param num_parts Number of parts.
+     * @return The part of every link. Use get_link2part() for set_partition.
+     * @throws OTMException If no scenario has been loaded, or there are fewer links than parts.
+     */
+    public partition.Partitioning partition_network(int num_parts) throws OTMException {
+        if(scn==null)
+            throw new OTMException("A scenario must be loaded before it is partitioned.");
+        return new partition.Partitioner().partition(partition.Graph.from_network(scn.network),num_parts);
+    }
+
+    /**
+     * Set the seed for the scenario's random number generator. Each scenario has its own
+     * generator, so this does not affect other simulations in the process.
+     * @param seed Any number
+     * @throws OTMException If no scenario has been loaded.
+     */
+    public void set_seed(long seed) throws OTMException {
+        if(scn==null)
+            throw new OTMException("A scenario must be loaded before setting the random seed.");
+        scn.context.set_random_seed(seed);
+    }
+
+    /**
+     * Set the seed for the simulator's random number generator.
+     * Every scenario now has its own generator. This sets the seed of all scenarios in the process
+     * that are initialized afterwards without a seed of their own.
+     * @param seed Any number
+     * @deprecated Use the instance method set_seed, which does not affect other simulations in the process.
+     */
+    @Deprecated
+    public static void set_random_seed(long seed){
+        common.ScenarioContext.set_default_random_seed(seed);
+    }
+
+    ////////////////////////////////////////////////////////
+    // metrics
+    ////////////////////////////////////////////////////////
+
+    /**
+     * Runtime metrics of the simulation since it was initialized: events dispatched per class,
+     * simulated seconds per wall-clock second, time spent by each model in each phase of its
+     * update and in writing outputs, node model iterations, event queue size, and bytes allocated.
+     * @return A snapshot of the metrics.
+     * @throws OTMException If no scenario has been loaded.
+     */
+    public api.info.MetricsInfo get_metrics() throws OTMException {
+        if(scn==null)
+            throw new OTMException("A scenario must be loaded before reading its metrics.");
+        return new api.info.MetricsInfo(scn.metrics);
+    }
+
+    /**
+     * Register the runtime metrics of this simulation with the platform MBean server, under
+     * "otm:type=Metrics,name=[name]", so that they can be watched with jconsole, VisualVM or any
+     * JMX client while the simulation runs. The bean is unregistered by "terminate".
+     * @param name Name of this simulation, unique in the process.
+     * @return Object name of the bean.
+     * @throws OTMException If no scenario has been loaded, or the name is taken.
+     */
+    public ObjectName register_metrics_mbean(String name) throws OTMException {
+        if(scn==null)
+            throw new OTMException("A scenario must be loaded before registering its metrics.");
+        unregister_metrics_mbean();
+        try {
+            ObjectName object_name = new ObjectName("otm:type=Metrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(scn.metrics,object_name);
+            metrics_mbean = object_name;
+            return object_name;
+        } catch (Exception e) {
+            throw new OTMException(e);
+        }
+    }
+
+    public void unregister_metrics_mbean() {
+        if(metrics_mbean==null)
+            return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(server.isRegistered(metrics_mbean))
+                server.unregisterMBean(metrics_mbean);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        metrics_mbean = null;
+    }
+
+    /**
+     * Estimate of the heap retained by the loaded scenario, per category (links, lane groups, cells,
+     * vehicles, nodes, demands and splits, pending events, outputs, controllers, models, and the jaxb
+     * configuration kept in memory), per model, and per output. Sizes are estimated from the object
+     * layout of the JVM. The whole object graph is walked, so call it between calls to "advance".
+     * @return The memory report.
+     * @throws OTMException If no scenario has been loaded.
+     */
+    public api.info.MemoryInfo memory_report() throws OTMException {
+        if(scn==null)
+            throw new OTMException("A scenario must be loaded before reporting its memory.");
+        return new api.info.MemoryInfo(new metrics.MemoryFootprint(scn,jaxb_scenario));
+    }
+
+    ////////////////////////////////////////////////////////
+    // checkpoint
+    ////////////////////////////////////////////////////////
+
+    /**
+     * Save the state of the simulation to a file. The checkpoint contains the vehicles in the
+     * network, demands, splits, sensor, controller and actuator state, the pending events and the
+     * random number generator. It does not contain the scenario or the outputs.
+     * @param filename Absolute location and name of the checkpoint file.
+     * @throws OTMException If the simulation has not been initialized, or the file cannot be written.
+     */
+    public void save_checkpoint(String filename) throws OTMException {
+        if(scn==null || dispatcher==null || !scn.is_initialized)
+            throw new OTMException("The simulation must be initialized before saving a checkpoint.");
+        Checkpoint.save(scn,filename);
+    }
+
+    /**
+     * Initialize the simulation from a checkpoint. The scenario must have been loaded from the same
+     * configuration as the one that saved the checkpoint. Calls to "advance" then continue the
+     * saved run exactly. Outputs must be requested before this call; they start at the time of the
+     * checkpoint. Travel time measurements and the internal state of plugin controllers are not restored.
+     * @param filename Absolute location and name of the checkpoint file.
+     * @throws OTMException If the checkpoint does not match the scenario, or the file cannot be read.
+     */
+    public void load_checkpoint(String filename) throws OTMException {
+        if(scn==null)
+            throw new OTMException("A scenario must be loaded before loading a checkpoint.");
+        initialize(Checkpoint.read_time(filename));
+        Checkpoint.load(scn,filename);
+    }
+
+    /**
+     * Independent copy of the running simulation, for example to evaluate several control plans
+     * from the current state. The copy is built from the configuration already held in memory and
+     * its state is set to the current state of this simulation, as with a checkpoint. Changes to
+     * either simulation do not affect the other. The copy has no outputs. Forks can be advanced
+     * concurrently on different threads.
+     * @return A new OTM object, initialized at the current time.
+     * @throws OTMException If the simulation has not been initialized, or was not loaded from a configuration.
+     */
+    public OTM fork() throws OTMException {
+        if(jaxb_scenario==null)
+            throw new OTMException("Only a simulation that was loaded from a configuration can be forked.");
+        if(scn==null || dispatcher==null || !scn.is_initialized)
+            throw new OTMException("The simulation must be initialized before it is forked.");
+
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        Checkpoint.save(scn,state);
+        byte [] bytes = state.toByteArray();
+
+        OTM fork = new OTM();
+
+        // the jaxb objects create their lists on first access, so they are read by one builder at a time, as in Ensemble
+        synchronized (jaxb_scenario) {
+            fork.load_from_jaxb(jaxb_scenario, false);
+        }
+        fork.initialize(Checkpoint.read_time(new ByteArrayInputStream(bytes)));
+        Checkpoint.load(fork.scn, new ByteArrayInputStream(bytes));
+        return fork;
     }
 
     ////////////////////////////////////////////////////////
@@ -240,14 +464,6 @@ public class OTM {
         return properties.getProperty("sim.git");
     }
 
-    /**
-     * Set the seed for the simulator's random number generator.
-     * @param seed Any number
-     */
-    public static void set_random_seed(long seed){
-        OTMUtils.set_random_seed(seed);
-    }
-
     ////////////////////////////////////////////////////////
     // private
     ////////////////////////////////////////////////////////
@@ -4,6 +4,7 @@ import error.OTMException;
 import models.vehicle.spatialq.OutputQueues;
 import output.*;
 
+import java.nio.DoubleBuffer;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
@@ -54,6 +55,40 @@ public class Output {
         myapi.scn.outputs.clear();
     }
 
+    /**
+     * Values of an in-memory link output for one link. The buffer is a read-only
+     * view of the stored values, not a copy.
+     * @param output A link output returned by get_data.
+     * @param link_id Link id
+     * @return Read-only buffer of values, or null if the link is not in the output.
+     */
+    public DoubleBuffer get_link_values(AbstractOutputTimedLink output,long link_id){
+        return output.get_values_for_linkid(link_id);
+    }
+
+    /**
+     * Values of an in-memory lane group output for one lane group. The buffer is a
+     * read-only view of the stored values, not a copy.
+     * @param output A lane group output returned by get_data.
+     * @param lg_id Lane group id
+     * @return Read-only buffer of values, or null if the lane group is not in the output.
+     */
+    public DoubleBuffer get_lanegroup_values(AbstractOutputTimedLanegroup output,long lg_id){
+        return output.get_values_for_lgid(lg_id);
+    }
+
+    /**
+     * Values of an in-memory cell output for one cell. The buffer is a read-only
+     * view of the stored values, not a copy.
+     * @param output A cell output returned by get_data.
+     * @param lg_id Lane group id
+     * @param cell_index Position of the cell in the lane group, starting upstream at 0.
+     * @return Read-only buffer of values, or null if the cell is not in the output.
+     */
+    public DoubleBuffer get_cell_values(AbstractOutputTimedCell output,long lg_id,int cell_index){
+        return output.get_values_for_cell(lg_id,cell_index);
+    }
+
     // ----------------------------------------------
     // Network
     // ----------------------------------------------
@@ -569,6 +604,79 @@ public class Output {
         this.myapi.scn.outputs.add(new OutputTravelTime(myapi.scn,null,null));
     }
 
+    /**
+     * Write all file-based vehicle event and vehicle travel time outputs requested so far
+     * as binary logs (.bin) with fixed-width records and a queue dictionary in the header,
+     * instead of text.
+     * @param binary True for binary, false for text.
+     */
+    public void set_binary_vehicle_events(boolean binary){
+        for(AbstractOutput output : myapi.scn.outputs)
+            if(output.write_to_file && output instanceof AbstractOutputVehicleEvent)
+                ((AbstractOutputVehicleEvent)output).set_binary(binary);
+    }
+
+    /**
+     * Memory-map a binary vehicle event log.
+     * @param filename Path to the .bin file.
+     * @return Reader for the file, with access to the trajectories and travel times of the vehicles.
+     * @throws OTMException If the file cannot be read or is not an OTM binary vehicle event log.
+     */
+    public BinaryVehicleEventReader read_binary_vehicle_events(String filename) throws OTMException {
+        return new BinaryVehicleEventReader(filename);
+    }
+
+    // ----------------------------------------------
+    // Statistics
+    // ----------------------------------------------
+
+    /**
+     * Request statistics of link flows (count, mean, standard deviation, min, max,
+     * and quantiles) instead of the raw flows.
+     * @param prefix Prefix for the output files.
+     * @param output_folder Output folder.
+     * @param commodity_id Id for the requested vehicle type.
+     * @param link_ids Collection of requested link ids
+     * @param outDt Flow sampling time in seconds.
+     * @param report_dt Length of the reporting window in seconds. Null to report once at the end of the run.
+     */
+    public void request_links_flow_stats(String prefix,String output_folder,Long commodity_id,Collection<Long> link_ids,Float outDt,Float report_dt){
+        try {
+            this.myapi.scn.outputs.add(new OutputLinkFlowStats(myapi.scn,prefix,output_folder,commodity_id,link_ids,outDt,report_dt));
+        } catch (OTMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Request statistics of link flows.
+     * @param commodity_id Id for the requested vehicle type.
+     * @param link_ids Collection of requested link ids
+     * @param outDt Flow sampling time in seconds.
+     * @param report_dt Length of the reporting window in seconds. Null to report once at the end of the run.
+     */
+    public void request_links_flow_stats(Long commodity_id,Collection<Long> link_ids,Float outDt,Float report_dt){
+        request_links_flow_stats(null,null,commodity_id,link_ids,outDt,report_dt);
+    }
+
+    /**
+     * Request statistics of vehicle travel times for each origin-destination link pair.
+     * @param prefix Prefix for the output files.
+     * @param output_folder Output folder.
+     * @param report_dt Length of the reporting window in seconds. Null to report once at the end of the run.
+     */
+    public void request_vehicle_travel_time_stats(String prefix,String output_folder,Float report_dt){
+        this.myapi.scn.outputs.add(new OutputTravelTimeStats(myapi.scn,prefix,output_folder,report_dt));
+    }
+
+    /**
+     * Request statistics of vehicle travel times for each origin-destination link pair.
+     * @param report_dt Length of the reporting window in seconds. Null to report once at the end of the run.
+     */
+    public void request_vehicle_travel_time_stats(Float report_dt){
+        request_vehicle_travel_time_stats(null,null,report_dt);
+    }
+
     // ----------------------------------------------
     // Controllers
     // ----------------------------------------------
@@ -595,4 +703,159 @@ public class Output {
         request_controller(null,null, controller_id);
     }
 
+    // ----------------------------------------------
+    // Subscriptions
+    // ----------------------------------------------
+
+    /**
+     * Receive the rows of a link, lane group, or cell output as they are produced.
+     * The listener gets a reused OutputRow record; copy the values to keep them.
+     * @param output A timed link, lane group, or cell output (see get_data).
+     * @param listener Callback
+     * @param policy direct (call on the simulation thread), block, drop, or conflate.
+     * @param capacity Number of rows buffered for the listener (ignored for direct and conflate).
+     * @return Subscription, used to unsubscribe and to count skipped rows.
+     * @throws OTMException If the output does not have fixed columns.
+     */
+    public OutputSubscription subscribe(AbstractOutputTimed output,InterfaceOutputRowListener listener,OutputSubscription.Policy policy,int capacity) throws OTMException {
+        return output.subscribe(listener,policy,capacity);
+    }
+
+    /**
+     * Request link flows and subscribe to them, without storing or writing them.
+     * Values are cumulative vehicle counts since the start of the run.
+     * @param commodity_id Id for the requested vehicle type.
+     * @param link_ids Collection of requested link ids
+     * @param outDt Output sampling time in seconds.
+     * @param listener Callback
+     * @param policy direct, block, drop, or conflate.
+     * @param capacity Number of rows buffered for the listener.
+     * @return Subscription
+     * @throws OTMException Undocumented
+     */
+    public OutputSubscription subscribe_links_flow(Long commodity_id,Collection<Long> link_ids,Float outDt,InterfaceOutputRowListener listener,OutputSubscription.Policy policy,int capacity) throws OTMException {
+        OutputLinkFlow output = new OutputLinkFlow(myapi.scn,null,null,commodity_id,link_ids,outDt);
+        output.store_profiles = false;
+        myapi.scn.outputs.add(output);
+        return output.subscribe(listener,policy,capacity);
+    }
+
+    /**
+     * Stop delivering rows to a subscriber. Rows already buffered are delivered first.
+     * @param subscription Subscription returned by subscribe.
+     * @throws OTMException Undocumented
+     */
+    public void unsubscribe(OutputSubscription subscription) throws OTMException {
+        subscription.output.unsubscribe(subscription);
+    }
+
+    // ----------------------------------------------
+    // Asynchronous writing
+    // ----------------------------------------------
+
+    /**
+     * Write output files on background threads. Must be called before initialize.
+     * All data is flushed when the simulation terminates.
+     * @param num_threads Number of writer threads.
+     * @param num_buffers Number of pooled buffers shared by all outputs.
+     * @param backpressure What to do when all buffers are in use: block the simulation, or allocate more,
+     *                     up to OutputPipeline.ALLOCATE_GROWTH times num_buffers.
+     * @throws OTMException If the parameters are not positive.
+     */
+    public void set_async_output(int num_threads,int num_buffers,OutputPipeline.Backpressure backpressure) throws OTMException {
+        myapi.scn.output_pipeline = new OutputPipeline(num_threads,num_buffers,OutputPipeline.DEFAULT_CHUNK_SIZE,backpressure);
+    }
+
+    /**
+     * Write output files on the simulation thread (default).
+     */
+    public void set_sync_output(){
+        myapi.scn.output_pipeline = null;
+    }
+
+    // ----------------------------------------------
+    // Text format
+    // ----------------------------------------------
+
+    /**
+     * Set the number of decimals of the values in all file-based link, lane group, and
+     * cell text outputs requested so far. The default is 6 for links and lane groups
+     * (same as String.format("%f")), and the shortest exact representation for cells.
+     * @param decimals Number of decimals, between 0 and 9, or -1 for the shortest exact representation.
+     * @throws OTMException If the number of decimals is out of range.
+     */
+    public void set_text_precision(int decimals) throws OTMException {
+        if(decimals<CsvWriter.SHORTEST || decimals>CsvWriter.MAX_DECIMALS)
+            throw new OTMException("Text output precision must be between 0 and " + CsvWriter.MAX_DECIMALS);
+        for(AbstractOutput output : myapi.scn.outputs)
+            if(output.write_to_file && output instanceof AbstractOutputTimed && ((AbstractOutputTimed)output).has_columns())
+                ((AbstractOutputTimed)output).set_decimals(decimals);
+    }
+
+    // ----------------------------------------------
+    // Binary format
+    // ----------------------------------------------
+
+    /**
+     * Write all file-based link, lane group, and cell outputs requested so far in
+     * the given format. Binary files replace the _time.txt and _cols.txt companions.
+     * @param format text, binary32 (float values), or binary64 (double values).
+     */
+    public void set_output_format(AbstractOutputTimed.Format format){
+        for(AbstractOutput output : myapi.scn.outputs)
+            if(output.write_to_file && output instanceof AbstractOutputTimed && ((AbstractOutputTimed)output).has_columns())
+                ((AbstractOutputTimed)output).set_format(format);
+    }
+
+    /**
+     * Memory-map a binary output file.
+     * @param filename Path to the .bin file.
+     * @return Reader for the file.
+     * @throws OTMException If the file cannot be read or is not an OTM binary output.
+     */
+    public BinaryTimedReader read_binary_output(String filename) throws OTMException {
+        return new BinaryTimedReader(filename);
+    }
+
+    // ----------------------------------------------
+    // Compressed container
+    // ----------------------------------------------
+
+    /**
+     * Write all file-based timed and event outputs requested so far into compressed,
+     * seekable containers. The file names get a ".z" suffix. Applies to both the text
+     * and binary formats.
+     * @param compressed True to compress.
+     */
+    public void set_compressed_output(boolean compressed){
+        for(AbstractOutput output : myapi.scn.outputs)
+            if(output.write_to_file && (output instanceof AbstractOutputTimed || output instanceof AbstractOutputEvent))
+                output.set_compressed(compressed);
+    }
+
+    /**
+     * Decompress the part of a compressed output that covers a time window. Only the
+     * chunks overlapping the window are read, so rows just outside it may be included.
+     * @param filename Path to the .z file.
+     * @param start_time Start of the window in seconds.
+     * @param end_time End of the window in seconds.
+     * @return Uncompressed bytes, starting with the file header if there is one.
+     * @throws OTMException If the file cannot be read or is not a compressed output.
+     */
+    public byte [] read_compressed_window(String filename,float start_time,float end_time) throws OTMException {
+        return new CompressedOutputReader(filename).read_window(start_time,end_time);
+    }
+
+    /**
+     * Decompress a time window of a compressed binary output.
+     * @param filename Path to the .bin.z file.
+     * @param start_time Start of the window in seconds.
+     * @param end_time End of the window in seconds.
+     * @return Reader over the rows in the chunks overlapping the window.
+     * @throws OTMException If the file cannot be read or is not a compressed binary output.
+     */
+    public BinaryTimedReader read_compressed_binary_window(String filename,float start_time,float end_time) throws OTMException {
+        return new BinaryTimedReader(read_compressed_window(filename,start_time,end_time));
+    }
+
 }
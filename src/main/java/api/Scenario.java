@@ -15,10 +15,10 @@ import models.vehicle.spatialq.EventTransitToWaiting;
 import error.OTMException;
 import models.vehicle.spatialq.MesoLaneGroup;
 import models.vehicle.spatialq.MesoVehicle;
+import output.animation.AnimationFrameStream;
 import output.animation.AnimationInfo;
 import profiles.SplitMatrixProfile;
 import sensor.AbstractSensor;
-import utils.OTMUtils;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -392,7 +392,7 @@ public class Scenario {
         models.vehicle.spatialq.Queue tq = lg.transit_queue;
         tq.clear();
         for(int i=0;i<numvehs_transit;i++) {
-            MesoVehicle vehicle = new MesoVehicle(comm_id, null);
+            MesoVehicle vehicle = new MesoVehicle(myapi.scn.context.next_vehicle_id(), comm_id, null);
 
             // sample the split ratio to decide where the vehicle will go
             Long next_link_id = smp.sample_output_link();
@@ -408,7 +408,7 @@ public class Scenario {
             // register_with_dispatcher dispatch to go to waiting queue
             Dispatcher dispatcher = myapi.scn.dispatcher;
             float timestamp = myapi.scn.get_current_time();
-            float transit_time_sec = (float) OTMUtils.random_zero_to_one()*lg.transit_time_sec;
+            float transit_time_sec = (float) lg.random.next_double()*lg.transit_time_sec;
             dispatcher.register_event(new EventTransitToWaiting(dispatcher,timestamp + transit_time_sec,vehicle));
         }
 
@@ -416,7 +416,7 @@ public class Scenario {
         models.vehicle.spatialq.Queue wq = lg.waiting_queue;
         wq.clear();
         for(int i=0;i<numvehs_waiting;i++) {
-            MesoVehicle vehicle = new MesoVehicle(comm_id, null);
+            MesoVehicle vehicle = new MesoVehicle(myapi.scn.context.next_vehicle_id(), comm_id, null);
 
             // sample the split ratio to decide where the vehicle will go
             Long next_link_id = smp.sample_output_link();
@@ -785,6 +785,44 @@ public class Scenario {
         return new AnimationInfo(myapi.scn);
     }
 
+    /**
+     * Stream of compact binary animation frames, each containing only the cells, lane
+     * groups, and vehicles that changed by more than a threshold since they were last
+     * sent. See AnimationFrameStream for the layout.
+     * @param link_ids Links to animate. Null for all links.
+     * @param threshold Smallest change in the number of vehicles in a cell or lane group that is sent.
+     * @param position_threshold Smallest change in a vehicle position, in meters, that is sent.
+     * @return Frame stream. Call next_frame() after each advance.
+     * @throws OTMException If a link id is not in the network or a threshold is negative.
+     */
+    public AnimationFrameStream get_animation_frame_stream(Collection<Long> link_ids,float threshold,float position_threshold) throws OTMException {
+        return new AnimationFrameStream(myapi.scn,link_ids,threshold,position_threshold);
+    }
+
+    /**
+     * Bulk state query for a fixed list of links. Getters fill caller-provided arrays
+     * in the order of link_ids and allocate nothing. Flows are counted from initialize,
+     * or from the creation of the query if it is created later. See StateQuery.
+     * @param link_ids Link ids, in the order of the output arrays.
+     * @param commodity_id Commodity, or null for all commodities.
+     * @return State query
+     * @throws OTMException If a link or commodity id is not in the scenario.
+     */
+    public StateQuery create_link_query(long [] link_ids,Long commodity_id) throws OTMException {
+        return new StateQuery(myapi.scn,link_ids,true,commodity_id);
+    }
+
+    /**
+     * Bulk state query for a fixed list of lane groups. See create_link_query.
+     * @param lanegroup_ids Lane group ids, in the order of the output arrays.
+     * @param commodity_id Commodity, or null for all commodities.
+     * @return State query
+     * @throws OTMException If a lane group or commodity id is not in the scenario.
+     */
+    public StateQuery create_lanegroup_query(long [] lanegroup_ids,Long commodity_id) throws OTMException {
+        return new StateQuery(myapi.scn,lanegroup_ids,false,commodity_id);
+    }
+
     ////////////////////////////////////////////////////////
     // private
     ////////////////////////////////////////////////////////
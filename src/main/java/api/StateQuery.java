@@ -0,0 +1,341 @@
+package api;
+
+import common.AbstractLaneGroup;
+import common.FlowAccumulatorState;
+import common.Link;
+import common.Scenario;
+import error.OTMException;
+import keys.State;
+import models.fluid.AbstractCell;
+import models.fluid.FluidLaneGroup;
+import models.fluid.ctm.CTMCell;
+import models.vehicle.newell.NewellLaneGroup;
+import models.vehicle.newell.NewellVehicle;
+import models.vehicle.spatialq.MesoLaneGroup;
+import models.vehicle.spatialq.MesoVehicle;
+
+import java.util.*;
+
+/**
+ * Bulk reads of the state of a fixed set of links or lane groups, for control loops that
+ * read many elements at every step. The elements and their order are fixed when the query
+ * is created. Each getter fills a caller-provided array, with one entry per element in
+ * that order, and allocates nothing.
+ *
+ * Values are for one commodity, or for all commodities if the commodity id is null:
+ *      vehicles    number of vehicles
+ *      flows       vehicles that have left the element since the simulation was initialized
+ *      supplies    space available, in vehicles
+ *      queues      vehicles in queue: waiting queue for meso lane groups, vehicles in
+ *                  cells above critical density for fluid lane groups, NaN otherwise
+ *      speeds      space mean speed in meters per second, free flow speed if empty.
+ *                  Not per commodity. NaN for Newell lane groups and fluid sources.
+ * Link values are sums over the lane groups of the link, and the vehicle weighted mean for speeds.
+ */
+public class StateQuery {
+
+    private final Long commodity_id;
+    private final long [] ids;
+
+    // lane groups and the row of each one in the output
+    private final AbstractLaneGroup [] lanegroups;
+    private final int [] row;
+
+    // states of each lane group for the commodity: own, neighbor in, and neighbor out
+    private final State [][] states;
+    private final State [][] states_in;
+    private final State [][] states_out;
+    private final FlowAccumulatorState [] flw_acc;
+
+    // per lane group values, used to aggregate links
+    private final double [] lg_vehicles;
+    private final double [] lg_speeds;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    /**
+     * @param scenario Scenario
+     * @param ids Link or lane group ids, in the order of the output arrays.
+     * @param is_link True if ids are link ids, false for lane group ids.
+     * @param commodity_id Commodity, or null for all commodities.
+     * @throws OTMException If an id or the commodity is not in the scenario.
+     */
+    public StateQuery(Scenario scenario,long [] ids,boolean is_link,Long commodity_id) throws OTMException {
+
+        if(commodity_id!=null && !scenario.commodities.containsKey(commodity_id))
+            throw new OTMException("Bad commodity id in state query: " + commodity_id);
+
+        this.commodity_id = commodity_id;
+        this.ids = ids.clone();
+
+        List<AbstractLaneGroup> lg_list = new ArrayList<>();
+        List<Integer> row_list = new ArrayList<>();
+        if(is_link){
+            for(int i=0;i<ids.length;i++){
+                Link link = scenario.network.links.get(ids[i]);
+                if(link==null)
+                    throw new OTMException("Bad link id in state query: " + ids[i]);
+                for(AbstractLaneGroup lg : link.lanegroups_flwdn){
+                    lg_list.add(lg);
+                    row_list.add(i);
+                }
+            }
+        } else {
+            Map<Long,AbstractLaneGroup> id2lg = new HashMap<>();
+            for(Link link : scenario.network.links.values())
+                for(AbstractLaneGroup lg : link.lanegroups_flwdn)
+                    id2lg.put(lg.id,lg);
+            for(int i=0;i<ids.length;i++){
+                AbstractLaneGroup lg = id2lg.get(ids[i]);
+                if(lg==null)
+                    throw new OTMException("Bad lane group id in state query: " + ids[i]);
+                lg_list.add(lg);
+                row_list.add(i);
+            }
+        }
+
+        int n = lg_list.size();
+        lanegroups = lg_list.toArray(new AbstractLaneGroup[0]);
+        row = row_list.stream().mapToInt(x->x).toArray();
+        states = new State[n][];
+        states_in = new State[n][];
+        states_out = new State[n][];
+        flw_acc = new FlowAccumulatorState[n];
+        Set<Long> comm_ids = commodity_id==null ? null : Collections.singleton(commodity_id);
+        for(int i=0;i<n;i++){
+            AbstractLaneGroup lg = lanegroups[i];
+            states[i] = states_for_commodity(lg);
+            states_in[i] = states_for_commodity(lg.neighbor_in);
+            states_out[i] = states_for_commodity(lg.neighbor_out);
+            flw_acc[i] = lg.request_flow_accumulator(comm_ids);
+        }
+
+        lg_vehicles = new double[n];
+        lg_speeds = new double[n];
+    }
+
+    //////////////////////////////////////////////////////
+    // get
+    //////////////////////////////////////////////////////
+
+    public int size(){
+        return ids.length;
+    }
+
+    // link or lane group ids in the order of the output arrays
+    public long [] get_ids(){
+        return ids.clone();
+    }
+
+    public Long get_commodity_id(){
+        return commodity_id;
+    }
+
+    public void get_vehicles(double [] out) throws OTMException {
+        check(out);
+        Arrays.fill(out,0,ids.length,0d);
+        for(int i=0;i<lanegroups.length;i++)
+            out[row[i]] += vehicles(i);
+    }
+
+    public void get_flows(double [] out) throws OTMException {
+        check(out);
+        Arrays.fill(out,0,ids.length,0d);
+        for(int i=0;i<lanegroups.length;i++)
+            out[row[i]] += sum(flw_acc[i].count,states[i]);
+    }
+
+    public void get_supplies(double [] out) throws OTMException {
+        check(out);
+        Arrays.fill(out,0,ids.length,0d);
+        for(int i=0;i<lanegroups.length;i++)
+            out[row[i]] += lanegroups[i].get_supply();
+    }
+
+    public void get_queues(double [] out) throws OTMException {
+        check(out);
+        Arrays.fill(out,0,ids.length,0d);
+        for(int i=0;i<lanegroups.length;i++)
+            out[row[i]] += queue(i);
+    }
+
+    public void get_speeds(double [] out) throws OTMException {
+        check(out);
+        for(int i=0;i<lanegroups.length;i++){
+            lg_vehicles[i] = vehicles_all(lanegroups[i]);
+            lg_speeds[i] = speed(lanegroups[i]);
+        }
+
+        // vehicle weighted mean over the lane groups of each element, plain mean if empty
+        Arrays.fill(out,0,ids.length,0d);
+        int i = 0;
+        while(i<lanegroups.length){
+            int r = row[i];
+            int j = i;
+            double veh = 0d, veh_speed = 0d, speed = 0d;
+            while(j<lanegroups.length && row[j]==r){
+                veh += lg_vehicles[j];
+                veh_speed += lg_vehicles[j]*lg_speeds[j];
+                speed += lg_speeds[j];
+                j++;
+            }
+            out[r] = veh>0d ? veh_speed/veh : speed/(j-i);
+            i = j;
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private void check(double [] out) throws OTMException {
+        if(out==null || out.length<ids.length)
+            throw new OTMException("State query needs an array of length " + ids.length);
+    }
+
+    private State [] states_for_commodity(AbstractLaneGroup lg){
+        if(lg==null)
+            return new State[0];
+        return lg.states.stream()
+                .filter(s -> commodity_id==null || s.commodity_id==commodity_id)
+                .sorted()
+                .toArray(State[]::new);
+    }
+
+    private double vehicles(int i){
+        AbstractLaneGroup lg = lanegroups[i];
+
+        if(lg instanceof FluidLaneGroup){
+            List<AbstractCell> cells = ((FluidLaneGroup) lg).cells;
+            double x = 0d;
+            for(int c=0;c<cells.size();c++)
+                x += cell_vehicles(i,cells.get(c));
+            return x;
+        }
+
+        if(lg instanceof MesoLaneGroup){
+            MesoLaneGroup mlg = (MesoLaneGroup) lg;
+            return count_meso(mlg.transit_queue.get_vehicles()) + count_meso(mlg.waiting_queue.get_vehicles());
+        }
+
+        if(lg instanceof NewellLaneGroup){
+            List<NewellVehicle> vehicles = ((NewellLaneGroup) lg).vehicles;
+            if(commodity_id==null)
+                return vehicles.size();
+            int x = 0;
+            for(int k=0;k<vehicles.size();k++)
+                if(vehicles.get(k).get_commodity_id()==commodity_id)
+                    x++;
+            return x;
+        }
+
+        return lg.get_total_vehicles_for_commodity(commodity_id);
+    }
+
+    private double cell_vehicles(int i,AbstractCell cell){
+        if(commodity_id==null)
+            return cell.get_vehicles();
+        if(!(cell instanceof CTMCell))
+            return cell.get_veh_for_commodity(commodity_id);
+        CTMCell ctm = (CTMCell) cell;
+        return sum(ctm.veh_dwn,states[i]) + sum(ctm.veh_in,states_in[i]) + sum(ctm.veh_out,states_out[i]);
+    }
+
+    private double count_meso(List<MesoVehicle> vehicles){
+        if(commodity_id==null)
+            return vehicles.size();
+        int x = 0;
+        for(int k=0;k<vehicles.size();k++)
+            if(vehicles.get(k).get_commodity_id()==commodity_id)
+                x++;
+        return x;
+    }
+
+    private double queue(int i){
+        AbstractLaneGroup lg = lanegroups[i];
+
+        if(lg instanceof MesoLaneGroup)
+            return count_meso(((MesoLaneGroup) lg).waiting_queue.get_vehicles());
+
+        if(lg instanceof FluidLaneGroup){
+            FluidLaneGroup flg = (FluidLaneGroup) lg;
+            List<AbstractCell> cells = flg.cells;
+            double critical = flg.critical_density_veh / cells.size();
+            double x = 0d;
+            for(int c=0;c<cells.size();c++){
+                AbstractCell cell = cells.get(c);
+                if(cell.get_vehicles()>critical)
+                    x += cell_vehicles(i,cell);
+            }
+            return x;
+        }
+
+        return Double.NaN;
+    }
+
+    // vehicles of all commodities, for weighting speeds
+    private static double vehicles_all(AbstractLaneGroup lg){
+        if(lg instanceof FluidLaneGroup){
+            List<AbstractCell> cells = ((FluidLaneGroup) lg).cells;
+            double x = 0d;
+            for(int c=0;c<cells.size();c++)
+                x += cells.get(c).get_vehicles();
+            return x;
+        }
+        if(lg instanceof MesoLaneGroup)
+            return ((MesoLaneGroup) lg).transit_queue.num_vehicles() + ((MesoLaneGroup) lg).waiting_queue.num_vehicles();
+        if(lg instanceof NewellLaneGroup)
+            return ((NewellLaneGroup) lg).vehicles.size();
+        return lg.get_total_vehicles();
+    }
+
+    // space mean speed in m/s
+    private static double speed(AbstractLaneGroup lg){
+
+        if(lg instanceof FluidLaneGroup){
+            FluidLaneGroup flg = (FluidLaneGroup) lg;
+            List<AbstractCell> cells = flg.cells;
+            if(cells.isEmpty() || Double.isNaN(flg.ffspeed_cell_per_dt))
+                return Double.NaN;
+            double cell_length = flg.length / cells.size();
+            double dt_sec = ((models.fluid.AbstractFluidModel) lg.link.model).dt_sec;
+            double critical = flg.critical_density_veh / cells.size();
+            double veh = 0d, veh_speed = 0d;
+            for(int c=0;c<cells.size();c++){
+                double n = cells.get(c).get_vehicles();
+                double v = n<=critical ?
+                        flg.ffspeed_cell_per_dt :
+                        Math.min(flg.ffspeed_cell_per_dt, flg.wspeed_cell_per_dt*(flg.jam_density_veh_per_cell-n)/n);
+                veh += n;
+                veh_speed += n*Math.max(v,0d);
+            }
+            double v = veh>0d ? veh_speed/veh : flg.ffspeed_cell_per_dt;
+            return v * cell_length / dt_sec;
+        }
+
+        if(lg instanceof MesoLaneGroup){
+            MesoLaneGroup mlg = (MesoLaneGroup) lg;
+            double free_speed = mlg.length / mlg.transit_time_sec;
+            int transit = mlg.transit_queue.num_vehicles();
+            int total = transit + mlg.waiting_queue.num_vehicles();
+            return total==0 ? free_speed : free_speed * transit / total;
+        }
+
+        return Double.NaN;
+    }
+
+    private static double sum(Map<State,Double> map,State [] keys){
+        if(map==null)
+            return 0d;
+        double x = 0d;
+        for(State key : keys){
+            Double value = map.get(key);
+            if(value!=null)
+                x += value;
+        }
+        return x;
+    }
+
+}
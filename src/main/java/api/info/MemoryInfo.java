@@ -0,0 +1,62 @@
+package api.info;
+
+import metrics.MemoryFootprint;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class MemoryInfo {
+
+    /** Estimated bytes retained by the scenario and its configuration. */
+    public long total_bytes;
+
+    /** Number of objects counted. */
+    public long num_objects;
+
+    /** Estimated bytes per category: links, lane_groups, cells, vehicles, nodes, demands_and_splits, events, outputs, control, models, jaxb, other. */
+    public Map<String,Long> bytes_per_category;
+
+    /** Estimated bytes per model, and within a model per category. */
+    public Map<String,Map<String,Long>> bytes_per_model;
+
+    /** Estimated bytes held by each output, keyed by output type and file. */
+    public Map<String,Long> bytes_per_output;
+
+    public MemoryInfo(MemoryFootprint x){
+        this.total_bytes = x.get_total_bytes();
+        this.num_objects = x.get_total_objects();
+        this.bytes_per_category = new LinkedHashMap<>();
+        this.bytes_per_model = new TreeMap<>();
+        for(MemoryFootprint.Category category : MemoryFootprint.Category.values()){
+            bytes_per_category.put(category.toString(),x.get_bytes(category));
+            if(category==MemoryFootprint.Category.outputs)
+                continue;
+            for(Map.Entry<String,Long> e : x.get_bytes_per_group(category).entrySet())
+                if(!e.getKey().isEmpty())
+                    bytes_per_model.computeIfAbsent(e.getKey(),k->new LinkedHashMap<>()).put(category.toString(),e.getValue());
+        }
+        this.bytes_per_output = x.get_bytes_per_group(MemoryFootprint.Category.outputs);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(String.format(Locale.US,"total %s in %d objects\n",mb(total_bytes),num_objects));
+        bytes_per_category.forEach((k,v)->str.append(String.format(Locale.US,"  %-20s %12s\n",k,mb(v))));
+        for(Map.Entry<String,Map<String,Long>> e : bytes_per_model.entrySet()){
+            str.append(String.format(Locale.US,"model %s\n",e.getKey()));
+            e.getValue().forEach((k,v)->str.append(String.format(Locale.US,"  %-20s %12s\n",k,mb(v))));
+        }
+        if(!bytes_per_output.isEmpty()){
+            str.append("outputs\n");
+            bytes_per_output.forEach((k,v)->str.append(String.format(Locale.US,"  %-20s %12s\n",k,mb(v))));
+        }
+        return str.toString();
+    }
+
+    private static String mb(long bytes){
+        return String.format(Locale.US,"%.3f MB",bytes/1048576d);
+    }
+}
@@ -0,0 +1,77 @@
+package api.info;
+
+import metrics.Metrics;
+
+import java.util.Map;
+
+public class MetricsInfo {
+
+    /** Total number of events dispatched. */
+    public long events_dispatched;
+
+    /** Events dispatched, per event class name. */
+    public Map<String,Long> events_per_class;
+
+    /** Simulated seconds advanced. */
+    public double sim_seconds;
+
+    /** Wall-clock seconds spent advancing. */
+    public double wall_seconds;
+
+    /** Simulated seconds over wall-clock seconds. */
+    public double sim_seconds_per_wall_second;
+
+    /** Milliseconds spent in each phase, keyed by "model name.phase", plus "outputs". */
+    public Map<String,Double> phase_time_ms;
+
+    /** Number of node model evaluations. */
+    public long node_model_runs;
+
+    /** Mean number of iterations per node model evaluation. */
+    public double mean_node_model_iterations;
+
+    /** Largest number of iterations of a node model evaluation. */
+    public int max_node_model_iterations;
+
+    /** Number of pending events. */
+    public int event_queue_size;
+
+    /** Largest number of pending events. */
+    public int max_event_queue_size;
+
+    /** Bytes allocated by the simulation thread while advancing, or -1 if not measured. */
+    public long allocated_bytes;
+
+    public MetricsInfo(Metrics x){
+        this.events_dispatched = x.getEventsDispatched();
+        this.events_per_class = x.getEventsPerClass();
+        this.sim_seconds = x.getSimSeconds();
+        this.wall_seconds = x.getWallSeconds();
+        this.sim_seconds_per_wall_second = x.getSimSecondsPerWallSecond();
+        this.phase_time_ms = x.getPhaseTimeMs();
+        this.node_model_runs = x.getNodeModelRuns();
+        this.mean_node_model_iterations = x.getMeanNodeModelIterations();
+        this.max_node_model_iterations = x.getMaxNodeModelIterations();
+        this.event_queue_size = x.getEventQueueSize();
+        this.max_event_queue_size = x.getMaxEventQueueSize();
+        this.allocated_bytes = x.getAllocatedBytes();
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsInfo{" +
+                "events_dispatched=" + events_dispatched +
+                ", sim_seconds=" + sim_seconds +
+                ", wall_seconds=" + wall_seconds +
+                ", sim_seconds_per_wall_second=" + sim_seconds_per_wall_second +
+                ", phase_time_ms=" + phase_time_ms +
+                ", node_model_runs=" + node_model_runs +
+                ", mean_node_model_iterations=" + mean_node_model_iterations +
+                ", max_node_model_iterations=" + max_node_model_iterations +
+                ", event_queue_size=" + event_queue_size +
+                ", max_event_queue_size=" + max_event_queue_size +
+                ", allocated_bytes=" + allocated_bytes +
+                ", events_per_class=" + events_per_class +
+                '}';
+    }
+}
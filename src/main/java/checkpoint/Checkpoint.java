@@ -0,0 +1,625 @@
+package checkpoint;
+
+import actuator.AbstractActuator;
+import actuator.ActuatorSignal;
+import actuator.SignalPhase;
+import common.*;
+import control.AbstractController;
+import control.ControllerSchedule;
+import dispatch.*;
+import error.OTMException;
+import lanechange.AbstractLaneSelector;
+import models.AbstractModel;
+import models.fluid.EventFluidModelUpdate;
+import models.fluid.EventFluidStateUpdate;
+import models.vehicle.spatialq.EventReleaseVehicleFromLaneGroup;
+import models.vehicle.spatialq.EventTransitToWaiting;
+import output.AbstractOutput;
+import profiles.SplitMatrixProfile;
+import sensor.AbstractSensor;
+import traveltime.LinkTravelTimeManager;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Saves and restores the dynamic state of a running simulation: vehicles in cells, queues
+ * and lane groups, demands and splits, flow accumulators, sensor, controller and actuator
+ * state, the pending events, the vehicle id counter, the seed, and the random streams.
+ *
+ * A checkpoint is restored onto a scenario that was loaded from the same configuration and
+ * initialized at the checkpoint time, after which the run continues as the original would
+ * have. Outputs and travel time measurements are not part of the checkpoint; they start
+ * again at the checkpoint time.
+ *
+ * Elements are identified by id, lane groups by their link and position in lanegroups_flwdn.
+ * The file is compressed with deflate:
+ *      int magic, int version, float time, long vehicle_id_count, long seed,
+ *      controllers, actuators, sensors, links, events, long events registered
+ */
+public class Checkpoint {
+
+    public static final int MAGIC = 0x434D544F;   // "OTMC"
+    public static final int VERSION = 3;
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    // events
+    private static final byte EVENT_POKE = 0;
+    private static final byte EVENT_DEMAND_CHANGE = 1;
+    private static final byte EVENT_CREATE_VEHICLE = 2;
+    private static final byte EVENT_SPLIT_CHANGE = 3;
+    private static final byte EVENT_INITIALIZE_CONTROLLER = 4;
+    private static final byte EVENT_FLUID_MODEL_UPDATE = 5;
+    private static final byte EVENT_FLUID_STATE_UPDATE = 6;
+    private static final byte EVENT_RELEASE_VEHICLE = 7;
+    private static final byte EVENT_TRANSIT_TO_WAITING = 8;
+    private static final byte EVENT_ADVANCE_SIGNAL_PHASE = 9;
+
+    // event recipients
+    private static final byte RECIPIENT_LANE_SELECTOR = 0;
+    private static final byte RECIPIENT_SENSOR = 1;
+    private static final byte RECIPIENT_CONTROLLER = 2;
+    private static final byte RECIPIENT_ACTUATOR = 3;
+    private static final byte RECIPIENT_MODEL = 4;
+    private static final byte RECIPIENT_LANEGROUP = 5;
+    private static final byte RECIPIENT_VEHICLE = 6;
+    private static final byte RECIPIENT_DEMAND_GENERATOR = 7;
+    private static final byte RECIPIENT_SPLIT_PROFILE = 8;
+    private static final byte RECIPIENT_SIGNAL_PHASE = 9;
+
+    //////////////////////////////////////////////////////
+    // save
+    //////////////////////////////////////////////////////
+
+    public static void save(Scenario scenario,String filename) throws OTMException {
+        try(OutputStream stream = new FileOutputStream(filename)){
+            save(scenario,stream);
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    // the stream is not closed
+    public static void save(Scenario scenario,OutputStream stream) throws OTMException {
+        if(scenario==null || scenario.dispatcher==null || !scenario.is_initialized)
+            throw new OTMException("The simulation must be initialized before saving a checkpoint.");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream deflate = new DeflaterOutputStream(stream,deflater,BUFFER_SIZE);
+            CheckpointWriter out = new CheckpointWriter(new BufferedOutputStream(deflate,BUFFER_SIZE));
+            write(scenario,out);
+            out.flush();
+            deflate.finish();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void write(Scenario scenario,CheckpointWriter out) throws IOException {
+        Dispatcher dispatcher = scenario.dispatcher;
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeFloat(dispatcher.current_time);
+        out.writeLong(scenario.context.get_vehicle_id_count());
+        out.writeLong(scenario.context.get_random_seed());
+
+        // controllers are initialized by an event at their start time
+        Set<Object> pending = new HashSet<>();
+        for(AbstractEvent event : dispatcher.events)
+            if(event instanceof EventInitializeController)
+                pending.add(event.recipient);
+
+        List<AbstractController> controllers = sorted(scenario.controllers);
+        out.writeInt(controllers.size());
+        for(AbstractController controller : controllers){
+            out.writeLong(controller.id);
+            boolean initialized = !pending.contains(controller);
+            out.writeBoolean(initialized);
+            if(initialized)
+                controller.write_checkpoint(out);
+        }
+
+        List<AbstractActuator> actuators = sorted(scenario.actuators);
+        out.writeInt(actuators.size());
+        for(AbstractActuator actuator : actuators){
+            out.writeLong(actuator.id);
+            out.writeBoolean(actuator.initialized);
+            if(actuator.initialized)
+                actuator.write_checkpoint(out);
+        }
+
+        List<AbstractSensor> sensors = sorted(scenario.sensors);
+        out.writeInt(sensors.size());
+        for(AbstractSensor sensor : sensors){
+            out.writeLong(sensor.id);
+            sensor.write_checkpoint(out);
+        }
+
+        List<Link> links = sorted(scenario.network.links);
+        out.writeInt(links.size());
+        for(Link link : links)
+            write_link(out,link);
+
+        // events, except those of outputs, which the restored scenario registers itself
+        Map<AbstractController,long[]> controller_entries = controller_entries(scenario);
+        List<AbstractEvent> events = dispatcher.events.stream()
+                .filter(e -> !(e instanceof EventStopSimulation) && !is_output_event(e))
+                .sorted()
+                .collect(toList());
+        out.writeInt(events.size());
+        for(AbstractEvent event : events)
+            write_event(out,event,controller_entries);
+        out.writeLong(dispatcher.get_num_registered());
+    }
+
+    private static void write_link(CheckpointWriter out,Link link) throws IOException {
+        out.writeLong(link.getId());
+
+        out.writeInt(link.lanegroups_flwdn.size());
+        for(AbstractLaneGroup lg : link.lanegroups_flwdn)
+            lg.write_checkpoint(out);
+
+        List<AbstractDemandGenerator> generators = link.demandGenerators.stream()
+                .sorted(Comparator.comparing(Checkpoint::demand_key))
+                .collect(toList());
+        out.writeInt(generators.size());
+        for(AbstractDemandGenerator generator : generators){
+            out.writeUTF(demand_key(generator));
+            generator.write_checkpoint(out);
+        }
+
+        List<Long> comm_ids = link.split_profile==null ? new ArrayList<>() : link.split_profile.keySet().stream().sorted().collect(toList());
+        out.writeInt(comm_ids.size());
+        for(Long comm_id : comm_ids){
+            out.writeLong(comm_id);
+            link.split_profile.get(comm_id).write_checkpoint(out);
+        }
+    }
+
+    private static void write_event(CheckpointWriter out,AbstractEvent event,Map<AbstractController,long[]> controller_entries) throws IOException {
+        Class<?> clazz = event.getClass();
+        byte type;
+        if(clazz==EventPoke.class)
+            type = EVENT_POKE;
+        else if(clazz==EventDemandChange.class)
+            type = EVENT_DEMAND_CHANGE;
+        else if(clazz==EventCreateVehicle.class)
+            type = EVENT_CREATE_VEHICLE;
+        else if(clazz==EventSplitChange.class)
+            type = EVENT_SPLIT_CHANGE;
+        else if(clazz==EventInitializeController.class)
+            type = EVENT_INITIALIZE_CONTROLLER;
+        else if(clazz==EventFluidModelUpdate.class)
+            type = EVENT_FLUID_MODEL_UPDATE;
+        else if(clazz==EventFluidStateUpdate.class)
+            type = EVENT_FLUID_STATE_UPDATE;
+        else if(clazz==EventReleaseVehicleFromLaneGroup.class)
+            type = EVENT_RELEASE_VEHICLE;
+        else if(clazz==EventTransitToWaiting.class)
+            type = EVENT_TRANSIT_TO_WAITING;
+        else if(clazz==EventAdvanceSignalPhase.class)
+            type = EVENT_ADVANCE_SIGNAL_PHASE;
+        else
+            throw new IOException("Checkpoints do not support events of type " + clazz.getName());
+
+        out.writeByte(type);
+        out.writeFloat(event.timestamp);
+        out.writeInt(event.dispatch_order);
+        out.writeLong(event.seq);
+        write_recipient(out,event.recipient,controller_entries);
+
+        if(type==EVENT_DEMAND_CHANGE)
+            out.writeDouble(((EventDemandChange) event).get_demand_vps());
+        else if(type==EVENT_SPLIT_CHANGE)
+            out.write_id_map(((EventSplitChange) event).get_outlink2value());
+    }
+
+    private static void write_recipient(CheckpointWriter out,Object recipient,Map<AbstractController,long[]> controller_entries) throws IOException {
+
+        if(recipient instanceof AbstractLaneSelector){
+            AbstractLaneSelector ls = (AbstractLaneSelector) recipient;
+            out.writeByte(RECIPIENT_LANE_SELECTOR);
+            write_lanegroup_key(out,ls.get_lanegroup());
+            out.writeLong(ls.get_commodity_id());
+        }
+
+        else if(recipient instanceof AbstractSensor){
+            out.writeByte(RECIPIENT_SENSOR);
+            out.writeLong(((AbstractSensor) recipient).id);
+        }
+
+        else if(recipient instanceof AbstractController){
+            AbstractController controller = (AbstractController) recipient;
+            long [] key = controller_entries.get(controller);
+            if(key==null)
+                throw new IOException("Event recipient is not a controller of the scenario: " + controller.id);
+            out.writeByte(RECIPIENT_CONTROLLER);
+            out.writeLong(key[0]);
+            out.writeInt((int) key[1]);
+        }
+
+        else if(recipient instanceof AbstractActuator){
+            out.writeByte(RECIPIENT_ACTUATOR);
+            out.writeLong(((AbstractActuator) recipient).id);
+        }
+
+        else if(recipient instanceof AbstractModel){
+            out.writeByte(RECIPIENT_MODEL);
+            out.writeUTF(((AbstractModel) recipient).name);
+        }
+
+        else if(recipient instanceof AbstractLaneGroup){
+            out.writeByte(RECIPIENT_LANEGROUP);
+            write_lanegroup_key(out,(AbstractLaneGroup) recipient);
+        }
+
+        else if(recipient instanceof AbstractVehicle){
+            out.writeByte(RECIPIENT_VEHICLE);
+            out.writeLong(((AbstractVehicle) recipient).getId());
+        }
+
+        else if(recipient instanceof AbstractDemandGenerator){
+            AbstractDemandGenerator generator = (AbstractDemandGenerator) recipient;
+            out.writeByte(RECIPIENT_DEMAND_GENERATOR);
+            out.writeLong(generator.link.getId());
+            out.writeUTF(demand_key(generator));
+        }
+
+        else if(recipient instanceof SplitMatrixProfile){
+            SplitMatrixProfile smp = (SplitMatrixProfile) recipient;
+            out.writeByte(RECIPIENT_SPLIT_PROFILE);
+            out.writeLong(smp.link_in.getId());
+            out.writeLong(smp.commodity_id);
+        }
+
+        else if(recipient instanceof SignalPhase){
+            SignalPhase phase = (SignalPhase) recipient;
+            out.writeByte(RECIPIENT_SIGNAL_PHASE);
+            out.writeLong(phase.my_signal.id);
+            out.writeLong(phase.id);
+        }
+
+        else
+            throw new IOException("Checkpoints do not support events for " + recipient.getClass().getName());
+    }
+
+    private static void write_lanegroup_key(CheckpointWriter out,AbstractLaneGroup lg) throws IOException {
+        int position = lg.link.lanegroups_flwdn.indexOf(lg);
+        if(position<0)
+            throw new IOException("Checkpoints only support events for downstream lane groups: " + lg);
+        out.writeLong(lg.link.getId());
+        out.writeInt(position);
+    }
+
+    //////////////////////////////////////////////////////
+    // load
+    //////////////////////////////////////////////////////
+
+    // simulation time of a checkpoint, with which the target scenario must be initialized
+    public static float read_time(String filename) throws OTMException {
+        try(InputStream stream = new FileInputStream(filename)){
+            return read_time(stream);
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    public static float read_time(InputStream stream) throws OTMException {
+        try {
+            DataInputStream in = new DataInputStream(new InflaterInputStream(stream));
+            read_header(in);
+            return in.readFloat();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    /**
+     * Restores a checkpoint onto a scenario that was loaded from the same configuration and
+     * initialized at read_time(filename).
+     */
+    public static void load(Scenario scenario,String filename) throws OTMException {
+        try(InputStream stream = new FileInputStream(filename)){
+            load(scenario,stream);
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    // the stream is not closed
+    public static void load(Scenario scenario,InputStream stream) throws OTMException {
+        if(scenario==null || scenario.dispatcher==null || !scenario.is_initialized)
+            throw new OTMException("The scenario must be initialized before loading a checkpoint.");
+        try {
+            read(scenario,new CheckpointReader(new BufferedInputStream(new InflaterInputStream(stream),BUFFER_SIZE),scenario));
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    private static void read(Scenario scenario,CheckpointReader in) throws IOException, OTMException {
+        Dispatcher dispatcher = scenario.dispatcher;
+
+        read_header(in);
+        float time = in.readFloat();
+        long vehicle_id_count = in.readLong();
+        long seed = in.readLong();
+
+        // controllers that had been initialized are initialized now, with their actuators
+        List<AbstractController> controllers = sorted(scenario.controllers);
+        check_count(in.readInt(),controllers.size(),"controllers");
+        for(AbstractController controller : controllers){
+            check_id(in.readLong(),controller.id,"controller");
+            if(in.readBoolean()){
+                controller.initialize(scenario);
+                controller.read_checkpoint(in);
+            }
+        }
+
+        List<AbstractActuator> actuators = sorted(scenario.actuators);
+        check_count(in.readInt(),actuators.size(),"actuators");
+        for(AbstractActuator actuator : actuators){
+            check_id(in.readLong(),actuator.id,"actuator");
+            if(in.readBoolean()){
+                actuator.initialize(scenario,time);
+                actuator.read_checkpoint(in);
+            }
+        }
+
+        List<AbstractSensor> sensors = sorted(scenario.sensors);
+        check_count(in.readInt(),sensors.size(),"sensors");
+        for(AbstractSensor sensor : sensors){
+            check_id(in.readLong(),sensor.id,"sensor");
+            sensor.read_checkpoint(in);
+        }
+
+        List<Link> links = sorted(scenario.network.links);
+        check_count(in.readInt(),links.size(),"links");
+        for(Link link : links)
+            read_link(in,link);
+
+        in.run_deferred();
+
+        // replace all events except those of outputs
+        dispatcher.events.removeIf(e -> !is_output_event(e));
+        Map<String,AbstractController> controller_keys = controller_keys(scenario);
+        int n = in.readInt();
+        for(int i=0;i<n;i++)
+            dispatcher.events.offer(read_event(in,dispatcher,controller_keys));
+        dispatcher.set_num_registered(in.readLong());
+
+        scenario.context.set_vehicle_id_count(vehicle_id_count);
+        scenario.context.set_random_seed(seed);
+        dispatcher.current_time = time;
+    }
+
+    private static void read_link(CheckpointReader in,Link link) throws IOException {
+        check_id(in.readLong(),link.getId(),"link");
+
+        check_count(in.readInt(),link.lanegroups_flwdn.size(),"lane groups in link " + link.getId());
+        for(AbstractLaneGroup lg : link.lanegroups_flwdn)
+            lg.read_checkpoint(in);
+
+        int n = in.readInt();
+        for(int i=0;i<n;i++){
+            String key = in.readUTF();
+            AbstractDemandGenerator generator = find_demand_generator(link,key);
+            if(generator==null)
+                throw new IOException(String.format("Checkpoint does not match the scenario: no demand %s on link %d",key,link.getId()));
+            generator.read_checkpoint(in);
+        }
+
+        n = in.readInt();
+        for(int i=0;i<n;i++){
+            long comm_id = in.readLong();
+            SplitMatrixProfile smp = link.split_profile==null ? null : link.split_profile.get(comm_id);
+            if(smp==null)
+                throw new IOException(String.format("Checkpoint does not match the scenario: no splits for commodity %d on link %d",comm_id,link.getId()));
+            smp.read_checkpoint(in);
+        }
+    }
+
+    private static AbstractEvent read_event(CheckpointReader in,Dispatcher dispatcher,Map<String,AbstractController> controller_keys) throws IOException {
+        byte type = in.readByte();
+        float timestamp = in.readFloat();
+        int dispatch_order = in.readInt();
+        long seq = in.readLong();
+        Object recipient = read_recipient(in,controller_keys);
+
+        AbstractEvent event;
+        switch(type){
+            case EVENT_POKE:
+                event = new EventPoke(dispatcher,dispatch_order,timestamp,recipient);
+                break;
+            case EVENT_DEMAND_CHANGE:
+                event = new EventDemandChange(dispatcher,timestamp,(AbstractDemandGenerator) recipient,in.readDouble());
+                break;
+            case EVENT_CREATE_VEHICLE:
+                event = new EventCreateVehicle(dispatcher,timestamp,(AbstractDemandGenerator) recipient);
+                break;
+            case EVENT_SPLIT_CHANGE:
+                event = new EventSplitChange(dispatcher,timestamp,(SplitMatrixProfile) recipient,in.read_id_map());
+                break;
+            case EVENT_INITIALIZE_CONTROLLER:
+                event = new EventInitializeController(dispatcher,timestamp,recipient);
+                break;
+            case EVENT_FLUID_MODEL_UPDATE:
+                event = new EventFluidModelUpdate(dispatcher,timestamp,recipient);
+                break;
+            case EVENT_FLUID_STATE_UPDATE:
+                event = new EventFluidStateUpdate(dispatcher,timestamp,recipient);
+                break;
+            case EVENT_RELEASE_VEHICLE:
+                event = new EventReleaseVehicleFromLaneGroup(dispatcher,timestamp,recipient);
+                break;
+            case EVENT_TRANSIT_TO_WAITING:
+                event = new EventTransitToWaiting(dispatcher,timestamp,recipient);
+                break;
+            case EVENT_ADVANCE_SIGNAL_PHASE:
+                event = new EventAdvanceSignalPhase(dispatcher,timestamp,(SignalPhase) recipient);
+                break;
+            default:
+                throw new IOException("Bad event type in checkpoint: " + type);
+        }
+        event.dispatch_order = dispatch_order;
+        event.seq = seq;
+        return event;
+    }
+
+    private static Object read_recipient(CheckpointReader in,Map<String,AbstractController> controller_keys) throws IOException {
+        Scenario scenario = in.scenario;
+        byte type = in.readByte();
+        Object recipient;
+        switch(type){
+
+            case RECIPIENT_LANE_SELECTOR:
+                AbstractLaneGroup lg = read_lanegroup_key(in);
+                long comm_id = in.readLong();
+                recipient = lg==null || lg.lane_selector==null ? null : lg.lane_selector.get(comm_id);
+                break;
+
+            case RECIPIENT_SENSOR:
+                recipient = scenario.sensors.get(in.readLong());
+                break;
+
+            case RECIPIENT_CONTROLLER:
+                long id = in.readLong();
+                int entry = in.readInt();
+                recipient = controller_keys.get(controller_key(id,entry));
+                break;
+
+            case RECIPIENT_ACTUATOR:
+                recipient = scenario.actuators.get(in.readLong());
+                break;
+
+            case RECIPIENT_MODEL:
+                recipient = scenario.network.models.get(in.readUTF());
+                break;
+
+            case RECIPIENT_LANEGROUP:
+                recipient = read_lanegroup_key(in);
+                break;
+
+            case RECIPIENT_VEHICLE:
+                recipient = in.get_vehicle(in.readLong());
+                break;
+
+            case RECIPIENT_DEMAND_GENERATOR:
+                Link link = scenario.network.links.get(in.readLong());
+                String key = in.readUTF();
+                recipient = link==null ? null : find_demand_generator(link,key);
+                break;
+
+            case RECIPIENT_SPLIT_PROFILE:
+                Link link_in = scenario.network.links.get(in.readLong());
+                long split_comm_id = in.readLong();
+                recipient = link_in==null || link_in.split_profile==null ? null : link_in.split_profile.get(split_comm_id);
+                break;
+
+            case RECIPIENT_SIGNAL_PHASE:
+                AbstractActuator actuator = scenario.actuators.get(in.readLong());
+                long phase_id = in.readLong();
+                recipient = actuator instanceof ActuatorSignal ? ((ActuatorSignal) actuator).signal_phases.get(phase_id) : null;
+                break;
+
+            default:
+                throw new IOException("Bad event recipient type in checkpoint: " + type);
+        }
+        if(recipient==null)
+            throw new IOException("Checkpoint does not match the scenario: missing event recipient of type " + type);
+        return recipient;
+    }
+
+    private static AbstractLaneGroup read_lanegroup_key(CheckpointReader in) throws IOException {
+        Link link = in.scenario.network.links.get(in.readLong());
+        int position = in.readInt();
+        if(link==null || position>=link.lanegroups_flwdn.size())
+            return null;
+        return link.lanegroups_flwdn.get(position);
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private static void read_header(DataInputStream in) throws IOException {
+        if(in.readInt()!=MAGIC)
+            throw new IOException("Not an OTM checkpoint");
+        int version = in.readInt();
+        if(version!=VERSION)
+            throw new IOException("Unsupported checkpoint version " + version);
+    }
+
+    private static void check_count(int saved,int expected,String what) throws IOException {
+        if(saved!=expected)
+            throw new IOException(String.format("Checkpoint does not match the scenario: %d %s, expected %d",saved,what,expected));
+    }
+
+    private static void check_id(long saved,long expected,String what) throws IOException {
+        if(saved!=expected)
+            throw new IOException(String.format("Checkpoint does not match the scenario: %s %d, expected %d",what,saved,expected));
+    }
+
+    // output events are registered again by the restored scenario
+    private static boolean is_output_event(AbstractEvent event){
+        return event.recipient instanceof AbstractOutput || event.recipient instanceof LinkTravelTimeManager;
+    }
+
+    private static <T> List<T> sorted(Map<Long,T> map){
+        return map.keySet().stream().sorted().map(map::get).collect(toList());
+    }
+
+    private static String demand_key(AbstractDemandGenerator generator){
+        return String.format("%d/%d",generator.get_commodity_id(),generator.path==null ? -1 : generator.path.getId());
+    }
+
+    private static AbstractDemandGenerator find_demand_generator(Link link,String key){
+        for(AbstractDemandGenerator generator : link.demandGenerators)
+            if(demand_key(generator).equals(key))
+                return generator;
+        return null;
+    }
+
+    // controller -> {id, entry}. Controllers of schedule entries are identified by the id of the
+    // schedule and their position in it, the others by their id and entry -1.
+    private static Map<AbstractController,long[]> controller_entries(Scenario scenario){
+        Map<AbstractController,long[]> X = new HashMap<>();
+        for(AbstractController controller : scenario.controllers.values()){
+            X.put(controller,new long[]{controller.id,-1});
+            if(controller instanceof ControllerSchedule){
+                List<ControllerSchedule.ScheduleEntry> entries = ((ControllerSchedule) controller).get_entries();
+                if(entries!=null)
+                    for(int i=0;i<entries.size();i++)
+                        X.put(entries.get(i).cntrl,new long[]{controller.id,i});
+            }
+        }
+        return X;
+    }
+
+    private static Map<String,AbstractController> controller_keys(Scenario scenario){
+        Map<String,AbstractController> X = new HashMap<>();
+        for(AbstractController controller : scenario.controllers.values()){
+            X.put(controller_key(controller.id,-1),controller);
+            if(controller instanceof ControllerSchedule){
+                List<ControllerSchedule.ScheduleEntry> entries = ((ControllerSchedule) controller).get_entries();
+                if(entries!=null)
+                    for(int i=0;i<entries.size();i++)
+                        X.put(controller_key(controller.id,i),entries.get(i).cntrl);
+            }
+        }
+        return X;
+    }
+
+    private static String controller_key(long id,int entry){
+        return id + "/" + entry;
+    }
+
+}
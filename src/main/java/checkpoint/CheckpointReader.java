@@ -0,0 +1,203 @@
+package checkpoint;
+
+import actuator.SignalPhase;
+import common.AbstractVehicle;
+import common.FlowAccumulatorState;
+import common.Scenario;
+import control.command.*;
+import control.commodity.ControllerRestrictLaneGroup;
+import geometry.Side;
+import keys.State;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Binary stream for reading a checkpoint written with CheckpointWriter. State is read
+ * into the elements of a scenario that was loaded from the same configuration, so most
+ * helpers overwrite values in existing structures instead of creating new ones.
+ */
+public class CheckpointReader extends DataInputStream {
+
+    static final byte COMMAND_NONE = 0;
+    static final byte COMMAND_NUMBER = 1;
+    static final byte COMMAND_BOOLEAN = 2;
+    static final byte COMMAND_DOUBLE_ARRAY = 3;
+    static final byte COMMAND_SIGNAL = 4;
+    static final byte COMMAND_RESTRICTION_MAP = 5;
+
+    public final Scenario scenario;
+
+    // vehicles read so far, and references between them that are resolved at the end
+    private final Map<Long,AbstractVehicle> vehicles;
+    private final List<Runnable> deferred;
+
+    public CheckpointReader(InputStream in, Scenario scenario) {
+        super(in);
+        this.scenario = scenario;
+        this.vehicles = new HashMap<>();
+        this.deferred = new ArrayList<>();
+    }
+
+    //////////////////////////////////////////////////////
+    // keys
+    //////////////////////////////////////////////////////
+
+    public State read_state() throws IOException {
+        long commodity_id = readLong();
+        long pathOrlink_id = readLong();
+        boolean isPath = readBoolean();
+        return new State(commodity_id,pathOrlink_id,isPath);
+    }
+
+    public State read_state_or_null() throws IOException {
+        return readBoolean() ? read_state() : null;
+    }
+
+    // sides are added in declaration order
+    public void read_sides_into(Set<Side> sides) throws IOException {
+        int mask = readByte();
+        sides.clear();
+        for(Side side : Side.values())
+            if((mask & (1 << side.ordinal()))!=0)
+                sides.add(side);
+    }
+
+    //////////////////////////////////////////////////////
+    // maps
+    //////////////////////////////////////////////////////
+
+    /**
+     * Overwrites the values in target with the saved ones. Keys that are not in the checkpoint
+     * are removed, and keys that are already present keep their place in the iteration order.
+     * If target is null the saved map is skipped.
+     */
+    public void read_state_map_into(Map<State,Double> target) throws IOException {
+        int n = readInt();
+        if(n<0)
+            return;
+        Map<State,Double> saved = new LinkedHashMap<>();
+        for(int i=0;i<n;i++){
+            State state = read_state();
+            saved.put(state,readDouble());
+        }
+        if(target==null)
+            return;
+        target.keySet().retainAll(saved.keySet());
+        target.putAll(saved);
+    }
+
+    // returns null if null was saved. The map iterates in the saved order.
+    public Map<Long,Double> read_id_map() throws IOException {
+        int n = readInt();
+        if(n<0)
+            return null;
+        Map<Long,Double> map = new LinkedHashMap<>();
+        for(int i=0;i<n;i++){
+            long id = readLong();
+            map.put(id,readDouble());
+        }
+        return map;
+    }
+
+    public void read_flow_accumulator_into(FlowAccumulatorState fa) throws IOException {
+        read_state_map_into(fa==null ? null : fa.count);
+    }
+
+    //////////////////////////////////////////////////////
+    // controller commands
+    //////////////////////////////////////////////////////
+
+    /**
+     * Reads a command. Controllers may hold references to their commands, so the current
+     * command is updated in place when it has the same type.
+     */
+    public InterfaceCommand read_command(InterfaceCommand current) throws IOException {
+        byte type = readByte();
+        int n;
+        switch(type){
+
+            case COMMAND_NONE:
+                return null;
+
+            case COMMAND_NUMBER:
+                Float number = readBoolean() ? readFloat() : null;
+                if(current instanceof CommandNumber){
+                    ((CommandNumber) current).value = number;
+                    return current;
+                }
+                return new CommandNumber(number);
+
+            case COMMAND_BOOLEAN:
+                boolean bool = readBoolean();
+                if(current instanceof CommandBoolean){
+                    ((CommandBoolean) current).value = bool;
+                    return current;
+                }
+                return new CommandBoolean(bool);
+
+            case COMMAND_DOUBLE_ARRAY:
+                n = readInt();
+                long [] ids = new long[n];
+                double [] values = new double[n];
+                for(int i=0;i<n;i++){
+                    ids[i] = readLong();
+                    values[i] = readDouble();
+                }
+                CommandDoubleArray array;
+                if(current instanceof CommandDoubleArray && Arrays.equals(((CommandDoubleArray) current).ids,ids))
+                    array = (CommandDoubleArray) current;
+                else
+                    array = new CommandDoubleArray(ids);
+                System.arraycopy(values,0,array.values,0,n);
+                return array;
+
+            case COMMAND_SIGNAL:
+                n = readInt();
+                Map<Long,SignalPhase.BulbColor> colors = new HashMap<>();
+                for(int i=0;i<n;i++){
+                    long phase_id = readLong();
+                    colors.put(phase_id,SignalPhase.BulbColor.values()[readByte()]);
+                }
+                return new CommandSignal(colors);
+
+            case COMMAND_RESTRICTION_MAP:
+                n = readInt();
+                Map<Long,ControllerRestrictLaneGroup.Restriction> restrictions = new HashMap<>();
+                for(int i=0;i<n;i++){
+                    long comm_id = readLong();
+                    restrictions.put(comm_id,ControllerRestrictLaneGroup.Restriction.values()[readByte()]);
+                }
+                return new CommandRestrictionMap(restrictions);
+
+            default:
+                throw new IOException("Bad command type in checkpoint: " + type);
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // vehicles
+    //////////////////////////////////////////////////////
+
+    public void add_vehicle(AbstractVehicle vehicle){
+        vehicles.put(vehicle.getId(),vehicle);
+    }
+
+    // null if the vehicle has not been read
+    public AbstractVehicle get_vehicle(long id){
+        return vehicles.get(id);
+    }
+
+    // run once all elements have been read, e.g. to link vehicles to their leaders
+    public void defer(Runnable x){
+        deferred.add(x);
+    }
+
+    void run_deferred(){
+        deferred.forEach(Runnable::run);
+        deferred.clear();
+    }
+
+}
@@ -0,0 +1,143 @@
+package checkpoint;
+
+import actuator.SignalPhase;
+import common.FlowAccumulatorState;
+import control.command.*;
+import control.commodity.ControllerRestrictLaneGroup;
+import geometry.Side;
+import keys.State;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary stream for writing simulation state to a checkpoint. Elements write their own
+ * state with write_checkpoint(CheckpointWriter), using the helpers below for the
+ * structures that are shared across the simulator. Maps are written in iteration order,
+ * so that they are rebuilt with the same order on restore.
+ */
+public class CheckpointWriter extends DataOutputStream {
+
+    public CheckpointWriter(OutputStream out) {
+        super(out);
+    }
+
+    //////////////////////////////////////////////////////
+    // keys
+    //////////////////////////////////////////////////////
+
+    public void write_state(State state) throws IOException {
+        writeLong(state.commodity_id);
+        writeLong(state.pathOrlink_id);
+        writeBoolean(state.isPath);
+    }
+
+    // nullable state
+    public void write_state_or_null(State state) throws IOException {
+        writeBoolean(state!=null);
+        if(state!=null)
+            write_state(state);
+    }
+
+    public void write_sides(Set<Side> sides) throws IOException {
+        int mask = 0;
+        for(Side side : sides)
+            mask |= 1 << side.ordinal();
+        writeByte(mask);
+    }
+
+    //////////////////////////////////////////////////////
+    // maps
+    //////////////////////////////////////////////////////
+
+    // nullable map. null is written as -1
+    public void write_state_map(Map<State,Double> map) throws IOException {
+        if(map==null){
+            writeInt(-1);
+            return;
+        }
+        writeInt(map.size());
+        for(Map.Entry<State,Double> e : map.entrySet()){
+            write_state(e.getKey());
+            writeDouble(e.getValue());
+        }
+    }
+
+    // nullable map. null is written as -1
+    public void write_id_map(Map<Long,Double> map) throws IOException {
+        if(map==null){
+            writeInt(-1);
+            return;
+        }
+        writeInt(map.size());
+        for(Map.Entry<Long,Double> e : map.entrySet()){
+            writeLong(e.getKey());
+            writeDouble(e.getValue());
+        }
+    }
+
+    public void write_flow_accumulator(FlowAccumulatorState fa) throws IOException {
+        write_state_map(fa==null ? null : fa.count);
+    }
+
+    //////////////////////////////////////////////////////
+    // controller commands
+    //////////////////////////////////////////////////////
+
+    public void write_command(InterfaceCommand command) throws IOException {
+
+        if(command==null){
+            writeByte(CheckpointReader.COMMAND_NONE);
+        }
+
+        else if(command instanceof CommandNumber){
+            CommandNumber c = (CommandNumber) command;
+            writeByte(CheckpointReader.COMMAND_NUMBER);
+            writeBoolean(c.value!=null);
+            if(c.value!=null)
+                writeFloat(c.value);
+        }
+
+        else if(command instanceof CommandBoolean){
+            writeByte(CheckpointReader.COMMAND_BOOLEAN);
+            writeBoolean(((CommandBoolean) command).value);
+        }
+
+        else if(command instanceof CommandDoubleArray){
+            CommandDoubleArray c = (CommandDoubleArray) command;
+            writeByte(CheckpointReader.COMMAND_DOUBLE_ARRAY);
+            writeInt(c.ids.length);
+            for(int i=0;i<c.ids.length;i++){
+                writeLong(c.ids[i]);
+                writeDouble(c.values[i]);
+            }
+        }
+
+        else if(command instanceof CommandSignal){
+            Map<Long,SignalPhase.BulbColor> value = ((CommandSignal) command).value;
+            writeByte(CheckpointReader.COMMAND_SIGNAL);
+            writeInt(value.size());
+            for(Map.Entry<Long,SignalPhase.BulbColor> e : value.entrySet()){
+                writeLong(e.getKey());
+                writeByte(e.getValue().ordinal());
+            }
+        }
+
+        else if(command instanceof CommandRestrictionMap){
+            Map<Long,ControllerRestrictLaneGroup.Restriction> values = ((CommandRestrictionMap) command).values;
+            writeByte(CheckpointReader.COMMAND_RESTRICTION_MAP);
+            writeInt(values.size());
+            for(Map.Entry<Long,ControllerRestrictLaneGroup.Restriction> e : values.entrySet()){
+                writeLong(e.getKey());
+                writeByte(e.getValue().ordinal());
+            }
+        }
+
+        else
+            throw new IOException("Checkpoints do not support commands of type " + command.getClass().getName());
+    }
+
+}
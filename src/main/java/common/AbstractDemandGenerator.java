@@ -1,5 +1,7 @@
 package common;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import commodity.Commodity;
 import commodity.Path;
 import dispatch.Dispatcher;
@@ -11,6 +13,9 @@ import keys.State;
 import models.vehicle.VehicleDemandGenerator;
 import profiles.Profile1D;
 import profiles.TimeValue;
+import utils.RandomStream;
+
+import java.io.IOException;
 
 public abstract class AbstractDemandGenerator {
 
@@ -27,12 +32,16 @@ public abstract class AbstractDemandGenerator {
     // demand value
     protected double source_demand_vps;    // vps
 
+    // random numbers of this generator
+    public final RandomStream random;
+
     public AbstractDemandGenerator(Link link, Profile1D profile, Commodity commodity, Path path){
         this.link = link;
         this.profile = profile;
         this.commodity = commodity;
         this.path = path;
         this.source_demand_vps = 0f;
+        this.random = new RandomStream(RandomStream.Type.demand_generator,commodity.getId(),link.getId(),path==null ? -1L : path.getId());
     }
 
     public void delete(){
@@ -48,7 +57,10 @@ public abstract class AbstractDemandGenerator {
         if(commodity.pathfull){
             return new State(commodity.getId(),path.getId(),true);
         } else {
-            Long next_link_id = link.split_profile.get(commodity.getId()).sample_output_link();
+            // splits are only allocated for links that end at a diverge
+            Long next_link_id = link.split_profile==null ?
+                    (link.end_node.out_links.size()==1 ? link.end_node.out_links.iterator().next().getId() : null) :
+                    link.split_profile.get(commodity.getId()).sample_output_link();
             return new State(commodity.getId(),next_link_id,false);
         }
     }
@@ -112,6 +124,7 @@ public abstract class AbstractDemandGenerator {
     }
 
     public void initialize(Scenario scenario) throws OTMException {
+        random.reset(scenario.context.get_random_seed());
         float now = scenario.get_current_time();
         double value = profile.get_value_for_time(now);
         set_demand_vps(scenario.dispatcher,now,value);
@@ -167,5 +180,18 @@ public abstract class AbstractDemandGenerator {
         return null;
     }
 
+    ////////////////////////////////////////////
+    // checkpoint
+    ////////////////////////////////////////////
+
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        out.writeDouble(source_demand_vps);
+        random.write_checkpoint(out);
+    }
+
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        source_demand_vps = in.readDouble();
+        random.read_checkpoint(in);
+    }
 
 }
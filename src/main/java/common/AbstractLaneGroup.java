@@ -4,6 +4,8 @@ import actuator.AbstractActuator;
 import actuator.AbstractActuatorLanegroupCapacity;
 import actuator.ActuatorOpenCloseLaneGroup;
 import actuator.InterfaceActuatorTarget;
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import error.OTMErrorLog;
 import error.OTMException;
 import geometry.FlowPosition;
@@ -15,8 +17,9 @@ import lanechange.LogitLaneSelector;
 import lanechange.UniformLaneSelector;
 import packet.StateContainer;
 import traveltime.AbstractLaneGroupTimer;
-import utils.OTMUtils;
+import utils.RandomStream;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -69,6 +72,9 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
 
     public AbstractLaneGroupTimer travel_timer;
 
+    // random numbers of this lane group
+    public final RandomStream random;
+
     ///////////////////////////////////////////////////
     // construction
     ///////////////////////////////////////////////////
@@ -79,7 +85,7 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
         this.flwpos = flwpos;
         this.length = length;
         this.num_lanes = num_lanes;
-        this.id = OTMUtils.get_lanegroup_id();
+        this.id = link.network.scenario.context.next_lanegroup_id();
         this.states = new HashSet<>();
         switch(flwpos){
             case up:
@@ -89,6 +95,9 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
                 this.start_lane_dn = start_lane;
                 break;
         }
+
+        // keyed on the lanes rather than the id, which depends on the order in which lane groups are built
+        this.random = new RandomStream(RandomStream.Type.lanegroup,link.getId(),flwpos.ordinal(),start_lane);
         this.state2roadconnection = new HashMap<>();
 
         this.outlink2roadconnection = new HashMap<>();
@@ -118,6 +127,12 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
         return id;
     }
 
+    // hashed on the id, so that hash sets and maps of lane groups iterate in the same order in every run
+    @Override
+    public final int hashCode() {
+        return Long.hashCode(id);
+    }
+
     @Override
     public void register_actuator(Set<Long> commids,AbstractActuator act) throws OTMException {
 
@@ -176,8 +191,14 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
 
     public void initialize(Scenario scenario, float start_time) throws OTMException {
 
-        if(link.is_model_source_link)
-            this.buffer = new StateContainer();
+        random.reset(scenario.context.get_random_seed());
+
+        if(link.is_model_source_link) {
+            if (buffer == null)
+                buffer = new StateContainer();
+            else
+                buffer.amount.clear();
+        }
 
         if(flw_acc!=null)
             flw_acc.reset();
@@ -371,6 +392,14 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
 
     }
 
+    // reopens the lane changes closed by set_actuator_isopen. Subclasses also restore capacity and speed.
+    @Override
+    public void reset_actuation(){
+        for(Map.Entry<State,Set<Side>> e : disallowed_state2lanechangedirections.entrySet())
+            for(Side side : new ArrayList<>(e.getValue()))
+                reallow_state_lanechangedirection(e.getKey(),side);
+    }
+
     private void disallow_state(State state) throws OTMException {
         // disallow movement into this lanegroup from adjacent lanegroups
         this.disallow_state_lanechangedirection(state,Side.middle);
@@ -398,6 +427,42 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
             neighbor_up_out.reallow_state_lanechangedirection(state,Side.in);
     }
 
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        out.writeDouble(supply);
+        out.write_state_map(buffer==null ? null : buffer.amount);
+        out.write_flow_accumulator(flw_acc);
+        random.write_checkpoint(out);
+        write_lanechangedirections(out,state2lanechangedirections);
+        write_lanechangedirections(out,disallowed_state2lanechangedirections);
+        List<Long> commids = lane_selector==null ? new ArrayList<>() : lane_selector.keySet().stream().sorted().collect(toList());
+        out.writeInt(commids.size());
+        for(Long commid : commids){
+            out.writeLong(commid);
+            lane_selector.get(commid).write_checkpoint(out);
+        }
+    }
+
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        supply = in.readDouble();
+        in.read_state_map_into(buffer==null ? null : buffer.amount);
+        in.read_flow_accumulator_into(flw_acc);
+        random.read_checkpoint(in);
+        read_lanechangedirections(in,state2lanechangedirections);
+        read_lanechangedirections(in,disallowed_state2lanechangedirections);
+        int n = in.readInt();
+        for(int i=0;i<n;i++){
+            long commid = in.readLong();
+            AbstractLaneSelector ls = lane_selector==null ? null : lane_selector.get(commid);
+            if(ls==null)
+                throw new IOException(String.format("Checkpoint does not match the scenario: no lane selector for commodity %d in %s",commid,this));
+            ls.read_checkpoint(in);
+        }
+    }
+
     ///////////////////////////////////////////////////
     // toString
     ///////////////////////////////////////////////////
@@ -411,6 +476,28 @@ public abstract class AbstractLaneGroup implements Comparable<AbstractLaneGroup>
     // private
     ///////////////////////////////////////////////////
 
+    private static void write_lanechangedirections(CheckpointWriter out,Map<State,Set<Side>> x) throws IOException {
+        out.writeInt(x.size());
+        for(Map.Entry<State,Set<Side>> e : x.entrySet()){
+            out.write_state(e.getKey());
+            out.write_sides(e.getValue());
+        }
+    }
+
+    // existing sets are reused since the lane selectors may refer to them
+    private static void read_lanechangedirections(CheckpointReader in,Map<State,Set<Side>> x) throws IOException {
+        int n = in.readInt();
+        Map<State,Set<Side>> saved = new LinkedHashMap<>();
+        for(int i=0;i<n;i++){
+            State state = in.read_state();
+            Set<Side> sides = x.containsKey(state) ? x.get(state) : new HashSet<>();
+            in.read_sides_into(sides);
+            saved.put(state,sides);
+        }
+        x.keySet().retainAll(saved.keySet());
+        x.putAll(saved);
+    }
+
     private void disallow_state_lanechangedirection(State state,Side side) throws OTMException {
         if(!state2lanechangedirections.containsKey(state))
             return;
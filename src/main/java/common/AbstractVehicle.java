@@ -1,10 +1,13 @@
 package common;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+import commodity.Commodity;
 import commodity.Path;
 import keys.State;
 import output.InterfaceVehicleListener;
-import utils.OTMUtils;
 
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -28,8 +31,8 @@ public abstract class AbstractVehicle {
         this.event_listeners = that.event_listeners;
     }
 
-    public AbstractVehicle(Long comm_id,Set<InterfaceVehicleListener> event_listeners){
-        this.id = OTMUtils.get_vehicle_id();
+    public AbstractVehicle(long id,Long comm_id,Set<InterfaceVehicleListener> event_listeners){
+        this.id = id;
         this.comm_id = comm_id;
         this.event_listeners = new HashSet<>();
         if(event_listeners!=null)
@@ -37,6 +40,33 @@ public abstract class AbstractVehicle {
         this.lg = null;
     }
 
+    // restore from a checkpoint. The caller places the vehicle in its lane group.
+    public AbstractVehicle(CheckpointReader in) throws IOException {
+        this.id = in.readLong();
+        this.comm_id = in.readLong();
+        this.state = in.read_state_or_null();
+        Commodity commodity = in.scenario.commodities.get(comm_id);
+        if(commodity==null)
+            throw new IOException("Checkpoint does not match the scenario: bad commodity id " + comm_id);
+        this.event_listeners = new HashSet<>(commodity.vehicle_event_listeners);
+        if(in.readBoolean()){
+            long path_id = in.readLong();
+            this.path = (Path) in.scenario.subnetworks.get(path_id);
+            if(this.path==null)
+                throw new IOException("Checkpoint does not match the scenario: bad path id " + path_id);
+        }
+        this.lg = null;
+    }
+
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        out.writeLong(id);
+        out.writeLong(comm_id);
+        out.write_state_or_null(state);
+        out.writeBoolean(path!=null);
+        if(path!=null)
+            out.writeLong(path.getId());
+    }
+
     public void set_next_link_id(Long nextlink_id){
         if(state !=null && state.isPath)
             return;
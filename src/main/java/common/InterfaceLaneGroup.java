@@ -20,6 +20,9 @@ public interface InterfaceLaneGroup {
     void set_actuator_speed_mps(double speed_mps);
     void set_actuator_isopen(boolean isopen, Long commid)  throws OTMException ;
 
+    // return the parameters set by actuators to their nominal values, when the scenario is reset
+    void reset_actuation();
+
     void set_road_params(jaxb.Roadparam r);
 
     // Return the total number of vehicles in this lane group with the given commodity id.
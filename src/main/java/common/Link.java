@@ -126,7 +126,7 @@ public class Link implements InterfaceScenarioElement {
         outlink2lanegroups = new HashMap<>();
 
         // demands ............................................
-        demandGenerators = new HashSet<>();
+        demandGenerators = new LinkedHashSet<>();
 
     }
 
@@ -165,6 +165,12 @@ public class Link implements InterfaceScenarioElement {
         return id;
     }
 
+    // hashed on the id, so that hash sets and maps of links iterate in the same order in every run
+    @Override
+    public final int hashCode() {
+        return Long.hashCode(id);
+    }
+
     @Override
     public final ScenarioElementType getSEType() {
         return ScenarioElementType.link;
@@ -557,7 +563,9 @@ public class Link implements InterfaceScenarioElement {
                                 vehicle);
 
                     } else {
-                        Long next_link_id = split_profile.get(key.commodity_id).sample_output_link();
+                        Long next_link_id = outlink2lanegroups.size()==1 ?
+                                outlink2lanegroups.keySet().iterator().next() :
+                                split_profile.get(key.commodity_id).sample_output_link();
                         vehicle.set_next_link_id(next_link_id);
                         add_to_lanegroup_packets(split_packets,next_link_id ,
                                 new State(key.commodity_id, next_link_id, false),
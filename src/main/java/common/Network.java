@@ -160,6 +160,16 @@ public class Network {
             model.initialize(scenario);
     }
 
+    // return links to their initial state, reusing the allocated state
+    public void reset(Scenario scenario,float start_time) throws OTMException {
+        for(Link link : links.values()) {
+            link.model.reset(link);
+            link.lanegroups_flwdn.forEach(AbstractLaneGroup::reset_actuation);
+        }
+        for(Link link : links.values())
+            link.initialize(scenario, start_time);
+    }
+
     public jaxb.Network to_jaxb(){
         jaxb.Network jnet = new jaxb.Network();
 
@@ -332,8 +342,8 @@ public class Network {
             }
             models.put(jaxb_model.getName(),model);
 
-            // save the links for this model
-            Set<Link> my_links = new HashSet<>();
+            // save the links for this model, in order of id so that models visit them in the same order in every run
+            Set<Link> my_links = new TreeSet<>(Comparator.comparing(Link::getId));
             if(jaxb_model.isIsDefault()){
                 if(has_default_model)
                     throw new OTMException("Multiple default models.");
@@ -355,7 +365,7 @@ public class Network {
 
         // assign 'none' model to remaining links
         if(assigned_links.size()<links.values().size()){
-            Set<Link> my_links = new HashSet<>();
+            Set<Link> my_links = new TreeSet<>(Comparator.comparing(Link::getId));
             my_links.addAll(links.values());
             my_links.removeAll(assigned_links);
 
@@ -60,6 +60,12 @@ public class Node implements InterfaceScenarioElement, InterfaceActuatorTarget {
         return id;
     }
 
+    // hashed on the id, so that hash sets and maps of nodes iterate in the same order in every run
+    @Override
+    public final int hashCode() {
+        return Long.hashCode(id);
+    }
+
     @Override
     public final ScenarioElementType getSEType() {
         return ScenarioElementType.node;
@@ -86,6 +86,12 @@ public class RoadConnection implements Comparable<RoadConnection>, InterfaceScen
         return id;
     }
 
+    // hashed on the id, so that hash sets and maps of road connections iterate in the same order in every run
+    @Override
+    public final int hashCode() {
+        return Long.hashCode(id);
+    }
+
     @Override
     public final ScenarioElementType getSEType() {
         return ScenarioElementType.roadconnection;
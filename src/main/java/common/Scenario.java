@@ -12,9 +12,11 @@ import control.AbstractController;
 import error.OTMErrorLog;
 import error.OTMException;
 import dispatch.Dispatcher;
+import metrics.Metrics;
 import jaxb.Split;
 import output.AbstractOutput;
 import output.OutputPathTravelTime;
+import output.OutputPipeline;
 import profiles.*;
 import sensor.AbstractSensor;
 import utils.OTMUtils;
@@ -30,9 +32,13 @@ import static java.util.stream.Collectors.toSet;
 public class Scenario {
 
     public boolean is_initialized;
+    public final ScenarioContext context = new ScenarioContext();    // id counters and random numbers
+    public final Metrics metrics = new Metrics();                    // runtime metrics, see api.OTM.get_metrics
 
     public Dispatcher dispatcher;
     public Set<AbstractOutput> outputs = new HashSet<>();
+    public OutputPipeline output_pipeline;     // null -> outputs write on the simulation thread
+    public distributed.Partition partition;    // null -> the whole network runs in this process
 
     // Scenario elements
     public Map<Long,Commodity> commodities = new HashMap<>();     // commodity id -> commodity
@@ -125,6 +131,7 @@ public class Scenario {
         // initialize components ..................................
         if(dispatcher!=null)
             dispatcher.initialize();
+        metrics.reset();
 
 //        // To initialize the commodities I will need a map, for each link, from outlink to viable road connections
 //        Map<Long,Map<Long,Set<RoadConnection>>> link_outlink2rcs = new HashMap<>();
@@ -142,7 +149,36 @@ public class Scenario {
 //        for(Commodity commodity : commodities.values())
 //            commodity.initialize(this);
 
+        start(runParams,false);
+    }
+
+    /**
+     * Return an initialized scenario to its state at start_time without rebuilding it. The
+     * dispatcher, cells, queues and maps are reused: vehicles are removed, fluid state and
+     * accumulators are set to zero, demands, splits, sensors and controllers start again,
+     * and only the initial events are scheduled. Vehicle ids and the random number
+     * generators start again from the seed. Capacities, speeds and lane closures set by
+     * actuators return to their nominal values, lane change probabilities start again from
+     * uniform, and the metrics are set to zero. Outputs are kept and start again.
+     */
+    public void reset(float start_time) throws OTMException {
+        if(dispatcher==null)
+            throw new OTMException("The scenario must be initialized before it is reset.");
+
+        dispatcher.initialize();
+        context.set_vehicle_id_count(0);
+        metrics.reset();
+
+        start(new RunParameters(start_time),true);
+    }
+
+    // initialize components and register initial events. in_place: reuse the state of the links
+    private void start(RunParameters runParams,boolean in_place) throws OTMException {
+
         // initialize and register outputs
+        if(output_pipeline!=null)
+            output_pipeline.start();
+
         for(AbstractOutput x : outputs)
             x.initialize(this);
 
@@ -150,12 +186,17 @@ public class Scenario {
         for(AbstractOutput output : outputs)
             output.register(runParams,dispatcher);
 
-        network.initialize(this,runParams.start_time);
+        if(in_place)
+            network.reset(this,runParams.start_time);
+        else
+            network.initialize(this,runParams.start_time);
 
         for(AbstractSensor x : sensors.values())
             x.initialize(this);
 
         for(AbstractController x : controllers.values()) {
+            if(partition!=null && !partition.runs(x))
+                continue;
             float start_time = Math.max( x.start_time , runParams.start_time );
             dispatcher.register_event(new EventInitializeController(dispatcher, start_time, x));
         }
@@ -375,6 +416,10 @@ public class Scenario {
         try {
             for(AbstractOutput or : outputs)
                 or.close();
+            if(output_pipeline!=null)
+                output_pipeline.stop();
+            for(AbstractController controller : controllers.values())
+                controller.terminate();
         } catch (OTMException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,67 @@
+package common;
+
+import java.util.Random;
+
+/**
+ * Id counters and random seed of one scenario. Each scenario owns its own context, so that
+ * several simulations can be loaded and run concurrently in one process without sharing ids
+ * or random numbers. Lane groups, demand generators and split profiles draw from their own
+ * RandomStream, started from the seed when the scenario is initialized.
+ */
+public class ScenarioContext {
+
+    // seed of scenarios that have none of their own, see api.OTM.set_random_seed
+    private static volatile Long default_seed;
+
+    private long lane_group_counter;
+    private long vehicle_id_count;
+    private Long seed;                  // null until set for this scenario
+    private final long own_seed;        // used if no seed is set
+
+    public ScenarioContext(){
+        lane_group_counter = 0;
+        vehicle_id_count = 0;
+        own_seed = new Random().nextLong();
+    }
+
+    ///////////////////////////////////////////////////
+    // ids
+    ///////////////////////////////////////////////////
+
+    public long next_lanegroup_id(){
+        return lane_group_counter++;
+    }
+
+    public long next_vehicle_id(){
+        return vehicle_id_count++;
+    }
+
+    public long get_vehicle_id_count(){
+        return vehicle_id_count;
+    }
+
+    public void set_vehicle_id_count(long count){
+        vehicle_id_count = count;
+    }
+
+    ///////////////////////////////////////////////////
+    // random
+    ///////////////////////////////////////////////////
+
+    // process-wide seed for the scenarios that are not given their own before they are initialized. Null clears it.
+    public static void set_default_random_seed(Long seed){
+        default_seed = seed;
+    }
+
+    public void set_random_seed(long seed){
+        this.seed = seed;
+    }
+
+    public long get_random_seed(){
+        if(seed!=null)
+            return seed;
+        Long x = default_seed;
+        return x!=null ? x : own_seed;
+    }
+
+}
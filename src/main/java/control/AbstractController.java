@@ -1,6 +1,8 @@
 package control;
 
 import actuator.AbstractActuator;
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.InterfaceEventWriter;
 import control.command.InterfaceCommand;
 import dispatch.Dispatcher;
@@ -17,6 +19,7 @@ import output.events.EventWrapperController;
 import sensor.AbstractSensor;
 import utils.OTMUtils;
 
+import java.io.IOException;
 import java.util.*;
 
 public abstract class AbstractController implements Pokable, InterfaceScenarioElement, InterfaceEventWriter {
@@ -33,6 +36,7 @@ public abstract class AbstractController implements Pokable, InterfaceScenarioEl
         lg_lanechange,
         frflow,
         linkflow,
+        external,
         plugin
     }
 //    public static final Map<Algorithm, AbstractActuator.Type> map_algorithm_actuator = new HashMap<>();
@@ -156,6 +160,10 @@ public abstract class AbstractController implements Pokable, InterfaceScenarioEl
         }
     }
 
+    // called when the simulation ends
+    public void terminate() {
+    }
+
     ///////////////////////////////////////////
     // InterfaceScenarioElement
     ///////////////////////////////////////////
@@ -220,6 +228,28 @@ public abstract class AbstractController implements Pokable, InterfaceScenarioEl
         event_output = (OutputController) e;
     }
 
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        List<Long> act_ids = new ArrayList<>(command.keySet());
+        Collections.sort(act_ids);
+        out.writeInt(act_ids.size());
+        for(Long act_id : act_ids){
+            out.writeLong(act_id);
+            out.write_command(command.get(act_id));
+        }
+    }
+
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        int n = in.readInt();
+        for(int i=0;i<n;i++){
+            long act_id = in.readLong();
+            command.put(act_id,in.read_command(command.get(act_id)));
+        }
+    }
+
     ///////////////////////////////////////////////////
     // getters
     ///////////////////////////////////////////////////
@@ -1,6 +1,8 @@
 package control;
 
 import actuator.AbstractActuator;
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.Scenario;
 import dispatch.Dispatcher;
 import dispatch.EventPoke;
@@ -9,6 +11,7 @@ import error.OTMException;
 import jaxb.Controller;
 import runner.ScenarioFactory;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -104,6 +107,43 @@ public class ControllerSchedule extends AbstractController {
 
     }
 
+    public List<ScheduleEntry> get_entries(){
+        return entries;
+    }
+
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        super.write_checkpoint(out);
+        out.writeInt(curr_entry_index);
+        out.writeFloat(next_entry_start);
+        for(ScheduleEntry entry : entries)
+            entry.cntrl.write_checkpoint(out);
+    }
+
+    // the current entry is initialized again, since initialize() has just reset the schedule
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        super.read_checkpoint(in);
+        curr_entry_index = in.readInt();
+        next_entry_start = in.readFloat();
+        curr_entry = curr_entry_index<0 ? null : entries.get(curr_entry_index);
+        if(curr_entry!=null) {
+            try {
+                curr_entry.cntrl.initialize(scenario);
+            } catch (OTMException e) {
+                throw new IOException(e);
+            }
+        }
+        for(ScheduleEntry entry : entries)
+            entry.cntrl.read_checkpoint(in);
+        if(curr_entry!=null)
+            this.command = curr_entry.cntrl.command;
+    }
+
     ///////////////////////////////////////////////////
     // private
     ///////////////////////////////////////////////////
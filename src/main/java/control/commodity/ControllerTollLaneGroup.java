@@ -1,6 +1,8 @@
 package control.commodity;
 
 import actuator.ActuatorOpenCloseLaneGroup;
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.AbstractLaneGroup;
 import common.FlowAccumulatorState;
 import common.LaneGroupSet;
@@ -18,10 +20,9 @@ import models.fluid.FluidLaneGroup;
 import utils.OTMUtils;
 import utils.LookupTable;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
 
 public class ControllerTollLaneGroup extends AbstractController {
 
@@ -124,6 +125,48 @@ public class ControllerTollLaneGroup extends AbstractController {
 
     }
 
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        super.write_checkpoint(out);
+        out.writeBoolean(firsttime);
+        List<LGInfo> infos = sorted_lginfos();
+        out.writeInt(infos.size());
+        for(LGInfo l : infos){
+            out.writeDouble(l.prev_count);
+            out.writeBoolean(l.has_toll_selectors());
+        }
+    }
+
+    // toll lane selectors are created again, and their state is read with the lane groups
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        super.read_checkpoint(in);
+        firsttime = in.readBoolean();
+        List<LGInfo> infos = sorted_lginfos();
+        int n = in.readInt();
+        if(n!=infos.size())
+            throw new IOException(String.format("Checkpoint does not match the scenario: controller %d",id));
+        for(LGInfo l : infos){
+            l.prev_count = in.readDouble();
+            boolean has_toll_selectors = in.readBoolean();
+            if(!firsttime){
+                l.initialize(scenario.dispatcher);
+                if(!has_toll_selectors)
+                    l.gplg.lane_selector.putAll(l.nom_ls);
+            }
+        }
+    }
+
+    private List<LGInfo> sorted_lginfos(){
+        return lginfos.stream()
+                .sorted(Comparator.comparing((LGInfo l)->l.hotlg.link.getId()).thenComparing(l->l.hotlg.start_lane_dn))
+                .collect(Collectors.toList());
+    }
+
     class LGInfo {
         AbstractLaneGroup gplg;
         AbstractLaneGroup hotlg;
@@ -194,6 +237,10 @@ public class ControllerTollLaneGroup extends AbstractController {
             }
         }
 
+        public boolean has_toll_selectors(){
+            return toll_ls!=null && toll_ls.entrySet().stream().anyMatch(e->gplg.lane_selector.get(e.getKey())==e.getValue());
+        }
+
         public void update(){
             double count = fa.get_total_count();
             double flow_vpdt = count-prev_count;
@@ -0,0 +1,219 @@
+package control.external;
+
+import actuator.AbstractActuator;
+import actuator.ActuatorSignal;
+import actuator.SignalPhase;
+import common.Scenario;
+import control.AbstractController;
+import control.command.CommandNumber;
+import control.command.CommandSignal;
+import dispatch.Dispatcher;
+import error.OTMErrorLog;
+import error.OTMException;
+import jaxb.Controller;
+import sensor.AbstractSensor;
+import sensor.FixedSensor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Controller whose commands are computed by an agent outside of OTM, e.g. in another process.
+ * At every dt the flows and vehicles measured by the feedback sensors are written to a
+ * memory-mapped file, the controller waits for the agent to write its commands to the same
+ * file, and reads them back. See SharedMemoryChannel for the layout and ExternalAgent for
+ * the agent side.
+ *
+ * Parameters:
+ *      file            Path of the shared file. A temporary file is used if omitted.
+ *                      The file is written when the controller is initialized, at its start time.
+ *      timeout_sec     Longest wait for the agent at each step. Default 10.
+ *
+ * Sensors must be fixed sensors. Actuators must be meters, which receive a rate in vps,
+ * or signals, which receive a bulb color per phase.
+ */
+public class ControllerExternal extends AbstractController {
+
+    public String file;
+    public float timeout_sec = 10f;
+
+    private SharedMemoryChannel channel;
+    private long seq;
+    private FixedSensor [] sensor_list;
+    private AbstractActuator [] actuator_list;
+    private long [][] phase_ids;            // per actuator, null for meters
+
+    private long num_round_trips;
+    private long total_round_trip_ns;
+
+    ///////////////////////////////////////////////////
+    // construction
+    ///////////////////////////////////////////////////
+
+    public ControllerExternal(Scenario scenario, Controller jaxb_controller) throws OTMException {
+        super(scenario, jaxb_controller);
+
+        if(jaxb_controller.getParameters()!=null)
+            for(jaxb.Parameter p : jaxb_controller.getParameters().getParameter()){
+                switch(p.getName()){
+                    case "file":
+                        file = p.getValue();
+                        break;
+                    case "timeout_sec":
+                        timeout_sec = Float.parseFloat(p.getValue());
+                        break;
+                }
+            }
+
+        // known before the controller is initialized, so that the agent can wait for it
+        if(file==null){
+            try {
+                File f = File.createTempFile(String.format("otm_controller%d_",id),".bin");
+                f.deleteOnExit();
+                file = f.getAbsolutePath();
+            } catch (IOException e) {
+                throw new OTMException(e);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////
+    // InterfaceScenarioElement
+    ///////////////////////////////////////////////////
+
+    @Override
+    public void validate(OTMErrorLog errorLog) {
+        super.validate(errorLog);
+        if(dt<=0)
+            errorLog.addError("External controller " + id + " needs a positive dt.");
+        if(timeout_sec<=0)
+            errorLog.addError("External controller " + id + " needs a positive timeout_sec.");
+        for(AbstractSensor sensor : sensors)
+            if(!(sensor instanceof FixedSensor))
+                errorLog.addError("External controller " + id + " only supports fixed sensors.");
+        for(AbstractActuator act : actuators.values())
+            if(act.getType()!=AbstractActuator.Type.meter && act.getType()!=AbstractActuator.Type.signal)
+                errorLog.addError("External controller " + id + " only supports meter and signal actuators.");
+    }
+
+    @Override
+    public void initialize(Scenario scenario) throws OTMException {
+        super.initialize(scenario);
+
+        // the layout is written once and kept when the scenario is initialized again
+        if(channel!=null)
+            return;
+
+        sensor_list = sensors.stream()
+                .map(s -> (FixedSensor) s)
+                .sorted(Comparator.comparing(s -> s.id))
+                .toArray(FixedSensor[]::new);
+        actuator_list = actuators.values().stream()
+                .sorted(Comparator.comparing(a -> a.id))
+                .toArray(AbstractActuator[]::new);
+
+        phase_ids = new long[actuator_list.length][];
+        int num_slots = 0;
+        for(int i=0;i<actuator_list.length;i++){
+            if(actuator_list[i] instanceof ActuatorSignal){
+                phase_ids[i] = ((ActuatorSignal) actuator_list[i]).signal_phases.keySet().stream()
+                        .mapToLong(x->x).sorted().toArray();
+                num_slots += phase_ids[i].length;
+            } else
+                num_slots += 1;
+        }
+
+        channel = SharedMemoryChannel.create(file,sensor_list.length,actuator_list.length,num_slots);
+
+        for(int i=0;i<sensor_list.length;i++)
+            channel.buffer.putLong(channel.off_sensors + i*SharedMemoryChannel.SENSOR_BYTES,sensor_list[i].id);
+
+        int slot = 0;
+        for(int i=0;i<actuator_list.length;i++){
+            int pos = channel.off_actuators + i*SharedMemoryChannel.ACTUATOR_BYTES;
+            boolean is_signal = phase_ids[i]!=null;
+            int n = is_signal ? phase_ids[i].length : 1;
+            channel.buffer.putLong(pos,actuator_list[i].id);
+            channel.buffer.putInt(pos+8,is_signal ? SharedMemoryChannel.KIND_SIGNAL : SharedMemoryChannel.KIND_NUMBER);
+            channel.buffer.putInt(pos+12,n);
+            for(int k=0;k<n;k++){
+                int spos = channel.off_slots + (slot+k)*SharedMemoryChannel.SLOT_BYTES;
+                channel.buffer.putLong(spos,is_signal ? phase_ids[i][k] : 0L);
+                channel.buffer.putDouble(spos+8,Double.NaN);
+            }
+            slot += n;
+        }
+
+        channel.publish_layout();
+    }
+
+    ///////////////////////////////////////////////////
+    // AbstractController
+    ///////////////////////////////////////////////////
+
+    @Override
+    public void update_command(Dispatcher dispatcher) throws OTMException {
+
+        // observations
+        channel.buffer.putDouble(SharedMemoryChannel.OFF_TIME,dispatcher.current_time);
+        for(int i=0;i<sensor_list.length;i++){
+            int pos = channel.off_sensors + i*SharedMemoryChannel.SENSOR_BYTES;
+            channel.buffer.putDouble(pos+8,sensor_list[i].get_flow_vph());
+            channel.buffer.putDouble(pos+16,sensor_list[i].get_vehicles());
+        }
+
+        // hand over to the agent and wait for its commands
+        long start = System.nanoTime();
+        channel.set_sim_seq(++seq);
+        if(!channel.await(SharedMemoryChannel.OFF_AGENT_SEQ,seq,timeout_sec))
+            throw new OTMException("External controller " + id + " was closed.");
+        total_round_trip_ns += System.nanoTime() - start;
+        num_round_trips++;
+
+        // commands
+        int slot = 0;
+        for(int i=0;i<actuator_list.length;i++){
+            AbstractActuator act = actuator_list[i];
+            int spos = channel.off_slots + slot*SharedMemoryChannel.SLOT_BYTES;
+            if(phase_ids[i]==null){
+                double value = channel.buffer.getDouble(spos+8);
+                command.put(act.id,Double.isNaN(value) ? null : new CommandNumber((float) value));
+                slot += 1;
+            } else {
+                SignalPhase.BulbColor [] colors = SignalPhase.BulbColor.values();
+                Map<Long,SignalPhase.BulbColor> value = new HashMap<>();
+                for(int k=0;k<phase_ids[i].length;k++){
+                    double x = channel.buffer.getDouble(spos + k*SharedMemoryChannel.SLOT_BYTES + 8);
+                    if(!Double.isNaN(x) && x>=0 && x<colors.length)
+                        value.put(phase_ids[i][k],colors[(int) x]);
+                }
+                command.put(act.id,new CommandSignal(value));
+                slot += phase_ids[i].length;
+            }
+        }
+    }
+
+    @Override
+    public void terminate() {
+        if(channel==null)
+            return;
+        channel.set_closed();
+        channel.close();
+        channel = null;
+    }
+
+    ///////////////////////////////////////////////////
+    // get
+    ///////////////////////////////////////////////////
+
+    public long get_num_round_trips(){
+        return num_round_trips;
+    }
+
+    // mean time from publishing the observations to receiving the commands
+    public double get_mean_round_trip_us(){
+        return num_round_trips==0 ? Double.NaN : total_round_trip_ns / 1000d / num_round_trips;
+    }
+
+}
@@ -0,0 +1,187 @@
+package control.external;
+
+import actuator.SignalPhase;
+import error.OTMException;
+
+/**
+ * Agent side of an external controller. It maps the file of a ControllerExternal, waits for
+ * each observation, and writes back the commands. It can run in its own thread as a local
+ * stand-in for an agent in another process, and documents the protocol that such an agent
+ * follows (see SharedMemoryChannel):
+ *
+ *      ExternalAgent agent = ExternalAgent.connect(file,10f);
+ *      while(agent.await_observation(10f)){
+ *          ... read get_flow_vph(i), get_vehicles(i), set_rate_vps(j,x) ...
+ *          agent.send();
+ *      }
+ *
+ * Reads and writes of values do not allocate.
+ */
+public class ExternalAgent {
+
+    public interface Policy {
+        void act(ExternalAgent agent) throws OTMException;
+    }
+
+    private final SharedMemoryChannel channel;
+    private final long [] sensor_ids;
+    private final long [] actuator_ids;
+    private final int [] first_slot;
+    private final int [] num_slots;
+    private final boolean [] is_signal;
+    private long seq;
+
+    ///////////////////////////////////////////////////
+    // construction
+    ///////////////////////////////////////////////////
+
+    /**
+     * Map the file of an external controller.
+     * @param file Shared file, see ControllerExternal.file.
+     * @param timeout_sec Longest wait for the simulator to create the file.
+     * @return Agent
+     * @throws OTMException On timeout or if the file cannot be mapped.
+     */
+    public static ExternalAgent connect(String file,float timeout_sec) throws OTMException {
+        return new ExternalAgent(SharedMemoryChannel.open(file,timeout_sec));
+    }
+
+    private ExternalAgent(SharedMemoryChannel channel){
+        this.channel = channel;
+
+        sensor_ids = new long[channel.num_sensors];
+        for(int i=0;i<sensor_ids.length;i++)
+            sensor_ids[i] = channel.buffer.getLong(channel.off_sensors + i*SharedMemoryChannel.SENSOR_BYTES);
+
+        actuator_ids = new long[channel.num_actuators];
+        first_slot = new int[channel.num_actuators];
+        num_slots = new int[channel.num_actuators];
+        is_signal = new boolean[channel.num_actuators];
+        int slot = 0;
+        for(int i=0;i<actuator_ids.length;i++){
+            int pos = channel.off_actuators + i*SharedMemoryChannel.ACTUATOR_BYTES;
+            actuator_ids[i] = channel.buffer.getLong(pos);
+            is_signal[i] = channel.buffer.getInt(pos+8)==SharedMemoryChannel.KIND_SIGNAL;
+            num_slots[i] = channel.buffer.getInt(pos+12);
+            first_slot[i] = slot;
+            slot += num_slots[i];
+        }
+
+        // pick up from the last step the controller has completed
+        seq = channel.get_agent_seq();
+    }
+
+    ///////////////////////////////////////////////////
+    // protocol
+    ///////////////////////////////////////////////////
+
+    /**
+     * Wait for the next observation.
+     * @param timeout_sec Longest wait once spinning has given up.
+     * @return False if the simulation has terminated.
+     * @throws OTMException On timeout.
+     */
+    public boolean await_observation(float timeout_sec) throws OTMException {
+        if(!channel.await(SharedMemoryChannel.OFF_SIM_SEQ,seq+1,timeout_sec))
+            return false;
+        seq = channel.get_sim_seq();
+        return true;
+    }
+
+    // publish the commands for the current observation
+    public void send(){
+        channel.set_agent_seq(seq);
+    }
+
+    /**
+     * Answer every observation with the policy until the simulation terminates.
+     * @param policy Sets the commands from the observations.
+     * @param timeout_sec Longest wait for each observation.
+     * @throws OTMException On timeout or an error in the policy.
+     */
+    public void run(Policy policy,float timeout_sec) throws OTMException {
+        try {
+            while(await_observation(timeout_sec)){
+                policy.act(this);
+                send();
+            }
+        } finally {
+            close();
+        }
+    }
+
+    public void close(){
+        channel.close();
+    }
+
+    ///////////////////////////////////////////////////
+    // observations
+    ///////////////////////////////////////////////////
+
+    public double get_time(){
+        return channel.buffer.getDouble(SharedMemoryChannel.OFF_TIME);
+    }
+
+    public int get_num_sensors(){
+        return sensor_ids.length;
+    }
+
+    public long get_sensor_id(int i){
+        return sensor_ids[i];
+    }
+
+    public double get_flow_vph(int i){
+        return channel.buffer.getDouble(channel.off_sensors + i*SharedMemoryChannel.SENSOR_BYTES + 8);
+    }
+
+    public double get_vehicles(int i){
+        return channel.buffer.getDouble(channel.off_sensors + i*SharedMemoryChannel.SENSOR_BYTES + 16);
+    }
+
+    ///////////////////////////////////////////////////
+    // commands
+    ///////////////////////////////////////////////////
+
+    public int get_num_actuators(){
+        return actuator_ids.length;
+    }
+
+    public long get_actuator_id(int i){
+        return actuator_ids[i];
+    }
+
+    public boolean is_signal(int i){
+        return is_signal[i];
+    }
+
+    // phase ids of a signal actuator, in the order of its command slots
+    public long [] get_phase_ids(int i){
+        long [] x = new long[num_slots[i]];
+        for(int k=0;k<x.length;k++)
+            x[k] = channel.buffer.getLong(slot_position(i,k));
+        return x;
+    }
+
+    // rate in vps for a meter, NaN for no command
+    public void set_rate_vps(int i,double rate_vps) throws OTMException {
+        if(is_signal[i])
+            throw new OTMException("Actuator " + actuator_ids[i] + " is a signal.");
+        channel.buffer.putDouble(slot_position(i,0)+8,rate_vps);
+    }
+
+    // color of the k-th phase of a signal, in the order of get_phase_ids
+    public void set_bulb_color(int i,int k,SignalPhase.BulbColor color) throws OTMException {
+        if(!is_signal[i])
+            throw new OTMException("Actuator " + actuator_ids[i] + " is not a signal.");
+        channel.buffer.putDouble(slot_position(i,k)+8,color.ordinal());
+    }
+
+    ///////////////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////////////
+
+    private int slot_position(int i,int k){
+        return channel.off_slots + (first_slot[i]+k)*SharedMemoryChannel.SLOT_BYTES;
+    }
+
+}
@@ -0,0 +1,209 @@
+package control.external;
+
+import error.OTMException;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Memory-mapped file shared by an external controller and its agent. All values are
+ * little-endian and 8-byte aligned, so that agents in other languages can map the same file.
+ *
+ * header (64 bytes)
+ *      0   int     magic, written last by the simulator once the layout is complete
+ *      4   int     version
+ *      8   int     number of sensors
+ *      12  int     number of actuators
+ *      16  int     number of command slots
+ *      20  int     closed flag, 1 once the simulation has terminated
+ *      24  long    simulator sequence, incremented after each observation is written
+ *      32  long    agent sequence, set to the simulator sequence after the commands are written
+ *      40  double  simulation time of the observation
+ * sensors, 24 bytes each, sorted by id
+ *      long id, double flow [vph], double vehicles
+ * actuators, 16 bytes each, sorted by id
+ *      long id, int kind (0 number, 1 signal), int number of command slots
+ * command slots, 16 bytes each, in the order of the actuators
+ *      long key, double value
+ *      number: key 0, value is the rate in vps, NaN for no command
+ *      signal: key is the phase id, value is the ordinal of the bulb color
+ *
+ * The two sequence counters are the handshake. Each side writes its data and then
+ * publishes its counter with a release store, and the other side polls the counter with
+ * acquire loads. The poll spins for a while before it starts parking, so that a
+ * round trip between two busy processes takes microseconds.
+ */
+class SharedMemoryChannel {
+
+    static final int MAGIC = 0x4f544d58;        // "OTMX"
+    static final int VERSION = 1;
+
+    static final int KIND_NUMBER = 0;
+    static final int KIND_SIGNAL = 1;
+
+    static final int HEADER_BYTES = 64;
+    static final int SENSOR_BYTES = 24;
+    static final int ACTUATOR_BYTES = 16;
+    static final int SLOT_BYTES = 16;
+
+    static final int OFF_MAGIC = 0;
+    static final int OFF_VERSION = 4;
+    static final int OFF_NUM_SENSORS = 8;
+    static final int OFF_NUM_ACTUATORS = 12;
+    static final int OFF_NUM_SLOTS = 16;
+    static final int OFF_CLOSED = 20;
+    static final int OFF_SIM_SEQ = 24;
+    static final int OFF_AGENT_SEQ = 32;
+    static final int OFF_TIME = 40;
+
+    private static final int SPINS = 20000;
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class,ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class,ByteOrder.LITTLE_ENDIAN);
+
+    final String file;
+    final MappedByteBuffer buffer;
+    private final RandomAccessFile raf;
+
+    final int num_sensors;
+    final int num_actuators;
+    final int num_slots;
+    final int off_sensors;
+    final int off_actuators;
+    final int off_slots;
+
+    ///////////////////////////////////////////////////
+    // construction
+    ///////////////////////////////////////////////////
+
+    // simulator side: create the file with the given layout
+    static SharedMemoryChannel create(String file,int num_sensors,int num_actuators,int num_slots) throws OTMException {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file,"rw");
+            long size = size(num_sensors,num_actuators,num_slots);
+            raf.setLength(0);
+            raf.setLength(size);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE,0,size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(OFF_VERSION,VERSION);
+            buffer.putInt(OFF_NUM_SENSORS,num_sensors);
+            buffer.putInt(OFF_NUM_ACTUATORS,num_actuators);
+            buffer.putInt(OFF_NUM_SLOTS,num_slots);
+            return new SharedMemoryChannel(file,raf,buffer);
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    // agent side: map an existing file, waiting until the simulator has written its layout
+    static SharedMemoryChannel open(String file,float timeout_sec) throws OTMException {
+        long deadline = System.nanoTime() + (long) (timeout_sec*1e9);
+        try {
+            while(true){
+                java.io.File f = new java.io.File(file);
+                if(f.exists() && f.length()>=HEADER_BYTES){
+                    RandomAccessFile raf = new RandomAccessFile(file,"rw");
+                    MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE,0,raf.length());
+                    buffer.order(ByteOrder.LITTLE_ENDIAN);
+                    if((int) INT.getAcquire(buffer,OFF_MAGIC)==MAGIC){
+                        if(buffer.getInt(OFF_VERSION)!=VERSION)
+                            throw new OTMException("Unsupported version of external controller file: " + buffer.getInt(OFF_VERSION));
+                        return new SharedMemoryChannel(file,raf,buffer);
+                    }
+                    raf.close();
+                }
+                if(System.nanoTime()>deadline)
+                    throw new OTMException("Timed out waiting for external controller file " + file);
+                LockSupport.parkNanos(1000000L);
+            }
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    private SharedMemoryChannel(String file,RandomAccessFile raf,MappedByteBuffer buffer){
+        this.file = file;
+        this.raf = raf;
+        this.buffer = buffer;
+        this.num_sensors = buffer.getInt(OFF_NUM_SENSORS);
+        this.num_actuators = buffer.getInt(OFF_NUM_ACTUATORS);
+        this.num_slots = buffer.getInt(OFF_NUM_SLOTS);
+        this.off_sensors = HEADER_BYTES;
+        this.off_actuators = off_sensors + num_sensors*SENSOR_BYTES;
+        this.off_slots = off_actuators + num_actuators*ACTUATOR_BYTES;
+    }
+
+    static long size(int num_sensors,int num_actuators,int num_slots){
+        return HEADER_BYTES + (long) num_sensors*SENSOR_BYTES + (long) num_actuators*ACTUATOR_BYTES + (long) num_slots*SLOT_BYTES;
+    }
+
+    void close() {
+        try {
+            raf.close();
+        } catch (IOException e) {
+            // the mapping stays valid until it is garbage collected
+        }
+    }
+
+    ///////////////////////////////////////////////////
+    // handshake
+    ///////////////////////////////////////////////////
+
+    void publish_layout(){
+        INT.setRelease(buffer,OFF_MAGIC,MAGIC);
+    }
+
+    void set_closed(){
+        INT.setRelease(buffer,OFF_CLOSED,1);
+    }
+
+    boolean is_closed(){
+        return (int) INT.getAcquire(buffer,OFF_CLOSED)==1;
+    }
+
+    long get_sim_seq(){
+        return (long) LONG.getAcquire(buffer,OFF_SIM_SEQ);
+    }
+
+    void set_sim_seq(long seq){
+        LONG.setRelease(buffer,OFF_SIM_SEQ,seq);
+    }
+
+    long get_agent_seq(){
+        return (long) LONG.getAcquire(buffer,OFF_AGENT_SEQ);
+    }
+
+    void set_agent_seq(long seq){
+        LONG.setRelease(buffer,OFF_AGENT_SEQ,seq);
+    }
+
+    /**
+     * Wait until the counter at offset reaches at least the target, or the channel is closed.
+     * @return False if the channel was closed first.
+     * @throws OTMException On timeout.
+     */
+    boolean await(int offset,long target,float timeout_sec) throws OTMException {
+        long deadline = 0L;
+        for(int i=0;;i++){
+            if((long) LONG.getAcquire(buffer,offset)>=target)
+                return true;
+            if(is_closed())
+                return false;
+            if(i<SPINS){
+                Thread.onSpinWait();
+                continue;
+            }
+            if(deadline==0L)
+                deadline = System.nanoTime() + (long) (timeout_sec*1e9);
+            else if(System.nanoTime()>deadline)
+                throw new OTMException("Timed out waiting on external controller file " + file);
+            LockSupport.parkNanos(10000L);
+        }
+    }
+
+}
@@ -2,6 +2,8 @@ package control.sigint;
 
 import actuator.ActuatorSignal;
 import actuator.SignalPhase;
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import control.AbstractController;
 import control.command.CommandSignal;
 import dispatch.Dispatcher;
@@ -12,6 +14,7 @@ import jaxb.Controller;
 import common.Scenario;
 import utils.OTMUtils;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -117,6 +120,22 @@ public class ControllerSignalPretimed extends AbstractController {
 
     }
 
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        super.write_checkpoint(out);
+        out.writeInt(curr_stage_index);
+    }
+
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        super.read_checkpoint(in);
+        curr_stage_index = in.readInt();
+    }
+
     ///////////////////////////////////////////////////
     // get
     ///////////////////////////////////////////////////
@@ -12,6 +12,7 @@ import error.OTMException;
 //    30 	AbstractActuator.poke
 //    35    EventInitializeController -- calls AbstractController.initialize
 //    40	dispatch.EventCreateVehicle
+//    any   models.vehicle.spatialq.EventExchangeVehicles -- ahead of the next event that may send a vehicle to another process
 //    44 	models.vehicle.spatialq.EventTransitToWaiting
 //    45	models.vehicle.spatialq.EventReleaseVehicleFromLaneGroup
 //    50	models.fluid.EventFluidModelUpdate
@@ -29,6 +30,7 @@ public abstract class AbstractEvent implements InterfaceEvent, Comparable<Abstra
     public float timestamp;
     public Object recipient;
     public int dispatch_order;
+    public long seq;                // set by the dispatcher, breaks remaining ties in registration order
 
     public AbstractEvent(Dispatcher dispatcher,int dispatch_order, float timestamp, Object recipient){
         this.dispatcher = dispatcher;
@@ -37,6 +39,12 @@ public abstract class AbstractEvent implements InterfaceEvent, Comparable<Abstra
         this.recipient = recipient;
     }
 
+    // breaks ties between events of equal time and dispatch order, before the registration order.
+    // Events whose order must not depend on when they were registered override it.
+    public long get_tie_key(){
+        return 0L;
+    }
+
     ///////////////////////////////////////
     // toString
     ///////////////////////////////////////
@@ -56,6 +64,9 @@ public abstract class AbstractEvent implements InterfaceEvent, Comparable<Abstra
             return -1;
         if(that.dispatch_order<this.dispatch_order)
             return 1;
-        return 0;
+        int c = Long.compare(this.get_tie_key(),that.get_tie_key());
+        if(c!=0)
+            return c;
+        return Long.compare(this.seq,that.seq);
     }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package dispatch;
 
 import error.OTMException;
 import common.Scenario;
+import metrics.Metrics;
+import metrics.jfr.DispatchEvent;
 
 import java.util.*;
 
@@ -14,7 +16,9 @@ public  class Dispatcher {
     public float stop_time;
     public PriorityQueue<AbstractEvent> events;
     private boolean continue_simulation;
+    private long num_registered;        // events registered so far, used to order ties
     public boolean verbose = false;
+    public Metrics metrics = new Metrics();     // the scenario's, once attached
 
     ///////////////////////////////////////////////////
     // construction
@@ -31,11 +35,13 @@ public  class Dispatcher {
 
     public void set_scenario(Scenario scenario){
         this.scenario = scenario;
+        this.metrics = scenario.metrics;
     }
 
     public void initialize() throws OTMException {
         this.current_time = 0f;
         this.events.clear();
+        this.num_registered = 0;
         this.continue_simulation = true;
     }
 
@@ -43,6 +49,15 @@ public  class Dispatcher {
         this.continue_simulation = x;
     }
 
+    // used by checkpoints to restore the order of events with equal time and dispatch order
+    public long get_num_registered(){
+        return num_registered;
+    }
+
+    public void set_num_registered(long x){
+        this.num_registered = x;
+    }
+
     ///////////////////////////////////////////////////
     // update
     ///////////////////////////////////////////////////
@@ -68,17 +83,31 @@ public  class Dispatcher {
     public void register_event(AbstractEvent event){
         if(event.timestamp<current_time) // || event.timestamp>end_time)
             return;
+        event.seq = num_registered++;
         events.offer(event);
     }
 
     public void dispatch_events_to_stop() throws OTMException {
-        while( !events.isEmpty() && continue_simulation ) {
-            AbstractEvent event = events.poll();
-            current_time = event.timestamp;
-            event.action();
+        metrics.start_advance(current_time);
+        try {
+            while( !events.isEmpty() && continue_simulation )
+                dispatch_next_event();
+        } finally {
+            metrics.end_advance(current_time,events.size());
         }
     }
 
+    // dispatch the first pending event
+    public void dispatch_next_event() throws OTMException {
+        AbstractEvent event = events.poll();
+        current_time = event.timestamp;
+        metrics.count_event(event.getClass(),events.size());
+        DispatchEvent jfr = new DispatchEvent();
+        jfr.begin();
+        event.action();
+        jfr.commit(event);
+    }
+
     public void stop(){
         continue_simulation = false;
     }
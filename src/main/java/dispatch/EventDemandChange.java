@@ -19,4 +19,8 @@ public class EventDemandChange extends AbstractEvent {
         demand_gen.register_next_change(dispatcher,timestamp);
     }
 
+    public double get_demand_vps(){
+        return demand_vps;
+    }
+
 }
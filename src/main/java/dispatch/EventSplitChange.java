@@ -23,4 +23,8 @@ public class EventSplitChange extends AbstractEvent {
         smp.register_next_change(dispatcher,time_map);
     }
 
+    public Map<Long,Double> get_outlink2value(){
+        return outlink2value;
+    }
+
 }
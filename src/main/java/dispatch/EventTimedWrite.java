@@ -12,7 +12,9 @@ public class EventTimedWrite extends AbstractEvent {
     @Override
     public void action() throws OTMException {
         AbstractOutputTimed obj = (AbstractOutputTimed)recipient;
+        long start = System.nanoTime();
         obj.write(timestamp);
+        dispatcher.metrics.add_output_time(start);
         dispatcher.register_event(new EventTimedWrite(dispatcher,timestamp + obj.outDt,recipient));
     }
 }
@@ -0,0 +1,76 @@
+package distributed;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport between partitions that run on threads of the same process, for tests and for
+ * comparing a partitioned run with a single one on one machine.
+ */
+public class LocalTransport implements Transport {
+
+    public static int timeout_ms = 60000;       // time to wait for a message before failing
+
+    private final int rank;
+    private final List<List<BlockingQueue<byte[]>>> queues;      // from -> to -> messages
+
+    /**
+     * Connected transports, one for each process.
+     * @param size Number of processes.
+     * @return Transport of process i at position i.
+     */
+    public static LocalTransport [] create(int size){
+        List<List<BlockingQueue<byte[]>>> queues = new ArrayList<>();
+        for(int i=0;i<size;i++){
+            List<BlockingQueue<byte[]>> from = new ArrayList<>();
+            for(int j=0;j<size;j++)
+                from.add(new LinkedBlockingQueue<>());
+            queues.add(from);
+        }
+        LocalTransport [] x = new LocalTransport[size];
+        for(int i=0;i<size;i++)
+            x[i] = new LocalTransport(i,queues);
+        return x;
+    }
+
+    private LocalTransport(int rank,List<List<BlockingQueue<byte[]>>> queues){
+        this.rank = rank;
+        this.queues = queues;
+    }
+
+    @Override
+    public int rank() {
+        return rank;
+    }
+
+    @Override
+    public int size() {
+        return queues.size();
+    }
+
+    @Override
+    public void send(int to, byte[] message) {
+        queues.get(rank).get(to).add(message);
+    }
+
+    @Override
+    public byte[] receive(int from) throws IOException {
+        try {
+            byte [] x = queues.get(from).get(rank).poll(timeout_ms, TimeUnit.MILLISECONDS);
+            if(x==null)
+                throw new IOException(String.format("Process %d timed out waiting for process %d.",rank,from));
+            return x;
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
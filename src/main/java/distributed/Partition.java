@@ -0,0 +1,196 @@
+package distributed;
+
+import actuator.AbstractActuator;
+import actuator.InterfaceActuatorTarget;
+import common.AbstractLaneGroup;
+import common.LaneGroupSet;
+import common.Link;
+import common.Node;
+import common.RoadConnection;
+import common.Scenario;
+import control.AbstractController;
+import error.OTMException;
+import models.AbstractModel;
+import models.fluid.AbstractFluidModel;
+import models.vehicle.spatialq.ModelSpatialQ;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Assignment of the links of a scenario to the processes of a partitioned simulation. Every
+ * process loads the whole scenario and runs its own dispatcher, but computes the state of its
+ * own links only. The node model of a node is computed by the process that owns its in-link
+ * with the lowest id. Fluid models exchange lane group demands and supplies, and node model
+ * flows, across the boundary at every time step (see models.fluid.FluidBoundary), so the
+ * state of every link is the same as in a single-process run. Spatial queue models run their
+ * vehicle events as a conservative parallel discrete event simulation: the processes run their
+ * events up to the next release of a vehicle into a link of another process, which is made with
+ * the current supply of that link (see models.vehicle.spatialq.MesoBoundary). Their results are
+ * also the same as those of a single-process run.
+ *
+ * Fluid and spatial queue models are supported, and a road connection between two processes
+ * must join links of the same model. The Newell model moves every vehicle at every time step
+ * by the position of its leader, which may be in the next link, so it cannot be partitioned.
+ * Controllers run only in the processes whose links they act on. Sensors measure correctly
+ * only in the process that owns their link, so controllers that read sensors are not supported.
+ */
+public class Partition {
+
+    public final Scenario scenario;
+    public final Transport transport;
+    public final int rank;
+    private final Map<Long,Integer> link2rank;
+
+    public Partition(Scenario scenario,Transport transport,Map<Long,Integer> link2rank) throws OTMException {
+        this.scenario = scenario;
+        this.transport = transport;
+        this.rank = transport.rank();
+        this.link2rank = link2rank;
+
+        for(AbstractModel model : scenario.network.models.values())
+            if(!(model instanceof AbstractFluidModel) && !(model instanceof ModelSpatialQ))
+                throw new OTMException(String.format("Partitioned simulation supports fluid and spatial queue models only. Model %s is neither.",model.name));
+
+        for(AbstractController controller : scenario.controllers.values())
+            if(controller.sensors!=null && !controller.sensors.isEmpty())
+                throw new OTMException(String.format("Partitioned simulation does not support feedback control. Controller %d reads sensors.",controller.getId()));
+
+        for(Link link : scenario.network.links.values()){
+            Integer r = link2rank.get(link.getId());
+            if(r==null)
+                throw new OTMException(String.format("Link %d is not assigned to a process.",link.getId()));
+            if(r<0 || r>=transport.size())
+                throw new OTMException(String.format("Link %d is assigned to process %d, but there are %d processes.",link.getId(),r,transport.size()));
+        }
+
+        for(RoadConnection rc : scenario.network.get_road_connections())
+            if(rc.start_link!=null && rc.end_link!=null && rc.start_link.model!=rc.end_link.model && rank_of(rc.start_link)!=rank_of(rc.end_link))
+                throw new OTMException(String.format("Road connection %d joins links of different models in different processes.",rc.getId()));
+
+        // stochastic models draw the same random numbers in every process if they share the seed of process 0
+        try {
+            if(rank==0) {
+                byte [] seed = ByteBuffer.allocate(Long.BYTES).putLong(scenario.context.get_random_seed()).array();
+                for(int r=1;r<transport.size();r++)
+                    transport.send(r,seed);
+            }
+            else
+                scenario.context.set_random_seed(ByteBuffer.wrap(transport.receive(0)).getLong());
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    ////////////////////////////////////////////
+    // get
+    ////////////////////////////////////////////
+
+    public int rank_of(Link link){
+        return link2rank.get(link.getId());
+    }
+
+    public boolean owns(Link link){
+        return link2rank.get(link.getId())==rank;
+    }
+
+    // process that runs the node model of this node
+    public int rank_of(Node node){
+        long id = node.in_links.isEmpty() ?
+                node.out_links.stream().mapToLong(Link::getId).min().getAsLong() :
+                Collections.min(node.in_links.keySet());
+        return link2rank.get(id);
+    }
+
+    public boolean owns(Node node){
+        return rank_of(node)==rank;
+    }
+
+    /**
+     * Called at the start of every advance, at the same simulated time in every process. Spatial
+     * queue models agree on the next event at which a vehicle may cross between processes.
+     * @param timestamp Start time of the advance.
+     * @throws OTMException If the exchange fails.
+     */
+    public void start_advance(float timestamp) throws OTMException {
+        for(AbstractModel model : scenario.network.models.values())
+            if(model instanceof ModelSpatialQ && ((ModelSpatialQ) model).get_boundary()!=null)
+                ((ModelSpatialQ) model).get_boundary().start_advance(timestamp);
+    }
+
+    /**
+     * Whether a controller runs in this process: it does if one of its actuators acts on a link
+     * of this process, or on a node with a link of this process. Controllers without actuators,
+     * or with actuators of other targets, run in every process.
+     */
+    public boolean runs(AbstractController controller){
+        if(controller.actuators==null || controller.actuators.isEmpty())
+            return true;
+        for(AbstractActuator actuator : controller.actuators.values()){
+            InterfaceActuatorTarget target = actuator.target;
+            if(target instanceof AbstractLaneGroup){
+                if(owns(((AbstractLaneGroup) target).link))
+                    return true;
+            }
+            else if(target instanceof LaneGroupSet){
+                for(AbstractLaneGroup lg : ((LaneGroupSet) target).lgs)
+                    if(owns(lg.link))
+                        return true;
+            }
+            else if(target instanceof Node){
+                Node node = (Node) target;
+                if(node.in_links.values().stream().anyMatch(this::owns) || node.out_links.stream().anyMatch(this::owns))
+                    return true;
+            }
+            else
+                return true;
+        }
+        return false;
+    }
+
+    ////////////////////////////////////////////
+    // assignments
+    ////////////////////////////////////////////
+
+    /**
+     * Assign links to processes in blocks of consecutive ids, of about the same size.
+     * @param link_ids Ids of all links.
+     * @param num_processes Number of processes.
+     * @return link id -> process
+     */
+    public static Map<Long,Integer> blocks(Collection<Long> link_ids,int num_processes){
+        List<Long> ids = new ArrayList<>(link_ids);
+        Collections.sort(ids);
+        Map<Long,Integer> x = new HashMap<>();
+        for(int i=0;i<ids.size();i++)
+            x.put(ids.get(i),(int) ((long) i*num_processes/ids.size()));
+        return x;
+    }
+
+    /**
+     * Read an assignment from a text file with one line per link: "link_id process".
+     * @param file Name of the file.
+     * @return link id -> process
+     * @throws OTMException If the file cannot be read.
+     */
+    public static Map<Long,Integer> read(String file) throws OTMException {
+        Map<Long,Integer> x = new HashMap<>();
+        try(BufferedReader reader = new BufferedReader(new FileReader(file))){
+            String line;
+            while((line=reader.readLine())!=null){
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String [] tokens = line.split("[\\s,]+");
+                x.put(Long.parseLong(tokens[0]),Integer.parseInt(tokens[1]));
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new OTMException(e);
+        }
+        return x;
+    }
+
+}
@@ -0,0 +1,199 @@
+package distributed;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Transport over TCP, one connection between each pair of processes. Process i listens on
+ * addresses[i], connects to the processes with lower numbers, and accepts connections from
+ * the processes with higher numbers. Messages are written by one thread per connection, so
+ * that send does not wait for the receiver.
+ */
+public class TcpTransport implements Transport {
+
+    public static int timeout_ms = 60000;       // time to connect, or to wait for a message
+
+    private static final byte [] CLOSE = new byte[0];
+
+    private final int rank;
+    private final Peer [] peers;
+
+    /**
+     * Connect to all processes.
+     * @param rank Number of this process.
+     * @param addresses Address of each process. This process listens on the port of its own address.
+     * @throws IOException If a process cannot be reached within the timeout.
+     */
+    public TcpTransport(int rank,List<InetSocketAddress> addresses) throws IOException {
+        this(rank,new ServerSocket(addresses.get(rank).getPort()),addresses);
+    }
+
+    /**
+     * Connect to all processes, accepting connections on a socket that is already bound.
+     * The server socket is closed once all processes are connected.
+     */
+    public TcpTransport(int rank,ServerSocket server,List<InetSocketAddress> addresses) throws IOException {
+        this.rank = rank;
+        this.peers = new Peer[addresses.size()];
+
+        try {
+            // connect to lower ranks
+            for (int i = 0; i < rank; i++) {
+                Socket socket = connect(addresses.get(i));
+                new DataOutputStream(socket.getOutputStream()).writeInt(rank);
+                peers[i] = new Peer(i, socket);
+            }
+
+            // accept higher ranks
+            server.setSoTimeout(timeout_ms);
+            for (int n = rank + 1; n < addresses.size(); n++) {
+                Socket socket = server.accept();
+                int i = new DataInputStream(socket.getInputStream()).readInt();
+                if (i <= rank || i >= addresses.size() || peers[i] != null)
+                    throw new IOException("Unexpected connection from process " + i);
+                peers[i] = new Peer(i, socket);
+            }
+        } catch (IOException e){
+            close();
+            throw e;
+        } finally {
+            server.close();
+        }
+    }
+
+    // "host:port,host:port,..."
+    public static List<InetSocketAddress> parse_addresses(String str){
+        List<InetSocketAddress> x = new ArrayList<>();
+        for(String s : str.split(",")){
+            int i = s.lastIndexOf(':');
+            x.add(new InetSocketAddress(s.substring(0,i).trim(),Integer.parseInt(s.substring(i+1).trim())));
+        }
+        return x;
+    }
+
+    ////////////////////////////////////////////
+    // Transport
+    ////////////////////////////////////////////
+
+    @Override
+    public int rank() {
+        return rank;
+    }
+
+    @Override
+    public int size() {
+        return peers.length;
+    }
+
+    @Override
+    public void send(int to, byte[] message) throws IOException {
+        Peer peer = peers[to];
+        if(peer.error!=null)
+            throw peer.error;
+        peer.outbox.add(message);
+    }
+
+    @Override
+    public byte[] receive(int from) throws IOException {
+        DataInputStream in = peers[from].in;
+        try {
+            byte [] x = new byte[in.readInt()];
+            in.readFully(x);
+            return x;
+        } catch (SocketTimeoutException e){
+            throw new IOException(String.format("Process %d timed out waiting for process %d.",rank,from),e);
+        }
+    }
+
+    @Override
+    public void close() {
+        for(Peer peer : peers)
+            if(peer!=null)
+                peer.close();
+    }
+
+    ////////////////////////////////////////////
+    // private
+    ////////////////////////////////////////////
+
+    private static Socket connect(InetSocketAddress address) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout_ms;
+        while(true){
+            try {
+                Socket socket = new Socket();
+                socket.connect(address,timeout_ms);
+                return socket;
+            } catch (IOException e){
+                // the other process may not be listening yet
+                if(System.currentTimeMillis()>deadline)
+                    throw e;
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+        }
+    }
+
+    private class Peer {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final BlockingQueue<byte[]> outbox = new LinkedBlockingQueue<>();
+        final Thread writer;
+        volatile IOException error;
+
+        Peer(int i,Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(timeout_ms);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.writer = new Thread(this::write,String.format("otm-tcp-%d-%d",rank,i));
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        private void write(){
+            try {
+                while(true){
+                    byte [] x = outbox.take();
+                    if(x==CLOSE)
+                        break;
+                    out.writeInt(x.length);
+                    out.write(x);
+                    if(outbox.isEmpty())
+                        out.flush();
+                }
+                out.flush();
+            } catch (IOException e){
+                error = e;
+            } catch (InterruptedException e){
+                error = new IOException(e);
+            }
+        }
+
+        void close(){
+            outbox.add(CLOSE);
+            try {
+                writer.join(timeout_ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package distributed;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Messages between the processes of a partitioned simulation. Processes are numbered
+ * 0..size()-1. Messages from one process to another arrive in the order in which they
+ * were sent. send does not wait for the receiver, so every process can send all of its
+ * messages for a step before receiving.
+ */
+public interface Transport extends Closeable {
+
+    /** Number of this process. */
+    int rank();
+
+    /** Number of processes. */
+    int size();
+
+    void send(int to,byte [] message) throws IOException;
+
+    /** Waits for the next message from process "from". */
+    byte [] receive(int from) throws IOException;
+
+}
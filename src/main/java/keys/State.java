@@ -4,7 +4,6 @@ import commodity.Commodity;
 import commodity.Path;
 import common.Link;
 
-import java.util.Objects;
 
 public class State implements Comparable<State> {
 
@@ -36,7 +35,10 @@ public class State implements Comparable<State> {
 
     @Override
     public int hashCode() {
-        return Objects.hash(commodity_id, pathOrlink_id, isPath);
+        // same value as Objects.hash(commodity_id, pathOrlink_id, isPath), without boxing
+        int h = 31 + Long.hashCode(commodity_id);
+        h = 31*h + Long.hashCode(pathOrlink_id);
+        return 31*h + Boolean.hashCode(isPath);
     }
 
     @Override
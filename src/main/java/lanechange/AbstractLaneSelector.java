@@ -1,5 +1,7 @@
 package lanechange;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.AbstractLaneGroup;
 import common.Scenario;
 import dispatch.Dispatcher;
@@ -10,7 +12,9 @@ import geometry.Side;
 import keys.State;
 import models.fluid.AbstractFluidModel;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -29,19 +33,7 @@ public abstract class AbstractLaneSelector implements Pokable {
         this.lg = lg;
         this.commid = commid;
         side2prob = new HashMap<>();
-
-        for(Map.Entry<State,Set<Side>> e: lg.state2lanechangedirections.entrySet()){
-            State s = e.getKey();
-            if(s.commodity_id!=commid)
-                continue;
-            Map<Side,Double> x = new HashMap<>();
-            side2prob.put(s.pathOrlink_id,x);
-            Set<Side> sides = e.getValue();
-            double v = 1d/sides.size();
-            for(Side side : sides)
-                x.put(side,v);
-        }
-
+        reset_probabilities();
 
         // dt==0 means update every time step
         // dt<0 means update only once upon initialization
@@ -51,9 +43,30 @@ public abstract class AbstractLaneSelector implements Pokable {
     }
 
     public void initialize(Scenario scenario, float start_time) throws OTMException {
+        reset_probabilities();
         poke(scenario.dispatcher,start_time);
     }
 
+    // uniform over the lane change options of each state. The maps are refilled in place when the scenario is reset.
+    private void reset_probabilities(){
+        for(Map.Entry<State,Set<Side>> e: lg.state2lanechangedirections.entrySet()){
+            State s = e.getKey();
+            if(s.commodity_id!=commid)
+                continue;
+            Map<Side,Double> x = side2prob.get(s.pathOrlink_id);
+            if(x==null){
+                x = new HashMap<>();
+                side2prob.put(s.pathOrlink_id,x);
+            }
+            else
+                x.clear();
+            Set<Side> sides = e.getValue();
+            double v = 1d/sides.size();
+            for(Side side : sides)
+                x.put(side,v);
+        }
+    }
+
     @Override
     public void poke(Dispatcher dispatcher, float timestamp) throws OTMException {
         update_lane_change_probabilities();
@@ -93,4 +106,47 @@ public abstract class AbstractLaneSelector implements Pokable {
         for(Long pathorlinkid : side2prob.keySet())
             update_lane_change_probabilities_with_options(pathorlinkid,side2prob.get(pathorlinkid).keySet());
     }
+
+    public final AbstractLaneGroup get_lanegroup(){
+        return lg;
+    }
+
+    public final long get_commodity_id(){
+        return commid;
+    }
+
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        out.writeInt(side2prob.size());
+        for(Map.Entry<Long,Map<Side,Double>> e : side2prob.entrySet()){
+            out.writeLong(e.getKey());
+            out.writeInt(e.getValue().size());
+            for(Map.Entry<Side,Double> f : e.getValue().entrySet()){
+                out.writeByte(f.getKey().ordinal());
+                out.writeDouble(f.getValue());
+            }
+        }
+    }
+
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        int n = in.readInt();
+        Map<Long,Map<Side,Double>> saved = new LinkedHashMap<>();
+        for(int i=0;i<n;i++){
+            long pathorlinkid = in.readLong();
+            Map<Side,Double> x = side2prob.containsKey(pathorlinkid) ? side2prob.get(pathorlinkid) : new HashMap<>();
+            x.clear();
+            int m = in.readInt();
+            for(int j=0;j<m;j++){
+                Side side = Side.values()[in.readByte()];
+                x.put(side,in.readDouble());
+            }
+            saved.put(pathorlinkid,x);
+        }
+        side2prob.keySet().retainAll(saved.keySet());
+        side2prob.putAll(saved);
+    }
+
 }
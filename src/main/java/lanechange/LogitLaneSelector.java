@@ -1,9 +1,12 @@
 package lanechange;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.AbstractLaneGroup;
 import geometry.Side;
 import models.fluid.FluidLaneGroup;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 
@@ -37,6 +40,12 @@ public class LogitLaneSelector extends AbstractLaneSelector {
         this.add_in = 0d;
     }
 
+    @Override
+    public void initialize(common.Scenario scenario, float start_time) throws error.OTMException {
+        add_in = 0d;
+        super.initialize(scenario,start_time);
+    }
+
     @Override
     public void update_lane_change_probabilities_with_options(Long pathorlinkid, Set<Side> lcoptions) {
 
@@ -145,4 +154,24 @@ public class LogitLaneSelector extends AbstractLaneSelector {
         this.add_in = add_in;
     }
 
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        super.write_checkpoint(out);
+        out.writeDouble(keep);
+        out.writeDouble(rho_vehperlane);
+        out.writeDouble(add_in);
+    }
+
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        super.read_checkpoint(in);
+        keep = in.readDouble();
+        rho_vehperlane = in.readDouble();
+        add_in = in.readDouble();
+    }
+
 }
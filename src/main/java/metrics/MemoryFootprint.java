@@ -0,0 +1,362 @@
+package metrics;
+
+import actuator.AbstractActuator;
+import common.AbstractDemandGenerator;
+import common.AbstractLaneGroup;
+import common.AbstractVehicle;
+import common.Link;
+import common.Node;
+import common.RoadConnection;
+import common.Scenario;
+import control.AbstractController;
+import dispatch.AbstractEvent;
+import models.AbstractModel;
+import models.fluid.AbstractCell;
+import output.AbstractOutput;
+import profiles.SplitMatrixProfile;
+import sensor.AbstractSensor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Estimate of the heap retained by a scenario, per category of object, per model and per output.
+ * The object graph is walked from the scenario and then from the jaxb configuration, and every
+ * object reached is counted once. An object belongs to the first category found on its way from
+ * the scenario: a link's maps belong to the link, but its lane groups are lane groups, their
+ * cells are cells, and so on. Profiles belong to their owner: a demand, a split, an output or an
+ * actuator. Links, lane groups, cells, vehicles, demands and splits are also attributed to the
+ * model of their link, and everything held by an output to that output.
+ *
+ * Sizes are computed from the declared fields, assuming the HotSpot object layout. The internals
+ * of JDK collections, which cannot be read by reflection, are estimated from their size. The
+ * result is an estimate, meant for sizing heaps and finding the largest structures.
+ */
+public class MemoryFootprint {
+
+    public enum Category {
+        links,
+        lane_groups,
+        cells,
+        vehicles,
+        nodes,
+        demands_and_splits,
+        events,
+        outputs,
+        control,
+        models,
+        jaxb,
+        other
+    }
+
+    private static final boolean compressed_oops = compressed_oops();
+    private static final int ref_size = compressed_oops ? 4 : 8;
+    private static final int object_header = 12;        // mark word and compressed class pointer
+    private static final int array_header = 16;
+
+    private static final Map<Class<?>,Long> shallow_sizes = new HashMap<>();
+    private static final Map<Class<?>,Field[]> reference_fields = new HashMap<>();
+
+    // category -> group (model, output or "") -> {bytes, objects}
+    private final Map<Category,Map<String,long[]>> sizes = new EnumMap<>(Category.class);
+
+    private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ArrayDeque<Root> roots = new ArrayDeque<>();
+    private final ArrayDeque<Object> stack = new ArrayDeque<>();
+    private final Map<AbstractOutput,String> output_names = new IdentityHashMap<>();
+
+    ///////////////////////////////////////////////////
+    // construction
+    ///////////////////////////////////////////////////
+
+    public MemoryFootprint(Scenario scenario,Object jaxb_scenario){
+
+        if(scenario!=null) {
+            Set<String> names = new HashSet<>();
+            for (AbstractOutput output : scenario.outputs) {
+                String name = output.type + (output.write_to_file ? " " + output.get_output_file() : "");
+                String unique = name;
+                for (int i = 2; !names.add(unique); i++)
+                    unique = name + " (" + i + ")";
+                output_names.put(output, unique);
+            }
+            add_root(scenario, Category.other, "");
+        }
+
+        // the configuration is walked last, so that it is charged only for what the scenario does not use
+        if(jaxb_scenario!=null)
+            add_root(jaxb_scenario, Category.jaxb, "");
+    }
+
+    ///////////////////////////////////////////////////
+    // get
+    ///////////////////////////////////////////////////
+
+    public long get_total_bytes(){
+        return sizes.values().stream().flatMap(x->x.values().stream()).mapToLong(x->x[0]).sum();
+    }
+
+    public long get_total_objects(){
+        return sizes.values().stream().flatMap(x->x.values().stream()).mapToLong(x->x[1]).sum();
+    }
+
+    public long get_bytes(Category category){
+        Map<String,long[]> x = sizes.get(category);
+        return x==null ? 0L : x.values().stream().mapToLong(z->z[0]).sum();
+    }
+
+    // group -> bytes, where the group is the model name, the output name, or "" if there is none
+    public Map<String,Long> get_bytes_per_group(Category category){
+        Map<String,Long> x = new TreeMap<>();
+        Map<String,long[]> z = sizes.get(category);
+        if(z!=null)
+            z.forEach((k,v)->x.put(k,v[0]));
+        return x;
+    }
+
+    ///////////////////////////////////////////////////
+    // walk
+    ///////////////////////////////////////////////////
+
+    private void add_root(Object root,Category category,String group){
+        visited.add(root);
+        roots.add(new Root(root,category,group));
+        while(!roots.isEmpty())
+            walk(roots.poll());
+    }
+
+    private void walk(Root root){
+        long [] size = sizes.computeIfAbsent(root.category,c->new HashMap<>()).computeIfAbsent(root.group,g->new long[2]);
+        stack.push(root.object);
+        while(!stack.isEmpty()){
+            Object x = stack.pop();
+            size[0] += size_of(x);
+            size[1]++;
+            for_each_reference(x,y->{
+                if(y==null || skip(y) || !visited.add(y))
+                    return;
+                Category category = category_of(y);
+                if(category==null)
+                    stack.push(y);
+                else
+                    roots.add(new Root(y,category,group_of(y)));
+            });
+        }
+    }
+
+    private static Category category_of(Object x){
+        if(x instanceof Link)
+            return Category.links;
+        if(x instanceof AbstractLaneGroup)
+            return Category.lane_groups;
+        if(x instanceof AbstractCell)
+            return Category.cells;
+        if(x instanceof AbstractVehicle)
+            return Category.vehicles;
+        if(x instanceof Node || x instanceof RoadConnection)
+            return Category.nodes;
+        if(x instanceof AbstractDemandGenerator || x instanceof SplitMatrixProfile)
+            return Category.demands_and_splits;
+        if(x instanceof AbstractEvent)
+            return Category.events;
+        if(x instanceof AbstractOutput)
+            return Category.outputs;
+        if(x instanceof AbstractController || x instanceof AbstractActuator || x instanceof AbstractSensor)
+            return Category.control;
+        if(x instanceof AbstractModel)
+            return Category.models;
+        if(x.getClass().getName().startsWith("jaxb."))
+            return Category.jaxb;
+        return null;
+    }
+
+    // model of links, lane groups, cells, vehicles, demands and splits, name of outputs
+    private String group_of(Object x){
+        Link link = null;
+        if(x instanceof AbstractOutput)
+            return output_names.getOrDefault(x,((AbstractOutput) x).type.toString());
+        if(x instanceof AbstractModel)
+            return ((AbstractModel) x).name;
+        if(x instanceof Link)
+            link = (Link) x;
+        else if(x instanceof AbstractLaneGroup)
+            link = ((AbstractLaneGroup) x).link;
+        else if(x instanceof AbstractCell)
+            link = ((AbstractCell) x).laneGroup==null ? null : ((AbstractCell) x).laneGroup.link;
+        else if(x instanceof AbstractVehicle)
+            link = ((AbstractVehicle) x).lg==null ? null : ((AbstractVehicle) x).lg.link;
+        else if(x instanceof AbstractDemandGenerator)
+            link = ((AbstractDemandGenerator) x).link;
+        else if(x instanceof SplitMatrixProfile)
+            link = ((SplitMatrixProfile) x).link_in;
+        return link==null || link.model==null ? "" : link.model.name;
+    }
+
+    private static boolean skip(Object x){
+        return x instanceof Class || x instanceof ClassLoader || x instanceof Thread || x instanceof ThreadGroup
+                || x instanceof Module || x instanceof Enum;
+    }
+
+    ///////////////////////////////////////////////////
+    // references
+    ///////////////////////////////////////////////////
+
+    private interface Visitor {
+        void visit(Object x);
+    }
+
+    private static void for_each_reference(Object x,Visitor visitor){
+        Class<?> clazz = x.getClass();
+
+        if(clazz.isArray()){
+            if(!clazz.getComponentType().isPrimitive())
+                for(Object y : (Object[]) x)
+                    visitor.visit(y);
+            return;
+        }
+
+        // our classes, jaxb and libraries: follow the fields
+        if(!clazz.getModule().isNamed()){
+            for(Field field : reference_fields(clazz)){
+                try {
+                    visitor.visit(field.get(x));
+                } catch (IllegalAccessException e) {
+                    // not readable, not followed
+                }
+            }
+            return;
+        }
+
+        // JDK classes cannot be read by reflection: follow the contents of collections
+        try {
+            if(x instanceof Map)
+                for(Map.Entry<?,?> e : ((Map<?,?>) x).entrySet()){
+                    visitor.visit(e.getKey());
+                    visitor.visit(e.getValue());
+                }
+            else if(x instanceof Collection)
+                for(Object y : (Collection<?>) x)
+                    visitor.visit(y);
+        } catch (RuntimeException e) {
+            // modified while walking, keep what was seen
+        }
+    }
+
+    private static synchronized Field [] reference_fields(Class<?> clazz){
+        Field [] x = reference_fields.get(clazz);
+        if(x!=null)
+            return x;
+        List<Field> fields = new ArrayList<>();
+        for(Class<?> c = clazz; c!=null; c=c.getSuperclass())
+            for(Field field : c.getDeclaredFields())
+                if(!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive() && field.trySetAccessible())
+                    fields.add(field);
+        x = fields.toArray(new Field[0]);
+        reference_fields.put(clazz,x);
+        return x;
+    }
+
+    ///////////////////////////////////////////////////
+    // sizes
+    ///////////////////////////////////////////////////
+
+    private static long size_of(Object x){
+        Class<?> clazz = x.getClass();
+
+        if(clazz.isArray())
+            return align(array_header + (long) Array.getLength(x) * field_size(clazz.getComponentType()));
+
+        long shallow = shallow_size(clazz);
+
+        if(x instanceof String)
+            return shallow + align(array_header + ((String) x).length());
+
+        if(clazz.getModule().isNamed()){
+            try {
+                if (x instanceof Map)
+                    return shallow + collection_internals(x, ((Map<?, ?>) x).size());
+                if (x instanceof Collection)
+                    return shallow + collection_internals(x, ((Collection<?>) x).size());
+            } catch (RuntimeException e) {
+                // size not available
+            }
+        }
+
+        return shallow;
+    }
+
+    // backing arrays and entries of JDK collections
+    private static long collection_internals(Object x,int size){
+        if(x instanceof HashMap || x instanceof HashSet || x instanceof Hashtable || x instanceof java.util.concurrent.ConcurrentHashMap){
+            long entry = align(object_header + 4 + 3*ref_size);
+            if(x instanceof LinkedHashMap || x instanceof LinkedHashSet)
+                entry = align(object_header + 4 + 5*ref_size + 1);
+            long table = size==0 ? 0L : align(array_header + (long) ref_size * Integer.highestOneBit(Math.max(16,(int)(size/0.75f))*2-1));
+            long map = x instanceof HashSet ? shallow_size(HashMap.class) : 0L;
+            return map + table + size*entry;
+        }
+        if(x instanceof TreeMap || x instanceof TreeSet)
+            return (x instanceof TreeSet ? shallow_size(TreeMap.class) : 0L) + size*align(object_header + 5*ref_size + 1);
+        if(x instanceof LinkedList)
+            return size*align(object_header + 3*ref_size);
+        return size==0 ? 0L : align(array_header + (long) ref_size*size);
+    }
+
+    private static synchronized long shallow_size(Class<?> clazz){
+        Long x = shallow_sizes.get(clazz);
+        if(x!=null)
+            return x;
+        long size = object_header;
+        for(Class<?> c = clazz; c!=null; c=c.getSuperclass())
+            for(Field field : c.getDeclaredFields())
+                if(!Modifier.isStatic(field.getModifiers()))
+                    size += field_size(field.getType());
+        x = align(size);
+        shallow_sizes.put(clazz,x);
+        return x;
+    }
+
+    private static int field_size(Class<?> type){
+        if(type==long.class || type==double.class)
+            return 8;
+        if(type==int.class || type==float.class)
+            return 4;
+        if(type==short.class || type==char.class)
+            return 2;
+        if(type==byte.class || type==boolean.class)
+            return 1;
+        return ref_size;
+    }
+
+    private static long align(long size){
+        return (size + 7L) & ~7L;
+    }
+
+    private static boolean compressed_oops(){
+        try {
+            com.sun.management.HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+            return bean==null || Boolean.parseBoolean(bean.getVMOption("UseCompressedOops").getValue());
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    ///////////////////////////////////////////////////
+    // class
+    ///////////////////////////////////////////////////
+
+    private static class Root {
+        final Object object;
+        final Category category;
+        final String group;
+        Root(Object object,Category category,String group){
+            this.object = object;
+            this.category = category;
+            this.group = group;
+        }
+    }
+
+}
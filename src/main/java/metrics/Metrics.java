@@ -0,0 +1,203 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runtime metrics of one simulation: events dispatched per class, simulated seconds per
+ * wall-clock second, time spent by each model in each phase of its update, node model
+ * iterations, size of the event queue, and bytes allocated while advancing. The dispatcher
+ * and the models update it as they run. Updates are a counter increment per event and two
+ * reads of the clock per model phase, so the metrics are always on.
+ *
+ * Each scenario owns one Metrics object, which is set to zero when the scenario is initialized.
+ * Values read from another thread, e.g. over JMX, while the simulation runs are approximate.
+ */
+public class Metrics implements MetricsMXBean {
+
+    private static final com.sun.management.ThreadMXBean thread_bean = thread_bean();
+
+    // events
+    private final Map<Class<?>,long[]> event_counts = new ConcurrentHashMap<>();
+    private Class<?> last_class;
+    private long [] last_count;
+    private long num_events;
+
+    // event queue
+    private int queue_size;
+    private int max_queue_size;
+
+    // advance
+    private double sim_seconds;
+    private long wall_ns;
+    private long allocated_bytes;
+    private float advance_start_time;
+    private long advance_start_ns;
+    private long advance_start_bytes;
+
+    // phases
+    private final Map<String,PhaseTimes> model_phases = new ConcurrentHashMap<>();
+    private long output_ns;
+
+    // node model
+    private long node_model_runs;
+    private long node_model_iterations;
+    private int max_node_model_iterations;
+
+    ///////////////////////////////////////////////////
+    // update
+    ///////////////////////////////////////////////////
+
+    public void reset(){
+        event_counts.clear();
+        last_class = null;
+        last_count = null;
+        num_events = 0L;
+        queue_size = 0;
+        max_queue_size = 0;
+        sim_seconds = 0d;
+        wall_ns = 0L;
+        allocated_bytes = 0L;
+        model_phases.values().forEach(PhaseTimes::reset);
+        output_ns = 0L;
+        node_model_runs = 0L;
+        node_model_iterations = 0L;
+        max_node_model_iterations = 0;
+    }
+
+    // called by Dispatcher when it starts and ends processing events
+    public void start_advance(float sim_time){
+        advance_start_time = sim_time;
+        advance_start_bytes = thread_allocated_bytes();
+        advance_start_ns = System.nanoTime();
+    }
+
+    public void end_advance(float sim_time,int num_pending){
+        wall_ns += System.nanoTime() - advance_start_ns;
+        sim_seconds += sim_time - advance_start_time;
+        if(advance_start_bytes>=0)
+            allocated_bytes += thread_allocated_bytes() - advance_start_bytes;
+        queue_size = num_pending;
+    }
+
+    // called by Dispatcher for every event, with the number of events still pending
+    public void count_event(Class<?> clazz,int num_pending){
+        if(clazz!=last_class){
+            last_count = event_counts.computeIfAbsent(clazz,c->new long[1]);
+            last_class = clazz;
+        }
+        last_count[0]++;
+        num_events++;
+        if(num_pending>max_queue_size)
+            max_queue_size = num_pending;
+    }
+
+    // phase times of a model, created on first use and kept across resets
+    public PhaseTimes get_model_phases(String model_name){
+        return model_phases.computeIfAbsent(model_name,n->new PhaseTimes());
+    }
+
+    public void add_output_time(long start_ns){
+        output_ns += System.nanoTime() - start_ns;
+    }
+
+    public void add_node_model_iterations(int iterations){
+        node_model_runs++;
+        node_model_iterations += iterations;
+        if(iterations>max_node_model_iterations)
+            max_node_model_iterations = iterations;
+    }
+
+    ///////////////////////////////////////////////////
+    // MetricsMXBean
+    ///////////////////////////////////////////////////
+
+    @Override
+    public long getEventsDispatched() {
+        return num_events;
+    }
+
+    @Override
+    public Map<String,Long> getEventsPerClass() {
+        Map<String,Long> x = new TreeMap<>();
+        for(Map.Entry<Class<?>,long[]> e : event_counts.entrySet())
+            x.put(e.getKey().getName(),e.getValue()[0]);
+        return x;
+    }
+
+    @Override
+    public double getSimSecondsPerWallSecond() {
+        return wall_ns==0L ? Double.NaN : sim_seconds / (wall_ns/1e9);
+    }
+
+    @Override
+    public double getSimSeconds() {
+        return sim_seconds;
+    }
+
+    @Override
+    public double getWallSeconds() {
+        return wall_ns/1e9;
+    }
+
+    @Override
+    public Map<String,Double> getPhaseTimeMs() {
+        Map<String,Double> x = new TreeMap<>();
+        for(Map.Entry<String,PhaseTimes> e : model_phases.entrySet())
+            for(PhaseTimes.Phase phase : PhaseTimes.Phase.values())
+                if(e.getValue().get_calls(phase)>0)
+                    x.put(e.getKey() + "." + phase,e.getValue().get_ns(phase)/1e6);
+        x.put("outputs",output_ns/1e6);
+        return x;
+    }
+
+    @Override
+    public long getNodeModelRuns() {
+        return node_model_runs;
+    }
+
+    @Override
+    public double getMeanNodeModelIterations() {
+        return node_model_runs==0L ? Double.NaN : ((double) node_model_iterations) / node_model_runs;
+    }
+
+    @Override
+    public int getMaxNodeModelIterations() {
+        return max_node_model_iterations;
+    }
+
+    @Override
+    public int getEventQueueSize() {
+        return queue_size;
+    }
+
+    @Override
+    public int getMaxEventQueueSize() {
+        return max_queue_size;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return thread_bean==null ? -1L : allocated_bytes;
+    }
+
+    ///////////////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////////////
+
+    private static com.sun.management.ThreadMXBean thread_bean(){
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean x = (com.sun.management.ThreadMXBean) bean;
+        return x.isThreadAllocatedMemorySupported() && x.isThreadAllocatedMemoryEnabled() ? x : null;
+    }
+
+    private static long thread_allocated_bytes(){
+        return thread_bean==null ? -1L : thread_bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+}
@@ -0,0 +1,50 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the runtime metrics of one simulation. Register it with
+ * api.OTM.register_metrics_mbean, and read it with jconsole, VisualVM or any JMX client.
+ */
+public interface MetricsMXBean {
+
+    /** Total number of events dispatched. */
+    long getEventsDispatched();
+
+    /** Events dispatched, per event class. */
+    Map<String,Long> getEventsPerClass();
+
+    /** Simulated seconds over wall-clock seconds spent advancing. */
+    double getSimSecondsPerWallSecond();
+
+    /** Simulated seconds advanced. */
+    double getSimSeconds();
+
+    /** Wall-clock seconds spent advancing. */
+    double getWallSeconds();
+
+    /** Milliseconds spent in each phase, keyed by "model name.phase", plus "outputs". */
+    Map<String,Double> getPhaseTimeMs();
+
+    /** Number of node model evaluations. */
+    long getNodeModelRuns();
+
+    /** Mean number of iterations per node model evaluation. */
+    double getMeanNodeModelIterations();
+
+    /** Largest number of iterations of a node model evaluation. */
+    int getMaxNodeModelIterations();
+
+    /** Number of pending events. */
+    int getEventQueueSize();
+
+    /** Largest number of pending events. */
+    int getMaxEventQueueSize();
+
+    /** Bytes allocated by the simulation thread while advancing, or -1 if the JVM does not measure it. */
+    long getAllocatedBytes();
+
+    /** Set all counters and times to zero. */
+    void reset();
+
+}
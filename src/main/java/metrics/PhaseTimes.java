@@ -0,0 +1,45 @@
+package metrics;
+
+/**
+ * Wall-clock time spent by one model in each phase of its update. Models keep a
+ * reference to their PhaseTimes, so that recording a phase is two reads of the
+ * clock and two additions.
+ */
+public class PhaseTimes {
+
+    public enum Phase {
+        update_flow_I,
+        node_model,
+        update_flow_II,
+        state_update
+    }
+
+    private static final Phase [] phases = Phase.values();
+
+    final long [] ns = new long[phases.length];
+    final long [] calls = new long[phases.length];
+
+    // returns the end time, which is the start of the next phase
+    public long add(Phase phase,long start_ns){
+        long now = System.nanoTime();
+        ns[phase.ordinal()] += now - start_ns;
+        calls[phase.ordinal()]++;
+        return now;
+    }
+
+    public long get_ns(Phase phase){
+        return ns[phase.ordinal()];
+    }
+
+    public long get_calls(Phase phase){
+        return calls[phase.ordinal()];
+    }
+
+    void reset(){
+        for(int i=0;i<ns.length;i++){
+            ns[i] = 0L;
+            calls[i] = 0L;
+        }
+    }
+
+}
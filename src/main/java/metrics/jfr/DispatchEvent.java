@@ -0,0 +1,47 @@
+package metrics.jfr;
+
+import common.InterfaceScenarioElement;
+import jdk.jfr.*;
+
+/**
+ * Execution of one simulation event by the dispatcher. Recorded only when it takes longer
+ * than the threshold of the settings profile, which keeps the number of events small.
+ */
+@Name("otm.Dispatch")
+@Label("Dispatch")
+@Category({"OTM","Dispatcher"})
+@Description("Execution of a simulation event")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("1 ms")
+public class DispatchEvent extends Event {
+
+    @Label("Event Class")
+    public Class<?> event_class;
+
+    @Label("Recipient Class")
+    public Class<?> recipient_class;
+
+    @Label("Recipient Id")
+    @Description("Id of the recipient if it is a scenario element, otherwise -1")
+    public long recipient_id;
+
+    @Label("Dispatch Order")
+    public int dispatch_order;
+
+    @Label("Simulation Time")
+    public float sim_time;
+
+    public void commit(dispatch.AbstractEvent event){
+        end();
+        if(!shouldCommit())
+            return;
+        event_class = event.getClass();
+        recipient_class = event.recipient==null ? null : event.recipient.getClass();
+        recipient_id = event.recipient instanceof InterfaceScenarioElement ? ((InterfaceScenarioElement) event.recipient).getId() : -1L;
+        dispatch_order = event.dispatch_order;
+        sim_time = event.timestamp;
+        commit();
+    }
+
+}
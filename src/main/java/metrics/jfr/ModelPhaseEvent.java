@@ -0,0 +1,41 @@
+package metrics.jfr;
+
+import jdk.jfr.*;
+import metrics.PhaseTimes;
+
+/**
+ * One phase of the update of a model over all of its links: the phases of the fluid
+ * models, and the state update of Newell's model.
+ */
+@Name("otm.ModelPhase")
+@Label("Model Phase")
+@Category({"OTM","Models"})
+@Description("One phase of a model update")
+@Enabled(false)
+@StackTrace(false)
+public class ModelPhaseEvent extends Event {
+
+    @Label("Model")
+    public String model;
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Links")
+    public int links;
+
+    @Label("Simulation Time")
+    public float sim_time;
+
+    public void commit(String model,PhaseTimes.Phase phase,int links,float sim_time){
+        end();
+        if(!shouldCommit())
+            return;
+        this.model = model;
+        this.phase = phase.name();
+        this.links = links;
+        this.sim_time = sim_time;
+        commit();
+    }
+
+}
@@ -0,0 +1,42 @@
+package metrics.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Solution of the node model of one node that needed at least min_iterations iterations.
+ * min_iterations is read from the system property otm.jfr.node_iterations, default 2.
+ */
+@Name("otm.NodeModelSolve")
+@Label("Node Model Solve")
+@Category({"OTM","Models"})
+@Description("Node model solution with many iterations")
+@Enabled(false)
+@StackTrace(false)
+public class NodeModelSolveEvent extends Event {
+
+    public static final int min_iterations = Integer.getInteger("otm.jfr.node_iterations",2);
+
+    @Label("Model")
+    public String model;
+
+    @Label("Node Id")
+    public long node_id;
+
+    @Label("Iterations")
+    public int iterations;
+
+    @Label("Simulation Time")
+    public float sim_time;
+
+    public void commit(String model,long node_id,int iterations,float sim_time){
+        end();
+        if(iterations<min_iterations || !shouldCommit())
+            return;
+        this.model = model;
+        this.node_id = node_id;
+        this.iterations = iterations;
+        this.sim_time = sim_time;
+        commit();
+    }
+
+}
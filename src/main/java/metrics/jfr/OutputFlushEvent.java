@@ -0,0 +1,33 @@
+package metrics.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Buffered output bytes handed to the file, or to the output pipeline if there is one.
+ */
+@Name("otm.OutputFlush")
+@Label("Output Flush")
+@Category({"OTM","Outputs"})
+@Description("Output buffer written")
+@Enabled(false)
+@StackTrace(false)
+public class OutputFlushEvent extends Event {
+
+    @Label("Output")
+    @Description("Output file")
+    public String output;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytes;
+
+    public void commit(String output,long bytes){
+        end();
+        if(!shouldCommit())
+            return;
+        this.output = output;
+        this.bytes = bytes;
+        commit();
+    }
+
+}
@@ -0,0 +1,41 @@
+package metrics.jfr;
+
+import error.OTMException;
+import jdk.jfr.Configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+/**
+ * The Flight Recorder settings profile of the OTM events, otm.jfc, which enables them. Use it to
+ * record in process:
+ *
+ *      Recording recording = new Recording(Profile.configuration());
+ *      recording.start();
+ *      ... load and run
+ *      recording.dump(Paths.get("run.jfr"));
+ *
+ * or copy src/main/resources/otm.jfc and pass it to -XX:StartFlightRecording. All events are
+ * disabled without it.
+ */
+public class Profile {
+
+    public static final String RESOURCE = "/otm.jfc";
+
+    public static Configuration configuration() throws OTMException {
+        try(InputStream stream = Profile.class.getResourceAsStream(RESOURCE)){
+            if(stream==null)
+                throw new OTMException("Resource " + RESOURCE + " not found.");
+            try(Reader reader = new InputStreamReader(stream,StandardCharsets.UTF_8)){
+                return Configuration.create(reader);
+            }
+        } catch (IOException | ParseException e) {
+            throw new OTMException(e);
+        }
+    }
+
+}
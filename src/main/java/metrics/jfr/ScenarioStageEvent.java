@@ -0,0 +1,40 @@
+package metrics.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * One stage of loading a scenario: parsing the configuration, then each step of
+ * building it in ScenarioFactory.
+ */
+@Name("otm.ScenarioStage")
+@Label("Scenario Stage")
+@Category({"OTM","Scenario"})
+@Description("Stage of loading and building a scenario")
+@Enabled(false)
+public class ScenarioStageEvent extends Event {
+
+    @Label("Stage")
+    public String stage;
+
+    public static ScenarioStageEvent start(){
+        ScenarioStageEvent event = new ScenarioStageEvent();
+        event.begin();
+        return event;
+    }
+
+    // record the stage that just ended
+    public void done(String stage){
+        end();
+        if(shouldCommit()){
+            this.stage = stage;
+            commit();
+        }
+    }
+
+    // record the stage that just ended, and start the next one
+    public ScenarioStageEvent next(String stage){
+        done(stage);
+        return start();
+    }
+
+}
@@ -3,6 +3,8 @@ package models;
 import common.AbstractLaneGroup;
 import common.Link;
 import error.OTMException;
+import metrics.Metrics;
+import metrics.PhaseTimes;
 import packet.PacketLaneGroup;
 import packet.PacketLink;
 import common.Scenario;
@@ -27,6 +29,8 @@ public abstract class AbstractModel implements InterfaceModel {
     public final boolean is_default;
     public final StochasticProcess stochastic_process;
     public Set<Link> links;
+    protected Metrics metrics;              // the scenario's runtime metrics
+    protected PhaseTimes phase_times;       // this model's entry in metrics
 
     //////////////////////////////////////////////////
     // construction
@@ -50,6 +54,8 @@ public abstract class AbstractModel implements InterfaceModel {
     //////////////////////////////////////////////////
 
     public void initialize(Scenario scenario) throws OTMException {
+        metrics = scenario.metrics;
+        phase_times = metrics.get_model_phases(name);
         for(Link link : links){
             for(AbstractLaneGroup lg : link.lanegroups_flwdn)
                 lg.allocate_state();
@@ -1,9 +1,12 @@
 package models.fluid;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.FlowAccumulatorState;
 import geometry.Side;
 import keys.State;
 
+import java.io.IOException;
 import java.util.Map;
 
 public abstract class AbstractCell {
@@ -40,4 +43,22 @@ public abstract class AbstractCell {
         this.laneGroup = laneGroup;
     }
 
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        out.writeDouble(supply);
+        out.write_flow_accumulator(flw_acc);
+        out.write_flow_accumulator(flw_lcout_acc);
+        out.write_flow_accumulator(flw_lcin_acc);
+    }
+
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        supply = in.readDouble();
+        in.read_flow_accumulator_into(flw_acc);
+        in.read_flow_accumulator_into(flw_lcout_acc);
+        in.read_flow_accumulator_into(flw_lcin_acc);
+    }
+
 }
@@ -8,6 +8,9 @@ import error.OTMException;
 import geometry.FlowPosition;
 import geometry.Side;
 import keys.State;
+import metrics.PhaseTimes;
+import metrics.jfr.ModelPhaseEvent;
+import metrics.jfr.NodeModelSolveEvent;
 import models.AbstractModel;
 import models.fluid.nodemodel.NodeModel;
 import models.fluid.nodemodel.RoadConnection;
@@ -31,6 +34,7 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
     protected Set<Link> source_links;
     protected Set<Link> sink_links;
     protected Map<Long, NodeModel> node_models;
+    protected FluidBoundary boundary;           // null unless the network is partitioned across processes
 
     public AbstractFluidModel(String name, boolean is_default, float dt_sec, StochasticProcess process, Float max_cell_length) {
         super(AbstractModel.Type.Fluid,name, is_default,process);
@@ -78,6 +82,7 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
                     flg.wspeed_cell_per_dt /= cell_length;
                     flg.compute_lcw();
                 }
+                flg.set_nominal_wave();
 
             }
 
@@ -124,6 +129,8 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
         for(AbstractLaneGroup alg : link.lanegroups_flwdn){
             FluidLaneGroup lg = (FluidLaneGroup) alg;
             lg.cells.forEach(x->x.reset());
+            if(lg.source_flow!=null)
+                lg.source_flow.clear();
         }
     }
 
@@ -160,6 +167,8 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
 
         for(NodeModel node_model : node_models.values())
             node_model.initialize(scenario);
+
+        boundary = scenario.partition==null ? null : new FluidBoundary(this,scenario.partition);
     }
 
     //////////////////////////////////////////////////////////////
@@ -171,7 +180,9 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
 
         update_flow_I(timestamp);
 
-        // -- MPI communication (in otm-mpi) -- //
+        // node model flows computed by other processes
+        if(boundary!=null)
+            boundary.exchange_flows(timestamp);
 
         update_flow_II(timestamp);
 
@@ -180,21 +191,46 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
     // update supplies and demands, then run node model to obtain inter-link flows
     public void update_flow_I(float timestamp) throws OTMException {
 
+        long start = System.nanoTime();
+        ModelPhaseEvent jfr = new ModelPhaseEvent();
+        jfr.begin();
+
         // lane changes and compute demand and supply
-        for(Link link : links)
+        for(Link link : boundary==null ? links : boundary.links)
             compute_lanechange_demand_supply(link,timestamp);
 
+        // demands and supplies of other processes
+        if(boundary!=null)
+            boundary.exchange_demand_supply(timestamp);
+
+        start = phase_times.add(PhaseTimes.Phase.update_flow_I,start);
+        jfr.commit(name,PhaseTimes.Phase.update_flow_I,links.size(),timestamp);
+        jfr = new ModelPhaseEvent();
+        jfr.begin();
+
         // compute node inflow and outflow (all nodes except sources)
-        node_models.values().forEach(n->n.update_flow(timestamp));
+        for(NodeModel node_model : boundary==null ? node_models.values() : boundary.node_models) {
+            NodeModelSolveEvent jfr_node = new NodeModelSolveEvent();
+            jfr_node.begin();
+            int iterations = node_model.update_flow(timestamp);
+            metrics.add_node_model_iterations(iterations);
+            jfr_node.commit(name,node_model.node.getId(),iterations,timestamp);
+        }
 
+        phase_times.add(PhaseTimes.Phase.node_model,start);
+        jfr.commit(name,PhaseTimes.Phase.node_model,links.size(),timestamp);
     }
 
     // compute source and source flows
     // node model exchange packets
     public void update_flow_II(float timestamp) throws OTMException {
 
+        long start = System.nanoTime();
+        ModelPhaseEvent jfr = new ModelPhaseEvent();
+        jfr.begin();
+
         // add to source links
-        for(Link link : source_links){
+        for(Link link : boundary==null ? source_links : boundary.source_links){
             for(AbstractLaneGroup alg : link.lanegroups_flwdn){
                 FluidLaneGroup lg = (FluidLaneGroup)alg;
                 lg.cells.get(0).add_vehicles(lg.source_flow,null,null);
@@ -202,7 +238,7 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
         }
 
         // release from sink links
-        for(Link link : sink_links){
+        for(Link link : boundary==null ? sink_links : boundary.sink_links){
 
             for(AbstractLaneGroup alg : link.lanegroups_flwdn) {
                 FluidLaneGroup lg = (FluidLaneGroup) alg;
@@ -218,16 +254,19 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
         }
 
         // node models exchange packets
-        for(NodeModel node_model : node_models.values()) {
+        for(NodeModel node_model : boundary==null ? node_models.values() : boundary.flow_node_models) {
 
             // flows on road connections arrive to links on give lanes convert to packets and send
             for(RoadConnection rc : node_model.rcs.values()) {
                 Link link = rc.rc.get_end_link();
-                link.model.add_vehicle_packet(link,timestamp, new PacketLink(rc.f_rs, rc.rc));
+                if(boundary==null || boundary.owns(link))
+                    link.model.add_vehicle_packet(link,timestamp, new PacketLink(rc.f_rs, rc.rc));
             }
 
             // set exit flows on non-sink lanegroups
             for(UpLaneGroup ulg : node_model.ulgs.values()) {
+                if(boundary!=null && !boundary.owns(ulg.lg.link))
+                    continue;
                 ulg.lg.release_vehicles(ulg.f_gs);
 
                 // send lanegroup exit flow to flow accumulator
@@ -238,13 +277,20 @@ public abstract class AbstractFluidModel extends AbstractModel implements Interf
 
         }
 
+        phase_times.add(PhaseTimes.Phase.update_flow_II,start);
+        jfr.commit(name,PhaseTimes.Phase.update_flow_II,links.size(),timestamp);
     }
 
     // called by EventFluidStateUpdate
     // intra link flows and states
     protected void update_fluid_state(float timestamp) throws OTMException {
-        for(Link link : links)
+        long start = System.nanoTime();
+        ModelPhaseEvent jfr = new ModelPhaseEvent();
+        jfr.begin();
+        for(Link link : boundary==null ? links : boundary.links)
             update_link_state(link,timestamp);
+        phase_times.add(PhaseTimes.Phase.state_update,start);
+        jfr.commit(name,PhaseTimes.Phase.state_update,links.size(),timestamp);
     }
 
     //////////////////////////////////////////////////////////////
@@ -0,0 +1,230 @@
+package models.fluid;
+
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+import common.Link;
+import distributed.Partition;
+import error.OTMException;
+import models.fluid.nodemodel.DnLaneGroup;
+import models.fluid.nodemodel.NodeModel;
+import models.fluid.nodemodel.RoadConnection;
+import models.fluid.nodemodel.UpLaneGroup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Part of a fluid model that runs in one process of a partitioned simulation, and its
+ * exchange with the other processes. At every time step, after the lane groups compute their
+ * demand and supply, the demand of every lane group that enters a node of another process,
+ * and the supply of every lane group that leaves one, are sent to that process. The node
+ * models then run in the process that owns them, and their flows are sent to every process
+ * with a link on the node. The flows are written into the node models of the receiving
+ * process, which then moves vehicles on its own links in the same order as a single-process
+ * run.
+ *
+ * Values are sent as they are in memory, so the results are identical to a single-process run.
+ */
+public class FluidBoundary {
+
+    public final AbstractFluidModel model;
+    public final Partition partition;
+
+    // part of the model in this process, in the order of the model
+    final Set<Link> links;
+    final List<Link> source_links;
+    final List<Link> sink_links;
+    final List<NodeModel> node_models;           // node models that run in this process
+    final List<NodeModel> flow_node_models;      // node models with a link in this process
+
+    // demands and supplies: process -> lane groups
+    private final Map<Integer,List<FluidLaneGroup>> send_demand = new TreeMap<>();
+    private final Map<Integer,List<FluidLaneGroup>> send_supply = new TreeMap<>();
+    private final Map<Integer,List<FluidLaneGroup>> receive_demand = new TreeMap<>();
+    private final Map<Integer,List<FluidLaneGroup>> receive_supply = new TreeMap<>();
+
+    // node model flows: process -> node models
+    private final Map<Integer,List<NodeModel>> send_flows = new TreeMap<>();
+    private final Map<Integer,List<NodeModel>> receive_flows = new TreeMap<>();
+
+    public FluidBoundary(AbstractFluidModel model,Partition partition) {
+        this.model = model;
+        this.partition = partition;
+
+        links = new LinkedHashSet<>();
+        for(Link link : model.links)
+            if(partition.owns(link))
+                links.add(link);
+        source_links = new ArrayList<>();
+        for(Link link : model.source_links)
+            if(partition.owns(link))
+                source_links.add(link);
+        sink_links = new ArrayList<>();
+        for(Link link : model.sink_links)
+            if(partition.owns(link))
+                sink_links.add(link);
+
+        node_models = new ArrayList<>();
+        flow_node_models = new ArrayList<>();
+        int me = partition.rank;
+        for(NodeModel node_model : model.node_models.values()){
+
+            int owner = partition.rank_of(node_model.node);
+
+            // processes with a link on this node
+            Set<Integer> ranks = new TreeSet<>();
+            for(UpLaneGroup ulg : node_model.ulgs.values()) {
+                int r = partition.rank_of(ulg.lg.link);
+                ranks.add(r);
+                if(owner==me && r!=me)
+                    add(receive_demand,r,ulg.lg);
+                if(owner!=me && r==me)
+                    add(send_demand,owner,ulg.lg);
+            }
+            for(DnLaneGroup dlg : node_model.dlgs.values()) {
+                int r = partition.rank_of(dlg.lg.link);
+                ranks.add(r);
+                if(owner==me && r!=me)
+                    add(receive_supply,r,(FluidLaneGroup) dlg.lg);
+                if(owner!=me && r==me)
+                    add(send_supply,owner,(FluidLaneGroup) dlg.lg);
+            }
+
+            if(owner==me) {
+                node_models.add(node_model);
+                for(int r : ranks)
+                    if(r!=me)
+                        add(send_flows,r,node_model);
+            }
+            else if(ranks.contains(me))
+                add(receive_flows,owner,node_model);
+
+            if(owner==me || ranks.contains(me))
+                flow_node_models.add(node_model);
+        }
+
+        // lane groups and node models are in hash maps whose order may differ between processes,
+        // so messages list them by id
+        for(Map<Integer,List<FluidLaneGroup>> plan : List.of(send_demand,send_supply,receive_demand,receive_supply))
+            plan.values().forEach(x->x.sort(Comparator.comparingLong(lg->lg.id)));
+        for(Map<Integer,List<NodeModel>> plan : List.of(send_flows,receive_flows))
+            plan.values().forEach(x->x.sort(Comparator.comparingLong(nm->nm.node.getId())));
+    }
+
+    public boolean owns(Link link){
+        return links.contains(link);
+    }
+
+    ////////////////////////////////////////////
+    // exchange
+    ////////////////////////////////////////////
+
+    // send demands and supplies to the owners of the node models, and receive those of the node models of this process
+    void exchange_demand_supply(float timestamp) throws OTMException {
+        try {
+            Set<Integer> to = new TreeSet<>(send_demand.keySet());
+            to.addAll(send_supply.keySet());
+            for(int r : to){
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                CheckpointWriter out = header(bytes,timestamp);
+                for(FluidLaneGroup lg : send_demand.getOrDefault(r,Collections.emptyList())) {
+                    out.writeLong(lg.id);
+                    out.write_state_map(lg.get_demand());
+                }
+                for(FluidLaneGroup lg : send_supply.getOrDefault(r,Collections.emptyList())) {
+                    out.writeLong(lg.id);
+                    out.writeDouble(lg.get_supply());
+                }
+                out.flush();
+                partition.transport.send(r,bytes.toByteArray());
+            }
+
+            Set<Integer> from = new TreeSet<>(receive_demand.keySet());
+            from.addAll(receive_supply.keySet());
+            for(int r : from){
+                CheckpointReader in = read_header(r,timestamp);
+                for(FluidLaneGroup lg : receive_demand.getOrDefault(r,Collections.emptyList())) {
+                    check_id(in,lg.id,r);
+                    in.read_state_map_into(lg.get_demand());
+                }
+                for(FluidLaneGroup lg : receive_supply.getOrDefault(r,Collections.emptyList())) {
+                    check_id(in,lg.id,r);
+                    lg.set_supply(in.readDouble());
+                }
+            }
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    // send the flows of the node models of this process, and receive those of the other processes
+    void exchange_flows(float timestamp) throws OTMException {
+        try {
+            for(Map.Entry<Integer,List<NodeModel>> e : send_flows.entrySet()){
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                CheckpointWriter out = header(bytes,timestamp);
+                for(NodeModel node_model : e.getValue()){
+                    out.writeLong(node_model.node.getId());
+                    for(RoadConnection rc : by_id(node_model.rcs))
+                        out.write_state_map(rc.f_rs);
+                    for(UpLaneGroup ulg : by_id(node_model.ulgs))
+                        out.write_state_map(ulg.f_gs);
+                }
+                out.flush();
+                partition.transport.send(e.getKey(),bytes.toByteArray());
+            }
+
+            for(Map.Entry<Integer,List<NodeModel>> e : receive_flows.entrySet()){
+                int r = e.getKey();
+                CheckpointReader in = read_header(r,timestamp);
+                for(NodeModel node_model : e.getValue()){
+                    check_id(in,node_model.node.getId(),r);
+                    for(RoadConnection rc : by_id(node_model.rcs))
+                        in.read_state_map_into(rc.f_rs);
+                    for(UpLaneGroup ulg : by_id(node_model.ulgs))
+                        in.read_state_map_into(ulg.f_gs);
+                }
+            }
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    ////////////////////////////////////////////
+    // private
+    ////////////////////////////////////////////
+
+    private static <T> void add(Map<Integer,List<T>> map,int rank,T x){
+        map.computeIfAbsent(rank,r->new ArrayList<>()).add(x);
+    }
+
+    private static <T> Collection<T> by_id(Map<Long,T> map){
+        return new TreeMap<>(map).values();
+    }
+
+    private CheckpointWriter header(ByteArrayOutputStream bytes,float timestamp) throws IOException {
+        CheckpointWriter out = new CheckpointWriter(bytes);
+        out.writeUTF(model.name);
+        out.writeFloat(timestamp);
+        return out;
+    }
+
+    private CheckpointReader read_header(int rank,float timestamp) throws IOException {
+        CheckpointReader in = new CheckpointReader(new ByteArrayInputStream(partition.transport.receive(rank)),partition.scenario);
+        String name = in.readUTF();
+        float time = in.readFloat();
+        if(!name.equals(model.name) || time!=timestamp)
+            throw new IOException(String.format("Process %d expected model %s at time %f from process %d, received model %s at time %f.",
+                    partition.rank,model.name,timestamp,rank,name,time));
+        return in;
+    }
+
+    private void check_id(CheckpointReader in,long id,int rank) throws IOException {
+        long x = in.readLong();
+        if(x!=id)
+            throw new IOException(String.format("Process %d expected id %d from process %d, received %d.",partition.rank,id,rank,x));
+    }
+
+}
@@ -12,7 +12,6 @@ import common.AbstractLaneGroup;
 import profiles.Profile1D;
 import utils.OTMUtils;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -59,11 +58,8 @@ public class FluidDemandGenerator extends AbstractDemandGenerator {
         if(commodity.pathfull){
             State state = new State(comm_id,path.getId(),true);
             double demand_for_each_lg = flow_veh_per_timestep / pathfull_lgs.size();
-            for(AbstractLaneGroup lg : pathfull_lgs) {
-                Map<State,Double> x = new HashMap<>();
-                x.put(state,demand_for_each_lg);
-                ((FluidLaneGroup)lg).source_flow = x;
-            }
+            for(AbstractLaneGroup lg : pathfull_lgs)
+                ((FluidLaneGroup)lg).source_flow.put(state,demand_for_each_lg);
         }
 
         // source of pathless commodity
@@ -99,8 +95,11 @@ public class FluidDemandGenerator extends AbstractDemandGenerator {
                     Double split = e.getValue();
                     State state = new State(comm_id,nextlink_id,false);
 
-                    if(!OTMUtils.greater_than(split,0d))
+                    if(!OTMUtils.greater_than(split,0d)) {
+                        for(AbstractLaneGroup alg : link.outlink2lanegroups.get(nextlink_id))
+                            ((FluidLaneGroup) alg).source_flow.remove(state);
                         continue;
+                    }
 
                     // get candidate lanegroups
                     Set<AbstractLaneGroup> candidate_lanegroups = link.outlink2lanegroups.get(nextlink_id);
@@ -111,9 +110,7 @@ public class FluidDemandGenerator extends AbstractDemandGenerator {
 
                     for(AbstractLaneGroup alg : candidate_lanegroups){
                         double demand_for_lg = factor * alg.num_lanes;
-                        FluidLaneGroup lg = (FluidLaneGroup) alg;
-                        double val = lg.source_flow.containsKey(state) ? lg.source_flow.get(state) : 0d;
-                        lg.source_flow.put(state,val + demand_for_lg);
+                        ((FluidLaneGroup) alg).source_flow.put(state,demand_for_lg);
                     }
 
                 }
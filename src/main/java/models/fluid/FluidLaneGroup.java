@@ -1,5 +1,7 @@
 package models.fluid;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.*;
 import error.OTMErrorLog;
 import error.OTMException;
@@ -10,6 +12,7 @@ import keys.State;
 import packet.PacketLaneGroup;
 import utils.OTMUtils;
 
+import java.io.IOException;
 import java.util.*;
 
 public class FluidLaneGroup extends AbstractLaneGroup {
@@ -20,6 +23,8 @@ public class FluidLaneGroup extends AbstractLaneGroup {
     // nominal fd
     public double nom_ffspeed_cell_per_dt;         // [-]
     public double nom_capacity_veh_per_dt;
+    public double nom_wspeed_cell_per_dt;          // [-]
+    public double nom_critical_density_veh;
 
     // actual (actuated) parameters
     public double wspeed_cell_per_dt;          // [-]
@@ -131,6 +136,22 @@ public class FluidLaneGroup extends AbstractLaneGroup {
 //        wspeed_cell_per_dt = capacity_veh_per_dt / (jam_density_veh_per_cell -critical_veh);
     }
 
+    @Override
+    public void reset_actuation() {
+        super.reset_actuation();
+        capacity_veh_per_dt = nom_capacity_veh_per_dt;
+        ffspeed_cell_per_dt = nom_ffspeed_cell_per_dt;
+        wspeed_cell_per_dt = nom_wspeed_cell_per_dt;
+        critical_density_veh = nom_critical_density_veh;
+        compute_lcw();
+    }
+
+    // called by the model once the parameters are in per-cell units
+    public void set_nominal_wave(){
+        nom_wspeed_cell_per_dt = wspeed_cell_per_dt;
+        nom_critical_density_veh = critical_density_veh;
+    }
+
     @Override
     public void set_actuator_speed_mps(double speed_mps) {
         float cell_length = this.length / this.cells.size();
@@ -266,6 +287,42 @@ public class FluidLaneGroup extends AbstractLaneGroup {
 
     }
 
+    ////////////////////////////////////////////
+    // checkpoint
+    ////////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        super.write_checkpoint(out);
+        out.write_state_map(source_flow);
+        out.writeDouble(wspeed_cell_per_dt);
+        out.writeDouble(lc_w);
+        out.writeDouble(ffspeed_cell_per_dt);
+        out.writeDouble(capacity_veh_per_dt);
+        out.writeDouble(jam_density_veh_per_cell);
+        out.writeDouble(critical_density_veh);
+        out.writeInt(cells.size());
+        for(AbstractCell cell : cells)
+            cell.write_checkpoint(out);
+    }
+
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        super.read_checkpoint(in);
+        in.read_state_map_into(source_flow);
+        wspeed_cell_per_dt = in.readDouble();
+        lc_w = in.readDouble();
+        ffspeed_cell_per_dt = in.readDouble();
+        capacity_veh_per_dt = in.readDouble();
+        jam_density_veh_per_cell = in.readDouble();
+        critical_density_veh = in.readDouble();
+        int n = in.readInt();
+        if(n!=cells.size())
+            throw new IOException(String.format("Checkpoint does not match the scenario: %d cells in %s",n,this));
+        for(AbstractCell cell : cells)
+            cell.read_checkpoint(in);
+    }
+
     ////////////////////////////////////////////
     // helper methods (final)
     ////////////////////////////////////////////
@@ -335,6 +392,11 @@ public class FluidLaneGroup extends AbstractLaneGroup {
         return get_dnstream_cell().get_demand();
     }
 
+    // supply computed by another process of a partitioned simulation
+    void set_supply(double supply){
+        this.supply = supply;
+    }
+
     public final void create_cells(AbstractFluidModel model,float cell_length_meters) throws OTMException {
 
         int num_cells = Math.round(this.length/cell_length_meters);
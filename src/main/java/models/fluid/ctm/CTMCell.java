@@ -1,11 +1,14 @@
 package models.fluid.ctm;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import geometry.Side;
 import keys.State;
 import models.fluid.AbstractCell;
 import models.fluid.FluidLaneGroup;
 import utils.OTMUtils;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -71,9 +74,26 @@ public class CTMCell extends AbstractCell {
 
     }
 
+    // zero the state, keeping the maps
     @Override
     public void reset() {
+        supply = 0d;
 
+        veh_dwn.replaceAll((k,v)->0d);
+        demand_dwn.replaceAll((k,v)->0d);
+        total_vehs_dwn = 0d;
+
+        if(veh_out!=null) {
+            veh_out.replaceAll((k,v)->0d);
+            demand_out.replaceAll((k,v)->0d);
+            total_vehs_out = 0d;
+        }
+
+        if(veh_in!=null) {
+            veh_in.replaceAll((k,v)->0d);
+            demand_in.replaceAll((k,v)->0d);
+            total_vehs_in = 0d;
+        }
     }
 
     @Override
@@ -313,4 +333,36 @@ public class CTMCell extends AbstractCell {
         return total_vehs_dwn + total_vehs_in + total_vehs_out;
     }
 
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        super.write_checkpoint(out);
+        out.write_state_map(veh_dwn);
+        out.write_state_map(demand_dwn);
+        out.writeDouble(total_vehs_dwn);
+        out.write_state_map(veh_out);
+        out.write_state_map(demand_out);
+        out.writeDouble(total_vehs_out);
+        out.write_state_map(veh_in);
+        out.write_state_map(demand_in);
+        out.writeDouble(total_vehs_in);
+    }
+
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        super.read_checkpoint(in);
+        in.read_state_map_into(veh_dwn);
+        in.read_state_map_into(demand_dwn);
+        total_vehs_dwn = in.readDouble();
+        in.read_state_map_into(veh_out);
+        in.read_state_map_into(demand_out);
+        total_vehs_out = in.readDouble();
+        in.read_state_map_into(veh_in);
+        in.read_state_map_into(demand_in);
+        total_vehs_in = in.readDouble();
+    }
+
 }
@@ -155,7 +155,8 @@ public class NodeModel {
         return rcs.containsKey(rc_id) ? rcs.get(rc_id).get_states() : null;
     }
 
-    public void update_flow(float timestamp) {
+    // returns the number of iterations
+    public int update_flow(float timestamp) {
 
         // reset
         ulgs.values().forEach(x->x.reset());
@@ -182,6 +183,8 @@ public class NodeModel {
         // update flow accumulators
         // TODO CHECK THIS
 //        update_flow_accumulators();
+
+        return it;
     }
 
     private boolean eval_stop(int iteration){
@@ -8,7 +8,7 @@ import error.OTMException;
 import common.AbstractLaneGroup;
 import models.AbstractModel;
 import profiles.Profile1D;
-import utils.OTMUtils;
+import utils.RandomStream;
 import utils.StochasticProcess;
 
 import java.util.*;
@@ -54,8 +54,8 @@ public abstract class AbstractVehicleModel extends AbstractModel implements Inte
             return null;
     }
 
-    final public Float get_waiting_time_sec(double rate_vps){
-        return OTMUtils.get_waiting_time(rate_vps,stochastic_process);
+    final public Float get_waiting_time_sec(RandomStream random,double rate_vps){
+        return random.get_waiting_time(rate_vps,stochastic_process);
     }
 
 }
@@ -1,10 +1,13 @@
 package models.vehicle;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import commodity.Commodity;
 import commodity.Path;
 import common.AbstractDemandGenerator;
 import common.AbstractVehicle;
 import common.Link;
+import common.Scenario;
 import dispatch.Dispatcher;
 import dispatch.EventCreateVehicle;
 import error.OTMException;
@@ -12,8 +15,8 @@ import keys.State;
 import common.AbstractLaneGroup;
 import packet.PacketLaneGroup;
 import profiles.Profile1D;
-import utils.OTMUtils;
 
+import java.io.IOException;
 import java.util.Set;
 
 public class VehicleDemandGenerator extends AbstractDemandGenerator {
@@ -25,6 +28,12 @@ public class VehicleDemandGenerator extends AbstractDemandGenerator {
         vehicle_scheduled = false;
     }
 
+    @Override
+    public void initialize(Scenario scenario) throws OTMException {
+        vehicle_scheduled = false;
+        super.initialize(scenario);
+    }
+
     @Override
     public void set_demand_vps(Dispatcher dispatcher,float time,double value) throws OTMException {
         super.set_demand_vps(dispatcher,time,value);
@@ -36,7 +45,12 @@ public class VehicleDemandGenerator extends AbstractDemandGenerator {
         if(vehicle_scheduled)
             return;
 
-        Float wait_time = OTMUtils.get_waiting_time(source_demand_vps,link.model.stochastic_process);
+        // vehicles are created by the process that owns the link
+        Scenario scenario = link.network.scenario;
+        if(scenario.partition!=null && !scenario.partition.owns(link))
+            return;
+
+        Float wait_time = random.get_waiting_time(source_demand_vps,link.model.stochastic_process);
         if(wait_time!=null) {
             EventCreateVehicle new_event = new EventCreateVehicle(dispatcher, timestamp + wait_time, this);
             dispatcher.register_event(new_event);
@@ -49,7 +63,7 @@ public class VehicleDemandGenerator extends AbstractDemandGenerator {
         AbstractVehicleModel model = (AbstractVehicleModel) link.model;
 
         // create a vehicle
-        AbstractVehicle vehicle = model.create_vehicle(commodity.getId(),commodity.vehicle_event_listeners);
+        AbstractVehicle vehicle = model.create_vehicle(link.network.scenario.context.next_vehicle_id(),commodity.getId(),commodity.vehicle_event_listeners);
 
         // sample key
         State key = sample_key();
@@ -74,4 +88,20 @@ public class VehicleDemandGenerator extends AbstractDemandGenerator {
         vehicle_scheduled = false;
     }
 
+    ////////////////////////////////////////////
+    // checkpoint
+    ////////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        super.write_checkpoint(out);
+        out.writeBoolean(vehicle_scheduled);
+    }
+
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        super.read_checkpoint(in);
+        vehicle_scheduled = in.readBoolean();
+    }
+
 }
@@ -10,7 +10,7 @@ import jaxb.Roadparam;
 import models.vehicle.newell.ModelNewell;
 import packet.*;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 public abstract class VehicleLaneGroup extends AbstractLaneGroup {
@@ -68,7 +68,7 @@ public abstract class VehicleLaneGroup extends AbstractLaneGroup {
         assert(vp.vehicles.size()<2);
         assert(vp.vehicles.isEmpty() || vp.container.isEmpty());
 
-        Set<AbstractVehicle> vehs = new HashSet<>();
+        Set<AbstractVehicle> vehs = new LinkedHashSet<>();
 
         AbstractVehicleModel model = (AbstractVehicleModel) link.model;
 
@@ -11,6 +11,8 @@ import error.OTMException;
 import geometry.FlowPosition;
 import geometry.Side;
 import jaxb.OutputRequest;
+import metrics.PhaseTimes;
+import metrics.jfr.ModelPhaseEvent;
 import common.AbstractLaneGroup;
 import models.vehicle.AbstractVehicleModel;
 import output.AbstractOutput;
@@ -80,8 +82,8 @@ public class ModelNewell extends AbstractVehicleModel implements Pokable {
     }
 
     @Override
-    public AbstractVehicle create_vehicle(Long comm_id,Set<InterfaceVehicleListener> event_listeners) {
-        return new NewellVehicle(comm_id,event_listeners);
+    public AbstractVehicle create_vehicle(long id,Long comm_id,Set<InterfaceVehicleListener> event_listeners) {
+        return new NewellVehicle(id,comm_id,event_listeners);
     }
 
     //////////////////////////////////////////////////
@@ -90,7 +92,8 @@ public class ModelNewell extends AbstractVehicleModel implements Pokable {
 
     @Override
     public void reset(Link link) {
-
+        for(AbstractLaneGroup lg : link.lanegroups_flwdn)
+            ((NewellLaneGroup) lg).vehicles.clear();
     }
 
     @Override
@@ -104,7 +107,12 @@ public class ModelNewell extends AbstractVehicleModel implements Pokable {
 
     @Override
     public void poke(Dispatcher dispatcher, float timestamp) throws OTMException {
+        long start = System.nanoTime();
+        ModelPhaseEvent jfr = new ModelPhaseEvent();
+        jfr.begin();
         update_state(timestamp);
+        phase_times.add(PhaseTimes.Phase.state_update,start);
+        jfr.commit(name,PhaseTimes.Phase.state_update,links.size(),timestamp);
         dispatcher.register_event(new EventPoke(dispatcher, 6,timestamp + dt, this));
     }
 
@@ -161,6 +169,11 @@ public class ModelNewell extends AbstractVehicleModel implements Pokable {
                 Iterator<NewellVehicle> it = lg.vehicles.iterator();
                 while (it.hasNext()) {
                     NewellVehicle vehicle = it.next();
+
+                    // the leader may have left the model after another vehicle took its follower slot
+                    if(vehicle.leader!=null && vehicle.leader.lg==null)
+                        vehicle.leader = null;
+
                     if(vehicle.leader==null) {
 
                         if(vehicle.get_next_link_id()==null)
@@ -1,5 +1,7 @@
 package models.vehicle.newell;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.AbstractVehicle;
 import common.Link;
 import common.RoadConnection;
@@ -17,6 +19,7 @@ import common.Scenario;
 import traveltime.VehicleLaneGroupTimer;
 import utils.OTMUtils;
 
+import java.io.IOException;
 import java.util.*;
 
 public class NewellLaneGroup extends VehicleLaneGroup {
@@ -32,6 +35,7 @@ public class NewellLaneGroup extends VehicleLaneGroup {
     public double dv;   // vf*dt [meters per dt]
     public double dw;   // w*dt [meters per dt]
     public double dc;   // rate*dt [veh per dt]
+    public boolean closed;  // stop line closed by a red signal: vehicles move up to it and wait
 
     ////////////////////////////////////////////
     // construction
@@ -79,10 +83,22 @@ public class NewellLaneGroup extends VehicleLaneGroup {
 
     @Override
     public void set_actuator_capacity_vps(double rate_vps) {
+        closed = rate_vps<OTMUtils.epsilon;
+        if(closed)
+            return;
         dc = Math.min( nom_dc, rate_vps * ((ModelNewell)link.model).dt );
         dw = dc / (jam_vehpermeter - dc/dv); // [m]
     }
 
+    @Override
+    public void reset_actuation() {
+        super.reset_actuation();
+        closed = false;
+        dc = nom_dc;
+        dv = nom_dv;
+        dw = dc / (jam_vehpermeter - dc/dv); // [m]
+    }
+
     @Override
     public void set_actuator_speed_mps(double speed_mps) {
         dv = Math.min( nom_dv, speed_mps * ((ModelNewell)link.model).dt );
@@ -172,6 +188,9 @@ public class NewellLaneGroup extends VehicleLaneGroup {
 
     protected boolean release_vehicle(float timestamp, Iterator<NewellVehicle> it, NewellVehicle vehicle) throws OTMException {
 
+        if(closed)
+            return false;
+
         boolean released = false;
 
         if(link.is_sink) {
@@ -194,6 +213,9 @@ public class NewellLaneGroup extends VehicleLaneGroup {
             if(travel_timer!=null)
                 ((VehicleLaneGroupTimer)travel_timer).vehicle_exit(timestamp,vehicle,link.getId(),null);
 
+            // the vehicle has left the network. Other vehicles that still follow it drop it in ModelNewell.
+            vehicle.lg = null;
+
             released = true;
         }
         else{
@@ -240,9 +262,12 @@ public class NewellLaneGroup extends VehicleLaneGroup {
                 // send vehicle packet to next link
                 next_link.model.add_vehicle_packet(next_link,timestamp,new PacketLink(vehicle,rc));
 
-                // possibly disconnect from follower
-                if(!(next_link.model instanceof ModelNewell) && vehicle.follower!=null)
-                    vehicle.follower.leader = null;
+                // possibly disconnect from follower. The next model has its own copy of the vehicle.
+                if(!(next_link.model instanceof ModelNewell)) {
+                    if(vehicle.follower != null)
+                        vehicle.follower.leader = null;
+                    vehicle.lg = null;
+                }
 
                 released = true;
             }
@@ -268,4 +293,38 @@ public class NewellLaneGroup extends VehicleLaneGroup {
 
 
     }
+
+    ////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        super.write_checkpoint(out);
+        out.writeDouble(dv);
+        out.writeDouble(dw);
+        out.writeDouble(dc);
+        out.writeBoolean(closed);
+        out.writeInt(vehicles.size());
+        for(NewellVehicle vehicle : vehicles)
+            vehicle.write_checkpoint(out);
+    }
+
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        super.read_checkpoint(in);
+        dv = in.readDouble();
+        dw = in.readDouble();
+        dc = in.readDouble();
+        closed = in.readBoolean();
+        vehicles.clear();
+        int n = in.readInt();
+        for(int i=0;i<n;i++){
+            NewellVehicle vehicle = new NewellVehicle(in);
+            vehicle.lg = this;
+            vehicles.add(vehicle);
+            in.add_vehicle(vehicle);
+        }
+    }
+
 }
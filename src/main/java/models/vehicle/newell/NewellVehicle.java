@@ -1,8 +1,11 @@
 package models.vehicle.newell;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.AbstractVehicle;
 import output.InterfaceVehicleListener;
 
+import java.io.IOException;
 import java.util.Set;
 
 public class NewellVehicle extends AbstractVehicle {
@@ -27,8 +30,8 @@ public class NewellVehicle extends AbstractVehicle {
         this.follower = null;
     }
 
-    public NewellVehicle(Long comm_id, Set<InterfaceVehicleListener> event_listeners){
-        super(comm_id,event_listeners);
+    public NewellVehicle(long id,Long comm_id, Set<InterfaceVehicleListener> event_listeners){
+        super(id,comm_id,event_listeners);
         this.pos = 0d;
         this.new_pos = 0d;
         this.headway = Double.NaN;
@@ -36,6 +39,31 @@ public class NewellVehicle extends AbstractVehicle {
         this.follower = null;
     }
 
+    // leader and follower are linked once all vehicles have been read
+    public NewellVehicle(CheckpointReader in) throws IOException {
+        super(in);
+        this.pos = in.readDouble();
+        this.headway = in.readDouble();
+        this.new_pos = in.readDouble();
+        long leader_id = in.readLong();
+        long follower_id = in.readLong();
+        in.defer(() -> {
+            this.leader = (NewellVehicle) in.get_vehicle(leader_id);
+            this.follower = (NewellVehicle) in.get_vehicle(follower_id);
+        });
+    }
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        super.write_checkpoint(out);
+        out.writeDouble(pos);
+        out.writeDouble(headway);
+        out.writeDouble(new_pos);
+        // a vehicle that has left the model (lg==null) is written as no vehicle
+        out.writeLong(leader==null || leader.lg==null ? -1 : leader.getId());
+        out.writeLong(follower==null || follower.lg==null ? -1 : follower.getId());
+    }
+
 //    public static double initialize_headway(Vehicle leader,Vehicle follower){
 //
 //        if(leader==null)
@@ -0,0 +1,31 @@
+package models.vehicle.spatialq;
+
+import dispatch.AbstractEvent;
+import dispatch.Dispatcher;
+import error.OTMException;
+
+public class EventExchangeVehicles extends AbstractEvent {
+
+    // the key of the event ahead of which it is dispatched
+    private final long tie_key;
+
+    public EventExchangeVehicles(Dispatcher dispatcher, float timestamp, int dispatch_order, long tie_key, Object model){
+        super(dispatcher,dispatch_order,timestamp,model);
+        this.tie_key = tie_key;
+    }
+
+    @Override
+    public long get_tie_key() {
+        return tie_key;
+    }
+
+    @Override
+    public void action() throws OTMException {
+        ModelSpatialQ model = (ModelSpatialQ)recipient;
+
+        // process the horizon event with the current supplies of the other processes, send the vehicles
+        // it released, and register the next exchange
+        model.boundary.exchange(timestamp);
+    }
+
+}
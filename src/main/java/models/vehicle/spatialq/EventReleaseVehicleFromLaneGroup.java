@@ -1,5 +1,6 @@
 package models.vehicle.spatialq;
 
+import common.AbstractLaneGroup;
 import common.InterfaceLaneGroup;
 import dispatch.AbstractEvent;
 import dispatch.Dispatcher;
@@ -7,8 +8,10 @@ import error.OTMException;
 
 public class EventReleaseVehicleFromLaneGroup extends AbstractEvent {
 
+    static final int DISPATCH_ORDER = 45;
+
     public EventReleaseVehicleFromLaneGroup(Dispatcher dispatcher, float timestamp, Object obj) {
-        super(dispatcher,45,timestamp,obj);
+        super(dispatcher,DISPATCH_ORDER,timestamp,obj);
 
         // add dispatch to vehicle release map if the lanegroup is actuated
         // NOTE: OTHER CONDITIONS FOR CHANGING SATURATION FLOW INCLUDE INCIDENTS
@@ -27,6 +30,13 @@ public class EventReleaseVehicleFromLaneGroup extends AbstractEvent {
 //        }
     }
 
+    // releases at the same time are dispatched in order of lane group, so that they are in the same order
+    // in every process of a partitioned simulation
+    @Override
+    public long get_tie_key() {
+        return ((AbstractLaneGroup) recipient).id;
+    }
+
     @Override
     public void action() throws OTMException {
         ((InterfaceLaneGroup) recipient).release_vehicle_packets(timestamp);
@@ -0,0 +1,362 @@
+package models.vehicle.spatialq;
+
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+import common.AbstractLaneGroup;
+import common.Link;
+import common.RoadConnection;
+import dispatch.AbstractEvent;
+import dispatch.Dispatcher;
+import dispatch.EventAdvanceSignalPhase;
+import dispatch.EventInitializeController;
+import dispatch.EventPoke;
+import distributed.Partition;
+import error.OTMException;
+import packet.PacketLink;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Part of a spatial queue model that runs in one process of a partitioned simulation, and
+ * its exchange with the other processes. Each process runs the events of its own links only,
+ * with its own dispatcher. The simulation is a conservative parallel discrete event simulation
+ * whose results are the same as those of a single-process run.
+ *
+ * Processes interact only when a lane group releases a vehicle into a link of another process:
+ * the release depends on the supply of that link, and the vehicle enters it at the release time.
+ * Such a release is an event of a sender, a lane group with a road connection into a link of
+ * another process. Every process knows the next event at which one of its senders may release,
+ * or, if a sender is stopped (e.g. by a red signal), at which a controller or actuator may start
+ * it again. The processes agree on the first of these events over all processes, the horizon,
+ * and each runs its own events up to it. Then the process of the horizon event receives the
+ * current supplies of the lane groups it releases into, processes that one event, and sends the
+ * vehicle it released, if any, to the process of its next link, which adds it at the release time.
+ * Events of different processes with the same time and dispatch order do not interact, except
+ * releases, which are dispatched in order of lane group in every process.
+ *
+ * The processes synchronize once for every release of a sender, so the speedup is highest for
+ * partitions that cut few lane groups.
+ */
+public class MesoBoundary {
+
+    public final ModelSpatialQ model;
+    public final Partition partition;
+
+    // processes with links that share a road connection with those of another process, this one included.
+    // They agree on the horizon.
+    private final List<Integer> participants = new ArrayList<>();
+
+    // supplies: process -> lane groups
+    private final Map<Integer,List<MesoLaneGroup>> send_supply = new TreeMap<>();
+    private final Map<Integer,List<MesoLaneGroup>> receive_supply = new TreeMap<>();
+
+    // lane groups of this process that may release vehicles into links of other processes
+    private final List<MesoLaneGroup> senders;
+
+    // the horizon, its process, and the event that stops this process ahead of it
+    private Key horizon;
+    private int horizon_rank;
+    private EventExchangeVehicles pending;
+
+    // vehicles released by the horizon event into links of other processes: process -> transfers
+    private final Map<Integer,List<Transfer>> outbox = new TreeMap<>();
+
+    // vehicles sent to and received from other processes since initialization
+    private long num_sent;
+    private long num_received;
+
+    public MesoBoundary(ModelSpatialQ model,Partition partition) {
+        this.model = model;
+        this.partition = partition;
+
+        int me = partition.rank;
+        Set<Integer> all = new TreeSet<>();
+        Map<Integer,Set<MesoLaneGroup>> send = new TreeMap<>();
+        Map<Integer,Set<MesoLaneGroup>> receive = new TreeMap<>();
+        Set<MesoLaneGroup> my_senders = new HashSet<>();
+        for(RoadConnection rc : partition.scenario.network.get_road_connections()){
+            if(rc.start_link==null || rc.end_link==null || rc.end_link.model!=model)
+                continue;
+            int up = partition.rank_of(rc.start_link);
+            int dn = partition.rank_of(rc.end_link);
+            if(up==dn)
+                continue;
+
+            // every process finds the same participants
+            all.add(up);
+            all.add(dn);
+
+            if(dn==me){
+                for(AbstractLaneGroup lg : rc.out_lanegroups)
+                    send.computeIfAbsent(up,r->new HashSet<>()).add((MesoLaneGroup) lg);
+            }
+            if(up==me){
+                for(AbstractLaneGroup lg : rc.out_lanegroups)
+                    receive.computeIfAbsent(dn,r->new HashSet<>()).add((MesoLaneGroup) lg);
+                for(AbstractLaneGroup lg : rc.in_lanegroups)
+                    my_senders.add((MesoLaneGroup) lg);
+            }
+        }
+        if(all.contains(me))
+            participants.addAll(all);
+
+        // lane groups are in hash sets whose order may differ between processes, so messages list them by id
+        send.forEach((r,x)->send_supply.put(r,by_id(x)));
+        receive.forEach((r,x)->receive_supply.put(r,by_id(x)));
+        senders = by_id(my_senders);
+    }
+
+    public boolean owns(Link link){
+        return partition.owns(link);
+    }
+
+    // no exchange is needed if the model is not cut
+    public boolean is_cut(){
+        return !participants.isEmpty();
+    }
+
+    public long get_num_sent(){
+        return num_sent;
+    }
+
+    public long get_num_received(){
+        return num_received;
+    }
+
+    ////////////////////////////////////////////
+    // update
+    ////////////////////////////////////////////
+
+    void register_with_dispatcher(Dispatcher dispatcher,float start_time){
+        outbox.clear();
+        horizon = null;
+        pending = null;
+        num_sent = 0;
+        num_received = 0;
+    }
+
+    // called by MesoLaneGroup.release_vehicle_packets for a vehicle whose next link is in another process
+    void send_vehicle(float timestamp,MesoVehicle vehicle,RoadConnection rc){
+        outbox.computeIfAbsent(partition.rank_of(rc.end_link),r->new ArrayList<>()).add(new Transfer(timestamp,rc,vehicle));
+    }
+
+    // called by the partition at the start of every advance, in every process at the same time.
+    // Changes made through the API between advances may have started a sender.
+    public void start_advance(float timestamp) throws OTMException {
+        if(!is_cut())
+            return;
+        if(pending!=null)
+            partition.scenario.dispatcher.events.remove(pending);
+        exchange_horizons(timestamp);
+    }
+
+    // called by EventExchangeVehicles, once every process has run its events ahead of the horizon
+    void exchange(float timestamp) throws OTMException {
+        pending = null;
+        int me = partition.rank;
+        try {
+
+            // the process of the horizon event receives the supplies of the lane groups it releases into
+            if(horizon_rank!=me && send_supply.containsKey(horizon_rank)){
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                CheckpointWriter out = header(bytes,timestamp);
+                for(MesoLaneGroup lg : send_supply.get(horizon_rank)) {
+                    out.writeLong(lg.id);
+                    out.writeDouble(lg.get_supply());
+                }
+                out.flush();
+                partition.transport.send(horizon_rank,bytes.toByteArray());
+            }
+
+            // and processes the horizon event, which is the next one in its queue
+            if(horizon_rank==me){
+                for(Map.Entry<Integer,List<MesoLaneGroup>> e : receive_supply.entrySet()){
+                    CheckpointReader in = read_header(e.getKey(),timestamp);
+                    for(MesoLaneGroup lg : e.getValue()) {
+                        check_id(in,lg.id,e.getKey());
+                        lg.set_supply(in.readDouble());
+                    }
+                }
+                partition.scenario.dispatcher.dispatch_next_event();
+            }
+
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+
+        exchange_horizons(timestamp);
+    }
+
+    ////////////////////////////////////////////
+    // private
+    ////////////////////////////////////////////
+
+    // send the vehicles of the outbox and the next event of every participant to every other, add the
+    // vehicles received, and register the exchange at the new horizon
+    private void exchange_horizons(float timestamp) throws OTMException {
+        int me = partition.rank;
+        Dispatcher dispatcher = partition.scenario.dispatcher;
+        try {
+            Key mine = next_key(dispatcher);
+            for(int r : participants){
+                if(r==me)
+                    continue;
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                CheckpointWriter out = header(bytes,timestamp);
+                List<Transfer> transfers = outbox.getOrDefault(r,Collections.emptyList());
+                out.writeInt(transfers.size());
+                num_sent += transfers.size();
+                for(Transfer x : transfers){
+                    out.writeFloat(x.timestamp);
+                    out.writeLong(x.rc.getId());
+                    x.vehicle.write_checkpoint(out);
+                }
+                out.writeBoolean(mine!=null);
+                if(mine!=null)
+                    mine.write(out);
+                out.flush();
+                partition.transport.send(r,bytes.toByteArray());
+            }
+            outbox.clear();
+
+            horizon = mine;
+            horizon_rank = me;
+            List<Transfer> arrivals = new ArrayList<>();
+            for(int r : participants){
+                if(r==me)
+                    continue;
+                CheckpointReader in = read_header(r,timestamp);
+                int n = in.readInt();
+                for(int i=0;i<n;i++){
+                    float time = in.readFloat();
+                    long rc_id = in.readLong();
+                    RoadConnection rc = partition.scenario.network.get_road_connection(rc_id);
+                    if(rc==null || rc.end_link==null || !owns(rc.end_link))
+                        throw new IOException(String.format("Process %d received a vehicle for road connection %d from process %d.",partition.rank,rc_id,r));
+                    arrivals.add(new Transfer(time,rc,new MesoVehicle(in)));
+                }
+                if(in.readBoolean()){
+                    Key key = Key.read(in);
+                    // ties go to the lowest process
+                    int c = horizon==null ? -1 : key.compareTo(horizon);
+                    if(c<0 || (c==0 && r<horizon_rank)){
+                        horizon = key;
+                        horizon_rank = r;
+                    }
+                }
+            }
+
+            // the vehicles of the horizon event enter their links at its time, before any later event
+            num_received += arrivals.size();
+            for(Transfer x : arrivals)
+                model.add_vehicle_packet(x.rc.end_link,x.timestamp,new PacketLink(x.vehicle,x.rc));
+
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+
+        // stop ahead of the horizon event, and of any event of this process with the same key
+        if(horizon!=null){
+            pending = new EventExchangeVehicles(dispatcher,horizon.timestamp,horizon.dispatch_order,horizon.tie_key,model);
+            pending.seq = -1;
+            dispatcher.events.offer(pending);
+        }
+    }
+
+    // first event of this process that may release a vehicle into a link of another process, null if none
+    private Key next_key(Dispatcher dispatcher){
+        Key key = null;
+        boolean stopped = false;
+        for(MesoLaneGroup lg : senders){
+            Float time = lg.get_release_time();
+            if(time==null)
+                stopped = true;
+            else
+                key = Key.min(key,new Key(time,EventReleaseVehicleFromLaneGroup.DISPATCH_ORDER,lg.id));
+        }
+
+        // a stopped sender starts again when a controller or actuator sets its capacity
+        if(stopped)
+            for(AbstractEvent e : dispatcher.events)
+                if(e instanceof EventPoke || e instanceof EventInitializeController || e instanceof EventAdvanceSignalPhase)
+                    key = Key.min(key,new Key(e.timestamp,e.dispatch_order,e.get_tie_key()));
+        return key;
+    }
+
+    // position of an event in the order of the dispatcher, but for the registration order
+    private static class Key implements Comparable<Key> {
+        final float timestamp;
+        final int dispatch_order;
+        final long tie_key;
+        Key(float timestamp,int dispatch_order,long tie_key){
+            this.timestamp = timestamp;
+            this.dispatch_order = dispatch_order;
+            this.tie_key = tie_key;
+        }
+        static Key min(Key a,Key b){
+            return a==null || b.compareTo(a)<0 ? b : a;
+        }
+        static Key read(CheckpointReader in) throws IOException {
+            return new Key(in.readFloat(),in.readInt(),in.readLong());
+        }
+        void write(CheckpointWriter out) throws IOException {
+            out.writeFloat(timestamp);
+            out.writeInt(dispatch_order);
+            out.writeLong(tie_key);
+        }
+        @Override
+        public int compareTo(Key that) {
+            int c = Float.compare(this.timestamp,that.timestamp);
+            if(c!=0)
+                return c;
+            c = Integer.compare(this.dispatch_order,that.dispatch_order);
+            if(c!=0)
+                return c;
+            return Long.compare(this.tie_key,that.tie_key);
+        }
+    }
+
+    private static class Transfer {
+        final float timestamp;
+        final RoadConnection rc;
+        final MesoVehicle vehicle;
+        Transfer(float timestamp,RoadConnection rc,MesoVehicle vehicle){
+            this.timestamp = timestamp;
+            this.rc = rc;
+            this.vehicle = vehicle;
+        }
+    }
+
+    private static List<MesoLaneGroup> by_id(Set<MesoLaneGroup> x){
+        List<MesoLaneGroup> list = new ArrayList<>(x);
+        list.sort(Comparator.comparingLong(lg->lg.id));
+        return list;
+    }
+
+    private CheckpointWriter header(ByteArrayOutputStream bytes,float timestamp) throws IOException {
+        CheckpointWriter out = new CheckpointWriter(bytes);
+        out.writeUTF(model.name);
+        out.writeFloat(timestamp);
+        return out;
+    }
+
+    private CheckpointReader read_header(int rank,float timestamp) throws IOException {
+        CheckpointReader in = new CheckpointReader(new ByteArrayInputStream(partition.transport.receive(rank)),partition.scenario);
+        String name = in.readUTF();
+        float time = in.readFloat();
+        if(!name.equals(model.name) || time!=timestamp)
+            throw new IOException(String.format("Process %d expected model %s at time %f from process %d, received model %s at time %f.",
+                    partition.rank,model.name,timestamp,rank,name,time));
+        return in;
+    }
+
+    private void check_id(CheckpointReader in,long id,int rank) throws IOException {
+        long x = in.readLong();
+        if(x!=id)
+            throw new IOException(String.format("Process %d expected id %d from process %d, received %d.",partition.rank,id,rank,x));
+    }
+
+}
@@ -1,5 +1,7 @@
 package models.vehicle.spatialq;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.*;
 import error.OTMErrorLog;
 import error.OTMException;
@@ -16,6 +18,7 @@ import common.Scenario;
 import traveltime.VehicleLaneGroupTimer;
 import utils.OTMUtils;
 
+import java.io.IOException;
 import java.util.*;
 
 public class MesoLaneGroup extends VehicleLaneGroup {
@@ -31,6 +34,10 @@ public class MesoLaneGroup extends VehicleLaneGroup {
     public float transit_time_sec;
     public double saturation_flow_rate_vps;
 
+    // a release event is pending. None is while the saturation flow is zero, e.g. at a red signal
+    private boolean release_scheduled;
+    private float release_time;
+
     ////////////////////////////////////////////
     // construction
     ///////////////////////////////////////////
@@ -58,6 +65,7 @@ public class MesoLaneGroup extends VehicleLaneGroup {
 //        current_max_flow_rate_vps = saturation_flow_rate_vps;
 
         // register first vehicle exit
+        release_scheduled = false;
         schedule_release_vehicle(start_time);
 
         update_supply();
@@ -87,6 +95,17 @@ public class MesoLaneGroup extends VehicleLaneGroup {
         if(rate_vps<-OTMUtils.epsilon)
             return;
         this.saturation_flow_rate_vps = Math.min(nom_saturation_flow_rate_vps,rate_vps);
+
+        // releases stopped while the flow was zero
+        if(!release_scheduled && link.network.scenario.dispatcher!=null)
+            schedule_release_vehicle(link.network.scenario.dispatcher.current_time);
+    }
+
+    @Override
+    public void reset_actuation() {
+        super.reset_actuation();
+        saturation_flow_rate_vps = nom_saturation_flow_rate_vps;
+        transit_time_sec = nom_transit_time_sec;
     }
 
     @Override
@@ -110,6 +129,16 @@ public class MesoLaneGroup extends VehicleLaneGroup {
         supply =  max_vehicles - get_total_vehicles();
     }
 
+    // supply of a lane group of another process in a partitioned simulation
+    void set_supply(double supply){
+        this.supply = supply;
+    }
+
+    // time of the pending release event, null if there is none
+    Float get_release_time(){
+        return release_scheduled ? release_time : null;
+    }
+
     @Override
     public Double get_upstream_vehicle_position(){
         return supply * length / max_vehicles;
@@ -189,8 +218,13 @@ public class MesoLaneGroup extends VehicleLaneGroup {
     public void release_vehicle_packets(float timestamp) throws OTMException {
 
         // schedule the next vehicle release dispatch
+        release_scheduled = false;
         schedule_release_vehicle(timestamp);
 
+        // no release while the saturation flow is zero
+        if(!release_scheduled)
+            return;
+
         // ignore if waiting queue is empty
         if(waiting_queue.num_vehicles()==0)
             return;
@@ -254,14 +288,19 @@ public class MesoLaneGroup extends VehicleLaneGroup {
                 if (travel_timer != null)
                     ((VehicleLaneGroupTimer)travel_timer).vehicle_exit(timestamp,vehicle,link.getId(),next_link);
 
-                // send vehicle packet to next link
-                next_link.model.add_vehicle_packet(next_link,timestamp,new PacketLink(vehicle,rc));
+                // send vehicle packet to next link, or to the process that owns it
+                MesoBoundary boundary = ((ModelSpatialQ) link.model).boundary;
+                boolean remote = boundary!=null && !boundary.owns(next_link);
+                if(remote)
+                    boundary.send_vehicle(timestamp,vehicle,rc);
+                else
+                    next_link.model.add_vehicle_packet(next_link,timestamp,new PacketLink(vehicle,rc));
 
                 // TODO Need a better solution than this.
                 // TODO This is adhoc for when the next links is a fluid model.
                 // Todo Then the event counter is not getting triggered.
                 // inform the queue counters
-                if( !(next_link.model instanceof ModelSpatialQ) && vehicle.get_event_listeners()!=null) {
+                if( (remote || !(next_link.model instanceof ModelSpatialQ)) && vehicle.get_event_listeners()!=null) {
                     for (InterfaceVehicleListener ev : vehicle.get_event_listeners())
                         ev.move_from_to_queue(timestamp, vehicle, waiting_queue, null);
                 }
@@ -292,19 +331,68 @@ public class MesoLaneGroup extends VehicleLaneGroup {
         return (float) (transit_queue.num_vehicles_for_commodity(c) + waiting_queue.num_vehicles_for_commodity(c));
     }
 
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        super.write_checkpoint(out);
+        out.writeFloat(transit_time_sec);
+        out.writeDouble(saturation_flow_rate_vps);
+        out.writeBoolean(release_scheduled);
+        write_queue(out,transit_queue);
+        write_queue(out,waiting_queue);
+    }
+
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        super.read_checkpoint(in);
+        transit_time_sec = in.readFloat();
+        saturation_flow_rate_vps = in.readDouble();
+        release_scheduled = in.readBoolean();
+        read_queue(in,transit_queue);
+        read_queue(in,waiting_queue);
+    }
+
     ///////////////////////////////////////////////////
     // private
     ///////////////////////////////////////////////////
 
+    private static void write_queue(CheckpointWriter out,Queue queue) throws IOException {
+        List<MesoVehicle> vehicles = queue.get_vehicles();
+        out.writeInt(vehicles.size());
+        for(MesoVehicle vehicle : vehicles)
+            vehicle.write_checkpoint(out);
+    }
+
+    private void read_queue(CheckpointReader in,Queue queue) throws IOException {
+        queue.clear();
+        int n = in.readInt();
+        for(int i=0;i<n;i++){
+            MesoVehicle vehicle = new MesoVehicle(in);
+            vehicle.lg = this;
+            vehicle.my_queue = queue;
+            queue.add_vehicle(vehicle);
+            in.add_vehicle(vehicle);
+        }
+    }
+
     private void schedule_release_vehicle(float nowtime){
 
-        Float wait_time = OTMUtils.get_waiting_time(saturation_flow_rate_vps,link.model.stochastic_process);
+        // lane groups of other processes in a partitioned simulation only keep their supply
+        Scenario scenario = link.network.scenario;
+        if(scenario.partition!=null && !scenario.partition.owns(link))
+            return;
+
+        Float wait_time = random.get_waiting_time(saturation_flow_rate_vps,link.model.stochastic_process);
 
         if(wait_time!=null){
-            Scenario scenario = link.network.scenario;
             float timestamp = nowtime + wait_time;
             scenario.dispatcher.register_event(
                     new EventReleaseVehicleFromLaneGroup(scenario.dispatcher,timestamp,this));
+            release_scheduled = true;
+            release_time = timestamp;
         }
     }
 
@@ -1,9 +1,12 @@
 package models.vehicle.spatialq;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import error.OTMException;
 import common.AbstractVehicle;
 import output.InterfaceVehicleListener;
 
+import java.io.IOException;
 import java.util.Set;
 
 public class MesoVehicle extends AbstractVehicle {
@@ -20,11 +23,22 @@ public class MesoVehicle extends AbstractVehicle {
         this.waiting_for_lane_change = false;
     }
 
-    public MesoVehicle(Long comm_id, Set<InterfaceVehicleListener> event_listeners){
-        super(comm_id,event_listeners);
+    public MesoVehicle(long id,Long comm_id, Set<InterfaceVehicleListener> event_listeners){
+        super(id,comm_id,event_listeners);
         this.waiting_for_lane_change = false;
     }
 
+    public MesoVehicle(CheckpointReader in) throws IOException {
+        super(in);
+        this.waiting_for_lane_change = in.readBoolean();
+    }
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        super.write_checkpoint(out);
+        out.writeBoolean(waiting_for_lane_change);
+    }
+
     ///////////////////////////////////////////////////
     // update
     ///////////////////////////////////////////////////
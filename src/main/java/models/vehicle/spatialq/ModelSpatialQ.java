@@ -18,6 +18,8 @@ import java.util.stream.Collectors;
 
 public class ModelSpatialQ extends AbstractVehicleModel {
 
+    MesoBoundary boundary;           // null unless the network is partitioned across processes
+
     public ModelSpatialQ(String name, boolean is_default, StochasticProcess process, jaxb.ModelParams param) {
         super(name,is_default,process);
     }
@@ -67,11 +69,28 @@ public class ModelSpatialQ extends AbstractVehicleModel {
 
     @Override
     public void reset(Link link) {
+        for(AbstractLaneGroup alg : link.lanegroups_flwdn){
+            MesoLaneGroup lg = (MesoLaneGroup) alg;
+            lg.transit_queue.clear();
+            lg.waiting_queue.clear();
+        }
+    }
 
+    // null unless the network is partitioned across processes
+    public MesoBoundary get_boundary(){
+        return boundary;
+    }
+
+    @Override
+    public void initialize(Scenario scenario) throws OTMException {
+        super.initialize(scenario);
+        boundary = scenario.partition==null ? null : new MesoBoundary(this,scenario.partition);
     }
 
     @Override
     public void register_with_dispatcher(Scenario scenario, Dispatcher dispatcher, float start_time) {
+        if(boundary!=null)
+            boundary.register_with_dispatcher(dispatcher,start_time);
     }
 
     //////////////////////////////////////////////////////////////
@@ -87,8 +106,8 @@ public class ModelSpatialQ extends AbstractVehicleModel {
     }
 
     @Override
-    public AbstractVehicle create_vehicle(Long comm_id,Set<InterfaceVehicleListener> event_listeners) {
-        return new MesoVehicle(comm_id,event_listeners);
+    public AbstractVehicle create_vehicle(long id,Long comm_id,Set<InterfaceVehicleListener> event_listeners) {
+        return new MesoVehicle(id,comm_id,event_listeners);
     }
 
     //////////////////////////////////////////////////////////////
@@ -47,7 +47,10 @@ public class Queue {
     }
 
     public void initialize() throws OTMException {
-        vehicles = new ArrayList<>();
+        if(vehicles==null)
+            vehicles = new ArrayList<>();
+        else
+            vehicles.clear();
     }
 
     ///////////////////////////////////////////////////
@@ -87,6 +90,10 @@ public class Queue {
         return vehicles.size();
     }
 
+    public List<MesoVehicle> get_vehicles(){
+        return vehicles;
+    }
+
 //    public void submit_lane_change_request(LaneChangeRequest r){
 //        this.lane_change_requests.add(r);
 //    }
@@ -15,12 +15,20 @@ import common.Scenario;
 import java.awt.*;
 import java.awt.geom.Ellipse2D;
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.IntStream;
 
 public abstract class AbstractOutput implements InterfaceOutput {
 
     public enum Type {
         link_flw,
+        link_flw_stats,
         link_veh,
         link_sumveh,
         vht,
@@ -36,6 +44,7 @@ public abstract class AbstractOutput implements InterfaceOutput {
         vehicle_events,
         vehicle_class,
         vehicle_travel_time,
+        vehicle_travel_time_stats,
         controller,
         actuator,
         sensor
@@ -50,6 +59,10 @@ public abstract class AbstractOutput implements InterfaceOutput {
     public final String prefix;
     public final boolean write_to_file;
 
+    // compressed container
+    public boolean compressed = false;
+    protected List<CompressedOutputStream> compressed_streams = new ArrayList<>();
+
     //////////////////////////////////////////////////////
     // construction
     //////////////////////////////////////////////////////
@@ -74,18 +87,14 @@ public abstract class AbstractOutput implements InterfaceOutput {
     public void open() throws OTMException {
         if(!write_to_file)
             return;
-        try {
-            String filename = get_output_file();
-            if( filename!=null && !filename.isEmpty() ) {
-                writer = new OutputStreamWriter(new FileOutputStream(filename));
-            }
-        } catch (FileNotFoundException exc) {
-            throw new OTMException(exc);
-        }
+        String filename = get_output_file();
+        if( filename!=null && !filename.isEmpty() )
+            writer = new OutputStreamWriter(open_stream(filename));
     }
 
     @Override
     public void close() throws OTMException {
+        compressed_streams.clear();
         if(writer==null)
             return;
         try {
@@ -118,6 +127,71 @@ public abstract class AbstractOutput implements InterfaceOutput {
         return output_folder + File.separator + prefix;
     }
 
+    // file stream, routed through the scenario's output pipeline if there is one,
+    // and wrapped in a compressed container (filename + ".z") if requested.
+    protected OutputStream open_stream(String filename) throws OTMException {
+        try {
+            OutputStream stream = new FileOutputStream(compressed ? filename + ".z" : filename);
+            if(scenario.output_pipeline!=null)
+                stream = scenario.output_pipeline.open_stream(stream);
+            if(compressed){
+                CompressedOutputStream cstream = new CompressedOutputStream(stream,CompressedOutputStream.DEFAULT_CHUNK_SIZE);
+                compressed_streams.add(cstream);
+                stream = cstream;
+            }
+            return stream;
+        } catch (FileNotFoundException exc) {
+            throw new OTMException(exc);
+        }
+    }
+
+    // binary file channel, through open_stream if the output is piped or compressed
+    protected WritableByteChannel open_channel(String filename) throws OTMException {
+        if(scenario.output_pipeline!=null || compressed)
+            return Channels.newChannel(open_stream(filename));
+        try {
+            return FileChannel.open(Paths.get(filename),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    // Marks the start of a row or event in the compressed containers, so that chunks
+    // can be located by time. The writers are flushed only before a chunk is cut, so the
+    // chunk ends with the last complete row.
+    protected final void mark_time(float timestamp) throws OTMException {
+        if(compressed_streams.isEmpty())
+            return;
+        for(CompressedOutputStream cstream : compressed_streams)
+            if(cstream.is_chunk_boundary()){
+                flush_writers();
+                break;
+            }
+        try {
+            for(CompressedOutputStream cstream : compressed_streams)
+                cstream.mark_time(timestamp);
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    protected void flush_writers() throws OTMException {
+        if(writer==null)
+            return;
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    public final void set_compressed(boolean compressed){
+        this.compressed = compressed;
+    }
+
     //////////////////////////////////////////////////////
     // final
     //////////////////////////////////////////////////////
@@ -126,6 +200,11 @@ public abstract class AbstractOutput implements InterfaceOutput {
         return type;
     }
 
+    public final String get_binary_file(){
+        String filename = get_output_file();
+        return filename==null ? null : filename.substring(0,filename.length()-4) + ".bin";
+    }
+
     //////////////////////////////////////////////////////
     // static
     //////////////////////////////////////////////////////
@@ -45,6 +45,7 @@ public abstract class AbstractOutputEvent extends AbstractOutput implements Inte
 
     public final void write(AbstractEventWrapper event) throws OTMException {
         if(write_to_file){
+            mark_time(event.timestamp);
             try {
                 writer.write(event.timestamp+"\t"+event.asString()+"\n");
             } catch (IOException e) {
@@ -0,0 +1,141 @@
+package output;
+
+import common.Scenario;
+import error.OTMErrorLog;
+import error.OTMException;
+import utils.StreamingStats;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Keeps running statistics per key (link, OD pair, ...) instead of raw samples.
+ * Statistics are reported at the end of every report window of report_dt seconds,
+ * or once at the end of the run if report_dt is null. Each report is one line per key:
+ *      start_time  end_time  key  count  mean  std  min  max  quantile_1 ... quantile_n
+ */
+public abstract class AbstractOutputStats<K> extends AbstractOutput {
+
+    public static final double [] default_quantiles = {0.05,0.5,0.9,0.95};
+
+    public final Float report_dt;
+    public double [] quantiles = default_quantiles;
+
+    protected Map<K,StreamingStats> stats;
+    protected List<Report<K>> reports;
+    protected float window_start;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public AbstractOutputStats(Scenario scenario,String prefix,String output_folder,Float report_dt) {
+        super(scenario,prefix,output_folder);
+        this.report_dt = report_dt;
+    }
+
+    //////////////////////////////////////////////////////
+    // InterfaceOutput
+    //////////////////////////////////////////////////////
+
+    @Override
+    public void close() throws OTMException {
+        if(stats!=null && scenario.dispatcher!=null)
+            emit(scenario.dispatcher.current_time);
+        super.close();
+    }
+
+    //////////////////////////////////////////////////////
+    // AbstractOutput
+    //////////////////////////////////////////////////////
+
+    @Override
+    public void validate(OTMErrorLog errorLog) {
+        super.validate(errorLog);
+        if(report_dt!=null && report_dt<=0f)
+            errorLog.addError("report_dt must be positive");
+    }
+
+    @Override
+    public void initialize(Scenario scenario) throws OTMException {
+        super.initialize(scenario);
+        stats = new HashMap<>();
+        reports = new ArrayList<>();
+        window_start = scenario.dispatcher==null ? 0f : scenario.dispatcher.current_time;
+    }
+
+    //////////////////////////////////////////////////////
+    // samples
+    //////////////////////////////////////////////////////
+
+    protected final void add_sample(float timestamp,K key,double value) throws OTMException {
+        if(report_dt!=null)
+            while(timestamp>=window_start+report_dt){
+                float window_end = window_start+report_dt;
+                emit(window_end);
+                window_start = window_end;
+            }
+        stats.computeIfAbsent(key,k->new StreamingStats()).add(value);
+    }
+
+    abstract protected String format_key(K key);
+
+    //////////////////////////////////////////////////////
+    // final
+    //////////////////////////////////////////////////////
+
+    public final List<Report<K>> get_reports(){
+        return reports;
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private void emit(float window_end) throws OTMException {
+        if(stats.isEmpty())
+            return;
+        if(write_to_file) {
+            try {
+                for (Map.Entry<K,StreamingStats> e : stats.entrySet()) {
+                    StreamingStats s = e.getValue();
+                    StringBuilder str = new StringBuilder();
+                    str.append(window_start).append("\t").append(window_end).append("\t")
+                            .append(format_key(e.getKey())).append("\t")
+                            .append(s.get_count()).append("\t")
+                            .append(s.get_mean()).append("\t")
+                            .append(s.get_std()).append("\t")
+                            .append(s.get_min()).append("\t")
+                            .append(s.get_max());
+                    for (double q : quantiles)
+                        str.append("\t").append(s.get_quantile(q));
+                    writer.write(str.append("\n").toString());
+                }
+            } catch (IOException e) {
+                throw new OTMException(e);
+            }
+        } else {
+            for (Map.Entry<K,StreamingStats> e : stats.entrySet())
+                reports.add(new Report<>(window_start,window_end,e.getKey(),e.getValue()));
+        }
+        stats = new HashMap<>();
+    }
+
+    //////////////////////////////////////////////////////
+    // class
+    //////////////////////////////////////////////////////
+
+    public static class Report<K> {
+        public final float start_time;
+        public final float end_time;
+        public final K key;
+        public final StreamingStats stats;
+        public Report(float start_time,float end_time,K key,StreamingStats stats){
+            this.start_time = start_time;
+            this.end_time = end_time;
+            this.key = key;
+            this.stats = stats;
+        }
+    }
+
+}
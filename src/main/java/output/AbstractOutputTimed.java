@@ -9,15 +9,36 @@ import runner.RunParameters;
 import common.Scenario;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public abstract class AbstractOutputTimed extends AbstractOutput implements InterfacePlottable {
 
+    public enum Format {
+        text,
+        binary32,
+        binary64
+    }
+
     // timed output
     public float outDt;			// output frequency in seconds
     public Commodity commodity;
-    public Writer time_writer;
+    public CsvWriter time_writer;
     public static String delim = ",";
 
+    // text output
+    public CsvWriter csv_writer;
+    public int decimals = 6;        // fixed precision of the values, or CsvWriter.SHORTEST
+
+    // binary output
+    public Format format = Format.text;
+    public BinaryTimedWriter bin_writer;
+
+    // live subscribers
+    public List<OutputSubscription> subscriptions = new ArrayList<>();
+    public boolean store_profiles = true;      // keep in-memory profiles when not writing to file
+    protected double [] row;
+
     //////////////////////////////////////////////////////
     // construction
     //////////////////////////////////////////////////////
@@ -45,30 +66,43 @@ public abstract class AbstractOutputTimed extends AbstractOutput implements Inte
 
     @Override
     public void open() throws OTMException {
-        super.open();
-        if(write_to_file){
-            try {
-                String filename = get_output_file();
-                if(filename!=null) {
-                    String subfilename = filename.substring(0,filename.length()-4);
-                    time_writer = new OutputStreamWriter(new FileOutputStream(subfilename+"_time.txt"));
-                }
-            } catch (FileNotFoundException exc) {
-                throw new OTMException(exc);
-            }
-
+        if(write_to_file && format!=Format.text){
+            bin_writer = new BinaryTimedWriter(open_channel(get_binary_file()),get_commodity_id(),outDt,get_col_ids(),get_col_index(),format==Format.binary64);
+            bin_writer.file = get_binary_file();
+            return;
+        }
+        if(!write_to_file)
+            return;
+        String filename = get_output_file();
+        if(filename==null)
+            return;
+        if(has_columns()) {
+            csv_writer = new CsvWriter(open_stream(filename), decimals);
+            csv_writer.file = filename;
         }
+        else
+            super.open();
+        String subfilename = filename.substring(0,filename.length()-4);
+        time_writer = new CsvWriter(open_stream(subfilename+"_time.txt"),CsvWriter.SHORTEST);
+        time_writer.file = subfilename+"_time.txt";
     }
 
     @Override
     public void close() throws OTMException {
         super.close();
-        if(time_writer==null)
-            return;
-        try {
+        for(OutputSubscription subscription : subscriptions)
+            subscription.close();
+        if(bin_writer!=null){
+            bin_writer.close();
+            bin_writer = null;
+        }
+        if(csv_writer!=null){
+            csv_writer.close();
+            csv_writer = null;
+        }
+        if(time_writer!=null){
             time_writer.close();
-        } catch (IOException e) {
-            throw new OTMException(e);
+            time_writer = null;
         }
     }
 
@@ -84,6 +118,10 @@ public abstract class AbstractOutputTimed extends AbstractOutput implements Inte
     public void validate(OTMErrorLog errorLog) {
         if(Float.isNaN(outDt) || outDt<=0f)
             errorLog.addError("outDt is not defined");
+        if(format!=Format.text && !has_columns())
+            errorLog.addError("Binary format is not supported for output type " + type);
+        if(decimals<CsvWriter.SHORTEST || decimals>CsvWriter.MAX_DECIMALS)
+            errorLog.addError("Text output precision must be between 0 and " + CsvWriter.MAX_DECIMALS);
     }
 
     @Override
@@ -92,16 +130,58 @@ public abstract class AbstractOutputTimed extends AbstractOutput implements Inte
                 (commodity==null ? "allcomms" : commodity.getId());
     }
 
+    // column ids and cell indices of a row, for the binary header and subscriptions.
+    // null if the output does not have fixed columns.
+    protected long [] get_col_ids(){
+        return null;
+    }
+
+    protected int [] get_col_index(){
+        return null;
+    }
+
+    protected final double [] get_row(){
+        if(row==null)
+            row = new double[get_col_ids().length];
+        return row;
+    }
+
+    protected final void publish(float timestamp,double [] values) throws OTMException {
+        for(OutputSubscription subscription : subscriptions)
+            subscription.publish(timestamp,values);
+    }
+
+    @Override
+    protected void flush_writers() throws OTMException {
+        super.flush_writers();
+        if(bin_writer!=null)
+            bin_writer.flush();
+        if(csv_writer!=null)
+            csv_writer.flush();
+        if(time_writer!=null)
+            time_writer.flush();
+    }
+
     public void write(float timestamp) throws OTMException {
-        if(write_to_file) {
-            try {
-                time_writer.write(timestamp + "\n");
-            } catch (IOException e) {
-                throw new OTMException(e);
-            }
+        mark_time(timestamp);
+        if(bin_writer!=null)
+            bin_writer.put_time(timestamp);
+        else if(write_to_file) {
+            time_writer.put(timestamp);
+            time_writer.put('\n');
         }
     }
 
+    // one row of values in the text format
+    protected final void write_csv(double [] values) throws OTMException {
+        for(int i=0;i<values.length;i++){
+            if(i>0)
+                csv_writer.put(delim);
+            csv_writer.put(values[i]);
+        }
+        csv_writer.put('\n');
+    }
+
     //////////////////////////////////////////////////////
     // final
     //////////////////////////////////////////////////////
@@ -114,4 +194,27 @@ public abstract class AbstractOutputTimed extends AbstractOutput implements Inte
         return this.outDt;
     }
 
+    public final OutputSubscription subscribe(InterfaceOutputRowListener listener,OutputSubscription.Policy policy,int capacity) throws OTMException {
+        OutputSubscription subscription = new OutputSubscription(this,listener,policy,capacity);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public final void unsubscribe(OutputSubscription subscription) throws OTMException {
+        if(subscriptions.remove(subscription))
+            subscription.close();
+    }
+
+    public final boolean has_columns(){
+        return get_col_ids()!=null;
+    }
+
+    public final void set_format(Format format){
+        this.format = format;
+    }
+
+    public final void set_decimals(int decimals){
+        this.decimals = decimals;
+    }
+
 }
@@ -11,11 +11,13 @@ import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 import profiles.Profile1D;
 import profiles.Profile2D;
-import utils.OTMUtils;
 
 import java.io.*;
+import java.nio.DoubleBuffer;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
 
@@ -30,6 +32,9 @@ public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
     public AbstractOutputTimedCell(Scenario scenario, String prefix, String output_folder, Long commodity_id, Collection<Long> link_ids, Float outDt) throws OTMException {
         super(scenario,prefix,output_folder,commodity_id,outDt);
 
+        // cell values have always been written in full
+        this.decimals = CsvWriter.SHORTEST;
+
         // get lanegroup list
         if(link_ids==null)
             link_ids = new ArrayList<>(scenario.network.links.keySet());
@@ -65,31 +70,56 @@ public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
         return super.get_output_file() + "_cell";
     }
 
+    @Override
+    protected long [] get_col_ids() {
+        return ordered_lgs.stream()
+                .flatMapToLong(lg->LongStream.generate(()->lg.id).limit(lg.cells.size()))
+                .toArray();
+    }
+
+    @Override
+    protected int [] get_col_index() {
+        return ordered_lgs.stream()
+                .flatMapToInt(lg->IntStream.range(0,lg.cells.size()))
+                .toArray();
+    }
+
     @Override
     public final void write(float timestamp) throws OTMException {
         super.write(timestamp);
-        if(write_to_file){
-            try {
-                boolean isfirst=true;
-                for(FluidLaneGroup lg : ordered_lgs){
-                    if(!isfirst)
-                        writer.write(AbstractOutputTimed.delim);
-                    isfirst = false;
-                    String str = OTMUtils.format_delim(get_value_for_lanegroup(lg),",");
-                    writer.write(str);  // TODO THIS WILL FAIL
+        double [] row = get_row();
+        int offset = 0;
+        for(FluidLaneGroup lg : ordered_lgs){
+            double [] values = get_value_for_lanegroup(lg);
+            System.arraycopy(values,0,row,offset,values.length);
+            offset += values.length;
+        }
+        if(bin_writer!=null){
+            bin_writer.put_values(row);
+        } else if(write_to_file){
+            offset = 0;
+            for(FluidLaneGroup lg : ordered_lgs){
+                if(offset>0)
+                    csv_writer.put(AbstractOutputTimed.delim);
+                int n = lg.cells.size();
+                for(int i=0;i<n;i++){
+                    if(i>0)
+                        csv_writer.put(',');
+                    csv_writer.put(row[offset+i]);
                 }
-                writer.write("\n");
-            } catch (IOException e) {
-                throw new OTMException(e);
+                offset += n;
             }
-        } else {
+            csv_writer.put('\n');
+        } else if(store_profiles) {
+            offset = 0;
             for(FluidLaneGroup lg : ordered_lgs){
                 List<CellProfile> cellprofs = lgprofiles.get(lg.id);
-                double [] values = get_value_for_lanegroup(lg);
-                for(int i=0;i<values.length;i++)
-                    cellprofs.get(i).add_value(values[i]);
+                for(int i=0;i<cellprofs.size();i++)
+                    cellprofs.get(i).add_value(row[offset+i]);
+                offset += cellprofs.size();
             }
         }
+        publish(timestamp,row);
     }
 
     //////////////////////////////////////////////////////
@@ -107,7 +137,7 @@ public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
     public void initialize(Scenario scenario) throws OTMException {
         super.initialize(scenario);
 
-        if(write_to_file){
+        if(write_to_file && format==Format.text){
             try {
                 String filename = get_output_file();
                 if(filename!=null) {
@@ -123,7 +153,7 @@ public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
             } catch (IOException e) {
                 throw new OTMException(e);
             }
-        } else {
+        } else if(!write_to_file) {
             for(List<CellProfile> cellprofs : lgprofiles.values())
                 cellprofs.forEach(p->p.initialize(outDt));
         }
@@ -165,6 +195,13 @@ public abstract class AbstractOutputTimedCell extends AbstractOutputTimed {
         return ordered_lgs;
     }
 
+    public final DoubleBuffer get_values_for_cell(Long lg_id,int cell_index){
+        List<CellProfile> cellprofs = lgprofiles.get(lg_id);
+        if(cellprofs==null || cell_index<0 || cell_index>=cellprofs.size() || cellprofs.get(cell_index).profile==null)
+            return null;
+        return cellprofs.get(cell_index).profile.get_values_buffer();
+    }
+
     public final void plot_for_links(Set<Long> link_ids,String filename) throws OTMException {
 
         Set<FluidLaneGroup> lgs = new HashSet<>();
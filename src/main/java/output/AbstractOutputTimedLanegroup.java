@@ -11,6 +11,7 @@ import common.Scenario;
 import utils.OTMUtils;
 
 import java.io.*;
+import java.nio.DoubleBuffer;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -54,28 +55,26 @@ public abstract class AbstractOutputTimedLanegroup extends AbstractOutputTimed {
         return super.get_output_file() + "_lg";
     }
 
+    @Override
+    protected long [] get_col_ids() {
+        return ordered_lgs.stream().mapToLong(lg->lg.id).toArray();
+    }
+
     @Override
     public final void write(float timestamp) throws OTMException {
         super.write(timestamp);
-        if(write_to_file){
-            try {
-                boolean isfirst=true;
-                for(AbstractLaneGroup lg : ordered_lgs){
-                    if(!isfirst)
-                        writer.write(AbstractOutputTimed.delim);
-                    isfirst = false;
-                    writer.write(String.format("%f",get_value_for_lanegroup(lg)));
-                }
-                writer.write("\n");
-            } catch (IOException e) {
-                throw new OTMException(e);
-            }
-        } else {
-            for(AbstractLaneGroup lg : ordered_lgs){
-                LaneGroupProfile lgProfile = lgprofiles.get(lg.id);
-                lgProfile.add_value(get_value_for_lanegroup(lg));
-            }
+        double [] values = get_row();
+        for(int i=0;i<ordered_lgs.size();i++)
+            values[i] = get_value_for_lanegroup(ordered_lgs.get(i));
+        if(bin_writer!=null){
+            bin_writer.put_values(values);
+        } else if(write_to_file){
+            write_csv(values);
+        } else if(store_profiles) {
+            for(int i=0;i<ordered_lgs.size();i++)
+                lgprofiles.get(ordered_lgs.get(i).id).add_value(values[i]);
         }
+        publish(timestamp,values);
     }
 
     //////////////////////////////////////////////////////
@@ -94,7 +93,7 @@ public abstract class AbstractOutputTimedLanegroup extends AbstractOutputTimed {
     public void initialize(Scenario scenario) throws OTMException {
         super.initialize(scenario);
 
-        if(write_to_file){
+        if(write_to_file && format==Format.text){
             try {
                 String filename = get_output_file();
                 if(filename!=null) {
@@ -111,7 +110,7 @@ public abstract class AbstractOutputTimedLanegroup extends AbstractOutputTimed {
             } catch (IOException e) {
                 throw new OTMException(e);
             }
-        } else {
+        } else if(!write_to_file) {
             for(LaneGroupProfile lgProfile : lgprofiles.values())
                 lgProfile.initialize(outDt);
         }
@@ -147,6 +146,11 @@ public abstract class AbstractOutputTimedLanegroup extends AbstractOutputTimed {
         return profiles;
     }
 
+    public final DoubleBuffer get_values_for_lgid(Long lg_id){
+        LaneGroupProfile lgProfile = lgprofiles.get(lg_id);
+        return lgProfile==null || lgProfile.profile==null ? null : lgProfile.profile.get_values_buffer();
+    }
+
     public final void plot_for_links(Set<Long> link_ids,String title,String filename) throws OTMException {
 
         Set<AbstractLaneGroup> lgs = new HashSet<>();
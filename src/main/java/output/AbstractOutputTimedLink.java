@@ -10,6 +10,7 @@ import profiles.Profile1D;
 import common.Scenario;
 
 import java.io.*;
+import java.nio.DoubleBuffer;
 import java.util.*;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -76,28 +77,26 @@ public abstract class AbstractOutputTimedLink extends AbstractOutputTimed {
         return super.get_output_file() + "_link";
     }
 
+    @Override
+    protected long [] get_col_ids() {
+        return ordered_ids;
+    }
+
     @Override
     public final void write(float timestamp) throws OTMException {
         super.write(timestamp);
-        if(write_to_file){
-            try {
-                boolean isfirst=true;
-                for(Long link_id : ordered_ids){
-                    if(!isfirst)
-                        writer.write(AbstractOutputTimed.delim);
-                    isfirst = false;
-                    writer.write(String.format("%f",get_value_for_link(link_id)));
-                }
-                writer.write("\n");
-            } catch (IOException e) {
-                throw new OTMException(e);
-            }
-        } else {
-            for(Long link_id : ordered_ids) {
-                LinkProfile linkProfile = linkprofiles.get(link_id);
-                linkProfile.add_value(get_value_for_link(link_id));
-            }
+        double [] values = get_row();
+        for(int i=0;i<ordered_ids.length;i++)
+            values[i] = get_value_for_link(ordered_ids[i]);
+        if(bin_writer!=null){
+            bin_writer.put_values(values);
+        } else if(write_to_file){
+            write_csv(values);
+        } else if(store_profiles) {
+            for(int i=0;i<ordered_ids.length;i++)
+                linkprofiles.get(ordered_ids[i]).add_value(values[i]);
         }
+        publish(timestamp,values);
     }
 
     //////////////////////////////////////////////////////
@@ -125,7 +124,7 @@ public abstract class AbstractOutputTimedLink extends AbstractOutputTimed {
     public void initialize(Scenario scenario) throws OTMException {
         super.initialize(scenario);
         // write links
-        if(write_to_file) {
+        if(write_to_file && format==Format.text) {
             try {
                 String filename = get_output_file();
                 if (filename != null) {
@@ -140,7 +139,7 @@ public abstract class AbstractOutputTimedLink extends AbstractOutputTimed {
             } catch (IOException e) {
                 throw new OTMException(e);
             }
-        } else {
+        } else if(!write_to_file) {
             for(LinkProfile linkProfile : linkprofiles.values())
                 linkProfile.initialize(outDt);
         }
@@ -174,6 +173,11 @@ public abstract class AbstractOutputTimedLink extends AbstractOutputTimed {
         return linkprofiles.get(link_id).profile;
     }
 
+    public final DoubleBuffer get_values_for_linkid(Long link_id){
+        LinkProfile linkProfile = linkprofiles.get(link_id);
+        return linkProfile==null || linkProfile.profile==null ? null : linkProfile.profile.get_values_buffer();
+    }
+
     public final void plot_for_links(Set<Long> link_ids,String filename) throws OTMException {
 
         if(link_ids==null)
@@ -0,0 +1,119 @@
+package output;
+
+import common.AbstractLaneGroup;
+import common.Link;
+import common.Scenario;
+import error.OTMException;
+import models.vehicle.spatialq.MesoLaneGroup;
+import models.vehicle.spatialq.MesoVehicle;
+import models.vehicle.spatialq.Queue;
+import output.events.AbstractEventWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event outputs of vehicle queue transitions. These are written either as text,
+ * one line per transition, or as a binary log with a queue dictionary
+ * (see BinaryVehicleEventWriter).
+ */
+public abstract class AbstractOutputVehicleEvent extends AbstractOutputEvent implements InterfaceVehicleListener {
+
+    // binary output
+    public boolean binary = false;
+    public BinaryVehicleEventWriter bin_writer;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public AbstractOutputVehicleEvent(Scenario scenario,String prefix,String output_folder) {
+        super(scenario,prefix,output_folder);
+    }
+
+    //////////////////////////////////////////////////////
+    // InterfaceOutput
+    //////////////////////////////////////////////////////
+
+    @Override
+    public void open() throws OTMException {
+        if(write_to_file && binary){
+            bin_writer = new BinaryVehicleEventWriter(open_channel(get_binary_file()),get_commodity_id(),get_queues());
+            bin_writer.file = get_binary_file();
+            return;
+        }
+        super.open();
+    }
+
+    @Override
+    public void close() throws OTMException {
+        if(bin_writer!=null){
+            bin_writer.close();
+            bin_writer = null;
+        }
+        super.close();
+    }
+
+    //////////////////////////////////////////////////////
+    // AbstractOutput
+    //////////////////////////////////////////////////////
+
+    @Override
+    protected void flush_writers() throws OTMException {
+        super.flush_writers();
+        if(bin_writer!=null)
+            bin_writer.flush();
+    }
+
+    //////////////////////////////////////////////////////
+    // InterfaceVehicleListener
+    //////////////////////////////////////////////////////
+
+    @Override
+    public final void move_from_to_queue(float timestamp, MesoVehicle vehicle, Queue from_queue, Queue to_queue) throws OTMException {
+        if(bin_writer!=null){
+            mark_time(timestamp);
+            bin_writer.write(timestamp,vehicle.getId(),from_queue,to_queue);
+        }
+        else
+            write(create_event(timestamp,vehicle.getId(),from_queue,to_queue));
+    }
+
+    abstract protected AbstractEventWrapper create_event(float timestamp,long vehicle_id,Queue from_queue,Queue to_queue);
+
+    // commodity written to the binary header, null for all
+    protected Long get_commodity_id(){
+        return null;
+    }
+
+    //////////////////////////////////////////////////////
+    // final
+    //////////////////////////////////////////////////////
+
+    public final void set_binary(boolean binary){
+        this.binary = binary;
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    // queue dictionary: transit and waiting queues of every meso lane group
+    private List<Queue> get_queues(){
+        List<Queue> queues = new ArrayList<>();
+        for(Link link : scenario.network.links.values()){
+            List<AbstractLaneGroup> lgs = new ArrayList<>(link.lanegroups_flwdn);
+            if(link.lanegroup_up_in!=null)
+                lgs.add(link.lanegroup_up_in);
+            if(link.lanegroup_up_out!=null)
+                lgs.add(link.lanegroup_up_out);
+            for(AbstractLaneGroup lg : lgs)
+                if(lg instanceof MesoLaneGroup){
+                    queues.add(((MesoLaneGroup) lg).transit_queue);
+                    queues.add(((MesoLaneGroup) lg).waiting_queue);
+                }
+        }
+        return queues;
+    }
+
+}
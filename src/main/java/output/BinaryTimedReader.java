@@ -0,0 +1,129 @@
+package output;
+
+import error.OTMException;
+
+/**
+ * Memory-mapped reader for files written by BinaryTimedWriter. Files larger than 2 GiB are
+ * mapped in segments.
+ */
+public class BinaryTimedReader {
+
+    private final MappedFile buffer;
+    private final int bytes_per_value;
+    private final Long commodity_id;
+    private final float outDt;
+    private final long [] col_ids;
+    private final int [] col_index;
+    private final long data_start;
+    private final long row_size;
+    private final int num_rows;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public BinaryTimedReader(String filename) throws OTMException {
+        this(MappedFile.map(filename),filename);
+    }
+
+    // reads from bytes already in memory, e.g. a window of a compressed binary output
+    public BinaryTimedReader(byte [] bytes) throws OTMException {
+        this(new MappedFile(bytes),"byte array");
+    }
+
+    private BinaryTimedReader(MappedFile buffer,String filename) throws OTMException {
+
+        this.buffer = buffer;
+
+        if(buffer.getInt(0)!=BinaryTimedWriter.MAGIC)
+            throw new OTMException("Not an OTM binary output file: " + filename);
+        if(buffer.getInt(4)!=BinaryTimedWriter.VERSION)
+            throw new OTMException("Unsupported binary output version in " + filename);
+
+        bytes_per_value = buffer.getInt(8);
+        long comm = buffer.getLong(12);
+        commodity_id = comm<0 ? null : comm;
+        outDt = buffer.getFloat(20);
+        int num_cols = buffer.getInt(24);
+
+        col_ids = new long[num_cols];
+        col_index = new int[num_cols];
+        long pos = 28;
+        for(int i=0;i<num_cols;i++){
+            col_ids[i] = buffer.getLong(pos);
+            col_index[i] = buffer.getInt(pos+8);
+            pos += 12;
+        }
+
+        data_start = pos;
+        row_size = 4 + (long) num_cols*bytes_per_value;
+        long rows = (buffer.size-data_start) / row_size;
+        if(rows>Integer.MAX_VALUE)
+            throw new OTMException("Binary output file has too many rows: " + filename);
+        num_rows = (int) rows;
+    }
+
+    //////////////////////////////////////////////////////
+    // header
+    //////////////////////////////////////////////////////
+
+    public Long get_commodity_id(){
+        return commodity_id;
+    }
+
+    public float get_outdt(){
+        return outDt;
+    }
+
+    public long [] get_col_ids(){
+        return col_ids;
+    }
+
+    // cell position within its lane group, -1 for link and lane group outputs
+    public int [] get_col_index(){
+        return col_index;
+    }
+
+    public int get_num_cols(){
+        return col_ids.length;
+    }
+
+    public int get_num_rows(){
+        return num_rows;
+    }
+
+    //////////////////////////////////////////////////////
+    // data
+    //////////////////////////////////////////////////////
+
+    public float get_time(int row){
+        return buffer.getFloat(data_start + row*row_size);
+    }
+
+    public float [] get_times(){
+        float [] x = new float[num_rows];
+        for(int r=0;r<num_rows;r++)
+            x[r] = get_time(r);
+        return x;
+    }
+
+    public double get_value(int row,int col){
+        long pos = data_start + row*row_size + 4 + (long) col*bytes_per_value;
+        return bytes_per_value==8 ? buffer.getDouble(pos) : buffer.getFloat(pos);
+    }
+
+    public double [] get_row(int row){
+        double [] x = new double[col_ids.length];
+        for(int c=0;c<x.length;c++)
+            x[c] = get_value(row,c);
+        return x;
+    }
+
+    public double [] get_column(int col){
+        double [] x = new double[num_rows];
+        for(int r=0;r<num_rows;r++)
+            x[r] = get_value(r,col);
+        return x;
+    }
+
+}
@@ -0,0 +1,119 @@
+package output;
+
+import error.OTMException;
+import metrics.jfr.OutputFlushEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes timed outputs in the binary columnar layout read by BinaryTimedReader.
+ *
+ * All numbers are little endian. The header is
+ *      int magic, int version, int bytes_per_value (4 or 8), long commodity_id (-1 for all),
+ *      float outDt, int num_cols, num_cols x (long col_id, int col_index)
+ * followed by one row per output step
+ *      float time, num_cols x (float|double) value
+ * Rows are collected in a direct buffer and drained to the channel when it fills.
+ */
+public class BinaryTimedWriter {
+
+    public static final int MAGIC = 0x424D544F;   // "OTMB"
+    public static final int VERSION = 1;
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    public String file;         // for diagnostics
+    private final ByteBuffer buffer;
+    private final boolean is_double;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public BinaryTimedWriter(WritableByteChannel channel,Long commodity_id,float outDt,long [] col_ids,int [] col_index,boolean is_double) throws OTMException {
+        this.channel = channel;
+        this.is_double = is_double;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        ensure(28);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(is_double ? 8 : 4);
+        buffer.putLong(commodity_id==null ? -1L : commodity_id);
+        buffer.putFloat(outDt);
+        buffer.putInt(col_ids.length);
+        for(int i=0;i<col_ids.length;i++){
+            ensure(12);
+            buffer.putLong(col_ids[i]);
+            buffer.putInt(col_index==null ? -1 : col_index[i]);
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // write
+    //////////////////////////////////////////////////////
+
+    public void put_time(float time) throws OTMException {
+        ensure(4);
+        buffer.putFloat(time);
+    }
+
+    public void put_value(double value) throws OTMException {
+        ensure(8);
+        if(is_double)
+            buffer.putDouble(value);
+        else
+            buffer.putFloat((float) value);
+    }
+
+    public void put_values(double [] values) throws OTMException {
+        for(double value : values)
+            put_value(value);
+    }
+
+    public void flush() throws OTMException {
+        try {
+            drain();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    public void close() throws OTMException {
+        try {
+            drain();
+            channel.close();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private void ensure(int bytes) throws OTMException {
+        if(buffer.remaining()>=bytes)
+            return;
+        try {
+            drain();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    private void drain() throws IOException {
+        OutputFlushEvent jfr = new OutputFlushEvent();
+        jfr.begin();
+        buffer.flip();
+        long bytes = buffer.remaining();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+        jfr.commit(file,bytes);
+    }
+
+}
@@ -0,0 +1,191 @@
+package output;
+
+import error.OTMException;
+import models.vehicle.spatialq.Queue;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory-mapped reader for files written by BinaryVehicleEventWriter. Files larger than 2 GiB
+ * are mapped in segments, and events are indexed with longs.
+ */
+public class BinaryVehicleEventReader {
+
+    private final MappedFile buffer;
+    private final Long commodity_id;
+    private final long [] queue_link_ids;
+    private final long [] queue_lanegroup_ids;
+    private final Queue.Type [] queue_types;
+    private final long data_start;
+    private final long num_events;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public BinaryVehicleEventReader(String filename) throws OTMException {
+        this(MappedFile.map(filename),filename);
+    }
+
+    // reads from bytes already in memory, e.g. a window of a compressed event log
+    public BinaryVehicleEventReader(byte [] bytes) throws OTMException {
+        this(new MappedFile(bytes),"byte array");
+    }
+
+    private BinaryVehicleEventReader(MappedFile buffer,String filename) throws OTMException {
+
+        this.buffer = buffer;
+
+        if(buffer.getInt(0)!=BinaryVehicleEventWriter.MAGIC)
+            throw new OTMException("Not an OTM binary vehicle event file: " + filename);
+        if(buffer.getInt(4)!=BinaryVehicleEventWriter.VERSION)
+            throw new OTMException("Unsupported binary vehicle event version in " + filename);
+
+        long comm = buffer.getLong(8);
+        commodity_id = comm<0 ? null : comm;
+        int num_queues = buffer.getInt(16);
+
+        queue_link_ids = new long[num_queues];
+        queue_lanegroup_ids = new long[num_queues];
+        queue_types = new Queue.Type[num_queues];
+        long pos = 20;
+        for(int i=0;i<num_queues;i++){
+            queue_link_ids[i] = buffer.getLong(pos);
+            queue_lanegroup_ids[i] = buffer.getLong(pos+8);
+            queue_types[i] = buffer.get(pos+16)==0 ? Queue.Type.transit : Queue.Type.waiting;
+            pos += 17;
+        }
+
+        data_start = pos;
+        num_events = (buffer.size-data_start) / BinaryVehicleEventWriter.RECORD_SIZE;
+    }
+
+    //////////////////////////////////////////////////////
+    // queue dictionary
+    //////////////////////////////////////////////////////
+
+    public Long get_commodity_id(){
+        return commodity_id;
+    }
+
+    public int get_num_queues(){
+        return queue_types.length;
+    }
+
+    public long get_queue_link_id(int queue){
+        return queue_link_ids[queue];
+    }
+
+    public long get_queue_lanegroup_id(int queue){
+        return queue_lanegroup_ids[queue];
+    }
+
+    public Queue.Type get_queue_type(int queue){
+        return queue_types[queue];
+    }
+
+    // same id as the text output: "t" or "w" followed by the lane group id, "-" outside the network
+    public String get_queue_id(int queue){
+        if(queue<0)
+            return "-";
+        return (queue_types[queue]==Queue.Type.transit ? "t" : "w") + queue_lanegroup_ids[queue];
+    }
+
+    //////////////////////////////////////////////////////
+    // events
+    //////////////////////////////////////////////////////
+
+    public long get_num_events(){
+        return num_events;
+    }
+
+    public float get_time(long event){
+        return buffer.getFloat(data_start + event*BinaryVehicleEventWriter.RECORD_SIZE);
+    }
+
+    public long get_vehicle_id(long event){
+        return buffer.getLong(data_start + event*BinaryVehicleEventWriter.RECORD_SIZE + 4);
+    }
+
+    public int get_from_queue(long event){
+        return buffer.getInt(data_start + event*BinaryVehicleEventWriter.RECORD_SIZE + 12);
+    }
+
+    public int get_to_queue(long event){
+        return buffer.getInt(data_start + event*BinaryVehicleEventWriter.RECORD_SIZE + 16);
+    }
+
+    //////////////////////////////////////////////////////
+    // trajectories
+    //////////////////////////////////////////////////////
+
+    /**
+     * Sequence of queues visited by each vehicle, in order of first appearance.
+     */
+    public Map<Long,Trajectory> get_trajectories(){
+
+        // count events per vehicle
+        Map<Long,int[]> counts = new HashMap<>();
+        for(long e=0;e<num_events;e++)
+            counts.computeIfAbsent(get_vehicle_id(e),k->new int[1])[0]++;
+
+        Map<Long,Trajectory> trajectories = new LinkedHashMap<>();
+        for(long e=0;e<num_events;e++){
+            long vehicle_id = get_vehicle_id(e);
+            Trajectory traj = trajectories.get(vehicle_id);
+            if(traj==null){
+                traj = new Trajectory(vehicle_id,get_from_queue(e)<0,counts.get(vehicle_id)[0]);
+                trajectories.put(vehicle_id,traj);
+            }
+            traj.times[traj.size] = get_time(e);
+            traj.queues[traj.size++] = get_to_queue(e);
+        }
+        return trajectories;
+    }
+
+    /**
+     * Travel time of every vehicle that both entered and exited the network in the log.
+     */
+    public Map<Long,Float> get_travel_times(){
+        Map<Long,Float> entry_times = new HashMap<>();
+        Map<Long,Float> travel_times = new LinkedHashMap<>();
+        for(long e=0;e<num_events;e++){
+            long vehicle_id = get_vehicle_id(e);
+            if(get_from_queue(e)<0)
+                entry_times.put(vehicle_id,get_time(e));
+            if(get_to_queue(e)<0){
+                Float entry_time = entry_times.remove(vehicle_id);
+                if(entry_time!=null)
+                    travel_times.put(vehicle_id,get_time(e)-entry_time);
+            }
+        }
+        return travel_times;
+    }
+
+    //////////////////////////////////////////////////////
+    // class
+    //////////////////////////////////////////////////////
+
+    public static class Trajectory {
+        public final long vehicle_id;
+        public final boolean entered;   // the log contains the vehicle's entry into the network
+        public final float [] times;    // times[k] is when the vehicle moved into queues[k]
+        public final int [] queues;     // dictionary positions, -1 once the vehicle has exited
+        private int size;
+        private Trajectory(long vehicle_id,boolean entered,int size){
+            this.vehicle_id = vehicle_id;
+            this.entered = entered;
+            this.times = new float[size];
+            this.queues = new int[size];
+        }
+        public boolean exited(){
+            return queues.length>0 && queues[queues.length-1]<0;
+        }
+        public float get_travel_time(){
+            return entered && exited() ? times[times.length-1]-times[0] : Float.NaN;
+        }
+    }
+
+}
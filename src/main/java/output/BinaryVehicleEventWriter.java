@@ -0,0 +1,124 @@
+package output;
+
+import error.OTMException;
+import metrics.jfr.OutputFlushEvent;
+import models.vehicle.spatialq.Queue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes vehicle queue transitions in the fixed-width binary layout read by BinaryVehicleEventReader.
+ *
+ * All numbers are little endian. The header holds the queue dictionary
+ *      int magic, int version, long commodity_id (-1 for all), int num_queues,
+ *      num_queues x (long link_id, long lanegroup_id, byte type (0 transit, 1 waiting))
+ * followed by one record per transition
+ *      float time, long vehicle_id, int from_queue, int to_queue
+ * where queues are positions in the dictionary, and -1 stands for outside the network.
+ * Records are collected in a direct buffer and drained to the channel when it fills.
+ */
+public class BinaryVehicleEventWriter {
+
+    public static final int MAGIC = 0x564D544F;   // "OTMV"
+    public static final int VERSION = 1;
+    public static final int RECORD_SIZE = 20;
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    public String file;         // for diagnostics
+    private final ByteBuffer buffer;
+    private final Map<Queue,Integer> queue_index;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public BinaryVehicleEventWriter(WritableByteChannel channel,Long commodity_id,List<Queue> queues) throws OTMException {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.queue_index = new IdentityHashMap<>();
+
+        ensure(20);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(commodity_id==null ? -1L : commodity_id);
+        buffer.putInt(queues.size());
+        for(Queue queue : queues){
+            ensure(17);
+            queue_index.put(queue,queue_index.size());
+            buffer.putLong(queue.lanegroup.link.getId());
+            buffer.putLong(queue.lanegroup.id);
+            buffer.put((byte) (queue.type==Queue.Type.transit ? 0 : 1));
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // write
+    //////////////////////////////////////////////////////
+
+    public void write(float time,long vehicle_id,Queue from_queue,Queue to_queue) throws OTMException {
+        ensure(RECORD_SIZE);
+        buffer.putFloat(time);
+        buffer.putLong(vehicle_id);
+        buffer.putInt(index_of(from_queue));
+        buffer.putInt(index_of(to_queue));
+    }
+
+    public void flush() throws OTMException {
+        try {
+            drain();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    public void close() throws OTMException {
+        try {
+            drain();
+            channel.close();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private int index_of(Queue queue) throws OTMException {
+        if(queue==null)
+            return -1;
+        Integer index = queue_index.get(queue);
+        if(index==null)
+            throw new OTMException("Queue " + queue.id + " is not in the vehicle event dictionary");
+        return index;
+    }
+
+    private void ensure(int bytes) throws OTMException {
+        if(buffer.remaining()>=bytes)
+            return;
+        try {
+            drain();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    private void drain() throws IOException {
+        OutputFlushEvent jfr = new OutputFlushEvent();
+        jfr.begin();
+        buffer.flip();
+        long bytes = buffer.remaining();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+        jfr.commit(file,bytes);
+    }
+
+}
@@ -0,0 +1,105 @@
+package output;
+
+import error.OTMException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads time windows from files written by CompressedOutputStream, inflating only
+ * the chunks that overlap the window.
+ */
+public class CompressedOutputReader {
+
+    private final String filename;
+    private final List<CompressedOutputStream.ChunkInfo> index;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public CompressedOutputReader(String filename) throws OTMException {
+        this.filename = filename;
+        this.index = new ArrayList<>();
+        try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            if(size<12)
+                throw new OTMException("Not a compressed OTM output file: " + filename);
+
+            ByteBuffer footer = read(channel,size-12,12);
+            long index_offset = footer.getLong();
+            if(footer.getInt()!=CompressedOutputStream.MAGIC)
+                throw new OTMException("Not a compressed OTM output file: " + filename);
+
+            ByteBuffer buffer = read(channel,index_offset,(int)(size-12-index_offset));
+            int num_chunks = buffer.getInt();
+            for(int i=0;i<num_chunks;i++)
+                index.add(new CompressedOutputStream.ChunkInfo(buffer.getFloat(),buffer.getFloat(),buffer.getLong(),buffer.getInt(),buffer.getInt()));
+
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // read
+    //////////////////////////////////////////////////////
+
+    public List<CompressedOutputStream.ChunkInfo> get_index(){
+        return Collections.unmodifiableList(index);
+    }
+
+    /**
+     * Uncompressed bytes of the header chunk and of every chunk that overlaps
+     * [start_time,end_time]. Chunks are whole, so the result may contain rows
+     * slightly outside the window.
+     */
+    public byte [] read_window(float start_time,float end_time) throws OTMException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Inflater inflater = new Inflater(true);
+        try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            for(CompressedOutputStream.ChunkInfo c : index){
+                if(!c.is_header() && (c.end_time<start_time || c.start_time>end_time))
+                    continue;
+                ByteBuffer compressed = read(channel,c.offset,c.compressed_len);
+                byte [] raw = new byte[c.raw_len];
+                inflater.reset();
+                inflater.setInput(compressed.array(),0,c.compressed_len);
+                int n = 0;
+                while(n<c.raw_len && !inflater.finished())
+                    n += inflater.inflate(raw,n,c.raw_len-n);
+                out.write(raw,0,n);
+            }
+        } catch (IOException | DataFormatException e) {
+            throw new OTMException(e);
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private static ByteBuffer read(FileChannel channel,long position,int len) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+        while(buffer.hasRemaining())
+            if(channel.read(buffer,position+buffer.position())<0)
+                throw new IOException("Unexpected end of file");
+        buffer.flip();
+        return buffer;
+    }
+
+}
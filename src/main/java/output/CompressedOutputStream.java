@@ -0,0 +1,165 @@
+package output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Seekable compressed container for output files.
+ *
+ * Bytes are collected in memory and deflated in chunks of about chunk_size bytes.
+ * Chunks are only cut at a mark_time call, which the outputs make at the start of
+ * every row or event, so each chunk holds whole rows and covers a known time range.
+ * Writers in front of the stream only need to be flushed when is_chunk_boundary is true.
+ * Bytes written before the first mark_time (e.g. a binary header) form a header chunk
+ * whose times are NaN. The file ends with an index and a footer (little endian):
+ *      index:  int num_chunks, num_chunks x (float start_time, float end_time, long offset, int compressed_len, int raw_len)
+ *      footer: long index_offset, int magic
+ * CompressedOutputReader uses the index to inflate only the chunks in a time window.
+ */
+public class CompressedOutputStream extends OutputStream {
+
+    public static final int MAGIC = 0x5A4D544F;   // "OTMZ"
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final OutputStream target;
+    private final int chunk_size;
+    private final Deflater deflater;
+    private final byte [] deflate_buffer = new byte[1 << 16];
+
+    private byte [] raw;
+    private int raw_len;
+    private float chunk_start;
+    private float chunk_end;
+    private boolean has_marks;
+    private long offset;
+    private final List<ChunkInfo> index = new ArrayList<>();
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public CompressedOutputStream(OutputStream target,int chunk_size){
+        this.target = target;
+        this.chunk_size = chunk_size;
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION,true);
+        this.raw = new byte[chunk_size];
+        this.raw_len = 0;
+        this.chunk_start = Float.NaN;
+        this.chunk_end = Float.NaN;
+        this.has_marks = false;
+        this.offset = 0;
+    }
+
+    //////////////////////////////////////////////////////
+    // OutputStream
+    //////////////////////////////////////////////////////
+
+    @Override
+    public void write(int b) {
+        ensure(1);
+        raw[raw_len++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte [] b,int off,int len) {
+        ensure(len);
+        System.arraycopy(b,off,raw,raw_len,len);
+        raw_len += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        emit_chunk();
+        deflater.end();
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 24*index.size() + 12).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(index.size());
+        for(ChunkInfo c : index){
+            buffer.putFloat(c.start_time);
+            buffer.putFloat(c.end_time);
+            buffer.putLong(c.offset);
+            buffer.putInt(c.compressed_len);
+            buffer.putInt(c.raw_len);
+        }
+        buffer.putLong(offset);
+        buffer.putInt(MAGIC);
+        target.write(buffer.array());
+        target.close();
+    }
+
+    //////////////////////////////////////////////////////
+    // time marks
+    //////////////////////////////////////////////////////
+
+    // True if the next mark_time starts a new chunk: the first mark, or the current chunk is full.
+    public boolean is_chunk_boundary(){
+        return !has_marks || raw_len>=chunk_size;
+    }
+
+    // Called at the start of each row. Starts a new chunk if the current one is full.
+    public void mark_time(float time) throws IOException {
+        if(is_chunk_boundary()) {
+            emit_chunk();
+            chunk_start = time;
+        }
+        has_marks = true;
+        chunk_end = time;
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private void ensure(int len){
+        if(raw_len+len>raw.length)
+            raw = Arrays.copyOf(raw,Math.max(raw.length*2,raw_len+len));
+    }
+
+    private void emit_chunk() throws IOException {
+        if(raw_len==0)
+            return;
+        deflater.reset();
+        deflater.setInput(raw,0,raw_len);
+        deflater.finish();
+        int compressed_len = 0;
+        while(!deflater.finished()){
+            int n = deflater.deflate(deflate_buffer);
+            target.write(deflate_buffer,0,n);
+            compressed_len += n;
+        }
+        index.add(new ChunkInfo(has_marks ? chunk_start : Float.NaN,has_marks ? chunk_end : Float.NaN,offset,compressed_len,raw_len));
+        offset += compressed_len;
+        raw_len = 0;
+        if(raw.length>chunk_size)
+            raw = new byte[chunk_size];
+    }
+
+    //////////////////////////////////////////////////////
+    // class
+    //////////////////////////////////////////////////////
+
+    public static class ChunkInfo {
+        public final float start_time;
+        public final float end_time;
+        public final long offset;
+        public final int compressed_len;
+        public final int raw_len;
+        public ChunkInfo(float start_time,float end_time,long offset,int compressed_len,int raw_len){
+            this.start_time = start_time;
+            this.end_time = end_time;
+            this.offset = offset;
+            this.compressed_len = compressed_len;
+            this.raw_len = raw_len;
+        }
+        public boolean is_header(){
+            return Float.isNaN(start_time);
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+package output;
+
+import error.OTMException;
+import metrics.jfr.OutputFlushEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Text encoder for the comma separated timed outputs. Numbers are formatted directly
+ * into a reusable byte buffer, which is written to the stream when it fills.
+ *
+ * With decimals>=0, values are written as String.format("%.<decimals>f") would write them,
+ * byte for byte. Values that are near a rounding tie, too large, or not finite fall back
+ * to String.format. With decimals==SHORTEST, values are written as Double.toString.
+ */
+public class CsvWriter {
+
+    public static final int SHORTEST = -1;
+    public static final int MAX_DECIMALS = 9;
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    private static final double MAX_FAST = 0x1p52;
+    private static final long [] POW10 = {1L,10L,100L,1000L,10000L,100000L,1000000L,10000000L,100000000L,1000000000L};
+
+    private final OutputStream out;
+    public String file;         // for diagnostics
+    private final int decimals;
+    private final String format;
+    private final byte [] buffer;
+    private final byte [] digits;
+    private int pos;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public CsvWriter(OutputStream out,int decimals) throws OTMException {
+        if(decimals<SHORTEST || decimals>MAX_DECIMALS)
+            throw new OTMException("Text output precision must be between 0 and " + MAX_DECIMALS);
+        this.out = out;
+        this.decimals = decimals;
+        this.format = decimals==SHORTEST ? null : "%." + decimals + "f";
+        this.buffer = new byte[BUFFER_SIZE];
+        this.digits = new byte[20];
+        this.pos = 0;
+    }
+
+    //////////////////////////////////////////////////////
+    // write
+    //////////////////////////////////////////////////////
+
+    public void put(double value) throws OTMException {
+        if(decimals==SHORTEST){
+            put(Double.toString(value));
+            return;
+        }
+
+        if(Double.isNaN(value) || Double.isInfinite(value)){
+            put(String.format(Locale.ROOT,format,value));
+            return;
+        }
+
+        boolean negative = Double.doubleToRawLongBits(value)<0;
+        double x = Math.abs(value)*POW10[decimals];
+        if(x>=MAX_FAST){
+            put(String.format(Locale.ROOT,format,value));
+            return;
+        }
+
+        // String.format rounds the shortest decimal representation half up. Away from
+        // ties this is the same as rounding x, which is within a few ulps of it.
+        double floor = Math.floor(x);
+        double frac = x - floor;
+        if(Math.abs(frac-0.5d)<=4*Math.ulp(x)){
+            put(String.format(Locale.ROOT,format,value));
+            return;
+        }
+        long n = (long) floor + (frac>0.5d ? 1 : 0);
+
+        ensure(24 + decimals);
+        if(negative)
+            buffer[pos++] = '-';
+        put_digits(n/POW10[decimals],1);
+        if(decimals>0){
+            buffer[pos++] = '.';
+            put_digits(n%POW10[decimals],decimals);
+        }
+    }
+
+    public void put(float value) throws OTMException {
+        put(Float.toString(value));
+    }
+
+    public void put(char c) throws OTMException {
+        ensure(1);
+        buffer[pos++] = (byte) c;
+    }
+
+    // ASCII text
+    public void put(String str) throws OTMException {
+        int len = str.length();
+        ensure(len);
+        if(len>buffer.length){
+            try {
+                out.write(str.getBytes());
+            } catch (IOException e) {
+                throw new OTMException(e);
+            }
+            return;
+        }
+        for(int i=0;i<len;i++)
+            buffer[pos++] = (byte) str.charAt(i);
+    }
+
+    public void flush() throws OTMException {
+        try {
+            drain();
+            out.flush();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    public void close() throws OTMException {
+        try {
+            drain();
+            out.close();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    // at least min_digits digits, zero padded on the left
+    private void put_digits(long n,int min_digits){
+        int len = 0;
+        do {
+            digits[len++] = (byte) ('0' + n%10);
+            n /= 10;
+        } while(n>0);
+        while(len<min_digits)
+            digits[len++] = '0';
+        while(len>0)
+            buffer[pos++] = digits[--len];
+    }
+
+    private void ensure(int bytes) throws OTMException {
+        if(buffer.length-pos>=bytes)
+            return;
+        try {
+            drain();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    private void drain() throws IOException {
+        if(pos==0)
+            return;
+        OutputFlushEvent jfr = new OutputFlushEvent();
+        jfr.begin();
+        out.write(buffer,0,pos);
+        jfr.commit(file,pos);
+        pos = 0;
+    }
+
+}
@@ -0,0 +1,5 @@
+package output;
+
+public interface InterfaceOutputRowListener {
+    void row_written(OutputRow row);
+}
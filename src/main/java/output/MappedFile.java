@@ -0,0 +1,114 @@
+package output;
+
+import error.OTMException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only little-endian view of a file, or of bytes in memory, addressed with long offsets.
+ * A mapped buffer holds at most Integer.MAX_VALUE bytes, so files are mapped in segments of
+ * 1 GiB. Consecutive segments overlap by the size of the longest value, so every value lies
+ * within one segment.
+ */
+class MappedFile {
+
+    private static final int default_segment_bits = 30;
+    private static final int overlap = 8;
+
+    private final int segment_bits;
+    private final long segment_mask;
+    private final ByteBuffer [] segments;
+    public final long size;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    static MappedFile map(String filename) throws OTMException {
+        return map(filename,default_segment_bits);
+    }
+
+    static MappedFile map(String filename,int segment_bits) throws OTMException {
+        try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long segment_size = 1L << segment_bits;
+            ByteBuffer [] segments = new ByteBuffer[num_segments(size,segment_bits)];
+            for(int i=0;i<segments.length;i++){
+                long start = i*segment_size;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,start,Math.min(size-start,segment_size+overlap));
+            }
+            return new MappedFile(segments,size,segment_bits);
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    MappedFile(byte [] bytes){
+        this(bytes,default_segment_bits);
+    }
+
+    MappedFile(byte [] bytes,int segment_bits){
+        long segment_size = 1L << segment_bits;
+        ByteBuffer [] segments = new ByteBuffer[num_segments(bytes.length,segment_bits)];
+        for(int i=0;i<segments.length;i++){
+            int start = (int) (i*segment_size);
+            segments[i] = ByteBuffer.wrap(bytes,start,(int) Math.min(bytes.length-start,segment_size+overlap)).slice();
+        }
+        this.segments = segments;
+        this.size = bytes.length;
+        this.segment_bits = segment_bits;
+        this.segment_mask = segment_size - 1;
+        order();
+    }
+
+    private MappedFile(ByteBuffer [] segments,long size,int segment_bits){
+        this.segments = segments;
+        this.size = size;
+        this.segment_bits = segment_bits;
+        this.segment_mask = (1L << segment_bits) - 1;
+        order();
+    }
+
+    //////////////////////////////////////////////////////
+    // get
+    //////////////////////////////////////////////////////
+
+    byte get(long pos){
+        return segments[(int) (pos >>> segment_bits)].get((int) (pos & segment_mask));
+    }
+
+    int getInt(long pos){
+        return segments[(int) (pos >>> segment_bits)].getInt((int) (pos & segment_mask));
+    }
+
+    long getLong(long pos){
+        return segments[(int) (pos >>> segment_bits)].getLong((int) (pos & segment_mask));
+    }
+
+    float getFloat(long pos){
+        return segments[(int) (pos >>> segment_bits)].getFloat((int) (pos & segment_mask));
+    }
+
+    double getDouble(long pos){
+        return segments[(int) (pos >>> segment_bits)].getDouble((int) (pos & segment_mask));
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private static int num_segments(long size,int segment_bits){
+        return (int) Math.max(1L,(size + (1L << segment_bits) - 1) >>> segment_bits);
+    }
+
+    private void order(){
+        for(ByteBuffer segment : segments)
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+}
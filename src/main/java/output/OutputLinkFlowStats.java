@@ -0,0 +1,125 @@
+package output;
+
+import commodity.Commodity;
+import common.AbstractLaneGroup;
+import common.FlowAccumulatorState;
+import common.Link;
+import common.Scenario;
+import dispatch.Dispatcher;
+import dispatch.EventPoke;
+import dispatch.Pokable;
+import error.OTMErrorLog;
+import error.OTMException;
+import runner.RunParameters;
+import utils.OTMUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Statistics of link flows [veh/hr], sampled every outDt seconds.
+ */
+public class OutputLinkFlowStats extends AbstractOutputStats<Long> implements Pokable {
+
+    public final float outDt;
+    public final Commodity commodity;
+    public final List<Link> links;
+
+    private Map<Long,Set<FlowAccumulatorState>> flw_acc_sets; // link_id -> flow accumulator set (over lgs)
+    private Map<Long,Double> prev_count;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public OutputLinkFlowStats(Scenario scenario,String prefix,String output_folder,Long commodity_id,Collection<Long> link_ids,Float outDt,Float report_dt) throws OTMException {
+        super(scenario,prefix,output_folder,report_dt);
+        this.type = Type.link_flw_stats;
+        this.outDt = outDt==null ? -1 : outDt;
+
+        if(commodity_id==null)
+            commodity = null;
+        else{
+            if(!scenario.commodities.containsKey(commodity_id))
+                throw new OTMException("Bad commodity id (" + commodity_id + ") in output request.");
+            commodity = scenario.commodities.get(commodity_id);
+        }
+
+        if(link_ids==null)
+            links = new ArrayList<>(scenario.network.links.values());
+        else
+            links = link_ids.stream()
+                    .filter(id->scenario.network.links.containsKey(id))
+                    .map(id->scenario.network.links.get(id))
+                    .collect(Collectors.toList());
+    }
+
+    //////////////////////////////////////////////////////
+    // InterfaceOutput
+    //////////////////////////////////////////////////////
+
+    @Override
+    public String get_output_file() {
+        return write_to_file ? super.get_output_file() + "_" + (commodity==null ? "allcomms" : commodity.getId()) + "_link_flw_stats.txt" : null;
+    }
+
+    @Override
+    public void register(RunParameters props, Dispatcher dispatcher) {
+        dispatcher.register_event(new EventPoke(dispatcher,70,props.start_time+outDt,this));
+    }
+
+    //////////////////////////////////////////////////////
+    // AbstractOutput
+    //////////////////////////////////////////////////////
+
+    @Override
+    public void validate(OTMErrorLog errorLog) {
+        super.validate(errorLog);
+        if(Float.isNaN(outDt) || outDt<=0f)
+            errorLog.addError("outDt is not defined");
+        if(links.isEmpty())
+            errorLog.addError("no links in output request");
+    }
+
+    @Override
+    public void initialize(Scenario scenario) throws OTMException {
+        super.initialize(scenario);
+        flw_acc_sets = new HashMap<>();
+        prev_count = new HashMap<>();
+        for(Link link : links) {
+            Set<FlowAccumulatorState> flw_acc_set = new HashSet<>();
+            flw_acc_sets.put(link.getId(),flw_acc_set);
+            prev_count.put(link.getId(),0d);
+            for(AbstractLaneGroup lg : link.lanegroups_flwdn)
+                flw_acc_set.add(lg.request_flow_accumulator(commodity == null ? null : OTMUtils.hashset(commodity.getId())));
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // Pokable
+    //////////////////////////////////////////////////////
+
+    @Override
+    public void poke(Dispatcher dispatcher, float timestamp) throws OTMException {
+        for(Link link : links){
+            Set<FlowAccumulatorState> fas = flw_acc_sets.get(link.getId());
+            double count = commodity==null ?
+                    fas.stream().mapToDouble(x->x.get_total_count()).sum() :
+                    fas.stream().mapToDouble(x->x.get_count_for_commodity(commodity.getId())).sum();
+            double flow_vph = (count-prev_count.get(link.getId()))*3600d/outDt;
+            prev_count.put(link.getId(),count);
+            add_sample(timestamp-outDt,link.getId(),flow_vph);
+        }
+        dispatcher.register_event(new EventPoke(dispatcher,70,timestamp+outDt,this));
+    }
+
+    //////////////////////////////////////////////////////
+    // AbstractOutputStats
+    //////////////////////////////////////////////////////
+
+    @Override
+    protected String format_key(Long link_id) {
+        return String.valueOf(link_id);
+    }
+
+}
@@ -0,0 +1,319 @@
+package output;
+
+import error.OTMException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves output I/O off the simulation thread.
+ *
+ * Outputs write into an AsyncStream, which copies bytes into chunks taken from a
+ * fixed pool. Full chunks are handed to one of num_threads writer threads. Each
+ * stream is pinned to one writer thread, so its bytes reach the file in order.
+ * A stream holds its partly filled chunk between writes, so every open stream adds
+ * one chunk to the pool, and the shared num_chunks always serve the streams that
+ * need a new one. When the pool is exhausted the simulation thread either waits
+ * for a chunk to be recycled (block) or allocates a new one (allocate). Allocation
+ * stops at ALLOCATE_GROWTH times num_chunks, plus one per open stream, after which
+ * the simulation thread waits. Streams closed after stop() write their last bytes
+ * on the closing thread.
+ */
+public class OutputPipeline {
+
+    public enum Backpressure {
+        block,
+        allocate
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+    public static final int ALLOCATE_GROWTH = 4;
+
+    public final int num_threads;
+    public final int num_chunks;
+    public final int max_chunks;        // shared chunks, not counting one per open stream
+    public final int chunk_size;
+    public final Backpressure backpressure;
+
+    private final BlockingQueue<Chunk> pool;
+    private final AtomicInteger num_allocated;   // chunks in the pool, in streams, or queued
+    private final AtomicInteger num_streams = new AtomicInteger();   // open streams
+    private List<Lane> lanes;
+    private List<Thread> threads;
+    private int next_lane;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public OutputPipeline(int num_threads,int num_chunks,int chunk_size,Backpressure backpressure) throws OTMException {
+        if(num_threads<1 || num_chunks<1 || chunk_size<1)
+            throw new OTMException("Output pipeline requires at least one thread, one chunk, and a positive chunk size.");
+        this.num_threads = num_threads;
+        this.num_chunks = num_chunks;
+        this.chunk_size = chunk_size;
+        this.backpressure = backpressure==null ? Backpressure.block : backpressure;
+        this.max_chunks = this.backpressure==Backpressure.allocate ? num_chunks*ALLOCATE_GROWTH : num_chunks;
+        this.pool = new LinkedBlockingQueue<>();
+        for(int i=0;i<num_chunks;i++)
+            pool.add(new Chunk(chunk_size));
+        this.num_allocated = new AtomicInteger(num_chunks);
+    }
+
+    //////////////////////////////////////////////////////
+    // run
+    //////////////////////////////////////////////////////
+
+    public synchronized void start(){
+        if(threads!=null)
+            return;
+        lanes = new ArrayList<>();
+        threads = new ArrayList<>();
+        for(int i=0;i<num_threads;i++){
+            Lane lane = new Lane();
+            Thread thread = new Thread(()->drain(lane),"otm-output-" + i);
+            thread.setDaemon(true);
+            lanes.add(lane);
+            threads.add(thread);
+            thread.start();
+        }
+        next_lane = 0;
+    }
+
+    // Waits for all queued chunks to be written and stops the writer threads.
+    // Streams should be closed before calling this.
+    public synchronized void stop() throws OTMException {
+        if(threads==null)
+            return;
+        for(Lane lane : lanes)
+            lane.queue.add(Chunk.POISON);
+        try {
+            for(Thread thread : threads)
+                thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OTMException(e);
+        }
+        for(Lane lane : lanes)
+            lane.stopped = true;
+        threads = null;
+        lanes = null;
+    }
+
+    public int get_num_streams(){
+        return num_streams.get();
+    }
+
+    // chunks in the pool, in streams, or waiting to be written
+    public int get_num_chunks(){
+        return num_allocated.get();
+    }
+
+    public synchronized AsyncStream open_stream(OutputStream target) {
+        start();
+        Lane lane = lanes.get(next_lane);
+        next_lane = (next_lane+1) % num_threads;
+        num_streams.incrementAndGet();
+        return new AsyncStream(target,lane);
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private Chunk acquire() throws IOException {
+        Chunk chunk = pool.poll();
+        if(chunk!=null)
+            return chunk;
+        while(true){
+            int n = num_allocated.get();
+            if(n>=max_chunks+num_streams.get())
+                break;
+            if(num_allocated.compareAndSet(n,n+1))
+                return new Chunk(chunk_size);
+        }
+        try {
+            return pool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private void release(Chunk chunk){
+        chunk.len = 0;
+        chunk.stream = null;
+        // chunks beyond the pool size, num_chunks plus one per open stream, are dropped here
+        while(true){
+            int n = num_allocated.get();
+            if(n<=num_chunks+num_streams.get()){
+                pool.offer(chunk);
+                return;
+            }
+            if(num_allocated.compareAndSet(n,n-1))
+                return;
+        }
+    }
+
+    private void drain(Lane lane){
+        while(true){
+            Chunk chunk;
+            try {
+                chunk = lane.queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if(chunk==Chunk.POISON)
+                return;
+            AsyncStream stream = chunk.stream;
+            try {
+                if(chunk.is_close) {
+                    stream.target.close();
+                } else if(stream.error==null)
+                    stream.target.write(chunk.data,0,chunk.len);
+            } catch (IOException e) {
+                stream.error = e;
+            }
+            if(chunk.is_close)
+                stream.closed.countDown();
+            else
+                release(chunk);
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // class
+    //////////////////////////////////////////////////////
+
+    // queue of one writer thread. stopped is set once the thread has exited.
+    private static class Lane {
+        final BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+        volatile boolean stopped;
+    }
+
+    private static class Chunk {
+        static final Chunk POISON = new Chunk(0);
+        final byte [] data;
+        int len;
+        boolean is_close;
+        AsyncStream stream;
+        Chunk(int size){
+            data = new byte[size];
+        }
+    }
+
+    public class AsyncStream extends OutputStream {
+
+        private final OutputStream target;
+        private final Lane lane;
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private volatile IOException error;
+        private Chunk current;
+        private boolean is_closed;
+
+        private AsyncStream(OutputStream target,Lane lane){
+            this.target = target;
+            this.lane = lane;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            check();
+            if(current==null || current.len==current.data.length)
+                next_chunk();
+            current.data[current.len++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte [] b,int off,int len) throws IOException {
+            check();
+            while(len>0){
+                if(current==null || current.len==current.data.length)
+                    next_chunk();
+                int n = Math.min(len,current.data.length-current.len);
+                System.arraycopy(b,off,current.data,current.len,n);
+                current.len += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        // hands the partial chunk to the writer thread without waiting for it
+        @Override
+        public void flush() throws IOException {
+            check();
+            submit();
+        }
+
+        // blocks until every byte written to this stream is on disk and the file is closed
+        @Override
+        public void close() throws IOException {
+            if(is_closed)
+                return;
+            is_closed = true;
+            num_streams.decrementAndGet();
+            if(lane.stopped){
+                try {
+                    submit();
+                } finally {
+                    target.close();
+                }
+                if(error!=null)
+                    throw error;
+                return;
+            }
+            submit();
+            Chunk marker = new Chunk(0);
+            marker.is_close = true;
+            marker.stream = this;
+            lane.queue.add(marker);
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            if(error!=null)
+                throw error;
+        }
+
+        private void check() throws IOException {
+            if(is_closed)
+                throw new IOException("Stream is closed");
+            if(error!=null)
+                throw error;
+        }
+
+        private void next_chunk() throws IOException {
+            submit();
+            current = acquire();
+            current.stream = this;
+        }
+
+        // after stop() there is no writer thread, so the chunk is written on this thread
+        private void submit() throws IOException {
+            if(current==null)
+                return;
+            Chunk chunk = current;
+            current = null;
+            if(chunk.len>0 && !lane.stopped){
+                lane.queue.add(chunk);
+                return;
+            }
+            try {
+                if(chunk.len>0 && error==null)
+                    target.write(chunk.data,0,chunk.len);
+            } finally {
+                release(chunk);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package output;
+
+/**
+ * One row of a timed output, passed to subscribers. The same instance is reused
+ * for later rows, so listeners must copy anything they want to keep.
+ */
+public class OutputRow {
+
+    public final AbstractOutputTimed output;
+    public final long [] col_ids;
+    public final int [] col_index;     // cell position for cell outputs, otherwise null
+    public float time;
+    public final double [] values;
+
+    public OutputRow(AbstractOutputTimed output,long [] col_ids,int [] col_index){
+        this.output = output;
+        this.col_ids = col_ids;
+        this.col_index = col_index;
+        this.values = new double[col_ids.length];
+    }
+
+    protected void set(float time,double [] values){
+        this.time = time;
+        System.arraycopy(values,0,this.values,0,this.values.length);
+    }
+
+}
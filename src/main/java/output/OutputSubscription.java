@@ -0,0 +1,171 @@
+package output;
+
+import error.OTMException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pushes the rows of a timed output to a listener while the simulation runs.
+ *
+ * With the direct policy the listener is called on the simulation thread. Otherwise
+ * rows are copied into a pool of capacity records and delivered by a dedicated thread.
+ * When the listener falls behind:
+ *      block       the simulation waits for a free record
+ *      drop        the new row is discarded
+ *      conflate    the undelivered row is replaced by the new one (capacity is 1)
+ */
+public class OutputSubscription {
+
+    public enum Policy {
+        direct,
+        block,
+        drop,
+        conflate
+    }
+
+    public final AbstractOutputTimed output;
+    public final InterfaceOutputRowListener listener;
+    public final Policy policy;
+
+    private final OutputRow direct_row;
+    private final BlockingQueue<OutputRow> pool;      // free records
+    private final BlockingQueue<OutputRow> queue;     // records waiting for the listener
+    private final OutputRow poison;
+    private Thread thread;
+    private long num_skipped;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public OutputSubscription(AbstractOutputTimed output,InterfaceOutputRowListener listener,Policy policy,int capacity) throws OTMException {
+        if(!output.has_columns())
+            throw new OTMException("Subscriptions are only available for link, lane group and cell outputs.");
+        if(capacity<1)
+            throw new OTMException("Subscription capacity must be positive.");
+
+        this.output = output;
+        this.listener = listener;
+        this.policy = policy==null ? Policy.direct : policy;
+
+        long [] col_ids = output.get_col_ids();
+        int [] col_index = output.get_col_index();
+
+        if(this.policy==Policy.direct){
+            direct_row = new OutputRow(output,col_ids,col_index);
+            pool = null;
+            queue = null;
+            poison = null;
+        } else {
+            // one more record than the queue holds, for the one being delivered
+            int size = this.policy==Policy.conflate ? 1 : capacity;
+            direct_row = null;
+            pool = new ArrayBlockingQueue<>(size+1);
+            queue = new ArrayBlockingQueue<>(size+2);
+            for(int i=0;i<=size;i++)
+                pool.add(new OutputRow(output,col_ids,col_index));
+            poison = new OutputRow(output,new long[0],null);
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // publish
+    //////////////////////////////////////////////////////
+
+    public void publish(float time,double [] values) throws OTMException {
+
+        if(policy==Policy.direct){
+            direct_row.set(time,values);
+            listener.row_written(direct_row);
+            return;
+        }
+
+        if(thread==null)
+            start();
+
+        try {
+            OutputRow row = null;
+            switch(policy){
+                case block:
+                    row = pool.take();
+                    break;
+                case drop:
+                    row = pool.poll();
+                    if(row==null){
+                        num_skipped++;
+                        return;
+                    }
+                    break;
+                case conflate:
+                    row = pool.poll();
+                    if(row==null) {
+                        row = queue.poll();
+                        if(row!=null)
+                            num_skipped++;
+                        else
+                            row = pool.take();
+                    }
+                    break;
+            }
+            row.set(time,values);
+            queue.add(row);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OTMException(e);
+        }
+    }
+
+    // Delivers all pending rows and stops the delivery thread.
+    public void close() throws OTMException {
+        if(thread==null)
+            return;
+        try {
+            queue.put(poison);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OTMException(e);
+        }
+        thread = null;
+    }
+
+    //////////////////////////////////////////////////////
+    // get
+    //////////////////////////////////////////////////////
+
+    // rows dropped or conflated because the listener was behind
+    public long get_num_skipped(){
+        return num_skipped;
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private void start(){
+        thread = new Thread(this::deliver,"otm-subscription");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void deliver(){
+        while(true){
+            OutputRow row;
+            try {
+                row = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if(row==poison)
+                return;
+            try {
+                listener.row_written(row);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            pool.add(row);
+        }
+    }
+
+}
@@ -1,15 +1,15 @@
 package output;
 
+import output.events.AbstractEventWrapper;
 import output.events.EventWrapperTravelTime;
 import commodity.Commodity;
 import dispatch.Dispatcher;
 import error.OTMException;
-import models.vehicle.spatialq.MesoVehicle;
 import models.vehicle.spatialq.Queue;
 import runner.RunParameters;
 import common.Scenario;
 
-public class OutputTravelTime extends AbstractOutputEvent implements InterfaceVehicleListener  {
+public class OutputTravelTime extends AbstractOutputVehicleEvent {
 
     //////////////////////////////////////////////////////
     // construction
@@ -37,12 +37,12 @@ public class OutputTravelTime extends AbstractOutputEvent implements InterfaceVe
     }
 
     //////////////////////////////////////////////////////
-    // InterfaceVehicleListener
+    // AbstractOutputVehicleEvent
     //////////////////////////////////////////////////////
 
     @Override
-    public void move_from_to_queue(float timestamp, MesoVehicle vehicle, Queue from_queue, Queue to_queue) throws OTMException {
-        write(new EventWrapperTravelTime(timestamp,vehicle.getId(),from_queue,to_queue));
+    protected AbstractEventWrapper create_event(float timestamp, long vehicle_id, Queue from_queue, Queue to_queue) {
+        return new EventWrapperTravelTime(timestamp,vehicle_id,from_queue,to_queue);
     }
 
     //////////////////////////////////////////////////////
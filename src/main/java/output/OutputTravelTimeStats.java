@@ -0,0 +1,95 @@
+package output;
+
+import commodity.Commodity;
+import common.Scenario;
+import dispatch.Dispatcher;
+import error.OTMException;
+import models.vehicle.spatialq.MesoVehicle;
+import models.vehicle.spatialq.Queue;
+import runner.RunParameters;
+import utils.Pair;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Statistics of vehicle travel times [sec] per OD pair, where the origin and
+ * destination are the links where the vehicle enters and leaves the network.
+ * The key occupies two columns: origin link id and destination link id.
+ */
+public class OutputTravelTimeStats extends AbstractOutputStats<Pair<Long,Long>> implements InterfaceVehicleListener {
+
+    private Map<Long,Entry> entries;   // vehicle id -> entry time and link
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public OutputTravelTimeStats(Scenario scenario,String prefix,String output_folder,Float report_dt) {
+        super(scenario,prefix,output_folder,report_dt);
+        this.type = Type.vehicle_travel_time_stats;
+    }
+
+    //////////////////////////////////////////////////////
+    // InterfaceOutput
+    //////////////////////////////////////////////////////
+
+    @Override
+    public String get_output_file() {
+        return write_to_file ? super.get_output_file() + "_vehicle_travel_time_stats.txt" : null;
+    }
+
+    @Override
+    public void register(RunParameters props, Dispatcher dispatcher) throws OTMException {
+        for (Commodity c : scenario.commodities.values())
+            c.add_vehicle_event_listener(this);
+    }
+
+    //////////////////////////////////////////////////////
+    // AbstractOutput
+    //////////////////////////////////////////////////////
+
+    @Override
+    public void initialize(Scenario scenario) throws OTMException {
+        super.initialize(scenario);
+        entries = new HashMap<>();
+    }
+
+    //////////////////////////////////////////////////////
+    // InterfaceVehicleListener
+    //////////////////////////////////////////////////////
+
+    @Override
+    public void move_from_to_queue(float timestamp, MesoVehicle vehicle, Queue from_queue, Queue to_queue) throws OTMException {
+        if(from_queue==null && to_queue!=null)
+            entries.put(vehicle.getId(),new Entry(timestamp,to_queue.lanegroup.link.getId()));
+        else if(to_queue==null && from_queue!=null) {
+            Entry entry = entries.remove(vehicle.getId());
+            if(entry!=null)
+                add_sample(timestamp,new Pair<>(entry.link_id,from_queue.lanegroup.link.getId()),timestamp-entry.time);
+        }
+    }
+
+    //////////////////////////////////////////////////////
+    // AbstractOutputStats
+    //////////////////////////////////////////////////////
+
+    @Override
+    protected String format_key(Pair<Long,Long> od) {
+        return od.left + "\t" + od.right;
+    }
+
+    //////////////////////////////////////////////////////
+    // class
+    //////////////////////////////////////////////////////
+
+    private static class Entry {
+        final float time;
+        final long link_id;
+        Entry(float time,long link_id){
+            this.time = time;
+            this.link_id = link_id;
+        }
+    }
+
+}
@@ -1,15 +1,15 @@
 package output;
 
+import output.events.AbstractEventWrapper;
 import output.events.EventVehicleFromToQueueInfo;
 import commodity.Commodity;
 import dispatch.Dispatcher;
 import error.OTMException;
-import models.vehicle.spatialq.MesoVehicle;
 import models.vehicle.spatialq.Queue;
 import runner.RunParameters;
 import common.Scenario;
 
-public class OutputVehicle extends AbstractOutputEvent implements InterfaceVehicleListener {
+public class OutputVehicle extends AbstractOutputVehicleEvent {
 
     private final String suffix;
     public Long commodity_id;
@@ -47,11 +47,17 @@ public class OutputVehicle extends AbstractOutputEvent implements InterfaceVehic
     }
 
     //////////////////////////////////////////////////////
-    // InterfaceVehicleListener
+    // AbstractOutputVehicleEvent
     //////////////////////////////////////////////////////
 
-    public void move_from_to_queue(float timestamp, MesoVehicle vehicle, Queue from_queue, Queue to_queue) throws OTMException {
-        this.write(new EventVehicleFromToQueueInfo(timestamp,vehicle.getId(),from_queue,to_queue));
+    @Override
+    protected AbstractEventWrapper create_event(float timestamp, long vehicle_id, Queue from_queue, Queue to_queue) {
+        return new EventVehicleFromToQueueInfo(timestamp,vehicle_id,from_queue,to_queue);
+    }
+
+    @Override
+    protected Long get_commodity_id() {
+        return commodity_id;
     }
 
     //////////////////////////////////////////////////////
@@ -0,0 +1,362 @@
+package output.animation;
+
+import common.AbstractLaneGroup;
+import common.Link;
+import common.Scenario;
+import error.OTMException;
+import models.fluid.AbstractCell;
+import models.fluid.FluidLaneGroup;
+import models.vehicle.newell.NewellLaneGroup;
+import models.vehicle.newell.NewellVehicle;
+import models.vehicle.spatialq.MesoLaneGroup;
+import models.vehicle.spatialq.MesoVehicle;
+import models.vehicle.spatialq.Queue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Stream of animation frames that carry only what changed since the previous frame.
+ * A value is sent when it differs from the last value sent for it by more than the
+ * threshold: vehicles for cells and lane groups, meters for vehicle positions.
+ * The first frame, and any frame after key_frame(), is complete.
+ *
+ * Cells and lane groups are referred to by their position in the dictionary
+ * (get_cell_lanegroup_ids, get_cell_index, get_lanegroup_ids). Frames are little endian:
+ *      int magic, int frame_number, float time, byte is_key_frame,
+ *      int n, n x (int cell, float vehicles),
+ *      int n, n x (int lanegroup, float vehicles),
+ *      int n, n x (long vehicle_id, int lanegroup, byte queue (0 transit, 1 waiting, 2 none), float position),
+ *      int n, n x (long vehicle_id)    vehicles that left the animated links
+ * Vehicle positions are in meters for micro lane groups and NaN for meso lane groups.
+ */
+public class AnimationFrameStream {
+
+    public static final int MAGIC = 0x464D544F;   // "OTMF"
+    public static final byte TRANSIT = 0;
+    public static final byte WAITING = 1;
+    public static final byte NO_QUEUE = 2;
+
+    private final Scenario scenario;
+    public float threshold;
+    public float position_threshold;
+
+    // dictionary
+    private final AbstractCell [] cells;
+    private final long [] cell_lg_ids;
+    private final int [] cell_index;
+    private final AbstractLaneGroup [] lanegroups;
+    private final long [] lg_ids;
+    private final long [] lg_link_ids;
+
+    // last values sent. Vehicles in the previous frame, and those found so far in this one.
+    private final float [] sent_cells;
+    private final float [] sent_lgs;
+    private VehicleTable sent_vehicles;
+    private VehicleTable next_vehicles;
+
+    private ByteBuffer buffer;
+    private ByteBuffer view;          // read-only view of buffer, returned by next_frame
+    private int frame_number;
+    private boolean key;
+
+    //////////////////////////////////////////////////////
+    // construction
+    //////////////////////////////////////////////////////
+
+    public AnimationFrameStream(Scenario scenario,Collection<Long> link_ids,float threshold,float position_threshold) throws OTMException {
+        if(threshold<0f || position_threshold<0f)
+            throw new OTMException("Animation thresholds must be non-negative");
+
+        this.scenario = scenario;
+        this.threshold = threshold;
+        this.position_threshold = position_threshold;
+
+        if(link_ids==null)
+            link_ids = scenario.network.links.keySet();
+
+        List<AbstractCell> cell_list = new ArrayList<>();
+        List<Long> cell_lg_list = new ArrayList<>();
+        List<Integer> cell_index_list = new ArrayList<>();
+        List<AbstractLaneGroup> lg_list = new ArrayList<>();
+        for(Long link_id : link_ids){
+            Link link = scenario.network.links.get(link_id);
+            if(link==null)
+                throw new OTMException("Bad link id in animation request: " + link_id);
+            for(AbstractLaneGroup lg : link.lanegroups_flwdn){
+                lg_list.add(lg);
+                if(lg instanceof FluidLaneGroup){
+                    List<AbstractCell> lg_cells = ((FluidLaneGroup) lg).cells;
+                    for(int i=0;i<lg_cells.size();i++){
+                        cell_list.add(lg_cells.get(i));
+                        cell_lg_list.add(lg.id);
+                        cell_index_list.add(i);
+                    }
+                }
+            }
+        }
+
+        cells = cell_list.toArray(new AbstractCell[0]);
+        cell_lg_ids = cell_lg_list.stream().mapToLong(x->x).toArray();
+        cell_index = cell_index_list.stream().mapToInt(x->x).toArray();
+        lanegroups = lg_list.toArray(new AbstractLaneGroup[0]);
+        lg_ids = lg_list.stream().mapToLong(lg->lg.id).toArray();
+        lg_link_ids = lg_list.stream().mapToLong(lg->lg.link.getId()).toArray();
+
+        sent_cells = new float[cells.length];
+        sent_lgs = new float[lanegroups.length];
+        sent_vehicles = new VehicleTable();
+        next_vehicles = new VehicleTable();
+
+        buffer = ByteBuffer.allocateDirect(64 + 8*cells.length + 8*lanegroups.length).order(ByteOrder.LITTLE_ENDIAN);
+        key = true;
+    }
+
+    //////////////////////////////////////////////////////
+    // dictionary
+    //////////////////////////////////////////////////////
+
+    public long [] get_cell_lanegroup_ids(){
+        return cell_lg_ids;
+    }
+
+    public int [] get_cell_index(){
+        return cell_index;
+    }
+
+    public long [] get_lanegroup_ids(){
+        return lg_ids;
+    }
+
+    public long [] get_lanegroup_link_ids(){
+        return lg_link_ids;
+    }
+
+    //////////////////////////////////////////////////////
+    // frames
+    //////////////////////////////////////////////////////
+
+    // make the next frame complete, e.g. for a client that has just connected
+    public void key_frame(){
+        key = true;
+    }
+
+    /**
+     * Changes since the previous frame. The returned buffer is reused by the next call.
+     */
+    public ByteBuffer next_frame() {
+
+        boolean is_key = key;
+        key = false;
+        buffer.clear();
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(frame_number++);
+        buffer.putFloat(scenario.get_current_time());
+        buffer.put((byte) (is_key ? 1 : 0));
+
+        // cells
+        int count_pos = buffer.position();
+        buffer.putInt(0);
+        int n = 0;
+        for(int i=0;i<cells.length;i++){
+            float value = (float) cells[i].get_vehicles();
+            if(is_key || Math.abs(value-sent_cells[i])>threshold){
+                ensure(8);
+                buffer.putInt(i);
+                buffer.putFloat(value);
+                sent_cells[i] = value;
+                n++;
+            }
+        }
+        buffer.putInt(count_pos,n);
+
+        // lane groups
+        ensure(4);
+        count_pos = buffer.position();
+        buffer.putInt(0);
+        n = 0;
+        for(int i=0;i<lanegroups.length;i++){
+            float value = lanegroups[i].get_total_vehicles();
+            if(is_key || Math.abs(value-sent_lgs[i])>threshold){
+                ensure(8);
+                buffer.putInt(i);
+                buffer.putFloat(value);
+                sent_lgs[i] = value;
+                n++;
+            }
+        }
+        buffer.putInt(count_pos,n);
+
+        // vehicles
+        ensure(4);
+        count_pos = buffer.position();
+        buffer.putInt(0);
+        n = 0;
+        for(int i=0;i<lanegroups.length;i++){
+            AbstractLaneGroup lg = lanegroups[i];
+            if(lg instanceof MesoLaneGroup){
+                MesoLaneGroup mlg = (MesoLaneGroup) lg;
+                n += put_meso_vehicles(mlg.transit_queue,i,TRANSIT,is_key);
+                n += put_meso_vehicles(mlg.waiting_queue,i,WAITING,is_key);
+            } else if(lg instanceof NewellLaneGroup) {
+                for(NewellVehicle vehicle : ((NewellLaneGroup) lg).vehicles)
+                    n += put_vehicle(vehicle.getId(),i,NO_QUEUE,(float) vehicle.pos,is_key);
+            }
+        }
+        buffer.putInt(count_pos,n);
+
+        // vehicles that are gone: in the previous frame and not found in this one
+        ensure(4);
+        count_pos = buffer.position();
+        buffer.putInt(0);
+        n = 0;
+        VehicleTable sent = sent_vehicles;
+        for(int s=0;s<sent.ids.length;s++){
+            if(sent.used[s] && sent.seen[s]!=frame_number){
+                ensure(8);
+                buffer.putLong(sent.ids[s]);
+                n++;
+            }
+        }
+        buffer.putInt(count_pos,n);
+
+        sent.clear();
+        sent_vehicles = next_vehicles;
+        next_vehicles = sent;
+
+        buffer.flip();
+        if(view==null)
+            view = buffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        view.clear();
+        view.limit(buffer.limit());
+        return view;
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private int put_meso_vehicles(Queue queue,int lg_index,byte queue_type,boolean is_key){
+        int n = 0;
+        for(MesoVehicle vehicle : queue.get_vehicles())
+            n += put_vehicle(vehicle.getId(),lg_index,queue_type,Float.NaN,is_key);
+        return n;
+    }
+
+    private int put_vehicle(long vehicle_id,int lg_index,byte queue_type,float position,boolean is_key){
+        VehicleTable sent = sent_vehicles;
+        int s = sent.find(vehicle_id);
+        boolean changed = is_key || s<0 || sent.lg_index[s]!=lg_index || sent.queue[s]!=queue_type
+                || Math.abs(position-sent.position[s])>position_threshold;
+        int t = next_vehicles.add(vehicle_id);
+        if(s>=0)
+            sent.seen[s] = frame_number;
+        if(!changed){
+            next_vehicles.set(t,sent.lg_index[s],sent.queue[s],sent.position[s]);
+            return 0;
+        }
+        next_vehicles.set(t,lg_index,queue_type,position);
+        ensure(17);
+        buffer.putLong(vehicle_id);
+        buffer.putInt(lg_index);
+        buffer.put(queue_type);
+        buffer.putFloat(position);
+        return 1;
+    }
+
+    private void ensure(int bytes){
+        if(buffer.remaining()>=bytes)
+            return;
+        ByteBuffer bigger = ByteBuffer.allocateDirect(2*buffer.capacity()+bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        bigger.put(buffer);
+        buffer = bigger;
+        view = null;
+    }
+
+    // last state sent for each vehicle, in parallel arrays indexed by slot, with
+    // linear probing on the vehicle id. Entries are never removed: the table is cleared.
+    private static class VehicleTable {
+        long [] ids;
+        boolean [] used;
+        int [] lg_index;
+        byte [] queue;
+        float [] position;
+        int [] seen;            // frame number in which the vehicle was last found
+        int size;
+
+        VehicleTable(){
+            allocate(64);
+        }
+
+        // slot of the vehicle, or -1
+        int find(long id){
+            int mask = ids.length-1;
+            for(int s=hash(id)&mask;used[s];s=(s+1)&mask)
+                if(ids[s]==id)
+                    return s;
+            return -1;
+        }
+
+        // slot of the vehicle, added if absent
+        int add(long id){
+            if(2*(size+1)>ids.length)
+                grow();
+            int mask = ids.length-1;
+            int s = hash(id)&mask;
+            for(;used[s];s=(s+1)&mask)
+                if(ids[s]==id)
+                    return s;
+            used[s] = true;
+            ids[s] = id;
+            seen[s] = -1;
+            size++;
+            return s;
+        }
+
+        void set(int s,int lg,byte q,float pos){
+            lg_index[s] = lg;
+            queue[s] = q;
+            position[s] = pos;
+        }
+
+        void clear(){
+            Arrays.fill(used,false);
+            size = 0;
+        }
+
+        private void grow(){
+            long [] old_ids = ids;
+            boolean [] old_used = used;
+            int [] old_lg_index = lg_index;
+            byte [] old_queue = queue;
+            float [] old_position = position;
+            int [] old_seen = seen;
+            allocate(2*old_ids.length);
+            for(int i=0;i<old_ids.length;i++){
+                if(!old_used[i])
+                    continue;
+                int s = add(old_ids[i]);
+                set(s,old_lg_index[i],old_queue[i],old_position[i]);
+                seen[s] = old_seen[i];
+            }
+        }
+
+        private void allocate(int capacity){
+            ids = new long[capacity];
+            used = new boolean[capacity];
+            lg_index = new int[capacity];
+            queue = new byte[capacity];
+            position = new float[capacity];
+            seen = new int[capacity];
+            size = 0;
+        }
+
+        private static int hash(long id){
+            return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+    }
+
+}
@@ -4,13 +4,13 @@ import common.AbstractVehicle;
 import keys.State;
 
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
 public class PacketLaneGroup {
 
-    public Set<AbstractVehicle> vehicles = new HashSet<>();
+    public Set<AbstractVehicle> vehicles = new LinkedHashSet<>();      // in order of arrival
 
     // this buffer holds remainders of arriving fluid packets.
     // these remainders are added into the lane group packet
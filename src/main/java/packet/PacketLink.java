@@ -12,14 +12,14 @@ public class PacketLink {
 
     // The packet arrives to a set of lanegroups
     public RoadConnection road_connection;
-    public Set<AbstractVehicle> vehicles;
+    public Set<AbstractVehicle> vehicles;          // in order of arrival, so that vehicles are moved in the same order in every run
     public Map<State,Double> state2vehicles;
 
     // empty constructor
     public PacketLink(RoadConnection road_connection){
         this.road_connection = road_connection;
         this.state2vehicles = new HashMap<>();
-        this.vehicles = new HashSet<>();
+        this.vehicles = new LinkedHashSet<>();
     }
 
     // macro constructor
@@ -31,7 +31,7 @@ public class PacketLink {
     // single vehicle constructor
     public PacketLink(AbstractVehicle vehicle,RoadConnection road_connection){
         this.road_connection = road_connection;
-        this.vehicles = new HashSet<>();
+        this.vehicles = new LinkedHashSet<>();
         this.vehicles.add(vehicle);
     }
 
@@ -9,7 +9,7 @@ import models.vehicle.AbstractVehicleModel;
 import common.Scenario;
 
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -39,7 +39,7 @@ public class StateContainer {
 
         AbstractVehicleModel model = (AbstractVehicleModel) lg.link.model;
 
-        Set<AbstractVehicle> vehicles = new HashSet<>();
+        Set<AbstractVehicle> vehicles = new LinkedHashSet<>();
 
         // iterate through all keys ion the packet
         for(Map.Entry<State,Double> e : container.amount.entrySet()){
@@ -52,7 +52,7 @@ public class StateContainer {
                 for(int i=0;i<num_veh;i++) {
                     Scenario scenario = lg.link.network.scenario;
                     Commodity commodity = scenario.commodities.get(key.commodity_id);
-                    AbstractVehicle vehicle = model.create_vehicle(key.commodity_id, commodity.vehicle_event_listeners);
+                    AbstractVehicle vehicle = model.create_vehicle(scenario.context.next_vehicle_id(),key.commodity_id, commodity.vehicle_event_listeners);
                     vehicle.set_state(key);
                     if(key.isPath)
                         vehicle.path = (Path) scenario.subnetworks.get(key.pathOrlink_id);
@@ -0,0 +1,170 @@
+package partition;
+
+import common.AbstractLaneGroup;
+import common.Link;
+import common.Network;
+import common.RoadConnection;
+import models.fluid.AbstractFluidModel;
+import models.fluid.FluidLaneGroup;
+import models.vehicle.AbstractVehicleModel;
+
+import java.util.*;
+
+/**
+ * Undirected weighted graph in compressed sparse row form. Vertex i has neighbors
+ * adjncy[xadj[i]..xadj[i+1]-1], with edge weights in adjwgt at the same positions. Every
+ * edge is stored in both directions, and there are no self loops or repeated edges.
+ *
+ * The graph of a network has one vertex per link, weighted by the work of simulating the
+ * link, and one edge between every pair of links joined by road connections, weighted by
+ * the capacity of those road connections.
+ */
+public class Graph {
+
+    public final int num_vertices;
+    public final long [] ids;         // vertex -> link id
+    public final int [] vwgt;         // vertex weights
+    public final int [] xadj;         // vertex -> first position in adjncy
+    public final int [] adjncy;       // neighbors
+    public final int [] adjwgt;       // edge weights
+
+    public Graph(long [] ids,int [] vwgt,int [] xadj,int [] adjncy,int [] adjwgt){
+        this.num_vertices = vwgt.length;
+        this.ids = ids;
+        this.vwgt = vwgt;
+        this.xadj = xadj;
+        this.adjncy = adjncy;
+        this.adjwgt = adjwgt;
+    }
+
+    /**
+     * Graph from a list of edges, in any order and direction. Edges between the same
+     * vertices are merged, adding their weights, and self loops are dropped.
+     * @param ids Id of each vertex.
+     * @param vwgt Weight of each vertex.
+     * @param edges Number of edges.
+     * @param from Start vertex of each edge.
+     * @param to End vertex of each edge.
+     * @param weight Weight of each edge.
+     */
+    public static Graph from_edges(long [] ids,int [] vwgt,int edges,int [] from,int [] to,int [] weight){
+        int n = vwgt.length;
+
+        // both directions, by start vertex
+        int [] xadj = new int[n+1];
+        for(int e=0;e<edges;e++)
+            if(from[e]!=to[e]) {
+                xadj[from[e]+1]++;
+                xadj[to[e]+1]++;
+            }
+        for(int i=0;i<n;i++)
+            xadj[i+1] += xadj[i];
+        int [] pos = new int[n];
+        System.arraycopy(xadj,0,pos,0,n);
+        int [] adjncy = new int[xadj[n]];
+        int [] adjwgt = new int[xadj[n]];
+        for(int e=0;e<edges;e++)
+            if(from[e]!=to[e]) {
+                adjncy[pos[from[e]]] = to[e];
+                adjwgt[pos[from[e]]++] = weight[e];
+                adjncy[pos[to[e]]] = from[e];
+                adjwgt[pos[to[e]]++] = weight[e];
+            }
+
+        // merge repeated edges
+        int [] where = new int[n];
+        Arrays.fill(where,-1);
+        int k = 0;
+        int start = 0;
+        for(int i=0;i<n;i++){
+            int end = xadj[i+1];
+            int first = k;
+            for(int j=start;j<end;j++){
+                int v = adjncy[j];
+                if(where[v]>=first)
+                    adjwgt[where[v]] += adjwgt[j];
+                else {
+                    where[v] = k;
+                    adjncy[k] = v;
+                    adjwgt[k++] = adjwgt[j];
+                }
+            }
+            start = end;
+            xadj[i+1] = k;
+        }
+        return new Graph(ids,vwgt,xadj,Arrays.copyOf(adjncy,k),Arrays.copyOf(adjwgt,k));
+    }
+
+    /**
+     * Graph of the links of a network. The weight of a link is its number of cells for fluid
+     * models, the number of vehicles it holds at jam density for vehicle models, and 1
+     * otherwise. The weight of an edge is the capacity, in vehicles per hour, of the road
+     * connections between the two links.
+     */
+    public static Graph from_network(Network network){
+        List<Link> links = new ArrayList<>(network.links.values());
+        links.sort((a,b)->Long.compare(a.getId(),b.getId()));
+        int n = links.size();
+        long [] ids = new long[n];
+        int [] vwgt = new int[n];
+        Map<Long,Integer> index = new HashMap<>();
+        for(int i=0;i<n;i++){
+            Link link = links.get(i);
+            ids[i] = link.getId();
+            vwgt[i] = weight(link);
+            index.put(link.getId(),i);
+        }
+
+        List<RoadConnection> rcs = new ArrayList<>();
+        for(RoadConnection rc : network.get_road_connections())
+            if(rc.start_link!=null && rc.end_link!=null)
+                rcs.add(rc);
+        int [] from = new int[rcs.size()];
+        int [] to = new int[rcs.size()];
+        int [] weight = new int[rcs.size()];
+        for(int e=0;e<rcs.size();e++){
+            RoadConnection rc = rcs.get(e);
+            from[e] = index.get(rc.start_link.getId());
+            to[e] = index.get(rc.end_link.getId());
+            weight[e] = Math.max(1,Math.round(rc.start_link.road_param_full.getCapacity()*rc.get_in_lanes()));
+        }
+        return from_edges(ids,vwgt,rcs.size(),from,to,weight);
+    }
+
+    ////////////////////////////////////////////
+    // get
+    ////////////////////////////////////////////
+
+    public int get_num_edges(){
+        return adjncy.length/2;
+    }
+
+    public long get_total_weight(){
+        long x = 0;
+        for(int w : vwgt)
+            x += w;
+        return x;
+    }
+
+    ////////////////////////////////////////////
+    // private
+    ////////////////////////////////////////////
+
+    private static int weight(Link link){
+        if(link.lanegroups_flwdn==null || link.lanegroups_flwdn.isEmpty())
+            return 1;
+        int x = 0;
+        if(link.model instanceof AbstractFluidModel){
+            for(AbstractLaneGroup lg : link.lanegroups_flwdn)
+                if(lg instanceof FluidLaneGroup && ((FluidLaneGroup) lg).cells!=null)
+                    x += ((FluidLaneGroup) lg).cells.size();
+        }
+        else if(link.model instanceof AbstractVehicleModel){
+            float jam_density_vpkpl = link.road_param_full.getJamDensity();
+            for(AbstractLaneGroup lg : link.lanegroups_flwdn)
+                x += Math.round(lg.num_lanes*lg.length/1000f*jam_density_vpkpl);
+        }
+        return Math.max(1,x);
+    }
+
+}
@@ -0,0 +1,454 @@
+package partition;
+
+import error.OTMException;
+
+import java.util.*;
+
+/**
+ * Multilevel k-way graph partitioner. The graph is coarsened by repeatedly contracting a
+ * heavy-edge matching, until it has a few tens of vertices per part. The coarsest graph is
+ * split by recursive bisection, each half grown greedily from a random vertex, keeping the
+ * best of several trials. The partition is then projected back through the levels, and at
+ * each level it is balanced and improved with Fiduccia-Mattheyses passes: boundary vertices
+ * are moved to the neighboring part with the highest gain, including moves that increase the
+ * cut, and the passes keep the best sequence of moves.
+ *
+ * Work and memory are linear in the size of the graph, per level.
+ */
+public class Partitioner {
+
+    public float imbalance = 0.03f;         // allowed weight of a part above the average, as a fraction
+    public int coarsest_per_part = 30;      // coarsening stops at about this many vertices per part
+    public int initial_trials = 4;          // grown bisections tried at each split of the coarsest graph
+    public int refinement_passes = 8;       // maximum FM passes per level
+    public int max_uphill_moves = 64;       // moves without improvement before an FM pass stops
+    public long seed = 0L;
+
+    private Random random;
+
+    /**
+     * Partition a graph.
+     * @param graph The graph, for example Graph.from_network(network).
+     * @param num_parts Number of parts.
+     * @return The part of every vertex, and its cut and balance.
+     * @throws OTMException If num_parts is less than 1 or more than the number of vertices.
+     */
+    public Partitioning partition(Graph graph,int num_parts) throws OTMException {
+
+        if(num_parts<1 || num_parts>Math.max(1,graph.num_vertices))
+            throw new OTMException(String.format("Cannot split a graph of %d vertices into %d parts.",graph.num_vertices,num_parts));
+
+        random = new Random(seed);
+
+        if(num_parts==1)
+            return new Partitioning(graph,1,new int[graph.num_vertices]);
+
+        // coarsen
+        List<Graph> graphs = new ArrayList<>();
+        List<int[]> cmaps = new ArrayList<>();
+        graphs.add(graph);
+        Graph g = graph;
+        long max_vwgt = Math.max(1L, (long) (1.5*graph.get_total_weight()/((long) coarsest_per_part*num_parts)));
+        while(g.num_vertices > coarsest_per_part*num_parts){
+            int [] cmap = new int[g.num_vertices];
+            int [] members = new int[2*g.num_vertices];
+            int cn = match(g,cmap,members,max_vwgt);
+            if(cn > 0.95*g.num_vertices)
+                break;
+            g = contract(g,cmap,members,cn);
+            graphs.add(g);
+            cmaps.add(cmap);
+        }
+
+        // initial partition
+        int [] part = new int[g.num_vertices];
+        int [] all = new int[g.num_vertices];
+        for(int i=0;i<all.length;i++)
+            all[i] = i;
+        split(g,part,all,0,num_parts);
+
+        // uncoarsen and refine
+        refine(g,part,num_parts);
+        for(int level=cmaps.size()-1;level>=0;level--){
+            int [] cmap = cmaps.get(level);
+            int [] fine = new int[cmap.length];
+            for(int i=0;i<cmap.length;i++)
+                fine[i] = part[cmap[i]];
+            part = fine;
+            g = graphs.get(level);
+            refine(g,part,num_parts);
+        }
+
+        return new Partitioning(graph,num_parts,part);
+    }
+
+    ////////////////////////////////////////////
+    // coarsening
+    ////////////////////////////////////////////
+
+    // heavy-edge matching. Returns the number of coarse vertices. members[2c], members[2c+1] are
+    // the vertices of coarse vertex c, the second -1 if c has only one.
+    private int match(Graph g,int [] cmap,int [] members,long max_vwgt){
+        int n = g.num_vertices;
+        Arrays.fill(cmap,-1);
+        int cn = 0;
+        int last_isolated = -1;
+        for(int u : permutation(n)){
+            if(cmap[u]>=0)
+                continue;
+            int best = -1;
+            int best_w = -1;
+            for(int j=g.xadj[u];j<g.xadj[u+1];j++){
+                int v = g.adjncy[j];
+                if(cmap[v]<0 && g.vwgt[u]+(long)g.vwgt[v]<=max_vwgt && g.adjwgt[j]>best_w){
+                    best = v;
+                    best_w = g.adjwgt[j];
+                }
+            }
+
+            // pair vertices without edges with each other
+            if(best<0 && g.xadj[u]==g.xadj[u+1]){
+                if(last_isolated>=0 && g.vwgt[u]+(long)g.vwgt[last_isolated]<=max_vwgt){
+                    int c = cmap[last_isolated];
+                    cmap[u] = c;
+                    members[2*c+1] = u;
+                    last_isolated = -1;
+                    continue;
+                }
+                last_isolated = u;
+            }
+
+            cmap[u] = cn;
+            members[2*cn] = u;
+            members[2*cn+1] = best;
+            if(best>=0)
+                cmap[best] = cn;
+            cn++;
+        }
+        return cn;
+    }
+
+    private static Graph contract(Graph g,int [] cmap,int [] members,int cn){
+        int [] vwgt = new int[cn];
+        int [] xadj = new int[cn+1];
+        int [] adjncy = new int[g.adjncy.length];
+        int [] adjwgt = new int[g.adjncy.length];
+        int [] where = new int[cn];
+        Arrays.fill(where,-1);
+        int k = 0;
+        for(int c=0;c<cn;c++){
+            int first = k;
+            for(int m=2*c;m<2*c+2;m++){
+                int u = members[m];
+                if(u<0)
+                    continue;
+                vwgt[c] += g.vwgt[u];
+                for(int j=g.xadj[u];j<g.xadj[u+1];j++){
+                    int cv = cmap[g.adjncy[j]];
+                    if(cv==c)
+                        continue;
+                    if(where[cv]>=first)
+                        adjwgt[where[cv]] += g.adjwgt[j];
+                    else {
+                        where[cv] = k;
+                        adjncy[k] = cv;
+                        adjwgt[k++] = g.adjwgt[j];
+                    }
+                }
+            }
+            xadj[c+1] = k;
+        }
+        return new Graph(null,vwgt,xadj,Arrays.copyOf(adjncy,k),Arrays.copyOf(adjwgt,k));
+    }
+
+    ////////////////////////////////////////////
+    // initial partition
+    ////////////////////////////////////////////
+
+    // assign vertices to parts first..first+count-1 by recursive bisection
+    private void split(Graph g,int [] part,int [] vertices,int first,int count){
+
+        if(count==1 || vertices.length==0){
+            for(int v : vertices)
+                part[v] = first;
+            return;
+        }
+
+        int count0 = count/2;
+        long total = 0;
+        for(int v : vertices)
+            total += g.vwgt[v];
+        long target = total*count0/count;
+
+        // side[v]: 0 or 1 for vertices being split, -1 otherwise
+        int [] side = new int[g.num_vertices];
+        Arrays.fill(side,-1);
+        boolean [] best_side = null;
+        long best_cut = Long.MAX_VALUE;
+        for(int trial=0;trial<initial_trials;trial++){
+            for(int v : vertices)
+                side[v] = 1;
+            grow(g,side,vertices,target);
+            long cut = 0;
+            for(int v : vertices)
+                for(int j=g.xadj[v];j<g.xadj[v+1];j++)
+                    if(side[v]==0 && side[g.adjncy[j]]==1)
+                        cut += g.adjwgt[j];
+            if(cut<best_cut){
+                best_cut = cut;
+                best_side = new boolean[vertices.length];
+                for(int i=0;i<vertices.length;i++)
+                    best_side[i] = side[vertices[i]]==0;
+            }
+        }
+
+        int n0 = 0;
+        for(boolean b : best_side)
+            if(b)
+                n0++;
+        int [] v0 = new int[n0];
+        int [] v1 = new int[vertices.length-n0];
+        int i0 = 0, i1 = 0;
+        for(int i=0;i<vertices.length;i++)
+            if(best_side[i])
+                v0[i0++] = vertices[i];
+            else
+                v1[i1++] = vertices[i];
+
+        split(g,part,v0,first,count0);
+        split(g,part,v1,first+count0,count-count0);
+    }
+
+    // grow side 0 from a random vertex, adding the vertex that most reduces the cut, until it reaches the target weight
+    private void grow(Graph g,int [] side,int [] vertices,long target){
+        long [] gain = new long[g.num_vertices];
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a,b)->a[0]!=b[0] ? Long.compare(b[0],a[0]) : Long.compare(a[1],b[1]));
+        long weight = 0;
+        int next_seed = random.nextInt(vertices.length);
+        for(int v : vertices){
+            long x = 0;
+            for(int j=g.xadj[v];j<g.xadj[v+1];j++)
+                if(side[g.adjncy[j]]>=0)
+                    x -= g.adjwgt[j];
+            gain[v] = x;
+        }
+        while(weight<target){
+            int v = -1;
+            while(!queue.isEmpty()){
+                long [] e = queue.poll();
+                int u = (int) e[1];
+                if(side[u]==1 && e[0]==gain[u]){
+                    v = u;
+                    break;
+                }
+            }
+            if(v<0){
+                // start again from another vertex, for graphs that are not connected
+                for(int i=0;i<vertices.length && v<0;i++){
+                    int u = vertices[(next_seed+i)%vertices.length];
+                    if(side[u]==1)
+                        v = u;
+                }
+                next_seed = random.nextInt(vertices.length);
+                if(v<0)
+                    return;
+            }
+            if(weight>0 && weight+g.vwgt[v]-target > target-weight)
+                return;
+            side[v] = 0;
+            weight += g.vwgt[v];
+            for(int j=g.xadj[v];j<g.xadj[v+1];j++){
+                int u = g.adjncy[j];
+                if(side[u]==1){
+                    gain[u] += 2L*g.adjwgt[j];
+                    queue.add(new long[]{gain[u],u});
+                }
+            }
+        }
+    }
+
+    ////////////////////////////////////////////
+    // refinement
+    ////////////////////////////////////////////
+
+    private void refine(Graph g,int [] part,int k){
+
+        long [] pw = new long[k];
+        long max_vwgt = 0;
+        for(int v=0;v<g.num_vertices;v++){
+            pw[part[v]] += g.vwgt[v];
+            max_vwgt = Math.max(max_vwgt,g.vwgt[v]);
+        }
+        long total = Arrays.stream(pw).sum();
+        long max_pw = Math.max((long) Math.floor((1d+imbalance)*total/k),(total+k-1)/k + max_vwgt);
+
+        Moves moves = new Moves(g,part,pw,k,max_pw);
+        moves.balance();
+        for(int pass=0;pass<refinement_passes;pass++)
+            if(!moves.fm_pass())
+                break;
+    }
+
+    // state of the refinement of one level
+    private class Moves {
+        final Graph g;
+        final int [] part;
+        final long [] pw;
+        final long max_pw;
+        final long [] conn;         // connectivity of a vertex to each part
+        final int [] touched;       // parts with conn!=0
+        int num_touched;
+        int best_target;
+        long best_gain;
+
+        Moves(Graph g,int [] part,long [] pw,int k,long max_pw){
+            this.g = g;
+            this.part = part;
+            this.pw = pw;
+            this.max_pw = max_pw;
+            this.conn = new long[k];
+            this.touched = new int[k];
+        }
+
+        // best move of v to a neighboring part with room for it. sets best_target (-1 if none) and best_gain
+        void best_move(int v){
+            int a = part[v];
+            num_touched = 0;
+            for(int j=g.xadj[v];j<g.xadj[v+1];j++){
+                int p = part[g.adjncy[j]];
+                if(conn[p]==0)
+                    touched[num_touched++] = p;
+                conn[p] += g.adjwgt[j];
+            }
+            best_target = -1;
+            best_gain = Long.MIN_VALUE;
+            for(int i=0;i<num_touched;i++){
+                int b = touched[i];
+                if(b==a || pw[b]+g.vwgt[v]>max_pw)
+                    continue;
+                long gain = conn[b]-conn[a];
+                if(gain>best_gain || (gain==best_gain && pw[b]<pw[best_target])){
+                    best_gain = gain;
+                    best_target = b;
+                }
+            }
+            for(int i=0;i<num_touched;i++)
+                conn[touched[i]] = 0;
+        }
+
+        void move(int v,int b){
+            pw[part[v]] -= g.vwgt[v];
+            pw[b] += g.vwgt[v];
+            part[v] = b;
+        }
+
+        // move vertices out of parts heavier than max_pw, to neighboring parts if possible
+        void balance(){
+            for(int round=0;round<4 && overweight();round++){
+                for(int v : permutation(g.num_vertices)){
+                    int a = part[v];
+                    if(pw[a]<=max_pw)
+                        continue;
+                    best_move(v);
+                    int b = best_target;
+                    if(b<0){
+                        b = lightest();
+                        if(b==a || pw[b]+g.vwgt[v]>max_pw)
+                            continue;
+                    }
+                    move(v,b);
+                }
+            }
+        }
+
+        boolean overweight(){
+            for(long w : pw)
+                if(w>max_pw)
+                    return true;
+            return false;
+        }
+
+        int lightest(){
+            int b = 0;
+            for(int p=1;p<pw.length;p++)
+                if(pw[p]<pw[b])
+                    b = p;
+            return b;
+        }
+
+        // one Fiduccia-Mattheyses pass over the boundary. returns true if the cut decreased
+        boolean fm_pass(){
+            PriorityQueue<long[]> queue = new PriorityQueue<>((a,b)->a[0]!=b[0] ? Long.compare(b[0],a[0]) : Long.compare(a[1],b[1]));
+            for(int v : permutation(g.num_vertices)){
+                best_move(v);
+                if(best_target>=0)
+                    queue.add(new long[]{best_gain,v});
+            }
+
+            boolean [] locked = new boolean[g.num_vertices];
+            List<int[]> done = new ArrayList<>();       // {vertex, previous part}
+            long cum = 0;
+            long best = 0;
+            int best_size = 0;
+            int uphill = 0;
+            while(!queue.isEmpty()){
+                long [] e = queue.poll();
+                int v = (int) e[1];
+                if(locked[v])
+                    continue;
+                best_move(v);
+                if(best_target<0)
+                    continue;
+                if(best_gain!=e[0]){
+                    queue.add(new long[]{best_gain,v});
+                    continue;
+                }
+
+                done.add(new int[]{v,part[v]});
+                move(v,best_target);
+                locked[v] = true;
+                cum += best_gain;
+                if(cum>best){
+                    best = cum;
+                    best_size = done.size();
+                    uphill = 0;
+                }
+                else if(++uphill>max_uphill_moves)
+                    break;
+
+                for(int j=g.xadj[v];j<g.xadj[v+1];j++){
+                    int u = g.adjncy[j];
+                    if(locked[u])
+                        continue;
+                    best_move(u);
+                    if(best_target>=0)
+                        queue.add(new long[]{best_gain,u});
+                }
+            }
+
+            // undo the moves after the best point
+            for(int i=done.size()-1;i>=best_size;i--)
+                move(done.get(i)[0],done.get(i)[1]);
+
+            return best>0;
+        }
+    }
+
+    ////////////////////////////////////////////
+    // private
+    ////////////////////////////////////////////
+
+    private int [] permutation(int n){
+        int [] x = new int[n];
+        for(int i=0;i<n;i++)
+            x[i] = i;
+        for(int i=n-1;i>0;i--){
+            int j = random.nextInt(i+1);
+            int t = x[i];
+            x[i] = x[j];
+            x[j] = t;
+        }
+        return x;
+    }
+
+}
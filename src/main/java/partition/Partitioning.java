@@ -0,0 +1,101 @@
+package partition;
+
+import error.OTMException;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Result of partitioning a graph: the part of every vertex, with its cut and balance.
+ */
+public class Partitioning {
+
+    public final Graph graph;
+    public final int num_parts;
+    public final int [] part;        // vertex -> part
+
+    public Partitioning(Graph graph,int num_parts,int [] part){
+        this.graph = graph;
+        this.num_parts = num_parts;
+        this.part = part;
+    }
+
+    ////////////////////////////////////////////
+    // get
+    ////////////////////////////////////////////
+
+    // sum of the weights of edges between different parts
+    public long get_cut(){
+        long x = 0;
+        for(int v=0;v<graph.num_vertices;v++)
+            for(int j=graph.xadj[v];j<graph.xadj[v+1];j++)
+                if(part[v]!=part[graph.adjncy[j]])
+                    x += graph.adjwgt[j];
+        return x/2;
+    }
+
+    public int get_num_cut_edges(){
+        int x = 0;
+        for(int v=0;v<graph.num_vertices;v++)
+            for(int j=graph.xadj[v];j<graph.xadj[v+1];j++)
+                if(part[v]!=part[graph.adjncy[j]])
+                    x++;
+        return x/2;
+    }
+
+    public long [] get_part_weights(){
+        long [] x = new long[num_parts];
+        for(int v=0;v<graph.num_vertices;v++)
+            x[part[v]] += graph.vwgt[v];
+        return x;
+    }
+
+    // weight of the heaviest part over the average, minus one
+    public double get_imbalance(){
+        long [] w = get_part_weights();
+        long max = 0;
+        long total = 0;
+        for(long x : w){
+            max = Math.max(max,x);
+            total += x;
+        }
+        return total==0 ? 0d : (double) max*num_parts/total - 1d;
+    }
+
+    // link id -> part, for graphs made with Graph.from_network
+    public Map<Long,Integer> get_link2part(){
+        Map<Long,Integer> x = new HashMap<>();
+        for(int v=0;v<graph.num_vertices;v++)
+            x.put(graph.ids[v],part[v]);
+        return x;
+    }
+
+    /**
+     * Write the partition with one line per link, "link_id part", as read by distributed.Partition.read.
+     * @param file Name of the file.
+     * @throws OTMException If the file cannot be written.
+     */
+    public void write(String file) throws OTMException {
+        try(FileWriter writer = new FileWriter(file)){
+            for(int v=0;v<graph.num_vertices;v++)
+                writer.write(String.format("%d %d\n",graph.ids[v],part[v]));
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(String.format("%d parts, %d vertices, %d edges\n",num_parts,graph.num_vertices,graph.get_num_edges()));
+        str.append(String.format("cut: %d (%d edges)\n",get_cut(),get_num_cut_edges()));
+        str.append(String.format("imbalance: %.4f\n",get_imbalance()));
+        long [] w = get_part_weights();
+        for(int p=0;p<num_parts;p++)
+            str.append(String.format("part %d: weight %d\n",p,w[p]));
+        return str.toString();
+    }
+
+}
@@ -0,0 +1,129 @@
+package profiles;
+
+import java.nio.DoubleBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Growable list of primitive doubles. Implements List&lt;Double&gt; so it can stand in
+ * for the ArrayList in Profile1D, but stores 8 bytes per value instead of a boxed
+ * object plus reference. Use the primitive methods (add(double), get_double, set_double,
+ * as_buffer) to avoid boxing.
+ */
+public class DoubleSeries extends AbstractList<Double> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double [] data;
+    private int size;
+
+    ////////////////////////////////
+    // construction
+    ////////////////////////////////
+
+    public DoubleSeries(){
+        this(INITIAL_CAPACITY);
+    }
+
+    public DoubleSeries(int capacity){
+        data = new double[Math.max(capacity,1)];
+        size = 0;
+    }
+
+    public DoubleSeries(Collection<Double> x){
+        this(x.size());
+        for(Double v : x)
+            add(v.doubleValue());
+    }
+
+    ////////////////////////////////
+    // primitive access
+    ////////////////////////////////
+
+    public void add(double x){
+        if(size==data.length)
+            data = Arrays.copyOf(data,data.length + (data.length>>1) + 1);
+        data[size++] = x;
+        modCount++;
+    }
+
+    public double get_double(int i){
+        if(i>=size)
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        return data[i];
+    }
+
+    public void set_double(int i,double x){
+        if(i>=size)
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        data[i] = x;
+    }
+
+    /** Read-only view of the current values, without copying. Valid until the next add. */
+    public DoubleBuffer as_buffer(){
+        return DoubleBuffer.wrap(data,0,size).slice().asReadOnlyBuffer();
+    }
+
+    public double [] to_array(){
+        return Arrays.copyOf(data,size);
+    }
+
+    public void trim_to_size(){
+        if(data.length>size)
+            data = Arrays.copyOf(data,Math.max(size,1));
+    }
+
+    ////////////////////////////////
+    // List<Double>
+    ////////////////////////////////
+
+    @Override
+    public Double get(int i) {
+        return get_double(i);
+    }
+
+    @Override
+    public Double set(int i, Double x) {
+        double old = get_double(i);
+        data[i] = x;
+        return old;
+    }
+
+    @Override
+    public boolean add(Double x) {
+        add(x.doubleValue());
+        return true;
+    }
+
+    @Override
+    public void add(int i, Double x) {
+        if(i>size || i<0)
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        add(0d);
+        System.arraycopy(data,i,data,i+1,size-i-1);
+        data[i] = x;
+    }
+
+    @Override
+    public Double remove(int i) {
+        double old = get_double(i);
+        System.arraycopy(data,i+1,data,i,size-i-1);
+        size--;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+}
@@ -17,6 +17,7 @@ import java.awt.geom.Ellipse2D;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -26,7 +27,7 @@ public class Profile1D {
 
     public float start_time;
     public Float dt;
-    public List<Double> values;
+    public List<Double> values;     // primitive backed (DoubleSeries)
 
     ////////////////////////////////
     // construction
@@ -35,13 +36,13 @@ public class Profile1D {
     public Profile1D(Float start_time,Float dt,List<Double> values){
         this.start_time = start_time==null ? 0f : start_time;
         this.dt = dt;
-        this.values = values;
+        this.values = values==null || values instanceof DoubleSeries ? values : new DoubleSeries(values);
     }
 
     public Profile1D(Float start_time, Float dt){
         this.start_time = start_time==null ? 0 : start_time;
         this.dt = dt;
-        this.values = new ArrayList<>();
+        this.values = new DoubleSeries();
     }
 
     public void validate(OTMErrorLog errorLog){
@@ -63,7 +64,10 @@ public class Profile1D {
     }
 
     public void add_entry(double x){
-        values.add(x);
+        if(values instanceof DoubleSeries)
+            ((DoubleSeries) values).add(x);
+        else
+            values.add(x);
     }
 
     ////////////////////////////////
@@ -104,7 +108,7 @@ public class Profile1D {
     public List<Double> diff(){
         if(values.size()<2)
             return null;
-        List<Double> x = new ArrayList<>();
+        DoubleSeries x = new DoubleSeries(values.size()-1);
         for(int i=1;i<values.size();i++)
             x.add(values.get(i)-values.get(i-1));
         return x;
@@ -114,7 +118,7 @@ public class Profile1D {
     public List<Double> difftimes(double alpha){
         if(values.size()<2)
             return null;
-        List<Double> x = new ArrayList<>();
+        DoubleSeries x = new DoubleSeries(values.size()-1);
         for(int i=1;i<values.size();i++)
             x.add(alpha*(values.get(i)-values.get(i-1)));
         return x;
@@ -143,6 +147,13 @@ public class Profile1D {
         return values;
     }
 
+    /** Read-only view of the values. Does not copy when the profile is primitive backed. */
+    public DoubleBuffer get_values_buffer(){
+        if(values instanceof DoubleSeries)
+            return ((DoubleSeries) values).as_buffer();
+        return DoubleBuffer.wrap(OTMUtils.toDoubleArray(values)).asReadOnlyBuffer();
+    }
+
     public int get_length(){
         return values.size();
     }
@@ -247,9 +258,7 @@ public class Profile1D {
     ///////////////////////////////////////
 
     public Profile1D clone() {
-        Profile1D x = new Profile1D(this.start_time,this.dt);
-        this.values.forEach(v->x.values.add(v));
-        return x;
+        return new Profile1D(this.start_time,this.dt,new DoubleSeries(values));
     }
 
     @Override
@@ -1,5 +1,7 @@
 package profiles;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import commodity.Commodity;
 import commodity.Subnetwork;
 import common.Link;
@@ -10,7 +12,9 @@ import dispatch.EventSplitChange;
 import common.Node;
 import common.Scenario;
 import utils.OTMUtils;
+import utils.RandomStream;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -24,6 +28,9 @@ public class SplitMatrixProfile {
     public Map<Long,Double> outlink2split;         // output link id -> split
     private List<LinkCumSplit> link_cumsplit;      // output link id -> cummulative split
 
+    // random numbers of this profile
+    public final RandomStream random;
+
     ////////////////////////////////////////////
     // construction
     ///////////////////////////////////////////
@@ -31,6 +38,7 @@ public class SplitMatrixProfile {
     public SplitMatrixProfile(long commodity_id,Link link_in) {
         this.commodity_id = commodity_id;
         this.link_in = link_in;
+        this.random = new RandomStream(RandomStream.Type.split_profile,commodity_id,link_in.getId());
     }
 
     public void validate(Scenario scenario,OTMErrorLog errorLog) {
@@ -81,6 +89,7 @@ public class SplitMatrixProfile {
     }
 
     public void initialize(Dispatcher dispatcher) throws OTMException {
+        random.reset(link_in.network.scenario.context.get_random_seed());
         if(splits==null)
             return;
         float now = dispatcher.current_time;
@@ -102,7 +111,11 @@ public class SplitMatrixProfile {
     // return an output link id according to split ratios for this commodity and line
     public Long sample_output_link(){
 
-        double r = OTMUtils.random_zero_to_one();
+        // no cumulative splits are kept for a single output link
+        if(link_cumsplit==null)
+            return outlink2split==null || outlink2split.isEmpty() ? null : outlink2split.keySet().iterator().next();
+
+        double r = random.next_double();
 
         Optional<LinkCumSplit> z = link_cumsplit.stream()
                 .filter(x->x.cumsplit<r)  // get all cumsplit < out
@@ -171,6 +184,22 @@ public class SplitMatrixProfile {
             dispatcher.register_event(new EventSplitChange(dispatcher,time_map.time, this, time_map.value));
     }
 
+    ///////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////
+
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        out.write_id_map(outlink2split);
+        random.write_checkpoint(out);
+    }
+
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        Map<Long,Double> x = in.read_id_map();
+        if(x!=null)
+            set_current_splits(x);
+        random.read_checkpoint(in);
+    }
+
     ///////////////////////////////////////////
     // public API
     ///////////////////////////////////////////
@@ -16,6 +16,20 @@ public class OTM {
     //         4: output folder: folder where the output files should go.
     //         5: start_time: [integer] start time for the simrultion in seconds after midnight.
     //         6: duration: [integer] simulation duration in seconds.
+    //     -ensemble  Run a config file with several random seeds. arguments: <configfile> <prefix> <output request file> <output folder> <start_time> <duration> <num_seeds> [<num_threads> [<first_seed>]]
+    //         7: num_seeds: [integer] number of replications. Seeds are first_seed, first_seed+1, ...
+    //         8: num_threads: [integer] number of replications that run at the same time. Default: number of processors.
+    //         9: first_seed: [integer] Default: 0.
+    //     -partition Run one process of a partitioned simulation. arguments: <configfile> <prefix> <output request file> <output folder> <start_time> <duration> <process> <addresses> [<partition file>]
+    //         7: process: [integer] number of this process, starting at 0.
+    //         8: addresses: host:port of every process, separated by commas.
+    //         9: partition file: lines "link_id process". Default: multilevel partition of the network.
+    //     -generate  Write a synthetic scenario. arguments: <type> <file> <n> <m> [<seed> [<model>]]
+    //         1: type: corridor, grid or random.
+    //         2: file: output file.
+    //         3,4: n, m: number of links and ramp spacing (corridor), rows and columns (grid), or nodes and entries (random).
+    //         5: seed: [integer] Default: 0.
+    //         6: model: ctm, spaceq or micro. Default: ctm.
     public static void main(String[] args) {
 
         if (0 == args.length) {
@@ -69,6 +83,112 @@ public class OTM {
             }
         }
 
+        // ensemble
+        //    0-5 as in run
+        //    6 num_seeds
+        //    7 num_threads (optional)
+        //    8 first_seed (optional)
+        else if (cmd.equals("-ensemble")){
+            try {
+
+                if(arguments.length<7) {
+                    System.err.println("Not enough input arguments.");
+                    return;
+                }
+
+                String configfile = arguments[0];
+                String prefix = arguments[1];
+                String output_requests_file = arguments[2];
+                String output_folder = arguments[3];
+                int start_time = Integer.parseInt(arguments[4]);
+                int duration = Integer.parseInt(arguments[5]);
+                int num_seeds = Integer.parseInt(arguments[6]);
+                int num_threads = arguments.length>7 ? Integer.parseInt(arguments[7]) : Runtime.getRuntime().availableProcessors();
+                long first_seed = arguments.length>8 ? Long.parseLong(arguments[8]) : 0L;
+
+                long [] seeds = new long[num_seeds];
+                for(int i=0;i<num_seeds;i++)
+                    seeds[i] = first_seed + i;
+
+                api.Ensemble ensemble = new api.Ensemble(configfile,true);
+                api.Ensemble.Result result = ensemble.run(seeds,start_time,duration,num_threads,prefix,output_requests_file,output_folder);
+                result.write_summaries(prefix,output_folder);
+
+            } catch (OTMException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // partition
+        //    0-5 as in run
+        //    6 process
+        //    7 addresses
+        //    8 partition file (optional)
+        else if (cmd.equals("-partition")){
+            try {
+
+                if(arguments.length<8) {
+                    System.err.println("Not enough input arguments.");
+                    return;
+                }
+
+                String configfile = arguments[0];
+                String prefix = arguments[1];
+                String output_requests_file = arguments[2];
+                String output_folder = arguments[3];
+                int start_time = Integer.parseInt(arguments[4]);
+                int duration = Integer.parseInt(arguments[5]);
+                int rank = Integer.parseInt(arguments[6]);
+                java.util.List<java.net.InetSocketAddress> addresses = distributed.TcpTransport.parse_addresses(arguments[7]);
+
+                api.OTM otm = new api.OTM(configfile);
+                java.util.Map<Long,Integer> link2rank = arguments.length>8 ?
+                        distributed.Partition.read(arguments[8]) :
+                        otm.partition_network(addresses.size()).get_link2part();
+
+                try(distributed.TcpTransport transport = new distributed.TcpTransport(rank,addresses)) {
+                    otm.set_partition(transport, link2rank);
+                    otm.run(prefix + "_rank" + rank, output_requests_file, output_folder, start_time, duration);
+                }
+
+            } catch (OTMException | java.io.IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // generate
+        //    0 type
+        //    1 file
+        //    2 n
+        //    3 m
+        //    4 seed (optional)
+        //    5 model (optional)
+        else if (cmd.equals("-generate")){
+            try {
+
+                if(arguments.length<4) {
+                    System.err.println("Not enough input arguments.");
+                    return;
+                }
+
+                ScenarioGenerator generator = new ScenarioGenerator();
+                ScenarioGenerator.Type type = ScenarioGenerator.Type.valueOf(arguments[0]);
+                String file = arguments[1];
+                int n = Integer.parseInt(arguments[2]);
+                int m = Integer.parseInt(arguments[3]);
+                if(arguments.length>4)
+                    generator.seed = Long.parseLong(arguments[4]);
+                if(arguments.length>5)
+                    generator.model = arguments[5];
+
+                generator.write(type,file,n,m);
+                System.out.println(String.format("Wrote %d nodes and %d links to %s",generator.get_num_nodes(),generator.get_num_links(),file));
+
+            } catch (OTMException e) {
+                e.printStackTrace();
+            }
+        }
+
          // version
         else if (cmd.equals("-version")){
             System.out.println("otm-sim: " + api.OTM.get_version());
@@ -84,7 +204,7 @@ public class OTM {
 
     private static String get_usage(){
         String str =
-                "Usage: [-help|-version|-load file]\n" +
+                "Usage: [-help|-version|-load file|-run ...|-ensemble ...|-partition ...|-generate ...]\n" +
                         "\t-help\t\tDisplay usage message.\n" +
                         "\t-version\tDisplay version information.\n" +
                         "\t-load\t\tLoad and validate a config file. arguments: <configfile>\n" +
@@ -94,7 +214,27 @@ public class OTM {
                         "\t\toutput request file: absolute location and name of the output request file.\n" +
                         "\t\toutput folder: folder where the output files should go.\n" +
                         "\t\tstart_time: [integer] start time for the simrultion in seconds after midnight.\n" +
-                        "\t\tduration: [integer] simulation duration in seconds.\n";
+                        "\t\tduration: [integer] simulation duration in seconds.\n" +
+                        "\t-ensemble\tRun a config file with several random seeds, concurrently. arguments: <configfile> <prefix> <output request file> <output folder> <start_time> <duration> <num_seeds> [<num_threads> [<first_seed>]]\n" +
+                        "\t\tSame arguments as -run, plus:\n" +
+                        "\t\tnum_seeds: [integer] number of replications, with seeds first_seed, first_seed+1, ...\n" +
+                        "\t\tnum_threads: [integer] replications that run at the same time. Default: number of processors.\n" +
+                        "\t\tfirst_seed: [integer] Default: 0.\n" +
+                        "\t\tEach replication writes its outputs with prefix <prefix>_seed<seed>. Mean, standard deviation, min and max across\n" +
+                        "\t\treplications of the link, lane group and cell outputs are written to <prefix>_ensemble_*.txt.\n" +
+                        "\t-partition\tRun one process of a partitioned simulation of a fluid or spatial queue model. arguments: <configfile> <prefix> <output request file> <output folder> <start_time> <duration> <process> <addresses> [<partition file>]\n" +
+                        "\t\tSame arguments as -run, plus:\n" +
+                        "\t\tprocess: [integer] number of this process, starting at 0.\n" +
+                        "\t\taddresses: host:port of every process, separated by commas. This process listens on its own port.\n" +
+                        "\t\tpartition file: one line per link, \"link_id process\". Default: multilevel partition of the network with balanced work.\n" +
+                        "\t\tStart one process per address, with the same arguments except the process number. Each process writes\n" +
+                        "\t\tits outputs with prefix <prefix>_rank<process>; they are valid for the links of that process.\n" +
+                        "\t-generate\tWrite a synthetic scenario. arguments: <type> <file> <n> <m> [<seed> [<model>]]\n" +
+                        "\t\ttype: corridor, grid or random.\n" +
+                        "\t\tfile: output file.\n" +
+                        "\t\tn, m: [integer] number of links and ramp spacing (corridor), rows and columns (grid), or nodes and entries (random).\n" +
+                        "\t\tseed: [integer] Default: 0.\n" +
+                        "\t\tmodel: ctm, spaceq or micro. Default: ctm.\n";
         return str;
     }
 
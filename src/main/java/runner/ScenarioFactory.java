@@ -11,10 +11,12 @@ import control.commodity.ControllerFlowToLinks;
 import control.commodity.ControllerRestrictLaneGroup;
 import control.commodity.ControllerOfframpFlow;
 import control.commodity.ControllerTollLaneGroup;
+import control.external.ControllerExternal;
 import control.rampmetering.*;
 import control.sigint.ControllerSignalPretimed;
 import error.OTMErrorLog;
 import error.OTMException;
+import metrics.jfr.ScenarioStageEvent;
 import models.AbstractModel;
 import plugin.PluginLoader;
 import profiles.*;
@@ -34,16 +36,17 @@ public class ScenarioFactory {
 
     public static Scenario create_scenario(jaxb.Scenario js, boolean validate,boolean jaxb_only) throws OTMException {
 
-        OTMUtils.reset_counters();
-
         Scenario scenario = new Scenario();
+        ScenarioStageEvent stage = ScenarioStageEvent.start();
 
         // plugins ..........................................................
         if(!jaxb_only)
             PluginLoader.load_plugins( js.getPlugins() );
+        stage = stage.next("plugins");
 
         // network ...........................................................
         scenario.network = ScenarioFactory.create_network_from_jaxb(scenario, js.getCommodities(),js.getModels(), js.getNetwork(), jaxb_only);
+        stage = stage.next("network");
 
         // commodities ......................................................
         scenario.subnetworks = ScenarioFactory.create_subnetworks_from_jaxb(
@@ -55,11 +58,13 @@ public class ScenarioFactory {
                 scenario,
                 scenario.subnetworks,
                 js.getCommodities());
+        stage = stage.next("commodities");
 
         // control ...............................................
         scenario.actuators = ScenarioFactory.create_actuators_from_jaxb(scenario, js.getActuators() );
         scenario.sensors = ScenarioFactory.create_sensors_from_jaxb(scenario, js.getSensors() );
         scenario.controllers = ScenarioFactory.create_controllers_from_jaxb(scenario,js.getControllers() );
+        stage = stage.next("control");
 
         // populate link.path2outlink (requires commodities)
         if(!jaxb_only) {
@@ -80,6 +85,7 @@ public class ScenarioFactory {
                 }
             }
         }
+        stage = stage.next("paths");
 
         // allocate the state ..............................................
         if(!jaxb_only)
@@ -91,27 +97,33 @@ public class ScenarioFactory {
                 else
                     for(Link link : scenario.network.links.values())
                         commodity.register_commodity(link, commodity, null);
+        stage = stage.next("state");
 
         // build the models ..........................................
         if(!jaxb_only)
             for(AbstractModel model : scenario.network.models.values())
                 model.build();
+        stage = stage.next("models");
 
         // lane change models .............................
         if(!jaxb_only)
             assign_lane_change_models(scenario.commodities,scenario.network.links,js.getLanechanges());
+        stage = stage.next("lane changes");
 
         // splits ...........................................................
         ScenarioFactory.create_splits_from_jaxb(scenario.network, js.getSplits());
+        stage = stage.next("splits");
 
         // demands ..........................................................
         ScenarioFactory.create_demands_from_jaxb(scenario.network, js.getDemands());
+        stage = stage.next("demands");
 
         // validate ................................................
         if(validate) {
             OTMErrorLog errorLog = scenario.validate();
             errorLog.check();
         }
+        stage.done("validate");
 
         return scenario;
     }
@@ -206,6 +218,9 @@ public class ScenarioFactory {
             case linkflow:
                 controller = new ControllerFlowToLinks(scenario,jaxb_controller);
                 break;
+            case external:
+                controller = new ControllerExternal(scenario,jaxb_controller);
+                break;
             default:
 
                 // it might be a plugin
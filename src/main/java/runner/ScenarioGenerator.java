@@ -0,0 +1,701 @@
+package runner;
+
+import error.OTMException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes synthetic scenarios of any size in the otm.xsd format, for tests and benchmarks at
+ * production scale. Three kinds of networks are available:
+ *
+ *      corridor    A freeway of num_links links, with an onramp and an offramp every ramp_spacing links.
+ *                  With control, each onramp has a meter and an Alinea controller fed by a sensor just downstream.
+ *      grid        rows x cols two-way intersections, with entry and exit links around the boundary.
+ *                  With control, every intersection has a two-phase pretimed signal with a random offset.
+ *      random      A planar network of num_nodes nodes on a jittered grid. A random spanning tree of the grid
+ *                  edges is kept, plus some other grid edges and cell diagonals, which never cross.
+ *                  num_entries boundary nodes get an entry and an exit link.
+ *
+ * Each scenario has a pathless commodity with demand on every entry link and split ratios that favor going
+ * straight, and a pathfull commodity on num_paths random entry-to-exit paths. Every entry link has a sensor.
+ * The output is written as a stream and the network is kept in primitive arrays, so that scenarios with a
+ * million links are written in seconds. The same seed gives the same scenario.
+ */
+public class ScenarioGenerator {
+
+    public enum Type {
+        corridor,
+        grid,
+        random
+    }
+
+    private static final int RP_FREEWAY = 1;
+    private static final int RP_ARTERIAL = 2;
+    private static final int RP_RAMP = 3;
+
+    public long seed = 0L;
+    public String model = "ctm";             // ctm, spaceq or micro
+    public int num_paths = 10;
+    public float demand_vphpl = 400f;        // pathless demand on each entry link, per lane
+    public float path_demand_vph = 100f;     // pathfull demand on each path
+    public boolean control = true;
+
+    // network under construction
+    private Random random;
+    private int num_nodes;
+    private double [] node_x;
+    private double [] node_y;
+    private boolean [] node_signal;
+    private int num_links;
+    private int [] link_start;
+    private int [] link_end;
+    private int [] link_lanes;
+    private int [] link_rp;
+    private float [] link_length;
+    private float [] link_weight;            // relative attractiveness in split ratios
+
+    // adjacency, compressed: links out of node n are out_links[out_first[n]..out_first[n+1]-1]
+    private int [] out_first;
+    private int [] out_links;
+    private int [] in_first;
+    private int [] in_links;
+
+    // ramp meters: onramp link and the mainline link of its sensor
+    private int num_meters;
+    private int [] meter_link;
+    private int [] meter_sensor_link;
+
+    ///////////////////////////////////////////////////
+    // public
+    ///////////////////////////////////////////////////
+
+    /**
+     * Write a scenario to a file.
+     * @param type Kind of network.
+     * @param file Output file.
+     * @param n Number of links (corridor), rows (grid) or nodes (random).
+     * @param m Ramp spacing in links (corridor), columns (grid) or number of entries (random).
+     * @throws OTMException If the sizes are not valid or the file cannot be written.
+     */
+    public void write(Type type,String file,int n,int m) throws OTMException {
+        try(Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),StandardCharsets.UTF_8),1<<20)){
+            write(type,out,n,m);
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    public void write(Type type,Writer out,int n,int m) throws OTMException {
+        random = new Random(seed);
+        switch(type){
+            case corridor:
+                build_corridor(n,m);
+                break;
+            case grid:
+                build_grid(n,m);
+                break;
+            case random:
+                build_random(n,m);
+                break;
+        }
+        build_adjacency();
+        try {
+            write_scenario(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new OTMException(e);
+        }
+    }
+
+    public int get_num_nodes(){
+        return num_nodes;
+    }
+
+    public int get_num_links(){
+        return num_links;
+    }
+
+    ///////////////////////////////////////////////////
+    // networks
+    ///////////////////////////////////////////////////
+
+    private void build_corridor(int n,int ramp_spacing) throws OTMException {
+        if(n<1 || ramp_spacing<1)
+            throw new OTMException("A corridor needs at least one link and a positive ramp spacing.");
+
+        int num_ramps = (n-1)/ramp_spacing;
+        allocate(n+1+2*num_ramps,n+2*num_ramps);
+        meter_link = new int[num_ramps];
+        meter_sensor_link = new int[num_ramps];
+        num_meters = 0;
+
+        for(int i=0;i<=n;i++)
+            add_node(500d*i,0d);
+        for(int i=0;i<n;i++)
+            add_link(i,i+1,4,RP_FREEWAY,500f,1f);
+
+        for(int i=ramp_spacing;i<n;i+=ramp_spacing){
+            int on = add_link(add_node(500d*i-300d,-150d),i,1,RP_RAMP,335f,1f);
+            add_link(i,add_node(500d*i+300d,-150d),1,RP_RAMP,335f,0.15f);
+            if(control){
+                meter_link[num_meters] = on;
+                meter_sensor_link[num_meters] = i;      // mainline link downstream of the merge
+                num_meters++;
+            }
+        }
+    }
+
+    private void build_grid(int rows,int cols) throws OTMException {
+        if(rows<1 || cols<1)
+            throw new OTMException("A grid needs at least one row and one column.");
+
+        int num_boundary = 2*rows + 2*cols;
+        int num_internal = rows*(cols-1) + cols*(rows-1);
+        allocate(rows*cols + 2*num_boundary,2*num_internal + 2*num_boundary);
+        num_meters = 0;
+
+        double s = 200d;
+        for(int i=0;i<rows;i++)
+            for(int j=0;j<cols;j++)
+                add_node(s*j,-s*i);
+        if(control)
+            Arrays.fill(node_signal,0,rows*cols,true);
+
+        for(int i=0;i<rows;i++)
+            for(int j=0;j<cols;j++){
+                int a = i*cols+j;
+                if(j+1<cols){
+                    add_link(a,a+1,2,RP_ARTERIAL,200f,1f);
+                    add_link(a+1,a,2,RP_ARTERIAL,200f,1f);
+                }
+                if(i+1<rows){
+                    add_link(a,a+cols,2,RP_ARTERIAL,200f,1f);
+                    add_link(a+cols,a,2,RP_ARTERIAL,200f,1f);
+                }
+            }
+
+        // entry and exit links, from and to separate outer nodes
+        for(int i=0;i<rows;i++){
+            add_boundary(i*cols,-1,0);
+            add_boundary(i*cols+cols-1,1,0);
+        }
+        for(int j=0;j<cols;j++){
+            add_boundary(j,0,1);
+            add_boundary((rows-1)*cols+j,0,-1);
+        }
+    }
+
+    private void build_random(int n,int num_entries) throws OTMException {
+        if(n<2 || num_entries<1)
+            throw new OTMException("A random network needs at least two nodes and one entry.");
+
+        int side = (int) Math.ceil(Math.sqrt(n));
+        int rows = (n + side - 1) / side;
+        int max_edges = 3*n;
+        allocate(n + 2*num_entries,2*max_edges + 2*num_entries);
+        num_meters = 0;
+
+        double s = 200d;
+        for(int k=0;k<n;k++)
+            add_node(s*(k%side + 0.15 + 0.7*random.nextDouble()),-s*(k/side + 0.15 + 0.7*random.nextDouble()));
+
+        // candidate edges: grid neighbors and one diagonal per cell
+        int [] ea = new int[max_edges];
+        int [] eb = new int[max_edges];
+        boolean [] diagonal = new boolean[max_edges];
+        int num_edges = 0;
+        for(int k=0;k<n;k++){
+            int i = k/side, j = k%side;
+            if(j+1<side && k+1<n){
+                ea[num_edges] = k; eb[num_edges] = k+1; num_edges++;
+            }
+            if(k+side<n){
+                ea[num_edges] = k; eb[num_edges] = k+side; num_edges++;
+            }
+            if(j+1<side && i+1<rows && k+side+1<n){
+                boolean down_right = random.nextBoolean();
+                ea[num_edges] = down_right ? k : k+1;
+                eb[num_edges] = down_right ? k+side+1 : k+side;
+                diagonal[num_edges] = true;
+                num_edges++;
+            }
+        }
+
+        // random spanning tree of the grid edges, then keep others with some probability
+        int [] order = new int[num_edges];
+        for(int e=0;e<num_edges;e++)
+            order[e] = e;
+        for(int e=num_edges-1;e>0;e--){
+            int r = random.nextInt(e+1);
+            int t = order[e]; order[e] = order[r]; order[r] = t;
+        }
+        int [] parent = new int[n];
+        for(int k=0;k<n;k++)
+            parent[k] = k;
+        boolean [] keep = new boolean[num_edges];
+        for(int e : order)
+            if(!diagonal[e] && union(parent,ea[e],eb[e]))
+                keep[e] = true;
+        for(int e=0;e<num_edges;e++)
+            if(!keep[e])
+                keep[e] = random.nextDouble() < (diagonal[e] ? 0.3 : 0.5);
+
+        for(int e=0;e<num_edges;e++){
+            if(!keep[e])
+                continue;
+            float length = (float) Math.hypot(node_x[ea[e]]-node_x[eb[e]],node_y[ea[e]]-node_y[eb[e]]);
+            int lanes = 1 + random.nextInt(3);
+            add_link(ea[e],eb[e],lanes,RP_ARTERIAL,length,1f);
+            add_link(eb[e],ea[e],lanes,RP_ARTERIAL,length,1f);
+        }
+
+        // entries and exits at distinct boundary nodes
+        int [] boundary = new int[n];
+        int num_boundary = 0;
+        for(int k=0;k<n;k++){
+            int i = k/side, j = k%side;
+            if(i==0 || j==0 || j==side-1 || k+side>=n)
+                boundary[num_boundary++] = k;
+        }
+        for(int e=num_boundary-1;e>0;e--){
+            int r = random.nextInt(e+1);
+            int t = boundary[e]; boundary[e] = boundary[r]; boundary[r] = t;
+        }
+        for(int e=0;e<Math.min(num_entries,num_boundary);e++){
+            int k = boundary[e];
+            int i = k/side, j = k%side;
+            int dx = j==0 ? -1 : j==side-1 ? 1 : 0;
+            int dy = dx!=0 ? 0 : i==0 ? 1 : -1;
+            add_boundary(k,dx,dy);
+        }
+    }
+
+    private static boolean union(int [] parent,int a,int b){
+        int ra = find(parent,a), rb = find(parent,b);
+        if(ra==rb)
+            return false;
+        parent[ra] = rb;
+        return true;
+    }
+
+    private static int find(int [] parent,int a){
+        while(parent[a]!=a){
+            parent[a] = parent[parent[a]];
+            a = parent[a];
+        }
+        return a;
+    }
+
+    // entry link from and exit link to outer nodes in direction (dx,dy) of node k
+    private void add_boundary(int k,int dx,int dy){
+        double x = node_x[k] + 200d*dx, y = node_y[k] + 200d*dy;
+        double ox = 20d*dy, oy = 20d*dx;        // offset the two outer nodes sideways
+        add_link(add_node(x+ox,y+oy),k,2,RP_ARTERIAL,200f,1f);
+        add_link(k,add_node(x-ox,y-oy),2,RP_ARTERIAL,200f,1f);
+    }
+
+    ///////////////////////////////////////////////////
+    // network arrays
+    ///////////////////////////////////////////////////
+
+    private void allocate(int max_nodes,int max_links){
+        num_nodes = 0;
+        node_x = new double[max_nodes];
+        node_y = new double[max_nodes];
+        node_signal = new boolean[max_nodes];
+        num_links = 0;
+        link_start = new int[max_links];
+        link_end = new int[max_links];
+        link_lanes = new int[max_links];
+        link_rp = new int[max_links];
+        link_length = new float[max_links];
+        link_weight = new float[max_links];
+    }
+
+    private int add_node(double x,double y){
+        node_x[num_nodes] = x;
+        node_y[num_nodes] = y;
+        return num_nodes++;
+    }
+
+    private int add_link(int start,int end,int lanes,int rp,float length,float weight){
+        link_start[num_links] = start;
+        link_end[num_links] = end;
+        link_lanes[num_links] = lanes;
+        link_rp[num_links] = rp;
+        link_length[num_links] = length;
+        link_weight[num_links] = weight;
+        return num_links++;
+    }
+
+    private void build_adjacency(){
+        out_first = new int[num_nodes+1];
+        in_first = new int[num_nodes+1];
+        for(int l=0;l<num_links;l++){
+            out_first[link_start[l]+1]++;
+            in_first[link_end[l]+1]++;
+        }
+        for(int k=0;k<num_nodes;k++){
+            out_first[k+1] += out_first[k];
+            in_first[k+1] += in_first[k];
+        }
+        out_links = new int[num_links];
+        in_links = new int[num_links];
+        int [] out_pos = Arrays.copyOf(out_first,num_nodes);
+        int [] in_pos = Arrays.copyOf(in_first,num_nodes);
+        for(int l=0;l<num_links;l++){
+            out_links[out_pos[link_start[l]]++] = l;
+            in_links[in_pos[link_end[l]]++] = l;
+        }
+    }
+
+    private boolean is_entry(int l){
+        return in_first[link_start[l]]==in_first[link_start[l]+1];
+    }
+
+    private boolean is_exit(int l){
+        return out_first[link_end[l]]==out_first[link_end[l]+1];
+    }
+
+    private boolean is_uturn(int in,int out){
+        return link_end[out]==link_start[in];
+    }
+
+    // weight of moving from link in to link out: straight movements are preferred
+    private double turn_weight(int in,int out){
+        double ax = node_x[link_end[in]]-node_x[link_start[in]], ay = node_y[link_end[in]]-node_y[link_start[in]];
+        double bx = node_x[link_end[out]]-node_x[link_start[out]], by = node_y[link_end[out]]-node_y[link_start[out]];
+        double cos = (ax*bx + ay*by) / Math.max(1e-9,Math.hypot(ax,ay)*Math.hypot(bx,by));
+        return link_weight[out] * Math.max(0.2d,1d+2d*cos);
+    }
+
+    ///////////////////////////////////////////////////
+    // xml
+    ///////////////////////////////////////////////////
+
+    private void write_scenario(Writer out) throws IOException {
+
+        int [][] paths = find_paths();
+
+        out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+        out.write("<scenario xmlns=\"opentrafficmodels\">\n");
+
+        // commodities and paths
+        out.write("\t<commodities>\n\t\t<commodity id=\"1\" name=\"pathless\" pathfull=\"false\"/>\n");
+        if(paths.length>0){
+            out.write("\t\t<commodity id=\"2\" name=\"pathfull\" pathfull=\"true\" subnetworks=\"");
+            for(int p=0;p<paths.length;p++){
+                if(p>0)
+                    out.write(',');
+                out.write(Integer.toString(p+1));
+            }
+            out.write("\"/>\n");
+        }
+        out.write("\t</commodities>\n");
+
+        if(paths.length>0){
+            out.write("\t<subnetworks>\n");
+            for(int p=0;p<paths.length;p++){
+                out.write("\t\t<subnetwork id=\"" + (p+1) + "\">");
+                for(int i=0;i<paths[p].length;i++){
+                    if(i>0)
+                        out.write(',');
+                    out.write(Integer.toString(paths[p][i]));
+                }
+                out.write("</subnetwork>\n");
+            }
+            out.write("\t</subnetworks>\n");
+        }
+
+        // models
+        out.write("\t<models>\n");
+        switch(model){
+            case "spaceq":
+                out.write("\t\t<model type=\"spaceq\" name=\"spaceq\" process=\"deterministic\" is_default=\"true\"/>\n");
+                break;
+            case "micro":
+                out.write("\t\t<model type=\"micro\" name=\"micro\" process=\"deterministic\" is_default=\"true\">\n\t\t\t<model_params sim_dt=\"1\"/>\n\t\t</model>\n");
+                break;
+            default:
+                out.write("\t\t<model type=\"ctm\" name=\"ctm\" is_default=\"true\">\n\t\t\t<model_params sim_dt=\"2\" max_cell_length=\"100\"/>\n\t\t</model>\n");
+        }
+        out.write("\t</models>\n");
+
+        write_network(out);
+        write_demands(out,paths);
+        write_splits(out);
+        write_sensors(out);
+        write_control(out);
+
+        out.write("</scenario>\n");
+    }
+
+    private void write_network(Writer out) throws IOException {
+        out.write("\t<network>\n\t\t<nodes>\n");
+        for(int k=0;k<num_nodes;k++)
+            out.write("\t\t\t<node id=\"" + k + "\" x=\"" + round(node_x[k]) + "\" y=\"" + round(node_y[k]) + "\"/>\n");
+        out.write("\t\t</nodes>\n\t\t<links>\n");
+        for(int l=0;l<num_links;l++)
+            out.write("\t\t\t<link id=\"" + l + "\" length=\"" + round(link_length[l]) + "\" start_node_id=\"" + link_start[l]
+                    + "\" end_node_id=\"" + link_end[l] + "\" roadparam=\"" + link_rp[l] + "\" full_lanes=\"" + link_lanes[l] + "\"/>\n");
+        out.write("\t\t</links>\n");
+
+        // explicit road connections at signals, so that phases can refer to them
+        boolean has_signals = false;
+        for(int k=0;k<num_nodes && !has_signals;k++)
+            has_signals = node_signal[k];
+        if(has_signals){
+            out.write("\t\t<roadconnections>\n");
+            for(int k=0;k<num_nodes;k++){
+                if(!node_signal[k])
+                    continue;
+                for(int a=in_first[k];a<in_first[k+1];a++)
+                    for(int b=out_first[k];b<out_first[k+1];b++){
+                        int in = in_links[a], o = out_links[b];
+                        if(!is_uturn(in,o))
+                            out.write("\t\t\t<roadconnection id=\"" + rc_id(in,o) + "\" in_link=\"" + in + "\" out_link=\"" + o + "\"/>\n");
+                    }
+            }
+            out.write("\t\t</roadconnections>\n");
+        }
+
+        out.write("\t\t<roadparams>\n");
+        out.write("\t\t\t<roadparam id=\"" + RP_FREEWAY + "\" capacity=\"2000\" speed=\"100\" jam_density=\"100\"/>\n");
+        out.write("\t\t\t<roadparam id=\"" + RP_ARTERIAL + "\" capacity=\"1000\" speed=\"50\" jam_density=\"120\"/>\n");
+        out.write("\t\t\t<roadparam id=\"" + RP_RAMP + "\" capacity=\"1500\" speed=\"60\" jam_density=\"100\"/>\n");
+        out.write("\t\t</roadparams>\n\t</network>\n");
+    }
+
+    private void write_demands(Writer out,int [][] paths) throws IOException {
+        out.write("\t<demands>\n");
+        for(int l=0;l<num_links;l++)
+            if(is_entry(l))
+                out.write("\t\t<demand commodity_id=\"1\" link_id=\"" + l + "\">" + round(demand_vphpl*link_lanes[l]) + "</demand>\n");
+        for(int p=0;p<paths.length;p++)
+            out.write("\t\t<demand commodity_id=\"2\" subnetwork=\"" + (p+1) + "\">" + round(path_demand_vph) + "</demand>\n");
+        out.write("\t</demands>\n");
+    }
+
+    // split ratios of the pathless commodity for every link that ends at a diverge, and every
+    // entry link, since vehicle models sample the next link when a vehicle is created
+    private void write_splits(Writer out) throws IOException {
+        out.write("\t<splits>\n");
+        double [] w = new double[16];
+        for(int k=0;k<num_nodes;k++){
+            int num_out = out_first[k+1]-out_first[k];
+            if(num_out==0)
+                continue;
+            if(w.length<num_out)
+                w = new double[num_out];
+            for(int a=in_first[k];a<in_first[k+1];a++){
+                int in = in_links[a];
+                if(num_out<2 && !is_entry(in))
+                    continue;
+
+                double total = 0d;
+                for(int b=0;b<num_out;b++){
+                    int o = out_links[out_first[k]+b];
+                    w[b] = num_out>1 && is_uturn(in,o) ? 0d : turn_weight(in,o);
+                    total += w[b];
+                }
+
+                out.write("\t\t<split_node commodity_id=\"1\" node_id=\"" + k + "\" link_in=\"" + in + "\">\n");
+                int last = -1;
+                for(int b=0;b<num_out;b++)
+                    if(w[b]>0d)
+                        last = b;
+                double sum = 0d;
+                for(int b=0;b<num_out;b++){
+                    if(w[b]==0d)
+                        continue;
+                    double x = b==last ? 1d-sum : Math.round(1e4*w[b]/total)/1e4;
+                    sum += x;
+                    out.write("\t\t\t<split link_out=\"" + out_links[out_first[k]+b] + "\">" + round(x) + "</split>\n");
+                }
+                out.write("\t\t</split_node>\n");
+            }
+        }
+        out.write("\t</splits>\n");
+    }
+
+    // one sensor at the downstream end of each entry link, then one per ramp meter
+    private void write_sensors(Writer out) throws IOException {
+        out.write("\t<sensors>\n");
+        int id = 0;
+        for(int l=0;l<num_links;l++)
+            if(is_entry(l))
+                write_sensor(out,id++,l);
+        for(int i=0;i<num_meters;i++)
+            write_sensor(out,id++,meter_sensor_link[i]);
+        out.write("\t</sensors>\n");
+    }
+
+    private void write_sensor(Writer out,int id,int l) throws IOException {
+        out.write("\t\t<sensor id=\"" + id + "\" type=\"fixed\" link_id=\"" + l + "\" lanes=\"1#" + link_lanes[l] + "\" dt=\"60\"/>\n");
+    }
+
+    // actuators, then controllers, each streamed in one pass over the meters and signals
+    private void write_control(Writer out) throws IOException {
+
+        if(!control)
+            return;
+
+        int num_entries = 0;
+        for(int l=0;l<num_links;l++)
+            if(is_entry(l))
+                num_entries++;
+
+        StringBuilder ew = new StringBuilder();
+        StringBuilder ns = new StringBuilder();
+
+        out.write("\t<actuators>\n");
+        int id = 0;
+        for(int i=0;i<num_meters;i++,id++){
+            int l = meter_link[i];
+            out.write("\t\t<actuator id=\"" + id + "\" type=\"meter\" max_value=\"900\" min_value=\"100\">\n");
+            out.write("\t\t\t<actuator_target type=\"lanegroups\" lanegroups=\"" + l + "(1#" + link_lanes[l] + ")\"/>\n");
+            out.write("\t\t</actuator>\n");
+        }
+        for(int k=0;k<num_nodes;k++){
+            if(!node_signal[k])
+                continue;
+            signal_phases(k,ew,ns);
+            out.write("\t\t<actuator id=\"" + id++ + "\" type=\"signal\">\n");
+            out.write("\t\t\t<actuator_target type=\"node\" id=\"" + k + "\"/>\n\t\t\t<signal>\n");
+            if(ew.length()>0)
+                out.write("\t\t\t\t<phase id=\"1\" roadconnection_ids=\"" + ew + "\"/>\n");
+            if(ns.length()>0)
+                out.write("\t\t\t\t<phase id=\"2\" roadconnection_ids=\"" + ns + "\"/>\n");
+            out.write("\t\t\t</signal>\n\t\t</actuator>\n");
+        }
+        out.write("\t</actuators>\n");
+
+        // ramp meters with Alinea, pretimed signals with random offsets
+        out.write("\t<controllers>\n");
+        id = 0;
+        for(int i=0;i<num_meters;i++,id++){
+            out.write("\t\t<controller id=\"" + id + "\" type=\"rm_alinea\" dt=\"60\">\n");
+            out.write("\t\t\t<target_actuators ids=\"" + id + "\"/>\n");
+            out.write("\t\t\t<feedback_sensors ids=\"" + (num_entries+i) + "\"/>\n");
+            out.write("\t\t</controller>\n");
+        }
+        for(int k=0;k<num_nodes;k++){
+            if(!node_signal[k])
+                continue;
+            signal_phases(k,ew,ns);
+            out.write("\t\t<controller id=\"" + id + "\" type=\"sig_pretimed\">\n");
+            out.write("\t\t\t<target_actuators ids=\"" + id++ + "\"/>\n");
+            out.write("\t\t\t<parameters>\n\t\t\t\t<parameter name=\"cycle\" value=\"60\"/>\n");
+            out.write("\t\t\t\t<parameter name=\"offset\" value=\"" + random.nextInt(60) + "\"/>\n\t\t\t</parameters>\n");
+            out.write("\t\t\t<stages>\n");
+            if(ew.length()>0)
+                out.write("\t\t\t\t<stage phases=\"1\" duration=\"" + (ns.length()>0 ? 30 : 60) + "\"/>\n");
+            if(ns.length()>0)
+                out.write("\t\t\t\t<stage phases=\"2\" duration=\"" + (ew.length()>0 ? 30 : 60) + "\"/>\n");
+            out.write("\t\t\t</stages>\n\t\t</controller>\n");
+        }
+        out.write("\t</controllers>\n");
+    }
+
+    // road connections of a signalized node: east-west approaches in ew, north-south in ns
+    private void signal_phases(int k,StringBuilder ew,StringBuilder ns){
+        ew.setLength(0);
+        ns.setLength(0);
+        for(int a=in_first[k];a<in_first[k+1];a++){
+            int in = in_links[a];
+            boolean horizontal = Math.abs(node_x[link_end[in]]-node_x[link_start[in]]) >= Math.abs(node_y[link_end[in]]-node_y[link_start[in]]);
+            StringBuilder x = horizontal ? ew : ns;
+            for(int b=out_first[k];b<out_first[k+1];b++){
+                int o = out_links[b];
+                if(is_uturn(in,o))
+                    continue;
+                if(x.length()>0)
+                    x.append(',');
+                x.append(rc_id(in,o));
+            }
+        }
+    }
+
+    // road connection ids at signals, unique for a pair of links at a node with at most 16 out links
+    private long rc_id(int in,int out){
+        int k = link_end[in];
+        int b = out_first[k];
+        while(out_links[b]!=out)
+            b++;
+        return 16L*in + (b - out_first[k]) + 1;
+    }
+
+    ///////////////////////////////////////////////////
+    // paths
+    ///////////////////////////////////////////////////
+
+    // shortest paths in number of links between random entry and exit links, without u-turns
+    private int [][] find_paths(){
+        int num_entries = 0, num_exits = 0;
+        for(int l=0;l<num_links;l++){
+            if(is_entry(l)) num_entries++;
+            if(is_exit(l)) num_exits++;
+        }
+        if(num_paths<=0 || num_entries==0 || num_exits==0)
+            return new int[0][];
+
+        int [] entries = new int[num_entries];
+        int [] exits = new int[num_exits];
+        num_entries = num_exits = 0;
+        for(int l=0;l<num_links;l++){
+            if(is_entry(l)) entries[num_entries++] = l;
+            if(is_exit(l)) exits[num_exits++] = l;
+        }
+
+        int [] prev = new int[num_links];
+        int [] queue = new int[num_links];
+        int [][] paths = new int[num_paths][];
+        int found = 0;
+        for(int attempt=0;attempt<4*num_paths && found<num_paths;attempt++){
+            int from = entries[random.nextInt(num_entries)];
+            int to = exits[random.nextInt(num_exits)];
+            if(link_start[from]==link_end[to])
+                continue;
+
+            Arrays.fill(prev,-2);
+            prev[from] = -1;
+            int head = 0, tail = 0;
+            queue[tail++] = from;
+            while(head<tail && prev[to]==-2){
+                int l = queue[head++];
+                int k = link_end[l];
+                for(int b=out_first[k];b<out_first[k+1];b++){
+                    int o = out_links[b];
+                    if(prev[o]==-2 && !is_uturn(l,o)){
+                        prev[o] = l;
+                        queue[tail++] = o;
+                    }
+                }
+            }
+            if(prev[to]==-2)
+                continue;
+
+            int n = 0;
+            for(int l=to;l!=-1;l=prev[l])
+                n++;
+            int [] path = new int[n];
+            for(int l=to;l!=-1;l=prev[l])
+                path[--n] = l;
+            paths[found++] = path;
+        }
+        return Arrays.copyOf(paths,found);
+    }
+
+    ///////////////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////////////
+
+    private static String round(double x){
+        double r = Math.round(x*1e4)/1e4;
+        return r==Math.rint(r) ? Long.toString((long) r) : Double.toString(r);
+    }
+
+}
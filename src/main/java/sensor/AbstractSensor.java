@@ -1,5 +1,7 @@
 package sensor;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import dispatch.Dispatcher;
 import dispatch.EventPoke;
 import dispatch.Pokable;
@@ -9,6 +11,8 @@ import common.Scenario;
 import common.ScenarioElementType;
 import error.OTMException;
 
+import java.io.IOException;
+
 public abstract class AbstractSensor implements Pokable, InterfaceScenarioElement {
 
     public enum Type {
@@ -81,6 +85,16 @@ public abstract class AbstractSensor implements Pokable, InterfaceScenarioElemen
             dispatcher.register_event(new EventPoke(dispatcher,1,timestamp+dt,this));
     }
 
+    /////////////////////////////////////////////////////////////////////
+    // checkpoint
+    /////////////////////////////////////////////////////////////////////
+
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+    }
+
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+    }
+
     /////////////////////////////////////////////////////////////////////
     // InterfaceEventWriter
     /////////////////////////////////////////////////////////////////////
@@ -1,5 +1,7 @@
 package sensor;
 
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
 import common.FlowAccumulatorState;
 import error.OTMErrorLog;
 import common.AbstractLaneGroup;
@@ -12,6 +14,7 @@ import models.AbstractModel;
 import models.fluid.FluidLaneGroup;
 import utils.OTMUtils;
 
+import java.io.IOException;
 import java.util.*;
 
 public class FixedSensor extends AbstractSensor {
@@ -119,6 +122,42 @@ public class FixedSensor extends AbstractSensor {
         }
     }
 
+    /////////////////////////////////////////////////////////////////
+    // checkpoint
+    /////////////////////////////////////////////////////////////////
+
+    @Override
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        if(measurements==null){
+            out.writeInt(-1);
+            return;
+        }
+        List<Long> comm_ids = new ArrayList<>(measurements.keySet());
+        Collections.sort(comm_ids);
+        out.writeInt(comm_ids.size());
+        for(Long comm_id : comm_ids){
+            Measurement m = measurements.get(comm_id);
+            out.writeLong(comm_id);
+            out.writeDouble(m.prev_count);
+            out.writeDouble(m.flow_vph);
+            out.writeDouble(m.vehicles);
+        }
+    }
+
+    @Override
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        int n = in.readInt();
+        for(int i=0;i<n;i++){
+            long comm_id = in.readLong();
+            Measurement m = measurements==null ? null : measurements.get(comm_id);
+            if(m==null)
+                throw new IOException(String.format("Checkpoint does not match the scenario: sensor %d does not measure commodity %d",id,comm_id));
+            m.prev_count = in.readDouble();
+            m.flow_vph = in.readDouble();
+            m.vehicles = in.readDouble();
+        }
+    }
+
     /////////////////////////////////////////////////////////////////
     // get
     /////////////////////////////////////////////////////////////////
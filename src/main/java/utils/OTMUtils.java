@@ -21,25 +21,6 @@ import java.util.*;
 public class OTMUtils {
 
     public static double epsilon = 1e-6;
-    public static long lane_group_counter;
-    public static long vehicle_id_count;
-
-    private static Random random;
-
-    static{
-        lane_group_counter = 0;
-        vehicle_id_count = 0;
-        random = new Random();
-    }
-
-    public static void reset_counters(){
-        lane_group_counter = 0;
-        vehicle_id_count = 0;
-    }
-
-    public static void set_random_seed(long seed){
-        random = new Random(seed);
-    }
 
     ///////////////////////////////////////////////////
     // type conversion
@@ -136,34 +117,6 @@ public class OTMUtils {
         return Y;
     }
 
-    public static Float get_waiting_time(double rate,StochasticProcess process){
-
-        if(rate<=0d)
-            return null;
-
-        double wait = 0d;
-        switch(process){
-            case poisson:
-                wait = -Math.log(1.0-random.nextDouble())/rate;
-                break;
-            case deterministic:
-                wait = 1.0/rate;
-        }
-        return (float) wait;
-    }
-
-    public static int random_int(int min, int max){
-        return min + random.nextInt(max);
-    }
-
-    public static double random_double(double min,double max){
-        return min + random_zero_to_one()*(max-min);
-    }
-
-    public static double random_zero_to_one(){
-        return random.nextDouble();
-    }
-
     public static double snap_to_grid(double x,double gridsize){
         return Math.round(x/gridsize)*gridsize;
     }
@@ -172,21 +125,6 @@ public class OTMUtils {
     // sets
     ///////////////////////////////////////////////////
 
-    public static <T> T sample_from_set(Set<T> set){
-        int size = set.size();
-        if(size==1)
-            return (T) set.toArray()[0];
-        int item = random.nextInt(size); // In real life, the Random object should be rather more shared than this
-        int i = 0;
-        for(T obj : set)
-        {
-            if (i == item)
-                return obj;
-            i = i + 1;
-        }
-        return null;
-    }
-
     public static <T> Set<T> intersect(Collection<T> A, Collection<T> B){
         if(A.isEmpty() || B.isEmpty())
             return new HashSet<>();
@@ -344,18 +282,6 @@ public class OTMUtils {
         return str;
     }
 
-    ///////////////////////////////////////////////////
-    // counter
-    ///////////////////////////////////////////////////
-
-    public static long get_lanegroup_id(){
-        return lane_group_counter++;
-    }
-
-    public static long get_vehicle_id(){
-        return vehicle_id_count++;
-    }
-
     ///////////////////////////////////////////////////
     // file
     ///////////////////////////////////////////////////
@@ -0,0 +1,111 @@
+package utils;
+
+import checkpoint.CheckpointReader;
+import checkpoint.CheckpointWriter;
+
+import java.io.IOException;
+
+/**
+ * Counter-based random number stream owned by one scenario element. The n-th draw is a
+ * hash of (key, n), where the key is derived from the scenario seed, the element type and
+ * the element's ids. Draws of one element therefore do not depend on how many numbers
+ * other elements have drawn, and streams can be used from different threads without
+ * contention. They do depend on the order in which the element itself draws, e.g. the
+ * order in which vehicles reach a split, so a run repeats because the scenario visits
+ * links, lane groups, demand generators and vehicles in the same order in every run:
+ * network elements hash on their ids, models hold their links in order of id, and
+ * vehicle packets keep their vehicles in order of arrival. The generator is the one used by
+ * java.util.SplittableRandom (SplitMix64), with its state exposed so that it can be
+ * saved in a checkpoint.
+ */
+public class RandomStream {
+
+    public enum Type {
+        lanegroup,
+        demand_generator,
+        split_profile
+    }
+
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private final Type type;
+    private final long [] ids;
+    private long key;
+    private long counter;
+
+    public RandomStream(Type type,long... ids){
+        this.type = type;
+        this.ids = ids;
+        reset(0L);
+    }
+
+    // start the stream for a scenario seed
+    public void reset(long seed){
+        long k = mix64(seed ^ GAMMA*(type.ordinal()+1));
+        for(long id : ids)
+            k = mix64(k + GAMMA*id);
+        key = k;
+        counter = 0;
+    }
+
+    ///////////////////////////////////////////////////
+    // draws
+    ///////////////////////////////////////////////////
+
+    public long next_long(){
+        return mix64(key + GAMMA*(++counter));
+    }
+
+    // uniform in [0,1)
+    public double next_double(){
+        return (next_long() >>> 11) * DOUBLE_UNIT;
+    }
+
+    // uniform in [0,bound)
+    public int next_int(int bound){
+        return (int) ((next_long() >>> 33) * bound >>> 31);
+    }
+
+    public Float get_waiting_time(double rate,StochasticProcess process){
+
+        if(rate<=0d)
+            return null;
+
+        double wait = 0d;
+        switch(process){
+            case poisson:
+                wait = -Math.log(1.0-next_double())/rate;
+                break;
+            case deterministic:
+                wait = 1.0/rate;
+        }
+        return (float) wait;
+    }
+
+    ///////////////////////////////////////////////////
+    // checkpoint
+    ///////////////////////////////////////////////////
+
+    public void write_checkpoint(CheckpointWriter out) throws IOException {
+        out.writeLong(key);
+        out.writeLong(counter);
+    }
+
+    public void read_checkpoint(CheckpointReader in) throws IOException {
+        key = in.readLong();
+        counter = in.readLong();
+    }
+
+    ///////////////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////////////
+
+    // finalizer of SplitMix64
+    private static long mix64(long z){
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,75 @@
+package utils;
+
+/**
+ * Running statistics of a stream of samples: count, mean and variance
+ * (Welford's algorithm), min, max, and approximate quantiles (t-digest).
+ */
+public class StreamingStats {
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min;
+    private double max;
+    private final TDigest digest;
+
+    public StreamingStats(){
+        digest = new TDigest();
+        clear();
+    }
+
+    public void clear(){
+        count = 0;
+        mean = 0d;
+        m2 = 0d;
+        min = Double.NaN;
+        max = Double.NaN;
+        digest.clear();
+    }
+
+    public void add(double x){
+        if(Double.isNaN(x))
+            return;
+        count++;
+        double delta = x - mean;
+        mean += delta/count;
+        m2 += delta*(x - mean);
+        min = count==1 ? x : Math.min(min,x);
+        max = count==1 ? x : Math.max(max,x);
+        digest.add(x);
+    }
+
+    ////////////////////////////////
+    // get
+    ////////////////////////////////
+
+    public long get_count(){
+        return count;
+    }
+
+    public double get_mean(){
+        return count==0 ? Double.NaN : mean;
+    }
+
+    // sample variance
+    public double get_variance(){
+        return count<2 ? Double.NaN : m2/(count-1);
+    }
+
+    public double get_std(){
+        return Math.sqrt(get_variance());
+    }
+
+    public double get_min(){
+        return min;
+    }
+
+    public double get_max(){
+        return max;
+    }
+
+    public double get_quantile(double q){
+        return digest.quantile(q);
+    }
+
+}
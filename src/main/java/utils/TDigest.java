@@ -0,0 +1,166 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Merging t-digest (Dunning) for approximate quantiles of a stream in bounded memory.
+ * Samples are buffered and periodically merged into at most ~compression centroids,
+ * which are small near the tails and large near the median.
+ */
+public class TDigest {
+
+    private final double compression;
+
+    // centroids, sorted by mean
+    private double [] mean;
+    private double [] weight;
+    private int num_centroids;
+
+    // unmerged samples
+    private double [] buffer;
+    private int buffer_len;
+
+    private long count;
+    private double min;
+    private double max;
+
+    public TDigest(){
+        this(100d);
+    }
+
+    public TDigest(double compression){
+        this.compression = compression;
+        int size = (int) Math.ceil(compression) + 1;
+        mean = new double[size];
+        weight = new double[size];
+        buffer = new double[5*size];
+        clear();
+    }
+
+    public void clear(){
+        num_centroids = 0;
+        buffer_len = 0;
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    public void add(double x){
+        if(Double.isNaN(x))
+            return;
+        if(buffer_len==buffer.length)
+            merge();
+        buffer[buffer_len++] = x;
+        count++;
+        min = Math.min(min,x);
+        max = Math.max(max,x);
+    }
+
+    public long get_count(){
+        return count;
+    }
+
+    public double quantile(double q){
+        merge();
+        if(num_centroids==0)
+            return Double.NaN;
+        if(num_centroids==1 || q<=0d)
+            return q<=0d ? min : mean[0];
+        if(q>=1d)
+            return max;
+
+        double total = 0d;
+        for(int i=0;i<num_centroids;i++)
+            total += weight[i];
+        double target = q*total;
+
+        // left tail: between min and the first centroid center
+        double center = weight[0]/2;
+        if(target<center)
+            return min + (mean[0]-min)*target/center;
+
+        double cum = 0d;
+        for(int i=0;i<num_centroids-1;i++){
+            double this_center = cum + weight[i]/2;
+            double next_center = cum + weight[i] + weight[i+1]/2;
+            if(target<next_center)
+                return mean[i] + (mean[i+1]-mean[i])*(target-this_center)/(next_center-this_center);
+            cum += weight[i];
+        }
+
+        // right tail: between the last centroid center and max
+        double last_center = total - weight[num_centroids-1]/2;
+        double span = total - last_center;
+        return mean[num_centroids-1] + (max-mean[num_centroids-1])*Math.min(1d,(target-last_center)/span);
+    }
+
+    //////////////////////////////////////////////////////
+    // private
+    //////////////////////////////////////////////////////
+
+    private void merge(){
+        if(buffer_len==0)
+            return;
+
+        Arrays.sort(buffer,0,buffer_len);
+
+        // merge the sorted buffer with the sorted centroids
+        int n = num_centroids + buffer_len;
+        double [] all_mean = new double[n];
+        double [] all_weight = new double[n];
+        int i=0, j=0, k=0;
+        while(i<num_centroids || j<buffer_len){
+            if(j>=buffer_len || (i<num_centroids && mean[i]<=buffer[j])){
+                all_mean[k] = mean[i];
+                all_weight[k++] = weight[i++];
+            } else {
+                all_mean[k] = buffer[j++];
+                all_weight[k++] = 1d;
+            }
+        }
+        buffer_len = 0;
+
+        double total = 0d;
+        for(double w : all_weight)
+            total += w;
+
+        // compress using the k1 scale function
+        num_centroids = 0;
+        double q0 = 0d;
+        double q_limit = q_of_k(k_of_q(q0)+1d);
+        double cur_mean = all_mean[0];
+        double cur_weight = all_weight[0];
+        for(int x=1;x<n;x++){
+            double q = (q0*total + cur_weight + all_weight[x])/total;
+            if(q<=q_limit){
+                cur_weight += all_weight[x];
+                cur_mean += (all_mean[x]-cur_mean)*all_weight[x]/cur_weight;
+            } else {
+                append(cur_mean,cur_weight);
+                q0 += cur_weight/total;
+                q_limit = q_of_k(k_of_q(q0)+1d);
+                cur_mean = all_mean[x];
+                cur_weight = all_weight[x];
+            }
+        }
+        append(cur_mean,cur_weight);
+    }
+
+    private void append(double m,double w){
+        if(num_centroids==mean.length){
+            mean = Arrays.copyOf(mean,2*mean.length);
+            weight = Arrays.copyOf(weight,2*weight.length);
+        }
+        mean[num_centroids] = m;
+        weight[num_centroids++] = w;
+    }
+
+    private double k_of_q(double q){
+        return compression/(2*Math.PI)*Math.asin(2*Math.min(1d,Math.max(0d,q))-1);
+    }
+
+    private double q_of_k(double k){
+        return (Math.sin(Math.min(k*2*Math.PI/compression,Math.PI/2))+1)/2;
+    }
+
+}
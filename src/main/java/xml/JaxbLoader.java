@@ -8,6 +8,7 @@ package xml;
 
 import error.OTMException;
 import jaxb.Scenario;
+import metrics.jfr.ScenarioStageEvent;
 import org.xml.sax.SAXException;
 
 import javax.xml.XMLConstants;
@@ -45,22 +46,28 @@ public class JaxbLoader {
     }
 
     public static jaxb.Scenario load_scenario(String filename, boolean validate) throws OTMException {
+        ScenarioStageEvent stage = ScenarioStageEvent.start();
         try {
             return (Scenario) create_unmarshaller(validate).unmarshal(new File(filename));
         } catch(org.xml.sax.SAXException e){
             throw new OTMException(e);
         }  catch (JAXBException e) {
             throw new OTMException(e);
+        } finally {
+            stage.done("parse");
         }
     }
 
     public static jaxb.Scenario load_scenario(InputStream stream, boolean validate) throws OTMException {
+        ScenarioStageEvent stage = ScenarioStageEvent.start();
         try {
             return (Scenario) create_unmarshaller(validate).unmarshal(stream);
         } catch(org.xml.sax.SAXException e){
             throw new OTMException(e);
         }  catch (JAXBException e) {
             throw new OTMException(e);
+        } finally {
+            stage.done("parse");
         }
     }
 
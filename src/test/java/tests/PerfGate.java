@@ -0,0 +1,215 @@
+package tests;
+
+import api.OTM;
+import api.info.MetricsInfo;
+import error.OTMException;
+import org.junit.Test;
+import runner.ScenarioGenerator;
+import xml.JaxbLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Performance regression gate. Runs a fixed set of generated grid scenarios with the fluid
+ * (ctm), meso (spaceq) and Newell (micro) models, measures simulated seconds per wall-clock
+ * second and bytes allocated per simulated second, and compares them with a stored baseline.
+ * The test fails if any case is slower, or allocates more, than the baseline by more than the
+ * respective threshold.
+ *
+ * Speeds depend on the machine, so they are compared relative to a calibration: a fixed
+ * workload of priority queue, hash map and floating point operations, timed before and after
+ * the cases. The relative speed of a case is its speed times the calibration time, i.e. the
+ * simulated seconds per unit of calibration work. A baseline recorded on one machine can then
+ * be checked on another one. Even on one machine, the best of five relative speeds varies by
+ * up to 30% between runs of the gate, mostly with the JIT and the garbage collector, so the speed
+ * threshold is wide and the gate catches large regressions only. Allocation varies by less than
+ * 5% and is compared as measured, with a tighter threshold.
+ *
+ * Each repetition of a case runs a new instance of the scenario, warmed up and measured over
+ * the same window of simulated time, and the best repetition is kept.
+ *
+ * Not part of the default build. Run it with "mvn test -Pperf". System properties:
+ *   perf.baseline         baseline file (default src/test/resources/perf/baseline.json)
+ *   perf.results          file where the measurements are written (default target/perf-results.json)
+ *   perf.threshold        allowed relative loss of speed (default 0.4)
+ *   perf.alloc_threshold  allowed relative increase of allocation (default 0.1)
+ *   perf.update           if true, write the measurements to the baseline file instead of comparing
+ */
+public class PerfGate {
+
+    // model, grid size
+    private static final Object [][] cases = {
+            {"ctm",4},
+            {"ctm",8},
+            {"spaceq",8},
+            {"spaceq",16},
+            {"micro",4},
+            {"micro",8}
+    };
+
+    private static final float warmup_seconds = 300f;
+    private static final float run_seconds = 600f;
+    private static final int repetitions = 5;
+    private static final int calibration_repetitions = 5;
+
+    @Test
+    public void test_perf_gate() throws Exception {
+
+        Path baseline_file = Paths.get(System.getProperty("perf.baseline","src/test/resources/perf/baseline.json"));
+        Path results_file = Paths.get(System.getProperty("perf.results","target/perf-results.json"));
+        double threshold = Double.parseDouble(System.getProperty("perf.threshold","0.4"));
+        double alloc_threshold = Double.parseDouble(System.getProperty("perf.alloc_threshold","0.1"));
+        boolean update = Boolean.parseBoolean(System.getProperty("perf.update","false"));
+
+        double calibration = calibrate();
+        Map<String,double[]> results = new LinkedHashMap<>();
+        for(Object [] c : cases){
+            String model = (String) c[0];
+            int n = (Integer) c[1];
+            results.put(model + "_grid_" + n, measure(model,n));
+        }
+        calibration = Math.min(calibration,calibrate());
+        for(double [] x : results.values())
+            x[2] = x[0] * calibration;
+
+        write(results_file,calibration,results);
+
+        if(update){
+            write(baseline_file,calibration,results);
+            System.out.println("Wrote perf baseline " + baseline_file);
+            return;
+        }
+
+        Map<String,double[]> baseline = Files.exists(baseline_file) ? read(baseline_file) : new LinkedHashMap<>();
+
+        List<String> regressions = new ArrayList<>();
+        System.out.println(String.format(Locale.US,"calibration %.4f s",calibration));
+        System.out.println(String.format(Locale.US,"%-16s %14s %14s %14s %16s %16s","case","sim s/s","relative","baseline","bytes/sim s","baseline"));
+        for(Map.Entry<String,double[]> e : results.entrySet()){
+            String name = e.getKey();
+            double [] x = e.getValue();
+            double [] b = baseline.get(name);
+            System.out.println(String.format(Locale.US,"%-16s %14.1f %14.2f %14s %16.0f %16s",name,x[0],x[2],
+                    b==null ? "-" : String.format(Locale.US,"%.2f",b[2]), x[1],
+                    b==null ? "-" : String.format(Locale.US,"%.0f",b[1])));
+            if(b==null)
+                continue;
+            if(x[2] < b[2]*(1d-threshold))
+                regressions.add(String.format(Locale.US,"%s: %.2f simulated seconds per calibration, baseline %.2f",name,x[2],b[2]));
+            if(b[1]>=0d && x[1] > b[1]*(1d+alloc_threshold))
+                regressions.add(String.format(Locale.US,"%s: %.0f bytes per simulated second, baseline %.0f",name,x[1],b[1]));
+        }
+
+        if(!regressions.isEmpty())
+            fail(String.format(Locale.US,"Performance regression beyond %.2f (speed) or %.2f (allocation):\n",threshold,alloc_threshold) + String.join("\n",regressions));
+    }
+
+    ///////////////////////////////////////////////////
+    // private
+    ///////////////////////////////////////////////////
+
+    // returns {simulated seconds per second, bytes allocated per simulated second, relative speed}, best of the repetitions.
+    // The relative speed is filled in by the caller.
+    private static double [] measure(String model,int n) throws OTMException {
+
+        ScenarioGenerator generator = new ScenarioGenerator();
+        generator.seed = 1L;
+        generator.model = model;
+        StringWriter w = new StringWriter();
+        generator.write(ScenarioGenerator.Type.grid,w,n,n);
+        byte [] scenario = w.toString().getBytes(StandardCharsets.UTF_8);
+
+        double speed = 0d;
+        double bytes = Double.POSITIVE_INFINITY;
+        for(int i=0;i<repetitions;i++){
+            OTM otm = new OTM();
+            otm.load_from_jaxb(JaxbLoader.load_scenario(new ByteArrayInputStream(scenario),false),false);
+            otm.set_seed(1L);
+            otm.initialize(0f);
+            otm.advance(warmup_seconds);
+
+            MetricsInfo m0 = otm.get_metrics();
+            otm.advance(run_seconds);
+            MetricsInfo m1 = otm.get_metrics();
+            double sim = m1.sim_seconds - m0.sim_seconds;
+            speed = Math.max(speed, sim / (m1.wall_seconds - m0.wall_seconds));
+            bytes = m1.allocated_bytes<0 ? -1d : Math.min(bytes, (m1.allocated_bytes - m0.allocated_bytes) / sim);
+            otm.terminate();
+        }
+        return new double[]{speed,bytes,Double.NaN};
+    }
+
+    // seconds taken by a fixed workload that resembles the simulator's: an event queue, hash
+    // map lookups and floating point arithmetic. Best of the repetitions.
+    private static double calibrate(){
+        double best = Double.POSITIVE_INFINITY;
+        double sink = 0d;
+        for(int r=0;r<calibration_repetitions;r++){
+            long start = System.nanoTime();
+            java.util.PriorityQueue<double[]> queue = new java.util.PriorityQueue<>((a,b)->Double.compare(a[0],b[0]));
+            java.util.HashMap<Long,double[]> map = new java.util.HashMap<>();
+            java.util.Random random = new java.util.Random(1L);
+            for(long k=0;k<10000;k++){
+                double [] x = new double[]{random.nextDouble(),k};
+                map.put(k,x);
+                queue.add(x);
+            }
+            for(int i=0;i<2000000;i++){
+                double [] x = queue.poll();
+                double [] y = map.get((long) random.nextInt(10000));
+                x[0] += 1d + 0.5d*Math.sqrt(y[0]*y[1]+1d);
+                queue.add(x);
+            }
+            sink += queue.peek()[0];
+            best = Math.min(best,(System.nanoTime()-start)*1e-9);
+        }
+        if(Double.isNaN(sink))
+            throw new IllegalStateException();
+        return best;
+    }
+
+    private static void write(Path file,double calibration,Map<String,double[]> results) throws IOException {
+        StringBuilder str = new StringBuilder();
+        str.append("{\n");
+        str.append(String.format("  \"java\": \"%s\",\n",System.getProperty("java.version")));
+        str.append(String.format("  \"os\": \"%s %s\",\n",System.getProperty("os.name"),System.getProperty("os.arch")));
+        str.append(String.format(Locale.US,"  \"calibration_seconds\": %.4f,\n",calibration));
+        str.append("  \"cases\": {\n");
+        int i = 0;
+        for(Map.Entry<String,double[]> e : results.entrySet())
+            str.append(String.format(Locale.US,"    \"%s\": {\"sim_seconds_per_second\": %.1f, \"allocated_bytes_per_sim_second\": %.0f, \"sim_seconds_per_calibration\": %.2f}%s\n",
+                    e.getKey(),e.getValue()[0],e.getValue()[1],e.getValue()[2],++i<results.size() ? "," : ""));
+        str.append("  }\n}\n");
+        if(file.getParent()!=null)
+            Files.createDirectories(file.getParent());
+        Files.write(file,str.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String,double[]> read(Path file) throws IOException {
+        String number = "(-?[0-9.]+(?:[eE][-+]?[0-9]+)?)";
+        Pattern pattern = Pattern.compile("\"(\\w+)\"\\s*:\\s*\\{\\s*\"sim_seconds_per_second\"\\s*:\\s*" + number +
+                "\\s*,\\s*\"allocated_bytes_per_sim_second\"\\s*:\\s*" + number +
+                "\\s*,\\s*\"sim_seconds_per_calibration\"\\s*:\\s*" + number + "\\s*\\}");
+        Matcher m = pattern.matcher(new String(Files.readAllBytes(file),StandardCharsets.UTF_8));
+        Map<String,double[]> x = new LinkedHashMap<>();
+        while(m.find())
+            x.put(m.group(1),new double[]{Double.parseDouble(m.group(2)),Double.parseDouble(m.group(3)),Double.parseDouble(m.group(4))});
+        return x;
+    }
+
+}
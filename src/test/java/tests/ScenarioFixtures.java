@@ -0,0 +1,120 @@
+package tests;
+
+import api.OTM;
+import api.OTMdev;
+import common.AbstractLaneGroup;
+import common.Scenario;
+import error.OTMException;
+import models.fluid.AbstractCell;
+import models.fluid.FluidLaneGroup;
+import runner.ScenarioGenerator;
+import xml.JaxbLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Scenarios and state snapshots shared by the tests.
+ */
+class ScenarioFixtures {
+
+    ////////////////////////////////////////////////////////
+    // generated scenarios
+    ////////////////////////////////////////////////////////
+
+    // generated vehicle model scenarios with diverges: model, type, and size
+    static Object [][] vehicle_cases(){
+        return new Object[][]{
+                {"micro",ScenarioGenerator.Type.corridor,20,3},
+                {"micro",ScenarioGenerator.Type.grid,4,4},
+                {"spaceq",ScenarioGenerator.Type.grid,4,4}};
+    }
+
+    static String generated_config(ScenarioGenerator generator,ScenarioGenerator.Type type,int n,int m) throws OTMException {
+        StringWriter writer = new StringWriter();
+        generator.write(type,writer,n,m);
+        return writer.toString();
+    }
+
+    static String generated_config(String model,ScenarioGenerator.Type type,int n,int m) throws OTMException {
+        ScenarioGenerator generator = new ScenarioGenerator();
+        generator.model = model;
+        return generated_config(generator,type,n,m);
+    }
+
+    // the same configuration with another release process for the demands and vehicle models
+    static String with_process(String config,String process){
+        return config.replace("process=\"deterministic\"","process=\"" + process + "\"");
+    }
+
+    static jaxb.Scenario load_jaxb(String config) throws OTMException {
+        return JaxbLoader.load_scenario(new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)),true);
+    }
+
+    static OTM load_config(String config) throws OTMException {
+        OTM otm = new OTM();
+        otm.load_from_jaxb(load_jaxb(config),true);
+        return otm;
+    }
+
+    static OTM load_generated(String model,ScenarioGenerator.Type type,int n,int m) throws OTMException {
+        return load_config(generated_config(model,type,n,m));
+    }
+
+    ////////////////////////////////////////////////////////
+    // state
+    ////////////////////////////////////////////////////////
+
+    static List<Long> lanegroup_ids(OTM otm){
+        List<Long> X = new ArrayList<>();
+        Scenario scenario = new OTMdev(otm).scenario;
+        for(Long link_id : new TreeSet<>(scenario.network.links.keySet()))
+            for(AbstractLaneGroup lg : scenario.network.links.get(link_id).lanegroups_flwdn)
+                X.add(lg.id);
+        return X;
+    }
+
+    static AbstractLaneGroup lanegroup(Scenario scenario,long lg_id){
+        return scenario.network.links.values().stream()
+                .flatMap(link->link.lanegroups_flwdn.stream())
+                .filter(lg->lg.id==lg_id)
+                .findFirst().get();
+    }
+
+    // vehicles in every link, in link order
+    static List<Double> vehicle_state(Scenario scenario){
+        List<Double> X = new ArrayList<>();
+        for(Long link_id : new TreeSet<>(scenario.network.links.keySet()))
+            X.add(scenario.network.links.get(link_id).get_veh());
+        return X;
+    }
+
+    // vehicles in every link after every second, in link order
+    static List<List<Double>> vehicle_history(OTM otm,float duration) throws OTMException {
+        Scenario scenario = new OTMdev(otm).scenario;
+        List<List<Double>> X = new ArrayList<>();
+        for(int t=0;t<duration;t++){
+            otm.advance(1f);
+            X.add(vehicle_state(scenario));
+        }
+        return X;
+    }
+
+    // vehicles in every cell and flows of every lane group, in link order
+    static List<Double> fluid_state(OTM otm){
+        Scenario scenario = new OTMdev(otm).scenario;
+        List<Double> X = new ArrayList<>();
+        for(Long link_id : new TreeSet<>(scenario.network.links.keySet()))
+            for(AbstractLaneGroup lg : scenario.network.links.get(link_id).lanegroups_flwdn){
+                X.add(lg.flw_acc==null ? Double.NaN : lg.flw_acc.get_total_count());
+                for(AbstractCell cell : ((FluidLaneGroup) lg).cells)
+                    X.add(cell.get_vehicles());
+            }
+        return X;
+    }
+
+}
@@ -6,13 +6,17 @@ import models.fluid.AbstractFluidModel;
 import org.junit.Ignore;
 import org.junit.Test;
 import output.animation.AbstractLinkInfo;
+import output.animation.AnimationFrameStream;
 import output.animation.AnimationInfo;
 import output.animation.macro.LaneGroupInfo;
 
+import java.nio.ByteBuffer;
 import java.util.Set;
 
 import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class TestAnimationInfo {
@@ -56,4 +60,117 @@ public class TestAnimationInfo {
         }
     }
 
+    @Test
+    public void test_frame_stream() throws OTMException {
+        api.OTM otm = new api.OTM();
+        otm.load_test("line_ctm");
+        otm.initialize(0f);
+
+        AnimationFrameStream exact = otm.scenario.get_animation_frame_stream(null,0f,0f);
+        AnimationFrameStream coarse = otm.scenario.get_animation_frame_stream(null,0.5f,0f);
+        float [] exact_cells = new float[exact.get_cell_index().length];
+        float [] coarse_cells = new float[coarse.get_cell_index().length];
+        assertTrue(exact_cells.length>0);
+
+        long exact_bytes = 0;
+        long coarse_bytes = 0;
+        for(int k=0;k<100;k++){
+            otm.advance(2f);
+            ByteBuffer frame = exact.next_frame();
+            exact_bytes += frame.remaining();
+            apply_cells(frame,exact_cells);
+            frame = coarse.next_frame();
+            coarse_bytes += frame.remaining();
+            apply_cells(frame,coarse_cells);
+            for(int i=0;i<exact_cells.length;i++)
+                assertEquals(exact_cells[i],coarse_cells[i],0.5f);
+        }
+        otm.terminate();
+        assertTrue(coarse_bytes<exact_bytes);
+    }
+
+    @Test
+    public void test_frame_stream_vehicles() throws OTMException {
+        api.OTM otm = new api.OTM();
+        otm.load_test("line_spaceq");
+        otm.initialize(0f);
+        common.Scenario scenario = new api.OTMdev(otm).scenario;
+
+        AnimationFrameStream stream = otm.scenario.get_animation_frame_stream(null,0f,0f);
+        long [] lg_ids = stream.get_lanegroup_ids();
+
+        // vehicle id -> {lane group index, queue}, as rebuilt by a client
+        java.util.Map<Long,int[]> client = new java.util.HashMap<>();
+        ByteBuffer last = null;
+        int num_views = 0;
+        int max_vehicles = 0;
+        for(int k=0;k<200;k++){
+            otm.advance(5f);
+            ByteBuffer frame = stream.next_frame();
+            if(frame!=last)
+                num_views++;
+            last = frame;
+            apply_vehicles(frame,client);
+
+            java.util.Map<Long,int[]> actual = new java.util.HashMap<>();
+            for(int i=0;i<lg_ids.length;i++){
+                models.vehicle.spatialq.MesoLaneGroup lg = find_meso(scenario,lg_ids[i]);
+                for(models.vehicle.spatialq.MesoVehicle v : lg.transit_queue.get_vehicles())
+                    actual.put(v.getId(),new int[]{i,AnimationFrameStream.TRANSIT});
+                for(models.vehicle.spatialq.MesoVehicle v : lg.waiting_queue.get_vehicles())
+                    actual.put(v.getId(),new int[]{i,AnimationFrameStream.WAITING});
+            }
+            assertEquals(actual.keySet(),client.keySet());
+            for(java.util.Map.Entry<Long,int[]> e : actual.entrySet())
+                assertTrue(java.util.Arrays.equals(e.getValue(),client.get(e.getKey())));
+            max_vehicles = Math.max(max_vehicles,actual.size());
+        }
+        otm.terminate();
+
+        // enough vehicles to grow the tables, and a new view only when the buffer grows
+        assertTrue(max_vehicles>100);
+        assertTrue(num_views<10);
+    }
+
+    private static models.vehicle.spatialq.MesoLaneGroup find_meso(common.Scenario scenario,long lg_id){
+        for(common.Link link : scenario.network.links.values())
+            for(common.AbstractLaneGroup lg : link.lanegroups_flwdn)
+                if(lg.id==lg_id)
+                    return (models.vehicle.spatialq.MesoLaneGroup) lg;
+        return null;
+    }
+
+    private static void apply_vehicles(ByteBuffer frame,java.util.Map<Long,int[]> vehicles){
+        assertEquals(AnimationFrameStream.MAGIC,frame.getInt());
+        frame.getInt();     // frame number
+        frame.getFloat();   // time
+        frame.get();        // key frame
+        int n = frame.getInt();
+        frame.position(frame.position() + 8*n);     // cells
+        n = frame.getInt();
+        frame.position(frame.position() + 8*n);     // lane groups
+        n = frame.getInt();
+        for(int i=0;i<n;i++){
+            long id = frame.getLong();
+            int lg_index = frame.getInt();
+            byte queue = frame.get();
+            frame.getFloat();   // position
+            vehicles.put(id,new int[]{lg_index,queue});
+        }
+        n = frame.getInt();
+        for(int i=0;i<n;i++)
+            assertNotNull(vehicles.remove(frame.getLong()));
+        assertEquals(0,frame.remaining());
+    }
+
+    private static void apply_cells(ByteBuffer frame,float [] cells){
+        assertEquals(AnimationFrameStream.MAGIC,frame.getInt());
+        frame.getInt();     // frame number
+        frame.getFloat();   // time
+        frame.get();        // key frame
+        int n = frame.getInt();
+        for(int i=0;i<n;i++)
+            cells[frame.getInt()] = frame.getFloat();
+    }
+
 }
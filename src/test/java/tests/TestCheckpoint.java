@@ -0,0 +1,176 @@
+package tests;
+
+import api.OTM;
+import api.OTMdev;
+import common.Scenario;
+import org.junit.Test;
+import output.AbstractOutputTimedLink;
+import runner.ScenarioGenerator;
+
+import java.io.File;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static tests.ScenarioFixtures.*;
+
+public class TestCheckpoint {
+
+    @Test
+    public void test_checkpoint() throws Exception {
+        File folder = Files.createTempDirectory("otm_checkpoint").toFile();
+        folder.deleteOnExit();
+        for(String config : new String[]{"line_ctm","onramp_offramp"}){
+            File file = new File(folder,config + ".otmc");
+            file.deleteOnExit();
+
+            OTM original = new OTM();
+            original.load_test(config);
+            original.output.request_links_flow(null,null,10f);
+            original.initialize(0f);
+            original.advance(500f);
+            original.save_checkpoint(file.getAbsolutePath());
+            original.advance(700f);
+
+            OTM restored = new OTM();
+            restored.load_test(config);
+            restored.output.request_links_flow(null,null,10f);
+            restored.load_checkpoint(file.getAbsolutePath());
+            assertEquals(500f,restored.get_current_time(),0f);
+            restored.advance(700f);
+
+            assertEquals(1200f,restored.get_current_time(),0f);
+            List<Double> state = fluid_state(original);
+            assertTrue(state.stream().anyMatch(x->x>0d));
+            assertEquals(state,fluid_state(restored));
+        }
+
+        // meso queues and Newell vehicles, on networks with diverges
+        for(Object [] c : vehicle_cases()){
+            File file = new File(folder,c[0] + ".otmc");
+            file.deleteOnExit();
+
+            OTM original = load_generated((String) c[0],(ScenarioGenerator.Type) c[1],(int) c[2],(int) c[3]);
+            original.set_seed(7L);
+            original.initialize(0f);
+            original.advance(500f);
+            original.save_checkpoint(file.getAbsolutePath());
+            List<List<Double>> history = vehicle_history(original,700f);
+
+            OTM restored = load_generated((String) c[0],(ScenarioGenerator.Type) c[1],(int) c[2],(int) c[3]);
+            restored.load_checkpoint(file.getAbsolutePath());
+            assertEquals(500f,restored.get_current_time(),0f);
+            assertTrue(history.get(699).stream().anyMatch(x->x>0d));
+            assertEquals((String) c[0],history,vehicle_history(restored,700f));
+        }
+    }
+
+    @Test
+    public void test_fork() throws Exception {
+        OTM original = new OTM();
+        original.load_test("onramp_offramp");
+        original.initialize(0f);
+        original.advance(500f);
+
+        List<OTM> forks = new ArrayList<>();
+        for(int i=0;i<3;i++)
+            forks.add(original.fork());
+        assertEquals(500f,forks.get(0).get_current_time(),0f);
+        original.advance(700f);
+
+        List<Thread> threads = new ArrayList<>();
+        List<Exception> errors = new ArrayList<>();
+        for(OTM fork : forks)
+            threads.add(new Thread(() -> {
+                try {
+                    fork.advance(700f);
+                } catch (Exception e) {
+                    synchronized (errors) { errors.add(e); }
+                }
+            }));
+        for(Thread thread : threads)
+            thread.start();
+        for(Thread thread : threads)
+            thread.join();
+
+        assertTrue(errors.isEmpty());
+        List<Double> state = fluid_state(original);
+        for(OTM fork : forks){
+            assertEquals(1200f,fork.get_current_time(),0f);
+            assertEquals(state,fluid_state(fork));
+        }
+
+        // meso queues and Newell vehicles, on networks with diverges
+        for(Object [] c : vehicle_cases()){
+            OTM vehicles = load_generated((String) c[0],(ScenarioGenerator.Type) c[1],(int) c[2],(int) c[3]);
+            vehicles.set_seed(7L);
+            vehicles.initialize(0f);
+            vehicles.advance(500f);
+            OTM fork = vehicles.fork();
+            List<List<Double>> history = vehicle_history(vehicles,700f);
+            assertTrue(history.get(699).stream().anyMatch(x->x>0d));
+            assertEquals((String) c[0],history,vehicle_history(fork,700f));
+        }
+    }
+
+    @Test
+    public void test_reset() throws Exception {
+        for(String config : new String[]{"line_ctm","onramp_offramp"}){
+            OTM myotm = new OTM();
+            myotm.load_test(config);
+            myotm.output.request_links_flow(null,null,60f);
+            myotm.initialize(0f);
+            myotm.advance(900f);
+            List<Double> state = fluid_state(myotm);
+            AbstractOutputTimedLink flw = (AbstractOutputTimedLink) myotm.output.get_data().iterator().next();
+            long link_id = flw.get_link_ids()[0];
+            List<Double> flows = new ArrayList<>();
+            DoubleBuffer values = myotm.output.get_link_values(flw,link_id);
+            while(values.hasRemaining())
+                flows.add(values.get());
+
+            for(int k=0;k<2;k++){
+                myotm.reset(0f);
+                assertEquals(0f,myotm.get_current_time(),0f);
+                assertTrue(fluid_state(myotm).stream().allMatch(x->Double.isNaN(x) || x==0d));
+                myotm.advance(900f);
+                assertEquals(state,fluid_state(myotm));
+                List<Double> again = new ArrayList<>();
+                values = myotm.output.get_link_values(flw,link_id);
+                while(values.hasRemaining())
+                    again.add(values.get());
+                assertEquals(flows,again);
+            }
+        }
+    }
+
+    @Test
+    public void test_reset_vehicle_models() throws Exception {
+        for(String model : new String[]{"spaceq","micro"}){
+            OTM myotm = load_config(with_process(generated_config(model,ScenarioGenerator.Type.grid,4,4),"poisson"));
+            myotm.set_seed(1L);
+            myotm.initialize(0f);
+            Scenario scenario = new OTMdev(myotm).scenario;
+            myotm.advance(600f);
+            List<Double> state = vehicle_state(scenario);
+            long created = scenario.context.get_vehicle_id_count();
+            long events = scenario.metrics.getEventsDispatched();
+            assertTrue(model,created > 0L);
+
+            for(int k=0;k<2;k++){
+                myotm.reset(0f);
+                assertEquals(model,0f,myotm.get_current_time(),0f);
+                assertTrue(model,vehicle_state(scenario).stream().allMatch(x->x==0d));
+                assertEquals(model,0L,scenario.metrics.getEventsDispatched());
+                myotm.advance(600f);
+                assertEquals(model,state,vehicle_state(scenario));
+                assertEquals(model,created,scenario.context.get_vehicle_id_count());
+                assertEquals(model,events,scenario.metrics.getEventsDispatched());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package tests;
+
+import api.OTM;
+import api.OTMdev;
+import common.Link;
+import common.Scenario;
+import distributed.LocalTransport;
+import distributed.Partition;
+import models.vehicle.spatialq.MesoBoundary;
+import models.vehicle.spatialq.ModelSpatialQ;
+import org.junit.Test;
+import partition.Graph;
+import partition.Partitioning;
+import runner.ScenarioGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static tests.ScenarioFixtures.*;
+
+public class TestDistributed {
+
+    @Test
+    public void test_partitioned() throws Exception {
+
+        String config = generated_config(new ScenarioGenerator(),ScenarioGenerator.Type.grid,5,5);
+
+        OTM single = load_config(config);
+        single.initialize(0f);
+        single.advance(600f);
+        Map<Long,Double> expected = new HashMap<>();
+        for(Link link : new OTMdev(single).scenario.network.links.values())
+            expected.put(link.getId(),(double) link.get_veh());
+
+        int num_processes = 3;
+        Map<Long,Integer> link2rank = Partition.blocks(expected.keySet(),num_processes);
+        LocalTransport [] transports = LocalTransport.create(num_processes);
+        Map<Long,Double> actual = new ConcurrentHashMap<>();
+        List<Thread> threads = new ArrayList<>();
+        List<Exception> errors = new ArrayList<>();
+        for(LocalTransport transport : transports)
+            threads.add(new Thread(() -> {
+                try {
+                    OTM myotm = load_config(config);
+                    myotm.set_partition(transport,link2rank);
+                    myotm.initialize(0f);
+                    myotm.advance(600f);
+                    for(Link link : new OTMdev(myotm).scenario.network.links.values())
+                        if(link2rank.get(link.getId())==transport.rank())
+                            actual.put(link.getId(),(double) link.get_veh());
+                } catch (Exception e) {
+                    synchronized (errors) { errors.add(e); }
+                }
+            }));
+        for(Thread thread : threads)
+            thread.start();
+        for(Thread thread : threads)
+            thread.join();
+
+        assertTrue(errors.isEmpty());
+        assertEquals(expected,actual);
+    }
+
+    @Test
+    public void test_partitioned_meso() throws Exception {
+
+        // congested signalized grid in which vehicles cross between processes all the time and queues
+        // spill back across the boundary, with deterministic and with Poisson releases
+        ScenarioGenerator generator = new ScenarioGenerator();
+        generator.model = "spaceq";
+        generator.demand_vphpl = 1500f;
+        String congested = generated_config(generator,ScenarioGenerator.Type.grid,6,6).replace("jam_density=\"120\"","jam_density=\"40\"");
+        for(String process : new String[]{"deterministic","poisson"}) {
+            String config = with_process(congested,process);
+
+            OTM single = load_config(config);
+            single.set_seed(1L);
+            single.initialize(0f);
+            single.advance(900f);
+            Scenario scenario = new OTMdev(single).scenario;
+            long expected_created = scenario.context.get_vehicle_id_count();
+            Map<Long,Double> expected = new HashMap<>();
+            for(Link link : scenario.network.links.values())
+                expected.put(link.getId(),(double) link.get_veh());
+
+            int num_processes = 3;
+            Map<Long,Integer> link2rank = single.partition_network(num_processes).get_link2part();
+            LocalTransport[] transports = LocalTransport.create(num_processes);
+            Map<Long,Double> actual = new ConcurrentHashMap<>();
+            long[] created = new long[num_processes];
+            long[] sent = new long[num_processes];
+            long[] received = new long[num_processes];
+            List<Thread> threads = new ArrayList<>();
+            List<Exception> errors = new ArrayList<>();
+            for(LocalTransport transport : transports)
+                threads.add(new Thread(() -> {
+                    try {
+                        int rank = transport.rank();
+                        OTM myotm = load_config(config);
+                        if (rank == 0)
+                            myotm.set_seed(1L);    // the other processes take the seed of process 0
+                        myotm.set_partition(transport, link2rank);
+                        myotm.initialize(0f);
+
+                        // in two advances
+                        myotm.advance(451f);
+                        myotm.advance(449f);
+
+                        Scenario myscenario = new OTMdev(myotm).scenario;
+                        MesoBoundary boundary = ((ModelSpatialQ) myscenario.network.models.values().iterator().next()).get_boundary();
+                        created[rank] = myscenario.context.get_vehicle_id_count();
+                        for(Link link : myscenario.network.links.values())
+                            if(link2rank.get(link.getId()) == rank)
+                                actual.put(link.getId(),(double) link.get_veh());
+                        sent[rank] = boundary.get_num_sent();
+                        received[rank] = boundary.get_num_received();
+                    } catch (Exception e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }));
+            for(Thread thread : threads)
+                thread.start();
+            for(Thread thread : threads)
+                thread.join();
+
+            assertTrue(errors.isEmpty());
+
+            // vehicles cross the boundary, and every process has the state of a single-process run
+            long total_sent = Arrays.stream(sent).sum();
+            assertTrue(total_sent > 1000);
+            assertEquals(total_sent,Arrays.stream(received).sum());
+            assertEquals(expected_created,Arrays.stream(created).sum());
+            assertEquals(process,expected,actual);
+        }
+    }
+
+    @Test
+    public void test_partition_network() throws Exception {
+
+        OTM myotm = load_generated("ctm",ScenarioGenerator.Type.grid,10,10);
+
+        int num_parts = 4;
+        Partitioning partitioning = myotm.partition_network(num_parts);
+        Map<Long,Integer> link2part = partitioning.get_link2part();
+        assertEquals(myotm.scenario.get_link_ids(),link2part.keySet());
+        assertEquals(num_parts,new TreeSet<>(link2part.values()).size());
+        assertTrue(partitioning.get_imbalance() <= 0.05);
+
+        // fewer connections cut than blocks of consecutive ids
+        Map<Long,Integer> blocks = Partition.blocks(link2part.keySet(),num_parts);
+        Graph graph = partitioning.graph;
+        int [] part = new int[graph.num_vertices];
+        for(int v=0;v<graph.num_vertices;v++)
+            part[v] = blocks.get(graph.ids[v]);
+        assertTrue(partitioning.get_cut() < new Partitioning(graph,num_parts,part).get_cut());
+
+        // the same partition every time
+        assertEquals(link2part,myotm.partition_network(num_parts).get_link2part());
+    }
+
+}
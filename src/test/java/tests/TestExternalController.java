@@ -0,0 +1,68 @@
+package tests;
+
+import api.OTM;
+import api.OTMdev;
+import control.external.ControllerExternal;
+import control.external.ExternalAgent;
+import error.OTMException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestExternalController {
+
+    @Test
+    public void test_external_controller() throws Exception {
+
+        // uncontrolled onramp
+        OTM free = new OTM();
+        free.load_test("onramp_offramp");
+        free.initialize(0f);
+        free.advance(1200f);
+        double free_onramp_veh = new OTMdev(free).scenario.network.links.get(6L).get_veh();
+
+        // onramp closed by a stand-in agent on another thread
+        OTM myotm = new OTM();
+        myotm.load_test("onramp_external");
+        myotm.initialize(0f);
+        ControllerExternal controller = (ControllerExternal) myotm.scenario.get_actual_controller_with_id(1);
+
+        List<Double> times = Collections.synchronizedList(new ArrayList<>());
+        List<Long> layout = Collections.synchronizedList(new ArrayList<>());
+        Thread thread = new Thread(() -> {
+            try {
+                ExternalAgent agent = ExternalAgent.connect(controller.file,10f);
+                layout.add(agent.get_sensor_id(0));
+                layout.add(agent.get_actuator_id(0));
+                agent.run(a -> {
+                    times.add(a.get_time());
+                    a.set_rate_vps(0,0d);
+                },10f);
+            } catch (OTMException e) {
+                e.printStackTrace();
+            }
+        });
+        thread.start();
+
+        myotm.advance(1200f);
+        myotm.terminate();
+        thread.join(10000);
+
+        assertFalse(thread.isAlive());
+        assertEquals(Arrays.asList(1L,1L),layout);
+        assertEquals(times.size(),controller.get_num_round_trips());
+        assertTrue(times.size()>=20);
+        assertEquals(0d,times.get(0),0d);
+        assertEquals(60d,times.get(1),0d);
+        assertTrue(controller.get_mean_round_trip_us()>0d);
+        assertTrue(new OTMdev(myotm).scenario.network.links.get(6L).get_veh() > free_onramp_veh);
+    }
+
+}
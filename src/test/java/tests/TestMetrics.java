@@ -0,0 +1,128 @@
+package tests;
+
+import api.OTM;
+import api.info.MemoryInfo;
+import api.info.MetricsInfo;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import metrics.jfr.Profile;
+import models.fluid.EventFluidModelUpdate;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestMetrics {
+
+    @Test
+    public void test_metrics() throws Exception {
+        OTM myotm = new OTM();
+        myotm.load_test("line_ctm");
+        myotm.initialize(0f);
+        ObjectName name = myotm.register_metrics_mbean("test_metrics");
+        myotm.advance(600f);
+
+        MetricsInfo metrics = myotm.get_metrics();
+        assertEquals(600d,metrics.sim_seconds,1e-3);
+        assertTrue(metrics.wall_seconds>0d);
+        assertTrue(metrics.events_dispatched>0);
+        assertEquals(metrics.events_dispatched,(long) metrics.events_per_class.values().stream().mapToLong(x->x).sum());
+        assertTrue(metrics.events_per_class.containsKey(EventFluidModelUpdate.class.getName()));
+        assertTrue(metrics.phase_time_ms.keySet().stream().anyMatch(x->x.endsWith(".node_model")));
+        assertTrue(metrics.node_model_runs>0);
+        assertTrue(metrics.mean_node_model_iterations>=1d);
+        assertTrue(metrics.max_event_queue_size>0);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(metrics.events_dispatched,server.getAttribute(name,"EventsDispatched"));
+
+        myotm.terminate();
+        assertFalse(server.isRegistered(name));
+
+        // set to zero when initialized again
+        myotm.initialize(0f);
+        assertEquals(0L,myotm.get_metrics().events_dispatched);
+    }
+
+    @Test
+    public void test_flight_recorder_events() throws Exception {
+
+        File folder = Files.createTempDirectory("otm_jfr").toFile();
+        folder.deleteOnExit();
+
+        Recording recording = new Recording(Profile.configuration());
+        recording.enable("otm.Dispatch").withThreshold(Duration.ZERO);
+        recording.start();
+
+        OTM myotm = new OTM();
+        myotm.load_test("line_ctm");
+        myotm.output.request_links_veh("jfr",folder.getAbsolutePath(),null,null,10f);
+        myotm.initialize(0f);
+        myotm.advance(300f);
+        myotm.terminate();
+
+        recording.stop();
+        File file = new File(folder,"run.jfr");
+        file.deleteOnExit();
+        recording.dump(file.toPath());
+        recording.close();
+
+        Map<String,Integer> counts = new HashMap<>();
+        Set<String> stages = new TreeSet<>();
+        Set<String> phases = new TreeSet<>();
+        for(RecordedEvent e : RecordingFile.readAllEvents(file.toPath())){
+            String name = e.getEventType().getName();
+            counts.merge(name,1,Integer::sum);
+            if(name.equals("otm.ScenarioStage"))
+                stages.add(e.getString("stage"));
+            if(name.equals("otm.ModelPhase"))
+                phases.add(e.getString("model") + "." + e.getString("phase"));
+            if(name.equals("otm.OutputFlush"))
+                assertTrue(e.getLong("bytes")>0);
+        }
+
+        assertTrue(stages.containsAll(Arrays.asList("parse","network","models","validate")));
+        assertEquals(new TreeSet<>(Arrays.asList("ctm1.update_flow_I","ctm1.node_model","ctm1.update_flow_II","ctm1.state_update")),phases);
+        assertTrue(counts.get("otm.Dispatch")>0);
+        assertTrue(counts.get("otm.OutputFlush")>0);
+    }
+
+    @Test
+    public void test_memory_report() throws Exception {
+        OTM myotm = new OTM();
+        myotm.load_test("line_ctm");
+        myotm.output.request_links_flow(null,10f);
+        myotm.initialize(0f);
+        myotm.advance(300f);
+
+        MemoryInfo report = myotm.memory_report();
+        assertTrue(report.total_bytes > 0L);
+        assertEquals(report.total_bytes,report.bytes_per_category.values().stream().mapToLong(x->x).sum());
+        assertTrue(report.bytes_per_category.get("links") > 0L);
+        assertTrue(report.bytes_per_category.get("cells") > 0L);
+        assertTrue(report.bytes_per_category.get("jaxb") > 0L);
+        assertFalse(report.bytes_per_model.isEmpty());
+        for(Map<String,Long> x : report.bytes_per_model.values())
+            assertTrue(x.get("links") > 0L);
+        assertEquals(1,report.bytes_per_output.size());
+        assertTrue(report.bytes_per_output.values().iterator().next() > 0L);
+
+        // a second report counts the same objects
+        assertEquals(report.num_objects,myotm.memory_report().num_objects);
+    }
+
+}
@@ -137,7 +137,7 @@ public class TestOne extends AbstractTest {
 //            otm.request_links_veh(null, api.get_link_ids(), sample_dt);
 
 
-            otm.set_random_seed(1);
+            otm.set_seed(1);
 
             otm.run(start_time,time_horizon);
 
@@ -0,0 +1,309 @@
+package tests;
+
+import api.OTM;
+import api.OTMdev;
+import common.Scenario;
+import models.vehicle.spatialq.MesoLaneGroup;
+import models.vehicle.spatialq.Queue;
+import org.junit.Test;
+import output.AbstractOutputStats;
+import output.AbstractOutputTimed;
+import output.BinaryTimedReader;
+import output.BinaryVehicleEventReader;
+import output.BinaryVehicleEventWriter;
+import output.CsvWriter;
+import output.OutputLinkFlowStats;
+import output.OutputPipeline;
+import output.OutputSubscription;
+import runner.ScenarioGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static tests.ScenarioFixtures.load_generated;
+
+public class TestOutput {
+
+    @Test
+    public void test_binary_output() throws Exception {
+        File folder = Files.createTempDirectory("otm").toFile();
+        OTM myotm = new OTM();
+        myotm.load_test("line_ctm");
+        myotm.output.request_links_flow("bin",folder.getAbsolutePath(),null,null,10f);
+        myotm.output.set_output_format(AbstractOutputTimed.Format.binary64);
+        myotm.run(0f,100f);
+
+        BinaryTimedReader reader = myotm.output.read_binary_output(folder.getAbsolutePath() + File.separator + "bin_allcomms_link_flw.bin");
+        assertEquals(10f,reader.get_outdt(),0f);
+        assertEquals(myotm.scenario.get_link_ids().size(),reader.get_num_cols());
+        assertEquals(0f,reader.get_time(0),0f);
+        assertTrue(reader.get_num_rows()>=10);
+    }
+
+    @Test
+    public void test_async_output() throws Exception {
+        File folder = Files.createTempDirectory("otm").toFile();
+        OTM myotm = new OTM();
+        myotm.load_test("line_ctm");
+        myotm.output.request_links_veh("sync",folder.getAbsolutePath(),null,null,10f);
+        myotm.run(0f,200f);
+
+        myotm = new OTM();
+        myotm.load_test("line_ctm");
+        myotm.output.set_async_output(2,4,OutputPipeline.Backpressure.block);
+        myotm.output.request_links_veh("async",folder.getAbsolutePath(),null,null,10f);
+        myotm.run(0f,200f);
+
+        for(String suffix : new String[]{"_link_veh.txt","_link_veh_time.txt"}) {
+            byte [] sync = Files.readAllBytes(new File(folder,"sync_allcomms" + suffix).toPath());
+            byte [] async = Files.readAllBytes(new File(folder,"async_allcomms" + suffix).toPath());
+            assertTrue(sync.length>0);
+            assertTrue(Arrays.equals(sync,async));
+        }
+    }
+
+    @Test
+    public void test_async_output_many_streams() throws Exception {
+
+        // more streams than buffers, each holding a partly filled chunk between writes
+        for(OutputPipeline.Backpressure backpressure : OutputPipeline.Backpressure.values()){
+            OutputPipeline pipeline = new OutputPipeline(1,2,64,backpressure);
+            List<ByteArrayOutputStream> targets = new ArrayList<>();
+            List<OutputPipeline.AsyncStream> streams = new ArrayList<>();
+            for(int i=0;i<20;i++){
+                targets.add(new ByteArrayOutputStream());
+                streams.add(pipeline.open_stream(targets.get(i)));
+            }
+            assertEquals(20,pipeline.get_num_streams());
+            List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+            Thread simulation = new Thread(()->{
+                try {
+                    for(int k=0;k<1000;k++)
+                        for(int i=0;i<streams.size();i++)
+                            streams.get(i).write(new byte[]{(byte) i,(byte) k,(byte) (k>>8)});
+                    for(OutputPipeline.AsyncStream stream : streams)
+                        stream.close();
+                } catch (Exception e) {
+                    errors.add(e);
+                }
+            });
+            simulation.start();
+            simulation.join(30000);
+            assertFalse(backpressure.toString(),simulation.isAlive());
+            assertTrue(errors.isEmpty());
+            pipeline.stop();
+            for(int i=0;i<targets.size();i++){
+                byte [] bytes = targets.get(i).toByteArray();
+                assertEquals(3000,bytes.length);
+                for(int k=0;k<1000;k++){
+                    assertEquals((byte) i,bytes[3*k]);
+                    assertEquals((byte) k,bytes[3*k+1]);
+                    assertEquals((byte) (k>>8),bytes[3*k+2]);
+                }
+            }
+            assertEquals(0,pipeline.get_num_streams());
+            assertEquals(pipeline.num_chunks,pipeline.get_num_chunks());
+        }
+
+        // a grid with three outputs and two buffers writes the same files as without the pipeline
+        File folder = Files.createTempDirectory("otm").toFile();
+        for(String prefix : new String[]{"sync","async"}){
+            OTM myotm = load_generated("ctm",ScenarioGenerator.Type.grid,10,10);
+            if(prefix.equals("async"))
+                myotm.output.set_async_output(1,2,OutputPipeline.Backpressure.block);
+            myotm.output.request_links_veh(prefix,folder.getAbsolutePath(),null,null,2f);
+            myotm.output.request_links_flow(prefix,folder.getAbsolutePath(),null,null,2f);
+            myotm.output.request_links_sum_veh(prefix,folder.getAbsolutePath(),null,null,2f);
+            myotm.run(0f,600f);
+        }
+        String [] files = folder.list((dir,name)->name.startsWith("sync"));
+        assertTrue(files.length>=6);
+        for(String file : files){
+            byte [] sync = Files.readAllBytes(new File(folder,file).toPath());
+            byte [] async = Files.readAllBytes(new File(folder,"async" + file.substring(4)).toPath());
+            assertTrue(sync.length>0);
+            assertTrue(file,Arrays.equals(sync,async));
+        }
+    }
+
+    @Test
+    public void test_output_pipeline_allocate() throws Exception {
+
+        // the writer thread is held until the gate opens
+        CountDownLatch gate = new CountDownLatch(1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+            @Override
+            public void write(byte [] b,int off,int len) throws IOException {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                bytes.write(b,off,len);
+            }
+        };
+
+        OutputPipeline pipeline = new OutputPipeline(1,2,16,OutputPipeline.Backpressure.allocate);
+        OutputPipeline.AsyncStream stream = pipeline.open_stream(slow);
+        List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+        Thread simulation = new Thread(()->{
+            try {
+                for(int i=0;i<100;i++)
+                    stream.write(new byte[16]);
+            } catch (Exception e) {
+                errors.add(e);
+            }
+        });
+        simulation.start();
+
+        // the pool grows to its cap, plus the chunk of the open stream, then the simulation thread waits
+        simulation.join(500);
+        assertTrue(simulation.isAlive());
+        assertEquals(pipeline.max_chunks+1,pipeline.get_num_chunks());
+
+        gate.countDown();
+        simulation.join();
+        assertTrue(errors.isEmpty());
+
+        // closing after stop writes the last chunk on this thread, and closing again does nothing
+        pipeline.stop();
+        stream.close();
+        stream.close();
+        assertEquals(1600,bytes.size());
+        assertEquals(pipeline.num_chunks,pipeline.get_num_chunks());
+    }
+
+    @Test
+    public void test_subscribe_links_flow() throws Exception {
+        OTM myotm = new OTM();
+        myotm.load_test("line_ctm");
+
+        List<Float> direct_times = new ArrayList<>();
+        List<Float> block_times = new ArrayList<>();
+        myotm.output.subscribe_links_flow(null,null,10f,row->direct_times.add(row.time),OutputSubscription.Policy.direct,1);
+        myotm.output.subscribe_links_flow(null,null,10f,row->block_times.add(row.time),OutputSubscription.Policy.block,4);
+        myotm.run(0f,100f);
+
+        assertTrue(direct_times.size()>=10);
+        assertEquals(direct_times,block_times);
+    }
+
+    @Test
+    public void test_compressed_output() throws Exception {
+        File folder = Files.createTempDirectory("otm").toFile();
+        OTM myotm = new OTM();
+        myotm.load_test("line_ctm");
+        myotm.output.request_links_veh("txt",folder.getAbsolutePath(),null,null,10f);
+        myotm.run(0f,200f);
+
+        myotm = new OTM();
+        myotm.load_test("line_ctm");
+        myotm.output.request_links_flow("bin",folder.getAbsolutePath(),null,null,10f);
+        myotm.output.set_output_format(AbstractOutputTimed.Format.binary64);
+        myotm.output.request_links_veh("z",folder.getAbsolutePath(),null,null,10f);
+        myotm.output.set_compressed_output(true);
+        myotm.run(0f,200f);
+
+        // text: whole window equals the same output written uncompressed
+        byte [] plain = Files.readAllBytes(new File(folder,"txt_allcomms_link_veh.txt").toPath());
+        byte [] unzipped = myotm.output.read_compressed_window(folder.getAbsolutePath() + File.separator + "z_allcomms_link_veh.txt.z",0f,200f);
+        assertTrue(Arrays.equals(plain,unzipped));
+
+        // binary: header is always included
+        BinaryTimedReader reader = myotm.output.read_compressed_binary_window(folder.getAbsolutePath() + File.separator + "bin_allcomms_link_flw.bin.z",50f,60f);
+        assertEquals(10f,reader.get_outdt(),0f);
+        assertTrue(reader.get_num_rows()>0);
+    }
+
+    @Test
+    public void test_binary_vehicle_events() throws Exception {
+        OTM myotm = new OTM();
+        myotm.load_test("line_spaceq");
+        Scenario scenario = new OTMdev(myotm).scenario;
+
+        // queue dictionary from the meso lane groups
+        List<Queue> queues = new ArrayList<>();
+        for(long link_id : new long[]{0l,1l}){
+            MesoLaneGroup lg = (MesoLaneGroup) scenario.network.links.get(link_id).lanegroups_flwdn.get(0);
+            queues.add(lg.transit_queue);
+            queues.add(lg.waiting_queue);
+        }
+
+        // vehicle 7 crosses both links, vehicle 8 is still on the first
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryVehicleEventWriter writer = new BinaryVehicleEventWriter(Channels.newChannel(bytes),null,queues);
+        writer.write(1f,7l,null,queues.get(0));
+        writer.write(5f,7l,queues.get(0),queues.get(1));
+        writer.write(6f,8l,null,queues.get(0));
+        writer.write(9f,7l,queues.get(1),queues.get(2));
+        writer.write(20f,7l,queues.get(2),null);
+        writer.close();
+
+        BinaryVehicleEventReader reader = new BinaryVehicleEventReader(bytes.toByteArray());
+        assertEquals(4,reader.get_num_queues());
+        assertEquals(5,reader.get_num_events());
+        assertEquals(queues.get(1).id,reader.get_queue_id(reader.get_to_queue(1)));
+        assertEquals("-",reader.get_queue_id(reader.get_to_queue(4)));
+
+        Map<Long,BinaryVehicleEventReader.Trajectory> trajs = reader.get_trajectories();
+        assertEquals(4,trajs.get(7l).times.length);
+        assertEquals(19f,trajs.get(7l).get_travel_time(),0f);
+        assertTrue(Float.isNaN(trajs.get(8l).get_travel_time()));
+        assertEquals(1,reader.get_travel_times().size());
+        assertEquals(19f,reader.get_travel_times().get(7l),0f);
+    }
+
+    @Test
+    public void test_csv_writer() throws Exception {
+        Random random = new Random(0);
+        double [] special = {0d,-0d,0.5,0.35,1.005,5e-7,-1e-9,1e12,123456.0000005,Double.NaN,Double.POSITIVE_INFINITY};
+        for(int decimals : new int[]{0,2,6,9}){
+            String format = "%." + decimals + "f";
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            StringBuilder expected = new StringBuilder();
+            CsvWriter writer = new CsvWriter(bytes,decimals);
+            for(int i=0;i<10000+special.length;i++){
+                double x = i<special.length ? special[i] : (random.nextDouble()-0.1)*Math.pow(10,random.nextInt(12)-4);
+                writer.put(x);
+                writer.put(',');
+                expected.append(String.format(Locale.ROOT,format,x)).append(",");
+            }
+            writer.close();
+            assertEquals(expected.toString(),bytes.toString());
+        }
+    }
+
+    @Test
+    public void test_links_flow_stats() throws Exception {
+        OTM myotm = new OTM();
+        myotm.load_test("line_ctm");
+        myotm.output.request_links_flow_stats(null,null,10f,100f);
+        myotm.run(0f,300f);
+
+        OutputLinkFlowStats output = (OutputLinkFlowStats) myotm.output.get_data().iterator().next();
+        assertEquals(3*myotm.scenario.get_link_ids().size(),output.get_reports().size());
+        for(AbstractOutputStats.Report<Long> report : output.get_reports())
+            assertEquals(10,report.stats.get_count());
+    }
+
+}
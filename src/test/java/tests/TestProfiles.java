@@ -1,14 +1,20 @@
 package tests;
 
 import org.junit.Test;
+import profiles.DoubleSeries;
 import profiles.Profile1D;
 import profiles.TimeValue;
 
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestProfiles {
 
@@ -60,4 +66,42 @@ public class TestProfiles {
         x = profile1.get_change_following(71f);
         assertNull(x);
     }
+
+    @Test
+    public void testPrimitiveValues(){
+        Profile1D profile = new Profile1D(0f,10f);
+        for(int i=0;i<100;i++)
+            profile.add_entry(i);
+        assertTrue(profile.values instanceof DoubleSeries);
+        assertEquals(100,profile.get_length());
+
+        DoubleBuffer buffer = profile.get_values_buffer();
+        assertEquals(100,buffer.remaining());
+        assertEquals(42d,buffer.get(42),0d);
+        assertTrue(buffer.isReadOnly());
+
+        assertEquals(profile,profile.clone());
+        assertEquals(99,profile.diff().size());
+    }
+
+    @Test
+    public void testSeriesFailFast(){
+        DoubleSeries series = new DoubleSeries();
+        series.add(1d);
+        series.add(2d);
+        for(int k=0;k<2;k++){
+            Iterator<Double> it = series.iterator();
+            it.next();
+            if(k==0)
+                series.add(3d);
+            else
+                series.add(Double.valueOf(3d));
+            try {
+                it.next();
+                fail();
+            } catch (ConcurrentModificationException e) {
+                // expected
+            }
+        }
+    }
 }
@@ -0,0 +1,190 @@
+package tests;
+
+import api.Ensemble;
+import api.OTM;
+import api.OTMdev;
+import common.AbstractLaneGroup;
+import common.Scenario;
+import common.ScenarioContext;
+import org.junit.Test;
+import output.AbstractOutputTimedLink;
+import runner.ScenarioGenerator;
+import utils.RandomStream;
+import xml.JaxbLoader;
+
+import java.io.File;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static tests.ScenarioFixtures.*;
+
+public class TestRandom {
+
+    @Test
+    public void test_scenario_context() throws Exception {
+        OTM a = new OTM();
+        a.load_test("line_ctm");
+        OTM b = new OTM();
+        b.load_test("line_ctm");
+
+        // ids are numbered per scenario
+        assertEquals(lanegroup_ids(a),lanegroup_ids(b));
+
+        // each scenario has its own seed
+        a.set_seed(7);
+        b.set_seed(8);
+        assertEquals(7L,new OTMdev(a).scenario.context.get_random_seed());
+        assertEquals(8L,new OTMdev(b).scenario.context.get_random_seed());
+    }
+
+    @Test
+    public void test_vehicle_models_repeat() throws Exception {
+
+        // Newell corridor with offramps, and spatial queue grid with random turns, each loaded twice
+        Object [][] cases = {{"micro",ScenarioGenerator.Type.corridor,20,3},{"spaceq",ScenarioGenerator.Type.grid,4,4}};
+        for(Object [] c : cases){
+            List<List<List<Double>>> runs = new ArrayList<>();
+            for(int k=0;k<2;k++){
+                OTM myotm = load_generated((String) c[0],(ScenarioGenerator.Type) c[1],(int) c[2],(int) c[3]);
+                myotm.set_seed(7L);
+                myotm.initialize(0f);
+                runs.add(vehicle_history(myotm,300f));
+            }
+            assertTrue(runs.get(0).get(299).stream().mapToDouble(x->x).sum() > 0d);
+            assertEquals((String) c[0],runs.get(0),runs.get(1));
+        }
+    }
+
+    @Test
+    public void test_random_streams() throws Exception {
+        OTM a = new OTM();
+        a.load_test("onramp_offramp");
+        a.set_seed(11);
+        a.initialize(0f);
+        OTM b = new OTM();
+        b.load_test("onramp_offramp");
+        b.set_seed(11);
+        b.initialize(0f);
+
+        Scenario sa = new OTMdev(a).scenario;
+        Scenario sb = new OTMdev(b).scenario;
+        List<Long> lg_ids = lanegroup_ids(a);
+        AbstractLaneGroup lga0 = lanegroup(sa,lg_ids.get(0));
+        AbstractLaneGroup lga1 = lanegroup(sa,lg_ids.get(1));
+        AbstractLaneGroup lgb1 = lanegroup(sb,lg_ids.get(1));
+
+        // draws of one element do not depend on the draws of others
+        for(int i=0;i<100;i++)
+            lga0.random.next_double();
+        double [] x = new double[5];
+        for(int i=0;i<5;i++){
+            x[i] = lga1.random.next_double();
+            assertEquals(x[i],lgb1.random.next_double(),0d);
+        }
+        assertTrue(x[0]!=lga0.random.next_double());
+
+        // lane group streams are keyed on the link and lanes, not on the lane group id
+        RandomStream stream = new RandomStream(RandomStream.Type.lanegroup,
+                lgb1.link.getId(),lgb1.flwpos.ordinal(),lgb1.start_lane_dn);
+        stream.reset(11);
+        for(int i=0;i<5;i++)
+            assertEquals(x[i],stream.next_double(),0d);
+
+        // streams start again from the seed
+        b.set_seed(12);
+        b.initialize(0f);
+        assertTrue(x[0]!=lgb1.random.next_double());
+        b.set_seed(11);
+        b.initialize(0f);
+        for(int i=0;i<5;i++)
+            assertEquals(x[i],lgb1.random.next_double(),0d);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void test_static_random_seed() throws Exception {
+        try {
+            OTM.set_random_seed(5L);
+            OTM a = new OTM();
+            a.load_test("onramp_offramp");
+            OTM b = new OTM();
+            b.load_test("onramp_offramp");
+            b.set_seed(6L);
+            assertEquals(5L,new OTMdev(a).scenario.context.get_random_seed());
+            assertEquals(6L,new OTMdev(b).scenario.context.get_random_seed());
+        } finally {
+            ScenarioContext.set_default_random_seed(null);
+        }
+    }
+
+    @Test
+    public void test_ensemble() throws Exception {
+        String output_requests = new File(getClass().getClassLoader().getResource("sample_output_request.xml").getFile()).getAbsolutePath();
+        Ensemble ensemble = new Ensemble(JaxbLoader.load_test_scenario("onramp_offramp.xml",true));
+        Ensemble.Result result = ensemble.run(new long[]{1,2,3},0f,600f,2,null,output_requests,null);
+
+        assertEquals(3,result.replications.size());
+        assertEquals(2L,result.replications.get(1).seed);
+
+        // the fluid model is deterministic, so all seeds agree with a single run
+        Ensemble.Summary summary = result.summaries.get("link_veh_allcomms_30");
+        assertEquals(3,summary.num_replications);
+        assertTrue(summary.times.length>0);
+
+        OTM single = new OTM();
+        single.load_test("onramp_offramp");
+        single.output.request_links_veh(null,null,30f);
+        single.initialize(0f);
+        single.advance(600f);
+        AbstractOutputTimedLink veh = (AbstractOutputTimedLink) single.output.get_data().iterator().next();
+
+        for(int c=0;c<summary.col_ids.length;c++){
+            DoubleBuffer values = single.output.get_link_values(veh,summary.col_ids[c]);
+            for(int t=0;t<summary.times.length;t++){
+                assertEquals(values.get(t),summary.mean[t][c],1e-9);
+                assertEquals(0d,summary.std[t][c],1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void test_ensemble_stochastic() throws Exception {
+
+        // spatial queue grid with Poisson arrivals and departures, and random turns
+        jaxb.Scenario jaxb_scenario = load_jaxb(with_process(generated_config("spaceq",ScenarioGenerator.Type.grid,4,4),"poisson"));
+
+        // each seed twice, all replications at the same time
+        String output_requests = new File(getClass().getClassLoader().getResource("sample_output_request.xml").getFile()).getAbsolutePath();
+        long [] seeds = {1,2,1,2};
+        Ensemble.Result result = new Ensemble(jaxb_scenario).run(seeds,0f,600f,seeds.length,null,output_requests,null);
+
+        List<Object[]> veh = new ArrayList<>();
+        for(Ensemble.Replication replication : result.replications){
+            List<double[]> rows = replication.series.get("link_veh_allcomms_30").rows;
+            assertEquals(21,rows.size());
+            veh.add(rows.toArray());
+        }
+
+        // the same seed reproduces, different seeds differ
+        assertTrue(Arrays.deepEquals(veh.get(0),veh.get(2)));
+        assertTrue(Arrays.deepEquals(veh.get(1),veh.get(3)));
+        assertFalse(Arrays.deepEquals(veh.get(0),veh.get(1)));
+
+        Ensemble.Summary summary = result.summaries.get("link_veh_allcomms_30");
+        assertTrue(Arrays.stream(summary.std).flatMapToDouble(Arrays::stream).max().getAsDouble() > 0d);
+
+        // Newell corridor with diverges, the same seed in concurrent replications
+        jaxb_scenario = load_jaxb(generated_config("micro",ScenarioGenerator.Type.corridor,20,3));
+        result = new Ensemble(jaxb_scenario).run(new long[]{7,7,7},0f,600f,3,null,output_requests,null);
+        Object [] first = result.replications.get(0).series.get("link_veh_allcomms_30").rows.toArray();
+        assertTrue(Arrays.stream(((double[]) first[first.length-1])).sum() > 0d);
+        for(Ensemble.Replication replication : result.replications)
+            assertTrue(Arrays.deepEquals(first,replication.series.get("link_veh_allcomms_30").rows.toArray()));
+    }
+
+}
@@ -0,0 +1,64 @@
+package tests;
+
+import api.OTM;
+import api.OTMdev;
+import common.Scenario;
+import org.junit.Test;
+import runner.ScenarioGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static tests.ScenarioFixtures.*;
+
+public class TestScenarioGenerator {
+
+    @Test
+    public void test_scenario_generator() throws Exception {
+
+        ScenarioGenerator generator = new ScenarioGenerator();
+        generator.seed = 3L;
+        int [][] sizes = {{20,5},{3,4},{60,6}};
+
+        for(ScenarioGenerator.Type type : ScenarioGenerator.Type.values()){
+            int [] size = sizes[type.ordinal()];
+
+            String a = generated_config(generator,type,size[0],size[1]);
+            String b = generated_config(generator,type,size[0],size[1]);
+            assertEquals(a,b);
+
+            jaxb.Scenario jscn = load_jaxb(a);
+            assertEquals(generator.get_num_links(),jscn.getNetwork().getLinks().getLink().size());
+
+            OTM myotm = new OTM();
+            myotm.load_from_jaxb(jscn,true);
+            myotm.initialize(0f);
+            myotm.advance(600f);
+            double veh = new OTMdev(myotm).scenario.network.links.values().stream().mapToDouble(x->x.get_veh()).sum();
+            assertTrue(veh > 0d);
+        }
+
+        // vehicles cross the signalized grid with vehicle models
+        for(String model : new String[]{"spaceq","micro"}){
+            OTM myotm = load_generated(model,ScenarioGenerator.Type.grid,6,6);
+            myotm.set_seed(1L);
+            myotm.initialize(0f);
+            Scenario scenario = new OTMdev(myotm).scenario;
+            double [] exited = new double[2];
+            for(int i=0;i<2;i++){
+                myotm.advance(600f);
+                double veh = scenario.network.links.values().stream().mapToDouble(x->x.get_veh()).sum();
+                exited[i] = scenario.context.get_vehicle_id_count() - veh;
+            }
+            assertTrue(model,exited[0] > 1000d);
+            assertTrue(model,exited[1] - exited[0] > 2000d);
+        }
+
+        generator.seed = 4L;
+        String c = generated_config(generator,ScenarioGenerator.Type.random,60,6);
+        generator.seed = 3L;
+        String d = generated_config(generator,ScenarioGenerator.Type.random,60,6);
+        assertFalse(c.equals(d));
+    }
+
+}
@@ -0,0 +1,159 @@
+package tests;
+
+import api.OTM;
+import api.OTMdev;
+import api.StateQuery;
+import com.sun.management.ThreadMXBean;
+import common.AbstractLaneGroup;
+import common.Link;
+import common.Scenario;
+import error.OTMException;
+import models.fluid.AbstractCell;
+import models.fluid.FluidLaneGroup;
+import models.vehicle.spatialq.MesoLaneGroup;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static tests.ScenarioFixtures.lanegroup;
+import static tests.ScenarioFixtures.lanegroup_ids;
+
+public class TestStateQuery {
+
+    @Test
+    public void test_state_query() throws Exception {
+        OTM myotm = new OTM();
+        myotm.load_test("onramp_offramp");
+        Scenario scn = new OTMdev(myotm).scenario;
+
+        long [] link_ids = scn.network.links.keySet().stream().mapToLong(x->x).sorted().toArray();
+        long [] lg_ids = lanegroup_ids(myotm).stream().mapToLong(x->x).toArray();
+        long comm_id = scn.commodities.keySet().iterator().next();
+        StateQuery links = myotm.scenario.create_link_query(link_ids,null);
+        StateQuery lgs = myotm.scenario.create_lanegroup_query(lg_ids,null);
+        StateQuery links_comm = myotm.scenario.create_link_query(link_ids,comm_id);
+
+        myotm.initialize(0f);
+        myotm.advance(600f);
+
+        double [] veh = new double[link_ids.length];
+        double [] veh_comm = new double[link_ids.length];
+        double [] speed = new double[link_ids.length];
+        links.get_vehicles(veh);
+        links_comm.get_vehicles(veh_comm);
+        links.get_speeds(speed);
+        for(int i=0;i<link_ids.length;i++){
+            Link link = scn.network.links.get(link_ids[i]);
+            assertEquals(link.get_veh(),veh[i],1e-3);
+            assertEquals(link.get_veh_for_commodity(comm_id),veh_comm[i],1e-3);
+        }
+
+        // uncongested: 100 km/h on every link with cells, NaN on the sources, no queues
+        double ffspeed = 100d/3.6d;
+        double [] queue = new double[link_ids.length];
+        links.get_queues(queue);
+        for(int i=0;i<link_ids.length;i++){
+            if(link_ids[i]==1L || link_ids[i]==6L)
+                assertTrue(Double.isNaN(speed[i]));
+            else
+                assertEquals(ffspeed,speed[i],1e-5);
+            assertEquals(0d,queue[i],0d);
+        }
+
+        double [] lg_veh = new double[lg_ids.length];
+        double [] lg_flw = new double[lg_ids.length];
+        double [] lg_sup = new double[lg_ids.length];
+        lgs.get_vehicles(lg_veh);
+        lgs.get_flows(lg_flw);
+        lgs.get_supplies(lg_sup);
+        for(int i=0;i<lg_ids.length;i++){
+            AbstractLaneGroup lg = lanegroup(scn,lg_ids[i]);
+            assertEquals(lg.get_total_vehicles(),lg_veh[i],1e-3);
+            assertEquals(lg.flw_acc.get_total_count(),lg_flw[i],1e-6);
+            assertEquals(lg.get_supply(),lg_sup[i],1e-6);
+        }
+
+        // reading every value allocates nothing once warm
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread_id = Thread.currentThread().getId();
+        for(int k=0;k<1000;k++)
+            read_all(links,lgs,links_comm,veh,veh_comm,speed,queue,lg_veh,lg_flw,lg_sup);
+        long allocated = threads.getThreadAllocatedBytes(thread_id);
+        for(int k=0;k<10000;k++)
+            read_all(links,lgs,links_comm,veh,veh_comm,speed,queue,lg_veh,lg_flw,lg_sup);
+        allocated = threads.getThreadAllocatedBytes(thread_id) - allocated;
+        assertTrue("allocated " + allocated,allocated < 10000L);
+
+        // bottleneck at the offramp: its queue is the vehicles in the cells above critical density,
+        // it is slowed down, and the link downstream still flows at free speed
+        Link bottleneck = scn.network.links.get(4L);
+        for(AbstractLaneGroup lg : bottleneck.lanegroups_flwdn)
+            ((FluidLaneGroup) lg).set_actuator_capacity_vps(0.05d);
+        myotm.advance(600f);
+        links.get_speeds(speed);
+        links.get_queues(queue);
+        int i4 = Arrays.binarySearch(link_ids,4L);
+        int i5 = Arrays.binarySearch(link_ids,5L);
+        double expected_queue = 0d;
+        for(AbstractLaneGroup lg : bottleneck.lanegroups_flwdn){
+            FluidLaneGroup flg = (FluidLaneGroup) lg;
+            for(AbstractCell cell : flg.cells)
+                if(cell.get_vehicles() > flg.critical_density_veh/flg.cells.size())
+                    expected_queue += cell.get_vehicles();
+        }
+        assertTrue(expected_queue > 0d);
+        assertEquals(expected_queue,queue[i4],1e-6);
+        assertTrue(speed[i4] < ffspeed/10d);
+        assertEquals(0d,queue[i5],0d);
+        assertEquals(ffspeed,speed[i5],1e-5);
+
+        // spatial queue: free speed 500 m in 18 s, scaled by the share of vehicles in transit
+        OTM meso = new OTM();
+        meso.load_test("line_spaceq");
+        Scenario meso_scn = new OTMdev(meso).scenario;
+        long [] meso_ids = new long[]{0L,1L,2L,3L,4L,5L};
+        StateQuery meso_links = meso.scenario.create_link_query(meso_ids,null);
+        meso.initialize(0f);
+        double [] meso_speed = new double[meso_ids.length];
+        double [] meso_queue = new double[meso_ids.length];
+        meso_links.get_speeds(meso_speed);
+        for(double x : meso_speed)
+            assertEquals(ffspeed,x,1e-5);
+        meso.advance(1000f);
+        meso_links.get_speeds(meso_speed);
+        meso_links.get_queues(meso_queue);
+        double total_queue = 0d;
+        for(int i=0;i<meso_ids.length;i++){
+            MesoLaneGroup lg = (MesoLaneGroup) meso_scn.network.links.get(meso_ids[i]).lanegroups_flwdn.get(0);
+            int transit = lg.transit_queue.num_vehicles();
+            int waiting = lg.waiting_queue.num_vehicles();
+            assertEquals(waiting,meso_queue[i],0d);
+            assertEquals(transit+waiting==0 ? ffspeed : ffspeed*transit/(transit+waiting),meso_speed[i],1e-5);
+            total_queue += meso_queue[i];
+        }
+        assertTrue(total_queue > 0d);
+
+        try {
+            links.get_vehicles(new double[0]);
+            fail();
+        } catch (OTMException e) {
+            // expected
+        }
+    }
+
+    private static void read_all(StateQuery links,StateQuery lgs,StateQuery links_comm,double [] veh,double [] veh_comm,double [] speed,double [] queue,double [] lg_veh,double [] lg_flw,double [] lg_sup) throws OTMException {
+        links.get_vehicles(veh);
+        links_comm.get_vehicles(veh_comm);
+        links.get_speeds(speed);
+        links.get_queues(queue);
+        links_comm.get_queues(queue);
+        lgs.get_vehicles(lg_veh);
+        lgs.get_flows(lg_flw);
+        lgs.get_supplies(lg_sup);
+    }
+
+}
@@ -3,6 +3,9 @@ package tests;
 import org.junit.Ignore;
 import org.junit.Test;
 import utils.OTMUtils;
+import utils.StreamingStats;
+
+import static org.junit.Assert.assertEquals;
 
 public class TestUtils {
 
@@ -26,4 +29,19 @@ public class TestUtils {
         System.out.println( OTMUtils.write_int_table(table));
     }
 
+    @Test
+    public void test_streaming_stats() {
+        StreamingStats stats = new StreamingStats();
+        for(int i=1;i<=10000;i++)
+            stats.add(i);
+        assertEquals(10000,stats.get_count());
+        assertEquals(5000.5,stats.get_mean(),1e-9);
+        assertEquals(Math.sqrt(10000d*10001d/12d),stats.get_std(),1e-6);
+        assertEquals(1d,stats.get_min(),0d);
+        assertEquals(10000d,stats.get_max(),0d);
+        assertEquals(5000d,stats.get_quantile(0.5),50d);
+        assertEquals(9500d,stats.get_quantile(0.95),20d);
+        assertEquals(9900d,stats.get_quantile(0.99),10d);
+    }
+
 }